@@ -1297,6 +1297,10 @@ public abstract class AbstractByteBuf extends ByteBuf {
     }
 
     private int forEachByteAsc0(int start, int end, ByteProcessor processor) throws Exception {
+        int index = ByteBufUtil.firstIndexOf(this, start, end, processor);
+        if (index != ByteBufUtil.SWAR_UNSUPPORTED) {
+            return index;
+        }
         for (; start < end; ++start) {
             if (!processor.process(_getByte(start))) {
                 return start;
@@ -7,6 +7,7 @@ import io.netty.util.Recycler;
 import io.netty.util.Recycler.Handle;
 import io.netty.util.concurrent.FastThreadLocal;
 import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SWARUtil;
 import io.netty.util.internal.StringUtil;
 import io.netty.util.internal.SystemPropertyUtil;
 import io.netty.util.internal.logging.InternalLogger;
@@ -67,6 +68,19 @@ public final class ByteBufUtil {
 
     static final ByteBufAllocator DEFAULT_ALLOCATOR;
 
+    /**
+     * Returned by {@link #firstIndexOf(AbstractByteBuf, int, int, ByteProcessor)} if the processor can not be
+     * handled 8 bytes at a time.
+     */
+    static final int SWAR_UNSUPPORTED = -2;
+
+    private static final long NUL_PATTERN = SWARUtil.compilePattern((byte) 0);
+    private static final long CR_PATTERN = SWARUtil.compilePattern((byte) '\r');
+    private static final long LF_PATTERN = SWARUtil.compilePattern((byte) '\n');
+    private static final long SPACE_PATTERN = SWARUtil.compilePattern((byte) ' ');
+    private static final long HTAB_PATTERN = SWARUtil.compilePattern((byte) '\t');
+    private static final long SEMI_COLON_PATTERN = SWARUtil.compilePattern((byte) ';');
+
     static {
         String allocType = SystemPropertyUtil.get(
                 "io.netty.allocator.type", PlatformDependent.isAndroid() ? "unpooled" : "pooled");
@@ -447,9 +461,109 @@ public final class ByteBufUtil {
             return -1;
         }
 
+        if (buffer instanceof AbstractByteBuf) {
+            AbstractByteBuf buf = (AbstractByteBuf) buffer;
+            buf.checkIndex(fromIndex, toIndex - fromIndex);
+            return firstIndexOf(buf, fromIndex, toIndex, SWARUtil.compilePattern(value));
+        }
         return buffer.forEachByte(fromIndex, toIndex - fromIndex, new ByteProcessor.IndexOfProcessor(value));
     }
 
+    /**
+     * Returns the index of the first byte between {@code fromIndex} (inclusive) and {@code toIndex} (exclusive) for
+     * which the given {@link ByteProcessor} would return {@code false}, or {@code -1} if there is none. Only the
+     * stateless find processors like {@link ByteProcessor#FIND_CRLF} are supported, which are scanned 8 bytes at a
+     * time. For all other processors {@link #SWAR_UNSUPPORTED} is returned. No bounds checks are done.
+     */
+    static int firstIndexOf(AbstractByteBuf buffer, int fromIndex, int toIndex, ByteProcessor processor) {
+        if (processor == ByteProcessor.FIND_LF) {
+            return firstIndexOf(buffer, fromIndex, toIndex, LF_PATTERN);
+        }
+        if (processor == ByteProcessor.FIND_CRLF) {
+            return firstIndexOfAny(buffer, fromIndex, toIndex, CR_PATTERN, LF_PATTERN);
+        }
+        if (processor == ByteProcessor.FIND_CR) {
+            return firstIndexOf(buffer, fromIndex, toIndex, CR_PATTERN);
+        }
+        if (processor == ByteProcessor.FIND_NUL) {
+            return firstIndexOf(buffer, fromIndex, toIndex, NUL_PATTERN);
+        }
+        if (processor == ByteProcessor.FIND_LINEAR_WHITESPACE) {
+            return firstIndexOfAny(buffer, fromIndex, toIndex, SPACE_PATTERN, HTAB_PATTERN);
+        }
+        if (processor == ByteProcessor.FIND_SEMI_COLON) {
+            return firstIndexOf(buffer, fromIndex, toIndex, SEMI_COLON_PATTERN);
+        }
+        return SWAR_UNSUPPORTED;
+    }
+
+    /**
+     * Finds the first byte matching the pattern compiled by {@link SWARUtil#compilePattern(byte)}, reading 8 bytes
+     * at a time in native byte order.
+     */
+    private static int firstIndexOf(AbstractByteBuf buffer, int fromIndex, int toIndex, long pattern) {
+        int offset = fromIndex;
+        final int longEnd = toIndex - 7;
+        if (PlatformDependent.BIG_ENDIAN_NATIVE_ORDER) {
+            for (; offset < longEnd; offset += 8) {
+                long result = SWARUtil.applyPattern(buffer._getLong(offset), pattern);
+                if (result != 0) {
+                    return offset + SWARUtil.getIndex(result, true);
+                }
+            }
+        } else {
+            for (; offset < longEnd; offset += 8) {
+                long result = SWARUtil.applyPattern(buffer._getLongLE(offset), pattern);
+                if (result != 0) {
+                    return offset + SWARUtil.getIndex(result, false);
+                }
+            }
+        }
+        final byte value = (byte) pattern;
+        for (; offset < toIndex; offset++) {
+            if (buffer._getByte(offset) == value) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the first byte matching any of the two patterns compiled by {@link SWARUtil#compilePattern(byte)},
+     * reading 8 bytes at a time in native byte order.
+     */
+    private static int firstIndexOfAny(AbstractByteBuf buffer, int fromIndex, int toIndex,
+                                       long pattern1, long pattern2) {
+        int offset = fromIndex;
+        final int longEnd = toIndex - 7;
+        if (PlatformDependent.BIG_ENDIAN_NATIVE_ORDER) {
+            for (; offset < longEnd; offset += 8) {
+                long word = buffer._getLong(offset);
+                long result = SWARUtil.applyPattern(word, pattern1) | SWARUtil.applyPattern(word, pattern2);
+                if (result != 0) {
+                    return offset + SWARUtil.getIndex(result, true);
+                }
+            }
+        } else {
+            for (; offset < longEnd; offset += 8) {
+                long word = buffer._getLongLE(offset);
+                long result = SWARUtil.applyPattern(word, pattern1) | SWARUtil.applyPattern(word, pattern2);
+                if (result != 0) {
+                    return offset + SWARUtil.getIndex(result, false);
+                }
+            }
+        }
+        final byte value1 = (byte) pattern1;
+        final byte value2 = (byte) pattern2;
+        for (; offset < toIndex; offset++) {
+            byte value = buffer._getByte(offset);
+            if (value == value1 || value == value2) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
     private static int lastIndexOf(ByteBuf buffer, int fromIndex, int toIndex, byte value) {
         fromIndex = Math.min(fromIndex, buffer.capacity());
         if (fromIndex < 0 || buffer.capacity() == 0) {
@@ -504,9 +618,13 @@ public final class ByteBufUtil {
     static int writeUtf8(AbstractByteBuf buffer, int writerIndex, CharSequence seq, int len) {
         int oldWriterIndex = writerIndex;
 
+        // Most text starts with (or only consists of) ASCII characters, which are encoded as a single byte.
+        int i = writeAsciiPrefix(buffer, writerIndex, seq, len);
+        writerIndex += i;
+
         // We can use the _set methods as these not need to do any index checks and reference checks.
         // This is possible as we called ensureWritable(...) before.
-        for (int i = 0; i < len; i++) {
+        for (; i < len; i++) {
             char c = seq.charAt(i);
             if (c < 0x80) {
                 buffer._setByte(writerIndex++, (byte) c);
@@ -548,6 +666,70 @@ public final class ByteBufUtil {
         return writerIndex - oldWriterIndex;
     }
 
+    /**
+     * Writes the leading characters of {@code seq} which are smaller than {@code 0x80} directly into the backing
+     * array or memory of the buffer, and returns how many were written. These are encoded the same way in ASCII and
+     * UTF-8. No index or reference checks are done.
+     */
+    private static int writeAsciiPrefix(AbstractByteBuf buffer, int writerIndex, CharSequence seq, int len) {
+        int i = 0;
+        char c;
+        if (buffer.hasArray()) {
+            final byte[] array = buffer.array();
+            final int offset = buffer.arrayOffset() + writerIndex;
+            for (; i < len && (c = seq.charAt(i)) < 0x80; i++) {
+                array[offset + i] = (byte) c;
+            }
+        } else if (buffer.hasMemoryAddress()) {
+            final long address = buffer.memoryAddress() + writerIndex;
+            for (; i < len && (c = seq.charAt(i)) < 0x80; i++) {
+                PlatformDependent.putByte(address + i, (byte) c);
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Returns the exact number of bytes which {@link #writeUtf8(ByteBuf, CharSequence)} would write for the given
+     * {@link CharSequence}.
+     */
+    public static int utf8Bytes(CharSequence seq) {
+        final int len = seq.length();
+        int i = 0;
+        // ASCII fast-path, every char is encoded as a single byte.
+        while (i < len && seq.charAt(i) < 0x80) {
+            i++;
+        }
+        return i < len ? i + utf8Bytes(seq, i, len) : i;
+    }
+
+    private static int utf8Bytes(CharSequence seq, int start, int len) {
+        int encodedLength = 0;
+        for (int i = start; i < len; i++) {
+            char c = seq.charAt(i);
+            if (c < 0x80) {
+                encodedLength++;
+            } else if (c < 0x800) {
+                encodedLength += 2;
+            } else if (isSurrogate(c)) {
+                if (!Character.isHighSurrogate(c)) {
+                    encodedLength++;
+                    continue;
+                }
+                if (++i == len) {
+                    // Trailing high surrogate, written as WRITE_UTF_UNKNOWN.
+                    encodedLength++;
+                    break;
+                }
+                // Either a surrogate pair, or two bytes for the invalid high surrogate and the char that follows it.
+                encodedLength += Character.isLowSurrogate(seq.charAt(i)) ? 4 : 2;
+            } else {
+                encodedLength += 3;
+            }
+        }
+        return encodedLength;
+    }
+
     /**
      * Returns max bytes length of UTF8 character sequence.
      */
@@ -607,10 +789,23 @@ public final class ByteBufUtil {
     // Fast-Path implementation
     static int writeAscii(AbstractByteBuf buffer, int writerIndex, CharSequence seq, int len) {
 
-        // We can use the _set methods as these not need to do any index checks and reference checks.
-        // This is possible as we called ensureWritable(...) before.
-        for (int i = 0; i < len; i++) {
-            buffer._setByte(writerIndex++, AsciiString.c2b(seq.charAt(i)));
+        if (buffer.hasArray()) {
+            final byte[] array = buffer.array();
+            final int offset = buffer.arrayOffset() + writerIndex;
+            for (int i = 0; i < len; i++) {
+                array[offset + i] = AsciiString.c2b(seq.charAt(i));
+            }
+        } else if (buffer.hasMemoryAddress()) {
+            final long address = buffer.memoryAddress() + writerIndex;
+            for (int i = 0; i < len; i++) {
+                PlatformDependent.putByte(address + i, AsciiString.c2b(seq.charAt(i)));
+            }
+        } else {
+            // We can use the _set methods as these not need to do any index checks and reference checks.
+            // This is possible as we called ensureWritable(...) before.
+            for (int i = 0; i < len; i++) {
+                buffer._setByte(writerIndex++, AsciiString.c2b(seq.charAt(i)));
+            }
         }
         return len;
     }
@@ -674,6 +869,21 @@ public final class ByteBufUtil {
         if (len == 0) {
             return StringUtil.EMPTY_STRING;
         }
+        final boolean latin1 = CharsetUtil.ISO_8859_1.equals(charset);
+        final boolean asciiCompatible = latin1 || CharsetUtil.UTF_8.equals(charset)
+                || CharsetUtil.US_ASCII.equals(charset);
+        final AbstractByteBuf fastBuf = asciiCompatible && src instanceof AbstractByteBuf ? (AbstractByteBuf) src : null;
+        if (fastBuf != null) {
+            fastBuf.checkIndex(readerIndex, len);
+            if (fastBuf.hasArray()) {
+                final byte[] array = fastBuf.array();
+                final int offset = fastBuf.arrayOffset() + readerIndex;
+                if (latin1 || SWARUtil.firstNonAsciiIndex(array, offset, offset + len) == -1) {
+                    // Every byte maps to the char with the same value, so just widen them.
+                    return newLatin1String(array, offset, len);
+                }
+            }
+        }
         final CharsetDecoder decoder = CharsetUtil.decoder(charset);
         final int maxLength = (int) ((double) len * decoder.maxCharsPerByte());
         CharBuffer dst = CHAR_BUFFERS.get();
@@ -685,6 +895,22 @@ public final class ByteBufUtil {
         } else {
             dst.clear();
         }
+        if (fastBuf != null) {
+            final char[] chars = dst.array();
+            int widened = widenAscii(fastBuf, readerIndex, len, chars);
+            if (latin1) {
+                for (; widened < len; widened++) {
+                    chars[widened] = (char) (fastBuf._getByte(readerIndex + widened) & 0xFF);
+                }
+            }
+            if (widened == len) {
+                return new String(chars, 0, len);
+            }
+            // Only decode the remaining bytes, starting with the first one which is not ASCII.
+            dst.position(widened);
+            readerIndex += widened;
+            len -= widened;
+        }
         if (src.nioBufferCount() == 1) {
             // Use internalNioBuffer(...) to reduce object creation.
             decodeString(decoder, src.internalNioBuffer(readerIndex, len), dst);
@@ -704,6 +930,72 @@ public final class ByteBufUtil {
         return dst.flip().toString();
     }
 
+    @SuppressWarnings("deprecation")
+    private static String newLatin1String(byte[] array, int offset, int len) {
+        return new String(array, 0, offset, len);
+    }
+
+    /**
+     * Widens the leading ASCII bytes of the given range into {@code dst}, reading 8 bytes at a time, and returns how
+     * many bytes were widened. No bounds checks are done.
+     */
+    private static int widenAscii(AbstractByteBuf buffer, int index, int len, char[] dst) {
+        int i = 0;
+        for (final int longEnd = len - 7; i < longEnd; i += 8) {
+            // The word is read in big endian byte order, so the first byte is the most significant one.
+            final long word = buffer._getLong(index + i);
+            if (!SWARUtil.isAscii(word)) {
+                break;
+            }
+            dst[i] = (char) (word >>> 56);
+            dst[i + 1] = (char) (word >>> 48 & 0x7F);
+            dst[i + 2] = (char) (word >>> 40 & 0x7F);
+            dst[i + 3] = (char) (word >>> 32 & 0x7F);
+            dst[i + 4] = (char) (word >>> 24 & 0x7F);
+            dst[i + 5] = (char) (word >>> 16 & 0x7F);
+            dst[i + 6] = (char) (word >>> 8 & 0x7F);
+            dst[i + 7] = (char) (word & 0x7F);
+        }
+        for (; i < len; i++) {
+            final byte b = buffer._getByte(index + i);
+            if (b < 0) {
+                break;
+            }
+            dst[i] = (char) b;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the index of the first byte between {@code fromIndex} (inclusive) and {@code toIndex} (exclusive)
+     * which is not ASCII, or {@code -1} if all of them are ASCII. The bytes are checked 8 at a time and no bounds
+     * checks are done.
+     */
+    private static int firstNonAsciiIndex(AbstractByteBuf buffer, int fromIndex, int toIndex) {
+        int offset = fromIndex;
+        final int longEnd = toIndex - 7;
+        // The byte order does not matter for the check, so use the cheaper one.
+        if (PlatformDependent.BIG_ENDIAN_NATIVE_ORDER) {
+            for (; offset < longEnd; offset += 8) {
+                if (!SWARUtil.isAscii(buffer._getLong(offset))) {
+                    break;
+                }
+            }
+        } else {
+            for (; offset < longEnd; offset += 8) {
+                if (!SWARUtil.isAscii(buffer._getLongLE(offset))) {
+                    break;
+                }
+            }
+        }
+        for (; offset < toIndex; offset++) {
+            if (buffer._getByte(offset) < 0) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
     private static void decodeString(CharsetDecoder decoder, ByteBuffer src, CharBuffer dst) {
         try {
             CoderResult cr = decoder.decode(src, dst, true);
@@ -1194,6 +1486,11 @@ public final class ByteBufUtil {
      * @param length The length of the specified buffer.
      */
     private static boolean isAscii(ByteBuf buf, int index, int length) {
+        if (buf instanceof AbstractByteBuf) {
+            AbstractByteBuf byteBuf = (AbstractByteBuf) buf;
+            byteBuf.checkIndex(index, length);
+            return firstNonAsciiIndex(byteBuf, index, index + length) == -1;
+        }
         return buf.forEachByte(index, length, FIND_NON_ASCII) == -1;
     }
 
@@ -1240,11 +1537,25 @@ public final class ByteBufUtil {
      */
     private static boolean isUtf8(ByteBuf buf, int index, int length) {
         final int endIndex = index + length;
+        final AbstractByteBuf asciiBuf;
+        if (buf instanceof AbstractByteBuf) {
+            asciiBuf = (AbstractByteBuf) buf;
+            asciiBuf.checkIndex(index, length);
+        } else {
+            asciiBuf = null;
+        }
         while (index < endIndex) {
             byte b1 = buf.getByte(index++);
             byte b2, b3, b4;
             if ((b1 & 0x80) == 0) {
                 // 1 byte
+                if (asciiBuf != null) {
+                    // Skip the rest of the ASCII run 8 bytes at a time.
+                    index = firstNonAsciiIndex(asciiBuf, index, endIndex);
+                    if (index == -1) {
+                        return true;
+                    }
+                }
                 continue;
             }
             if ((b1 & 0xE0) == 0xC0) {
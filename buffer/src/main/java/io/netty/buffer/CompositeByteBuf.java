@@ -1,5 +1,6 @@
 package io.netty.buffer;
 
+import io.netty.util.ByteProcessor;
 import io.netty.util.internal.EmptyArrays;
 
 import java.io.IOException;
@@ -49,10 +50,22 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     private final boolean direct;
 
-    private final List<Component> components;
+    private final ComponentList components;
 
     private final int maxNumComponents;
 
+    /**
+     * Index of the component that served the last lookup. It is only used as a hint and validated against the
+     * offsets of the component before use, so it does not need to be updated when components are modified.
+     */
+    private int lastAccessedComponent;
+
+    /**
+     * The end offsets of all components in a flat array, which is updated lazily from
+     * {@link ComponentList#firstStaleIndex} on, so appending a component only needs to copy its own end offset.
+     */
+    private int[] endOffsets = EmptyArrays.EMPTY_INTS;
+
     private boolean freed;
 
     public CompositeByteBuf(ByteBufAllocator alloc, boolean direct, int maxNumComponents) {
@@ -112,8 +125,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         setIndex(0, capacity());
     }
 
-    private static List<Component> newList(int maxNumComponents) {
-        return new ArrayList<Component>(Math.min(AbstractByteBufAllocator.DEFAULT_MAX_COMPONENTS, maxNumComponents));
+    private static ComponentList newList(int maxNumComponents) {
+        return new ComponentList(Math.min(AbstractByteBufAllocator.DEFAULT_MAX_COMPONENTS, maxNumComponents));
     }
 
     // Special constructor used by WrappedCompositeByteBuf
@@ -122,7 +135,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         this.alloc = alloc;
         direct = false;
         maxNumComponents = 0;
-        components = Collections.emptyList();
+        components = new ComponentList(0);
     }
 
     /**
@@ -450,6 +463,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     }
 
     private void updateComponentOffsets(int cIndex) {
+        components.modified(cIndex);
         int size = components.size();
         if (size <= cIndex) {
             return;
@@ -734,20 +748,58 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      */
     public int toComponentIndex(int offset) {
         checkIndex(offset);
+        return toComponentIndex0(offset);
+    }
+
+    private int toComponentIndex0(int offset) {
+        int size = components.size();
+        int[] endOffsets = endOffsets();
+        int last = lastAccessedComponent;
+        if (last < size) {
+            // Sequential access usually hits either the last accessed component or the one right after it.
+            if (offset >= (last == 0 ? 0 : endOffsets[last - 1])) {
+                if (offset < endOffsets[last]) {
+                    return last;
+                }
+                if (++last < size && offset < endOffsets[last]) {
+                    lastAccessedComponent = last;
+                    return last;
+                }
+            }
+        }
 
-        for (int low = 0, high = components.size(); low <= high; ) {
+        // Find the first component which ends after the offset. This skips empty components as well.
+        int low = 0;
+        int high = size - 1;
+        while (low < high) {
             int mid = low + high >>> 1;
-            Component c = components.get(mid);
-            if (offset >= c.endOffset) {
+            if (endOffsets[mid] <= offset) {
                 low = mid + 1;
-            } else if (offset < c.offset) {
-                high = mid - 1;
             } else {
-                return mid;
+                high = mid;
             }
         }
+        lastAccessedComponent = low;
+        return low;
+    }
 
-        throw new Error("should not reach here");
+    private int[] endOffsets() {
+        ComponentList components = this.components;
+        int firstStaleIndex = components.firstStaleIndex;
+        if (firstStaleIndex != Integer.MAX_VALUE) {
+            int size = components.size();
+            int[] endOffsets = this.endOffsets;
+            if (endOffsets.length < size) {
+                int[] newEndOffsets = new int[Math.max(size, endOffsets.length << 1)];
+                System.arraycopy(endOffsets, 0, newEndOffsets, 0, Math.min(firstStaleIndex, endOffsets.length));
+                endOffsets = this.endOffsets = newEndOffsets;
+            }
+            for (int i = firstStaleIndex; i < size; i++) {
+                endOffsets[i] = components.get(i).endOffset;
+            }
+            components.firstStaleIndex = Integer.MAX_VALUE;
+        }
+        return endOffsets;
     }
 
     public int toByteIndex(int cIndex) {
@@ -771,11 +823,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         Component c = findComponent(index);
         if (index + 2 <= c.endOffset) {
             return c.buf.getShort(index - c.offset);
-        } else if (order() == ByteOrder.BIG_ENDIAN) {
-            return (short) ((_getByte(index) & 0xff) << 8 | _getByte(index + 1) & 0xff);
-        } else {
-            return (short) (_getByte(index) & 0xff | (_getByte(index + 1) & 0xff) << 8);
         }
+        return (short) getStraddling(index, 2);
     }
 
     @Override
@@ -783,11 +832,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         Component c = findComponent(index);
         if (index + 2 <= c.endOffset) {
             return c.buf.getShortLE(index - c.offset);
-        } else if (order() == ByteOrder.BIG_ENDIAN) {
-            return (short) (_getByte(index) & 0xff | (_getByte(index + 1) & 0xff) << 8);
-        } else {
-            return (short) ((_getByte(index) & 0xff) << 8 | _getByte(index + 1) & 0xff);
         }
+        return Short.reverseBytes((short) getStraddling(index, 2));
     }
 
     @Override
@@ -795,11 +841,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         Component c = findComponent(index);
         if (index + 3 <= c.endOffset) {
             return c.buf.getUnsignedMedium(index - c.offset);
-        } else if (order() == ByteOrder.BIG_ENDIAN) {
-            return (_getShort(index) & 0xffff) << 8 | _getByte(index + 2) & 0xff;
-        } else {
-            return _getShort(index) & 0xFFFF | (_getByte(index + 2) & 0xFF) << 16;
         }
+        return (int) getStraddling(index, 3);
     }
 
     @Override
@@ -807,11 +850,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         Component c = findComponent(index);
         if (index + 3 <= c.endOffset) {
             return c.buf.getUnsignedMediumLE(index - c.offset);
-        } else if (order() == ByteOrder.BIG_ENDIAN) {
-            return _getShortLE(index) & 0xffff | (_getByte(index + 2) & 0xff) << 16;
-        } else {
-            return (_getShortLE(index) & 0xffff) << 8 | _getByte(index + 2) & 0xff;
         }
+        int value = (int) getStraddling(index, 3);
+        return (value & 0xff) << 16 | value & 0xff00 | value >>> 16 & 0xff;
     }
 
     @Override
@@ -819,11 +860,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         Component c = findComponent(index);
         if (index + 4 <= c.endOffset) {
             return c.buf.getInt(index - c.offset);
-        } else if (order() == ByteOrder.BIG_ENDIAN) {
-            return (_getShort(index) & 0xffff) << 16 | _getShort(index + 2) & 0xffff;
-        } else {
-            return _getShort(index) & 0xFFFF | (_getShort(index + 2) & 0xFFFF) << 16;
         }
+        return (int) getStraddling(index, 4);
     }
 
     @Override
@@ -831,11 +869,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         Component c = findComponent(index);
         if (index + 4 <= c.endOffset) {
             return c.buf.getIntLE(index - c.offset);
-        } else if (order() == ByteOrder.BIG_ENDIAN) {
-            return _getShortLE(index) & 0xffff | (_getShortLE(index + 2) & 0xffff) << 16;
-        } else {
-            return (_getShortLE(index) & 0xffff) << 16 | _getShortLE(index + 2) & 0xffff;
         }
+        return Integer.reverseBytes((int) getStraddling(index, 4));
     }
 
     @Override
@@ -843,11 +878,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         Component c = findComponent(index);
         if (index + 8 <= c.endOffset) {
             return c.buf.getLong(index - c.offset);
-        } else if (order() == ByteOrder.BIG_ENDIAN) {
-            return (_getInt(index) & 0xffffffffL) << 32 | _getInt(index + 4) & 0xffffffffL;
-        } else {
-            return _getInt(index) & 0xFFFFFFFFL | (_getInt(index + 4) & 0xFFFFFFFFL) << 32;
         }
+        return getStraddling(index, 8);
     }
 
     @Override
@@ -855,11 +887,87 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         Component c = findComponent(index);
         if (index + 8 <= c.endOffset) {
             return c.buf.getLongLE(index - c.offset);
-        } else if (order() == ByteOrder.BIG_ENDIAN) {
-            return _getIntLE(index) & 0xffffffffL | (_getIntLE(index + 4) & 0xffffffffL) << 32;
-        } else {
-            return (_getIntLE(index) & 0xffffffffL) << 32 | _getIntLE(index + 4) & 0xffffffffL;
         }
+        return Long.reverseBytes(getStraddling(index, 8));
+    }
+
+    /**
+     * Returns the {@code size} bytes starting at {@code index} as a big endian value, if they span more than one
+     * component. The components are only looked up once instead of once per byte.
+     */
+    private long getStraddling(int index, int size) {
+        int i = toComponentIndex0(index);
+        Component c = components.get(i);
+        long value = 0;
+        for (int end = index + size; index < end; index++) {
+            while (index >= c.endOffset) {
+                c = components.get(++i);
+            }
+            value = value << 8 | c.buf.getByte(index - c.offset) & 0xff;
+        }
+        return value;
+    }
+
+    @Override
+    public int forEachByte(ByteProcessor processor) {
+        ensureAccessible();
+        return forEachByteAsc0(readerIndex(), writerIndex(), processor);
+    }
+
+    @Override
+    public int forEachByte(int index, int length, ByteProcessor processor) {
+        checkIndex(index, length);
+        return forEachByteAsc0(index, index + length, processor);
+    }
+
+    private int forEachByteAsc0(int start, int end, ByteProcessor processor) {
+        if (start >= end) {
+            return -1;
+        }
+        // Let each component process its part, so they can use their own optimized implementation.
+        for (int i = toComponentIndex0(start); start < end; i++) {
+            Component c = components.get(i);
+            int length = Math.min(end, c.endOffset) - start;
+            if (length > 0) {
+                int result = c.buf.forEachByte(start - c.offset, length, processor);
+                if (result != -1) {
+                    return result + c.offset;
+                }
+                start += length;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int forEachByteDesc(ByteProcessor processor) {
+        ensureAccessible();
+        return forEachByteDesc0(writerIndex() - 1, readerIndex(), processor);
+    }
+
+    @Override
+    public int forEachByteDesc(int index, int length, ByteProcessor processor) {
+        checkIndex(index, length);
+        return forEachByteDesc0(index + length - 1, index, processor);
+    }
+
+    private int forEachByteDesc0(int rStart, int rEnd, ByteProcessor processor) {
+        if (rStart < rEnd) {
+            return -1;
+        }
+        for (int i = toComponentIndex0(rStart); rStart >= rEnd; i--) {
+            Component c = components.get(i);
+            int start = Math.max(rEnd, c.offset);
+            int length = rStart + 1 - start;
+            if (length > 0) {
+                int result = c.buf.forEachByteDesc(start - c.offset, length, processor);
+                if (result != -1) {
+                    return result + c.offset;
+                }
+                rStart = start - 1;
+            }
+        }
+        return -1;
     }
 
     @Override
@@ -1419,21 +1527,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     private Component findComponent(int offset) {
         checkIndex(offset);
-
-        for (int low = 0, high = components.size(); low <= high; ) {
-            int mid = low + high >>> 1;
-            Component c = components.get(mid);
-            if (offset >= c.endOffset) {
-                low = mid + 1;
-            } else if (offset < c.offset) {
-                high = mid - 1;
-            } else {
-                assert c.length != 0;
-                return c;
-            }
-        }
-
-        throw new Error("should not reach here");
+        Component c = components.get(toComponentIndex0(offset));
+        assert c.length != 0;
+        return c;
     }
 
     @Override
@@ -1478,6 +1574,16 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
                 if (buf.nioBufferCount() == 1) {
                     return components.get(0).buf.nioBuffer(index, length);
                 }
+                break;
+            default:
+                if (length == 0) {
+                    return EMPTY_NIO_BUFFER;
+                }
+                // No need to merge if the range is covered by a single component.
+                Component c = findComponent(index);
+                if (index + length <= c.endOffset && c.buf.nioBufferCount() == 1) {
+                    return c.buf.nioBuffer(index - c.offset, length);
+                }
         }
 
         ByteBuffer merged = ByteBuffer.allocate(length).order(order());
@@ -1498,8 +1604,14 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             return new ByteBuffer[] { EMPTY_NIO_BUFFER };
         }
 
-        List<ByteBuffer> buffers = new ArrayList<ByteBuffer>(components.size());
         int i = toComponentIndex(index);
+        Component first = components.get(i);
+        if (index + length <= first.endOffset) {
+            // The range is covered by a single component.
+            return first.buf.nioBuffers(index - first.offset, length);
+        }
+
+        List<ByteBuffer> buffers = new ArrayList<ByteBuffer>(components.size() - i);
         while (length > 0) {
             Component c = components.get(i);
             ByteBuf s = c.buf;
@@ -1674,6 +1786,84 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         return result + ", components=" + components.size() + ')';
     }
 
+    /**
+     * An {@link ArrayList} which tracks the first index modified since {@link #endOffsets()} was last updated, so
+     * that only the end offsets from there on need to be copied again.
+     */
+    private static final class ComponentList extends ArrayList<Component> {
+
+        private static final long serialVersionUID = 7384934599434787632L;
+
+        /**
+         * The first index whose component or end offset may have changed, or {@link Integer#MAX_VALUE} if none.
+         */
+        int firstStaleIndex;
+
+        ComponentList(int initialCapacity) {
+            super(initialCapacity);
+        }
+
+        void modified(int index) {
+            if (index < firstStaleIndex) {
+                firstStaleIndex = index;
+            }
+        }
+
+        @Override
+        public boolean add(Component c) {
+            modified(size());
+            return super.add(c);
+        }
+
+        @Override
+        public void add(int index, Component c) {
+            modified(index);
+            super.add(index, c);
+        }
+
+        @Override
+        public boolean addAll(Collection<? extends Component> c) {
+            modified(size());
+            return super.addAll(c);
+        }
+
+        @Override
+        public boolean addAll(int index, Collection<? extends Component> c) {
+            modified(index);
+            return super.addAll(index, c);
+        }
+
+        @Override
+        public Component set(int index, Component c) {
+            modified(index);
+            return super.set(index, c);
+        }
+
+        @Override
+        public Component remove(int index) {
+            modified(index);
+            return super.remove(index);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            modified(0);
+            return super.remove(o);
+        }
+
+        @Override
+        public void clear() {
+            modified(0);
+            super.clear();
+        }
+
+        @Override
+        protected void removeRange(int fromIndex, int toIndex) {
+            modified(fromIndex);
+            super.removeRange(fromIndex, toIndex);
+        }
+    }
+
     private static final class Component {
 
         final ByteBuf buf;
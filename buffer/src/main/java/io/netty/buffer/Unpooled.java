@@ -1,10 +1,12 @@
 package io.netty.buffer;
 
 import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.StringUtil;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
@@ -185,6 +187,28 @@ public final class Unpooled {
         return wrappedBuffer(array).slice(offset, length);
     }
 
+    /**
+     * Creates a new read-only buffer which wraps the specified read-only {@link MappedByteBuffer}'s current slice.
+     * Once the returned buffer and all buffers derived from it are released the mapping is unmapped right away
+     * (if supported by the platform) instead of waiting for the garbage collector, so the specified buffer must not
+     * be accessed anymore after passing it to this method.
+     * <p>
+     * The mapped file must not be modified or truncated while it is mapped. Reading a page beyond the end of a
+     * truncated file raises {@code SIGBUS}. The returned buffer reads through the {@link ByteBuffer} API instead of
+     * {@code sun.misc.Unsafe}, so the JVM can report this as an {@link InternalError}, but the content read is
+     * undefined either way.
+     */
+    public static ByteBuf wrappedMappedBuffer(MappedByteBuffer buffer) {
+        if (!buffer.isReadOnly()) {
+            throw new IllegalArgumentException("must be a readonly buffer: " + StringUtil.simpleClassName(buffer));
+        }
+        if (!buffer.hasRemaining()) {
+            PlatformDependent.freeDirectBuffer(buffer);
+            return EMPTY_BUFFER;
+        }
+        return new ReadOnlyMappedByteBuf(ALLOC, buffer);
+    }
+
     /**
      * Creates a new buffer which wraps the specified NIO buffer's current
      * slice.  A modification on the specified buffer's content will be
@@ -15,6 +15,7 @@
  */
 package io.netty.buffer;
 
+import io.netty.util.ByteProcessor;
 import io.netty.util.ReferenceCountUtil;
 import org.junit.Assume;
 import org.junit.Test;
@@ -22,6 +23,7 @@ import org.junit.Test;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
@@ -1116,4 +1118,178 @@ public abstract class AbstractCompositeByteBufTest extends AbstractByteBufTest {
         assertEquals(0, buffer.refCnt());
     }
 
+    @Test
+    public void testComponentLookupAfterModification() {
+        CompositeByteBuf cbuf = compositeBuffer();
+        try {
+            cbuf.addComponents(true, wrappedBuffer(new byte[] { 1, 2 }), wrappedBuffer(new byte[] { 3, 4 }),
+                               wrappedBuffer(new byte[] { 5, 6 }));
+            for (int i = 0; i < 6; i++) {
+                assertEquals(i + 1, cbuf.getByte(i));
+            }
+            assertEquals(2, cbuf.toComponentIndex(5));
+
+            cbuf.removeComponent(1);
+            assertEquals(5, cbuf.getByte(2));
+            assertEquals(1, cbuf.toComponentIndex(3));
+
+            cbuf.addComponent(0, wrappedBuffer(new byte[] { 7 }));
+            assertEquals(7, cbuf.getByte(0));
+            assertEquals(1, cbuf.getByte(1));
+            assertEquals(6, cbuf.getByte(4));
+
+            cbuf.consolidate();
+            assertEquals(6, cbuf.getByte(4));
+            assertEquals(0, cbuf.toComponentIndex(4));
+        } finally {
+            cbuf.release();
+        }
+    }
+
+    @Test
+    public void testComponentLookupWhileAppending() {
+        CompositeByteBuf cbuf = compositeBuffer(Integer.MAX_VALUE);
+        try {
+            for (int i = 0; i < 100; i++) {
+                // Empty components must be skipped by the lookup.
+                cbuf.addComponent(true, i % 10 == 0 ? EMPTY_BUFFER : wrappedBuffer(new byte[] { (byte) i }));
+                if (i == 0) {
+                    continue;
+                }
+                assertEquals(1, cbuf.getByte(0));
+                assertEquals(1, cbuf.toComponentIndex(0));
+                if (i % 10 == 0) {
+                    assertEquals(i - 1, cbuf.toComponentIndex(cbuf.writerIndex() - 1));
+                } else {
+                    assertEquals(i, cbuf.getByte(cbuf.writerIndex() - 1));
+                    assertEquals(i, cbuf.toComponentIndex(cbuf.writerIndex() - 1));
+                }
+            }
+
+            // Inserting at the front shifts the offsets of all appended components.
+            cbuf.addComponent(true, 0, wrappedBuffer(new byte[] { -1, -2 }));
+            assertEquals(-1, cbuf.getByte(0));
+            assertEquals(1, cbuf.getByte(2));
+            assertEquals(100, cbuf.toComponentIndex(cbuf.writerIndex() - 1));
+
+            cbuf.removeComponent(0);
+            cbuf.writerIndex(cbuf.capacity());
+            cbuf.addComponent(true, wrappedBuffer(new byte[] { 100 }));
+            assertEquals(1, cbuf.getByte(0));
+            assertEquals(100, cbuf.getByte(cbuf.writerIndex() - 1));
+            assertEquals(100, cbuf.toComponentIndex(cbuf.writerIndex() - 1));
+        } finally {
+            cbuf.release();
+        }
+    }
+
+    @Test
+    public void testStraddlingPrimitiveReads() {
+        CompositeByteBuf cbuf = compositeBuffer();
+        try {
+            cbuf.addComponents(true, wrappedBuffer(new byte[] { 1 }), EMPTY_BUFFER, wrappedBuffer(new byte[] { 2, 3 }),
+                               wrappedBuffer(new byte[] { 4 }), directBuffer(1).writeByte(5),
+                               wrappedBuffer(new byte[] { 6, 7, 8, 9 }));
+            ByteBuf expected = wrappedBuffer(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9 });
+            for (int i = 0; i + 2 <= expected.capacity(); i++) {
+                assertEquals(expected.getShort(i), cbuf.getShort(i));
+                assertEquals(expected.getShortLE(i), cbuf.getShortLE(i));
+            }
+            for (int i = 0; i + 3 <= expected.capacity(); i++) {
+                assertEquals(expected.getUnsignedMedium(i), cbuf.getUnsignedMedium(i));
+                assertEquals(expected.getUnsignedMediumLE(i), cbuf.getUnsignedMediumLE(i));
+            }
+            for (int i = 0; i + 4 <= expected.capacity(); i++) {
+                assertEquals(expected.getInt(i), cbuf.getInt(i));
+                assertEquals(expected.getIntLE(i), cbuf.getIntLE(i));
+            }
+            for (int i = 0; i + 8 <= expected.capacity(); i++) {
+                assertEquals(expected.getLong(i), cbuf.getLong(i));
+                assertEquals(expected.getLongLE(i), cbuf.getLongLE(i));
+            }
+        } finally {
+            cbuf.release();
+        }
+    }
+
+    @Test
+    public void testForEachByteAcrossComponents() {
+        CompositeByteBuf cbuf = compositeBuffer();
+        try {
+            cbuf.addComponents(true, wrappedBuffer(new byte[] { 1, 2 }), EMPTY_BUFFER,
+                               wrappedBuffer(new byte[] { 3, 4, 5 }), directBuffer(2).writeByte(6).writeByte(7));
+            for (int i = 0; i < 7; i++) {
+                assertEquals(i, cbuf.forEachByte(new IndexOfProcessor((byte) (i + 1))));
+                assertEquals(i, cbuf.forEachByteDesc(new IndexOfProcessor((byte) (i + 1))));
+            }
+            assertEquals(-1, cbuf.forEachByte(new IndexOfProcessor((byte) 8)));
+            assertEquals(-1, cbuf.forEachByteDesc(new IndexOfProcessor((byte) 8)));
+
+            assertEquals(-1, cbuf.forEachByte(3, 3, new IndexOfProcessor((byte) 3)));
+            assertEquals(5, cbuf.forEachByte(3, 3, new IndexOfProcessor((byte) 6)));
+            assertEquals(-1, cbuf.forEachByteDesc(1, 3, new IndexOfProcessor((byte) 5)));
+            assertEquals(1, cbuf.forEachByteDesc(1, 3, new IndexOfProcessor((byte) 2)));
+            assertEquals(-1, cbuf.forEachByte(2, 0, new IndexOfProcessor((byte) 3)));
+
+            cbuf.readerIndex(2);
+            assertEquals(-1, cbuf.forEachByte(new IndexOfProcessor((byte) 1)));
+            assertEquals(-1, cbuf.forEachByteDesc(new IndexOfProcessor((byte) 2)));
+
+            final List<Byte> visited = new ArrayList<Byte>();
+            assertEquals(-1, cbuf.forEachByteDesc(new ByteProcessor() {
+                @Override
+                public boolean process(byte value) {
+                    visited.add(value);
+                    return true;
+                }
+            }));
+            assertEquals(Arrays.asList((byte) 7, (byte) 6, (byte) 5, (byte) 4, (byte) 3), visited);
+        } finally {
+            cbuf.release();
+        }
+    }
+
+    @Test
+    public void testNioBufferWithinComponent() {
+        CompositeByteBuf cbuf = compositeBuffer();
+        try {
+            ByteBuf first = directBuffer(4).writeBytes(new byte[] { 1, 2, 3, 4 });
+            cbuf.addComponents(true, first, directBuffer(4).writeBytes(new byte[] { 5, 6, 7, 8 }));
+
+            ByteBuffer nioBuffer = cbuf.nioBuffer(1, 2);
+            assertTrue(nioBuffer.isDirect());
+            assertEquals(2, nioBuffer.remaining());
+            assertEquals(2, nioBuffer.get());
+            assertEquals(3, nioBuffer.get());
+
+            ByteBuffer[] nioBuffers = cbuf.nioBuffers(5, 3);
+            assertEquals(1, nioBuffers.length);
+            assertEquals(3, nioBuffers[0].remaining());
+            assertEquals(6, nioBuffers[0].get());
+
+            nioBuffers = cbuf.nioBuffers(3, 2);
+            assertEquals(2, nioBuffers.length);
+            assertEquals(4, nioBuffers[0].get());
+            assertEquals(5, nioBuffers[1].get());
+
+            nioBuffer = cbuf.nioBuffer(3, 2);
+            assertEquals(4, nioBuffer.get());
+            assertEquals(5, nioBuffer.get());
+        } finally {
+            cbuf.release();
+        }
+    }
+
+    private static final class IndexOfProcessor implements ByteProcessor {
+        private final byte value;
+
+        IndexOfProcessor(byte value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean process(byte value) {
+            return this.value != value;
+        }
+    }
 }
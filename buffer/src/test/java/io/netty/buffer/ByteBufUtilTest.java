@@ -16,6 +16,7 @@
 package io.netty.buffer;
 
 import io.netty.util.AsciiString;
+import io.netty.util.ByteProcessor;
 import io.netty.util.CharsetUtil;
 import org.junit.Test;
 
@@ -443,6 +444,108 @@ public class ByteBufUtilTest {
         buffer.release();
     }
 
+    @Test
+    public void testDecodeStringFastPaths() {
+        String ascii = "GET /index.html HTTP/1.1 with some more ASCII";
+        String utf8 = ascii + " and then UTF-8 like äÄ∏ŒŒ and \uD800\uDC00 and ASCII again";
+        String latin1 = ascii + " then Latin-1 like \u00e4\u00c4\u00ff";
+        for (ByteBuf buffer : new ByteBuf[] { Unpooled.buffer(256), Unpooled.directBuffer(256) }) {
+            try {
+                assertDecodeString(buffer, ascii, CharsetUtil.US_ASCII);
+                assertDecodeString(buffer, ascii, CharsetUtil.UTF_8);
+                assertDecodeString(buffer, ascii, CharsetUtil.ISO_8859_1);
+                assertDecodeString(buffer, utf8, CharsetUtil.UTF_8);
+                assertDecodeString(buffer, latin1, CharsetUtil.ISO_8859_1);
+
+                // Non ASCII bytes are replaced when decoding ASCII, just like the CharsetDecoder does.
+                buffer.clear().writeBytes(latin1.getBytes(CharsetUtil.ISO_8859_1));
+                assertEquals(new String(ByteBufUtil.getBytes(buffer), CharsetUtil.US_ASCII),
+                        buffer.toString(CharsetUtil.US_ASCII));
+
+                // Decode a range which does not start at index 0.
+                buffer.clear().writeBytes(utf8.getBytes(CharsetUtil.UTF_8));
+                assertEquals(utf8.substring(3), buffer.toString(3, buffer.readableBytes() - 3, CharsetUtil.UTF_8));
+            } finally {
+                buffer.release();
+            }
+        }
+    }
+
+    private static void assertDecodeString(ByteBuf buffer, String text, Charset charset) {
+        buffer.clear().writeBytes(text.getBytes(charset));
+        assertEquals(text, buffer.toString(charset));
+    }
+
+    @Test
+    public void testWriteUtf8AsciiPrefix() {
+        String text = "Some ASCII prefix followed by UTF-8 like äÄ∏ŒŒ";
+        byte[] expected = text.getBytes(CharsetUtil.UTF_8);
+        for (ByteBuf buffer : new ByteBuf[] { Unpooled.buffer(4), Unpooled.directBuffer(4) }) {
+            try {
+                buffer.writeByte('x');
+                assertEquals(expected.length, ByteBufUtil.writeUtf8(buffer, text));
+                assertEquals('x', buffer.readByte());
+                assertArrayEquals(expected, ByteBufUtil.getBytes(buffer));
+            } finally {
+                buffer.release();
+            }
+        }
+    }
+
+    @Test
+    public void testWriteAsciiDirect() {
+        String text = "Some ASCII text";
+        ByteBuf buffer = Unpooled.directBuffer(4);
+        try {
+            assertEquals(text.length(), ByteBufUtil.writeAscii(buffer, new StringBuilder(text)));
+            assertEquals(text, buffer.toString(CharsetUtil.US_ASCII));
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Test
+    public void testUtf8Bytes() {
+        String[] texts = {
+                "",
+                "Some ASCII",
+                "Some UTF-8 like äÄ∏ŒŒ",
+                "a\uD800\uDC00b",
+                "a\uDC00b",
+                "a\uD800b",
+                "a\uD800\uD800b",
+                "a\uDC00\uD800b",
+                "ab\uD800",
+        };
+        for (String text : texts) {
+            ByteBuf buffer = Unpooled.buffer();
+            try {
+                assertEquals(text, ByteBufUtil.writeUtf8(buffer, text), ByteBufUtil.utf8Bytes(text));
+            } finally {
+                buffer.release();
+            }
+        }
+    }
+
+    @Test
+    public void testIsTextWithLongAsciiRuns() {
+        byte[] ascii = "netty is an asynchronous event-driven network application framework"
+                .getBytes(CharsetUtil.US_ASCII);
+        byte[] valid = new byte[ascii.length * 2 + 3];
+        System.arraycopy(ascii, 0, valid, 0, ascii.length);
+        valid[ascii.length] = (byte) 0xE2;
+        valid[ascii.length + 1] = (byte) 0x82;
+        valid[ascii.length + 2] = (byte) 0xAC;
+        System.arraycopy(ascii, 0, valid, ascii.length + 3, ascii.length);
+        assertIsText(valid, true, CharsetUtil.UTF_8);
+        assertIsText(valid, false, CharsetUtil.US_ASCII);
+        assertIsText(ascii, true, CharsetUtil.US_ASCII);
+
+        // Truncated sequence after a long ASCII run.
+        byte[] invalid = Arrays.copyOf(valid, ascii.length + 2);
+        assertIsText(invalid, false, CharsetUtil.UTF_8);
+    }
+
     @Test
     public void testToStringDoesNotThrowIndexOutOfBounds() {
         CompositeByteBuf buffer = Unpooled.compositeBuffer();
@@ -551,4 +654,79 @@ public class ByteBufUtilTest {
             buffer.release();
         }
     }
+
+    @Test
+    public void testIndexOfSwarHeap() {
+        testIndexOfSwar(Unpooled.buffer(64));
+    }
+
+    @Test
+    public void testIndexOfSwarDirect() {
+        testIndexOfSwar(Unpooled.directBuffer(64));
+    }
+
+    private static void testIndexOfSwar(ByteBuf buf) {
+        try {
+            for (int length = 0; length < 40; length++) {
+                for (int position = 0; position < length; position++) {
+                    buf.clear();
+                    for (int i = 0; i < length; i++) {
+                        buf.writeByte(i == position ? 'x' : 'a');
+                    }
+                    for (int from = 0; from < length; from++) {
+                        int expected = from <= position ? position : -1;
+                        assertEquals(expected, ByteBufUtil.indexOf(buf, from, length, (byte) 'x'));
+                    }
+                }
+            }
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test
+    public void testForEachByteFindCrlfHeap() {
+        testForEachByteFindCrlf(Unpooled.buffer(64));
+    }
+
+    @Test
+    public void testForEachByteFindCrlfDirect() {
+        testForEachByteFindCrlf(Unpooled.directBuffer(64));
+    }
+
+    private static void testForEachByteFindCrlf(ByteBuf buf) {
+        try {
+            for (int length = 1; length < 40; length++) {
+                for (int position = 0; position < length; position++) {
+                    buf.clear();
+                    for (int i = 0; i < length; i++) {
+                        buf.writeByte(i == position ? (position % 2 == 0 ? '\r' : '\n') : 'a');
+                    }
+                    assertEquals(position, buf.forEachByte(ByteProcessor.FIND_CRLF));
+                    assertEquals(position, buf.forEachByte(0, length, ByteProcessor.FIND_CRLF));
+                    int expectedLf = position % 2 == 1 ? position : -1;
+                    assertEquals(expectedLf, buf.forEachByte(ByteProcessor.FIND_LF));
+                    if (position + 1 < length) {
+                        assertEquals(-1, buf.forEachByte(position + 1, length - position - 1,
+                                ByteProcessor.FIND_CRLF));
+                    }
+                }
+            }
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test
+    public void testForEachByteFindLinearWhitespaceSlice() {
+        ByteBuf buf = Unpooled.copiedBuffer("0123456789abcdef\t0123456789 abc", CharsetUtil.US_ASCII);
+        try {
+            ByteBuf slice = buf.slice(3, buf.readableBytes() - 3);
+            assertEquals(13, slice.forEachByte(ByteProcessor.FIND_LINEAR_WHITESPACE));
+            assertEquals(24, slice.forEachByte(14, slice.readableBytes() - 14,
+                    ByteProcessor.FIND_LINEAR_WHITESPACE));
+        } finally {
+            buf.release();
+        }
+    }
 }
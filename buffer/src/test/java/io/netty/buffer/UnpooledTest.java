@@ -18,8 +18,12 @@ package io.netty.buffer;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.channels.ScatteringByteChannel;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
@@ -721,4 +725,46 @@ public class UnpooledTest {
             wrappedBuffer.release();
         }
     }
+
+    @Test
+    public void testWrappedMappedBuffer() throws Exception {
+        File file = File.createTempFile("netty-mapped-", ".tmp");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[] { 1, 2, 3, 4 });
+        } finally {
+            out.close();
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        ByteBuf buf;
+        try {
+            buf = wrappedMappedBuffer(raf.getChannel().map(MapMode.READ_ONLY, 0, 4));
+        } finally {
+            raf.close();
+        }
+        assertTrue(buf.isReadOnly());
+        // Reads go through the ByteBuffer API, so a truncated file can be reported as an InternalError.
+        assertFalse(buf.hasMemoryAddress());
+        assertEquals(4, buf.readableBytes());
+        ByteBuf slice = buf.retainedSlice(1, 2);
+        assertFalse(buf.release());
+        assertEquals(2, slice.getByte(0));
+        assertEquals(3, slice.getByte(1));
+        assertTrue(slice.release());
+        assertTrue(file.delete());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrappedMappedBufferNotReadOnly() throws Exception {
+        File file = File.createTempFile("netty-mapped-", ".tmp");
+        file.deleteOnExit();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            wrappedMappedBuffer(raf.getChannel().map(MapMode.READ_WRITE, 0, 4));
+        } finally {
+            raf.close();
+        }
+    }
 }
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.util.internal.ObjectUtil;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A size bounded cache of compressed contents which can be shared by several {@link HttpContentCompressor}s.
+ * <p>
+ * A content is identified by a key that is unique for its uncompressed representation, like a strong entity tag
+ * or a hash of the content, together with the content encoding it was compressed with. The compressed contents are
+ * copied into direct buffers, and once the total size of all cached contents exceeds the configured maximum the
+ * least recently used ones are evicted.
+ * <p>
+ * All methods are thread-safe.
+ */
+public final class HttpCompressionCache {
+
+    private final long maxSize;
+    private final ByteBufAllocator alloc;
+    private final Map<Key, ByteBuf> contents = new LinkedHashMap<Key, ByteBuf>(16, 0.75f, true);
+    private long size;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a new cache which holds at most {@code maxSize} bytes of compressed contents.
+     */
+    public HttpCompressionCache(long maxSize) {
+        // Cached contents usually live much longer than the buffers of a pooled allocator are designed for.
+        this(maxSize, UnpooledByteBufAllocator.DEFAULT);
+    }
+
+    /**
+     * Creates a new cache which holds at most {@code maxSize} bytes of compressed contents, allocating the direct
+     * buffers that hold the contents from {@code alloc}.
+     */
+    public HttpCompressionCache(long maxSize, ByteBufAllocator alloc) {
+        this.maxSize = ObjectUtil.checkPositive(maxSize, "maxSize");
+        this.alloc = ObjectUtil.checkNotNull(alloc, "alloc");
+    }
+
+    /**
+     * Returns the maximum number of bytes of compressed contents held by this cache.
+     */
+    public long maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns a {@link ByteBuf#retainedDuplicate()} of the content cached for {@code key} in
+     * {@code contentEncoding}, or {@code null} if there is no such content. The caller is responsible for releasing
+     * the returned buffer.
+     */
+    public ByteBuf get(CharSequence key, CharSequence contentEncoding) {
+        Key k = new Key(key, contentEncoding);
+        synchronized (this) {
+            ByteBuf content = contents.get(k);
+            if (content == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+            // Retain while holding the lock so the content can not be released by a concurrent eviction.
+            return content.retainedDuplicate();
+        }
+    }
+
+    /**
+     * Caches a copy of the readable bytes of {@code content}, which was compressed in {@code contentEncoding} from
+     * the content identified by {@code key}, replacing any content cached before. The least recently used contents
+     * are evicted if needed. This method does not modify or release {@code content}.
+     *
+     * @return {@code true} if the content was cached, {@code false} if it is larger than {@link #maxSize()}
+     */
+    public boolean put(CharSequence key, CharSequence contentEncoding, ByteBuf content) {
+        Key k = new Key(key, contentEncoding);
+        int length = content.readableBytes();
+        if (length > maxSize) {
+            return false;
+        }
+        ByteBuf copy = alloc.directBuffer(length, length);
+        boolean success = false;
+        try {
+            copy.writeBytes(content, content.readerIndex(), length);
+            success = true;
+        } finally {
+            if (!success) {
+                copy.release();
+            }
+        }
+
+        synchronized (this) {
+            ByteBuf old = contents.put(k, copy);
+            if (old != null) {
+                size -= old.readableBytes();
+                old.release();
+            }
+            size += length;
+            evict();
+        }
+        return true;
+    }
+
+    /**
+     * Removes the contents cached for {@code key} in all content encodings.
+     *
+     * @return the number of removed contents
+     */
+    public synchronized int remove(CharSequence key) {
+        String k = key.toString();
+        int removed = 0;
+        for (Iterator<Map.Entry<Key, ByteBuf>> i = contents.entrySet().iterator(); i.hasNext();) {
+            Map.Entry<Key, ByteBuf> e = i.next();
+            if (e.getKey().key.equals(k)) {
+                i.remove();
+                size -= e.getValue().readableBytes();
+                e.getValue().release();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes all cached contents.
+     */
+    public synchronized void clear() {
+        for (ByteBuf content : contents.values()) {
+            content.release();
+        }
+        contents.clear();
+        size = 0;
+    }
+
+    private void evict() {
+        Iterator<ByteBuf> i = contents.values().iterator();
+        while (size > maxSize) {
+            ByteBuf content = i.next();
+            i.remove();
+            size -= content.readableBytes();
+            content.release();
+            evictions++;
+        }
+    }
+
+    /**
+     * Returns the number of cached contents.
+     */
+    public synchronized int entries() {
+        return contents.size();
+    }
+
+    /**
+     * Returns the number of bytes of all cached contents.
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of lookups which found a cached content.
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups which did not find a cached content.
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of contents which were evicted to make room for others.
+     */
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the ratio of lookups which found a cached content, or {@code 0} if there were no lookups yet.
+     */
+    public synchronized double hitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return getClass().getSimpleName() + "(entries: " + contents.size() + ", size: " + size + '/' + maxSize +
+                ", hits: " + hits + ", misses: " + misses + ", evictions: " + evictions + ')';
+    }
+
+    private static final class Key {
+        final String key;
+        final String contentEncoding;
+
+        Key(CharSequence key, CharSequence contentEncoding) {
+            this.key = ObjectUtil.checkNotNull(key, "key").toString();
+            this.contentEncoding = ObjectUtil.checkNotNull(contentEncoding, "contentEncoding").toString();
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() * 31 + contentEncoding.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return key.equals(other.key) && contentEncoding.equals(other.contentEncoding);
+        }
+    }
+}
@@ -15,24 +15,51 @@
  */
 package io.netty.handler.codec.http;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.BrotliEncoder;
 import io.netty.handler.codec.compression.ZlibCodecFactory;
 import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.codec.compression.ZstdEncoder;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
 
 /**
- * Compresses an {@link HttpMessage} and an {@link HttpContent} in {@code gzip} or
- * {@code deflate} encoding while respecting the {@code "Accept-Encoding"} header.
- * If there is no matching encoding, no compression is done.  For more
+ * Compresses an {@link HttpMessage} and an {@link HttpContent} in {@code gzip},
+ * {@code deflate}, {@code br} or {@code zstd} encoding while respecting the {@code "Accept-Encoding"} header.
+ * If there is no matching encoding, no compression is done.  {@code br} and {@code zstd} are only
+ * chosen when the client weights them strictly higher than both {@code gzip} and {@code deflate}, unless
+ * {@code br} is explicitly preferred, see
+ * {@link #HttpContentCompressor(int, int, int, HttpCompressionCache, boolean)}.  For more
  * information on how this handler modifies the message, please refer to
  * {@link HttpContentEncoder}.
+ * <p>
+ * If a {@link HttpCompressionCache} is given, the compressed contents of {@link FullHttpResponse}s that carry a
+ * strong {@code "ETag"} header are cached, and later responses to the same request URI with the same entity tag are
+ * served from the cache without compressing them again. See {@link #contentCacheKey(String, FullHttpResponse)} for
+ * using other keys.
  */
 public class HttpContentCompressor extends HttpContentEncoder {
 
+    /**
+     * Highest quality supported by the {@link BrotliEncoder}.
+     */
+    private static final int MAX_BROTLI_QUALITY = 4;
+
     private final int compressionLevel;
     private final int windowBits;
     private final int memLevel;
+    private final HttpCompressionCache contentCache;
+    private final boolean preferBrotli;
+    private final Queue<String> requestTargetQueue = new ArrayDeque<String>();
     private ChannelHandlerContext ctx;
+    private CharSequence pendingCacheKey;
+    private String requestTarget;
 
     /**
      * Creates a new handler with the default compression level (<tt>6</tt>),
@@ -75,6 +102,78 @@ public class HttpContentCompressor extends HttpContentEncoder {
      *        at the expense of memory usage.  The default value is {@code 8}
      */
     public HttpContentCompressor(int compressionLevel, int windowBits, int memLevel) {
+        this(compressionLevel, windowBits, memLevel, null);
+    }
+
+    /**
+     * Creates a new handler with the default compression level (<tt>6</tt>),
+     * default window size (<tt>15</tt>) and default memory level (<tt>8</tt>)
+     * that caches the compressed contents of full responses.
+     *
+     * @param contentCache
+     *        the cache of compressed contents, which may be shared by several
+     *        handlers.
+     */
+    public HttpContentCompressor(HttpCompressionCache contentCache) {
+        this(6, 15, 8, contentCache);
+    }
+
+    /**
+     * Creates a new handler with the specified compression level, window size,
+     * and memory level that caches the compressed contents of full responses.
+     *
+     * @param compressionLevel
+     *        {@code 1} yields the fastest compression and {@code 9} yields the
+     *        best compression.  {@code 0} means no compression.  The default
+     *        compression level is {@code 6}.
+     * @param windowBits
+     *        The base two logarithm of the size of the history buffer.  The
+     *        value should be in the range {@code 9} to {@code 15} inclusive.
+     *        Larger values result in better compression at the expense of
+     *        memory usage.  The default value is {@code 15}.
+     * @param memLevel
+     *        How much memory should be allocated for the internal compression
+     *        state.  {@code 1} uses minimum memory and {@code 9} uses maximum
+     *        memory.  Larger values result in better and faster compression
+     *        at the expense of memory usage.  The default value is {@code 8}
+     * @param contentCache
+     *        the cache of compressed contents, which may be shared by several
+     *        handlers, or {@code null} if contents should not be cached.
+     */
+    public HttpContentCompressor(int compressionLevel, int windowBits, int memLevel,
+                                 HttpCompressionCache contentCache) {
+        this(compressionLevel, windowBits, memLevel, contentCache, false);
+    }
+
+    /**
+     * Creates a new handler with the specified compression level, window size,
+     * and memory level that caches the compressed contents of full responses.
+     *
+     * @param compressionLevel
+     *        {@code 1} yields the fastest compression and {@code 9} yields the
+     *        best compression.  {@code 0} means no compression.  The default
+     *        compression level is {@code 6}.
+     * @param windowBits
+     *        The base two logarithm of the size of the history buffer.  The
+     *        value should be in the range {@code 9} to {@code 15} inclusive.
+     *        Larger values result in better compression at the expense of
+     *        memory usage.  The default value is {@code 15}.
+     * @param memLevel
+     *        How much memory should be allocated for the internal compression
+     *        state.  {@code 1} uses minimum memory and {@code 9} uses maximum
+     *        memory.  Larger values result in better and faster compression
+     *        at the expense of memory usage.  The default value is {@code 8}
+     * @param contentCache
+     *        the cache of compressed contents, which may be shared by several
+     *        handlers, or {@code null} if contents should not be cached.
+     * @param preferBrotli
+     *        {@code true} if {@code br} should also be chosen when the client
+     *        weights it as high as {@code gzip} or {@code deflate}, as done by
+     *        browsers which send {@code "gzip, deflate, br"}.  The default is
+     *        {@code false}.
+     */
+    public HttpContentCompressor(int compressionLevel, int windowBits, int memLevel,
+                                 HttpCompressionCache contentCache, boolean preferBrotli) {
         if (compressionLevel < 0 || compressionLevel > 9) {
             throw new IllegalArgumentException(
                     "compressionLevel: " + compressionLevel +
@@ -91,6 +190,8 @@ public class HttpContentCompressor extends HttpContentEncoder {
         this.compressionLevel = compressionLevel;
         this.windowBits = windowBits;
         this.memLevel = memLevel;
+        this.contentCache = contentCache;
+        this.preferBrotli = preferBrotli;
     }
 
     @Override
@@ -98,8 +199,28 @@ public class HttpContentCompressor extends HttpContentEncoder {
         this.ctx = ctx;
     }
 
+    @Override
+    protected void decode(ChannelHandlerContext ctx, HttpRequest msg, List<Object> out) throws Exception {
+        if (contentCache != null) {
+            String host = msg.headers().get(HttpHeaderNames.HOST);
+            requestTargetQueue.add(host == null ? msg.uri() : host + msg.uri());
+        }
+        super.decode(ctx, msg, out);
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, HttpObject msg, List<Object> out) throws Exception {
+        if (contentCache != null && msg instanceof HttpResponse &&
+            ((HttpResponse) msg).status().code() != HttpResponseStatus.CONTINUE.code()) {
+            // Polled in lock-step with the Accept-Encoding of the request the response belongs to.
+            requestTarget = requestTargetQueue.poll();
+        }
+        super.encode(ctx, msg, out);
+    }
+
     @Override
     protected Result beginEncode(HttpResponse headers, String acceptEncoding) throws Exception {
+        pendingCacheKey = null;
         String contentEncoding = headers.headers().get(HttpHeaderNames.CONTENT_ENCODING);
         if (contentEncoding != null) {
             // Content-Encoding was set, either as something specific or as the IDENTITY encoding
@@ -107,28 +228,100 @@ public class HttpContentCompressor extends HttpContentEncoder {
             return null;
         }
 
-        ZlibWrapper wrapper = determineWrapper(acceptEncoding);
-        if (wrapper == null) {
-            return null;
+        String targetContentEncoding = null;
+        ZlibWrapper wrapper = null;
+        if (compressionLevel > 0) {
+            CharSequence encoding = determineEncoding(acceptEncoding, preferBrotli);
+            if (encoding != null) {
+                targetContentEncoding = encoding.toString();
+            }
+        }
+        if (targetContentEncoding == null) {
+            wrapper = determineWrapper(acceptEncoding);
+            if (wrapper == null) {
+                return null;
+            }
+
+            switch (wrapper) {
+            case GZIP:
+                targetContentEncoding = "gzip";
+                break;
+            case ZLIB:
+                targetContentEncoding = "deflate";
+                break;
+            default:
+                throw new Error();
+            }
         }
 
-        String targetContentEncoding;
-        switch (wrapper) {
-        case GZIP:
-            targetContentEncoding = "gzip";
-            break;
-        case ZLIB:
-            targetContentEncoding = "deflate";
-            break;
-        default:
-            throw new Error();
+        if (contentCache != null && requestTarget != null && headers instanceof FullHttpResponse) {
+            CharSequence key = contentCacheKey(requestTarget, (FullHttpResponse) headers);
+            if (key != null) {
+                ByteBuf cached = contentCache.get(key, targetContentEncoding);
+                if (cached != null) {
+                    return new Result(targetContentEncoding, cached);
+                }
+                pendingCacheKey = key;
+            }
         }
 
         return new Result(
                 targetContentEncoding,
                 new EmbeddedChannel(ctx.channel().id(), ctx.channel().metadata().hasDisconnect(),
-                        ctx.channel().config(), ZlibCodecFactory.newZlibEncoder(
-                        wrapper, compressionLevel, windowBits, memLevel)));
+                        ctx.channel().config(), newContentEncoder(targetContentEncoding, wrapper)));
+    }
+
+    private ChannelHandler newContentEncoder(String targetContentEncoding, ZlibWrapper wrapper) {
+        if (wrapper != null) {
+            return ZlibCodecFactory.newZlibEncoder(wrapper, compressionLevel, windowBits, memLevel);
+        }
+        if (HttpHeaderValues.BR.contentEquals(targetContentEncoding)) {
+            // Map the zlib compression levels onto the quality levels of the encoder, starting at the fastest.
+            return new BrotliEncoder(Math.min(compressionLevel - 1, MAX_BROTLI_QUALITY));
+        }
+        return new ZstdEncoder(compressionLevel);
+    }
+
+    @Override
+    protected void fullContentEncoded(HttpResponse response, List<Object> encodedContents) {
+        CharSequence key = pendingCacheKey;
+        if (key == null) {
+            return;
+        }
+        pendingCacheKey = null;
+
+        CompositeByteBuf content = ctx.alloc().compositeBuffer(encodedContents.size());
+        try {
+            for (Object msg : encodedContents) {
+                ByteBuf buf = ((HttpContent) msg).content();
+                if (buf.isReadable()) {
+                    content.addComponent(true, buf.retainedDuplicate());
+                }
+            }
+            contentCache.put(key, response.headers().get(HttpHeaderNames.CONTENT_ENCODING), content);
+        } finally {
+            content.release();
+        }
+    }
+
+    /**
+     * Returns the key the compressed content of {@code response} is cached under, or {@code null} if it should
+     * not be cached. The key must be unique for the uncompressed content. The default implementation combines
+     * {@code requestTarget} with the value of the {@code "ETag"} header, as entity tags are only unique per
+     * resource, and does not cache weak entity tags which do not guarantee that two contents are byte-for-byte
+     * identical. Sub-classes may override this to use a hash of the content instead.
+     *
+     * @param requestTarget
+     *        the {@code "Host"} header of the request, if any, followed by its URI
+     * @param response
+     *        the response to be compressed
+     */
+    protected CharSequence contentCacheKey(String requestTarget, FullHttpResponse response) {
+        String etag = response.headers().get(HttpHeaderNames.ETAG);
+        if (etag == null || etag.startsWith("W/")) {
+            return null;
+        }
+        return requestTarget + ' ' + etag;
     }
 
     @SuppressWarnings("FloatingPointEquality")
@@ -172,4 +365,44 @@ public class HttpContentCompressor extends HttpContentEncoder {
         }
         return null;
     }
+
+    /**
+     * Returns {@link HttpHeaderValues#BR} or {@link HttpHeaderValues#ZSTD} if the {@code "Accept-Encoding"} header
+     * prefers it, or {@code null} if {@code gzip} or {@code deflate} should be considered instead. Both have to be
+     * weighted strictly higher than {@code gzip} and {@code deflate}, unless {@code preferBrotli} is set in which
+     * case {@code br} wins ties.
+     */
+    private static CharSequence determineEncoding(String acceptEncoding, boolean preferBrotli) {
+        float brQ = -1.0f;
+        float zstdQ = -1.0f;
+        float zlibQ = -1.0f;
+        for (String encoding : acceptEncoding.split(",")) {
+            float q = 1.0f;
+            int equalsPos = encoding.indexOf('=');
+            if (equalsPos != -1) {
+                try {
+                    q = Float.parseFloat(encoding.substring(equalsPos + 1));
+                } catch (NumberFormatException e) {
+                    // Ignore encoding
+                    q = 0.0f;
+                }
+            }
+            int paramsPos = encoding.indexOf(';');
+            String name = (paramsPos == -1 ? encoding : encoding.substring(0, paramsPos)).trim();
+            if (HttpHeaderValues.BR.contentEqualsIgnoreCase(name)) {
+                brQ = Math.max(brQ, q);
+            } else if (encoding.contains("zstd")) {
+                zstdQ = Math.max(zstdQ, q);
+            } else if (encoding.contains("*") || encoding.contains("gzip") || encoding.contains("deflate")) {
+                zlibQ = Math.max(zlibQ, q);
+            }
+        }
+        if (brQ > 0.0f && brQ >= zstdQ && (brQ > zlibQ || preferBrotli && brQ == zlibQ)) {
+            return HttpHeaderValues.BR;
+        }
+        if (zstdQ > 0.0f && zstdQ > zlibQ) {
+            return HttpHeaderValues.ZSTD;
+        }
+        return null;
+    }
 }
@@ -158,6 +158,11 @@ public abstract class HttpContentEncoder extends MessageToMessageCodec<HttpReque
                     break;
                 }
 
+                if (result.encodedContent() != null && !isFull) {
+                    result.encodedContent().release();
+                    throw new IllegalStateException("encoded content can only be used for a full response");
+                }
+
                 encoder = result.contentEncoder();
 
                 // Encode the content and remove or replace the existing headers
@@ -172,7 +177,7 @@ public abstract class HttpContentEncoder extends MessageToMessageCodec<HttpReque
                     out.add(newRes);
 
                     ensureContent(res);
-                    encodeFullResponse(newRes, (HttpContent) res, out);
+                    encodeFullResponse(newRes, (HttpContent) res, result.encodedContent(), out);
                     break;
                 } else {
                     // Make the response chunked to simplify content transformation.
@@ -208,9 +213,15 @@ public abstract class HttpContentEncoder extends MessageToMessageCodec<HttpReque
         }
     }
 
-    private void encodeFullResponse(HttpResponse newRes, HttpContent content, List<Object> out) {
+    private void encodeFullResponse(HttpResponse newRes, HttpContent content, ByteBuf encodedContent,
+                                    List<Object> out) {
         int existingMessages = out.size();
-        encodeContent(content, out);
+        if (encodedContent != null) {
+            out.add(new DefaultHttpContent(encodedContent));
+            addLastContent((LastHttpContent) content, out);
+        } else {
+            encodeContent(content, out);
+        }
 
         if (HttpUtil.isContentLengthSet(newRes)) {
             // adjust the content-length header
@@ -225,6 +236,10 @@ public abstract class HttpContentEncoder extends MessageToMessageCodec<HttpReque
         } else {
             newRes.headers().set(HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED);
         }
+
+        if (encodedContent == null) {
+            fullContentEncoded(newRes, out.subList(existingMessages, out.size()));
+        }
     }
 
     private static boolean isPassthru(HttpVersion version, int code, CharSequence httpMethod) {
@@ -256,21 +271,23 @@ public abstract class HttpContentEncoder extends MessageToMessageCodec<HttpReque
 
         if (c instanceof LastHttpContent) {
             finishEncode(out);
-            LastHttpContent last = (LastHttpContent) c;
-
-            // Generate an additional chunk if the decoder produced
-            // the last product on closure,
-            HttpHeaders headers = last.trailingHeaders();
-            if (headers.isEmpty()) {
-                out.add(LastHttpContent.EMPTY_LAST_CONTENT);
-            } else {
-                out.add(new ComposedLastHttpContent(headers));
-            }
+            addLastContent((LastHttpContent) c, out);
             return true;
         }
         return false;
     }
 
+    private static void addLastContent(LastHttpContent last, List<Object> out) {
+        // Generate an additional chunk if the decoder produced
+        // the last product on closure,
+        HttpHeaders headers = last.trailingHeaders();
+        if (headers.isEmpty()) {
+            out.add(LastHttpContent.EMPTY_LAST_CONTENT);
+        } else {
+            out.add(new ComposedLastHttpContent(headers));
+        }
+    }
+
     /**
      * Prepare to encode the HTTP message content.
      *
@@ -281,12 +298,27 @@ public abstract class HttpContentEncoder extends MessageToMessageCodec<HttpReque
      *
      * @return the result of preparation, which is composed of the determined
      *         target content encoding and a new {@link EmbeddedChannel} that
-     *         encodes the content into the target content encoding.
+     *         encodes the content into the target content encoding, or the
+     *         already encoded content if {@code headers} is a {@link FullHttpResponse}.
      *         {@code null} if {@code acceptEncoding} is unsupported or rejected
      *         and thus the content should be handled as-is (i.e. no encoding).
      */
     protected abstract Result beginEncode(HttpResponse headers, String acceptEncoding) throws Exception;
 
+    /**
+     * Invoked once the content of a full response was encoded by the {@link Result#contentEncoder()} returned from
+     * {@link #beginEncode(HttpResponse, String)}, so that sub-classes can keep the encoded content. The messages must
+     * not be modified or released. The default implementation does nothing.
+     *
+     * @param response
+     *        the rewritten response, whose content was encoded
+     * @param encodedContents
+     *        the {@link HttpContent}s that hold the encoded content, ending with a {@link LastHttpContent}
+     */
+    protected void fullContentEncoded(HttpResponse response, List<Object> encodedContents) {
+        // NOOP
+    }
+
     @Override
     public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
         cleanup();
@@ -347,6 +379,7 @@ public abstract class HttpContentEncoder extends MessageToMessageCodec<HttpReque
     public static final class Result {
         private final String targetContentEncoding;
         private final EmbeddedChannel contentEncoder;
+        private final ByteBuf encodedContent;
 
         public Result(String targetContentEncoding, EmbeddedChannel contentEncoder) {
             if (targetContentEncoding == null) {
@@ -358,14 +391,44 @@ public abstract class HttpContentEncoder extends MessageToMessageCodec<HttpReque
 
             this.targetContentEncoding = targetContentEncoding;
             this.contentEncoder = contentEncoder;
+            encodedContent = null;
+        }
+
+        /**
+         * Creates a result for a full response whose content was already encoded, e.g. because it was cached. The
+         * {@code encodedContent} replaces the content of the response and is released once it was written.
+         */
+        public Result(String targetContentEncoding, ByteBuf encodedContent) {
+            if (targetContentEncoding == null) {
+                throw new NullPointerException("targetContentEncoding");
+            }
+            if (encodedContent == null) {
+                throw new NullPointerException("encodedContent");
+            }
+
+            this.targetContentEncoding = targetContentEncoding;
+            this.encodedContent = encodedContent;
+            contentEncoder = null;
         }
 
         public String targetContentEncoding() {
             return targetContentEncoding;
         }
 
+        /**
+         * Returns the {@link EmbeddedChannel} that encodes the content, or {@code null} if the content was
+         * already encoded.
+         */
         public EmbeddedChannel contentEncoder() {
             return contentEncoder;
         }
+
+        /**
+         * Returns the already encoded content, or {@code null} if the content is encoded by the
+         * {@link #contentEncoder()}.
+         */
+        public ByteBuf encodedContent() {
+            return encodedContent;
+        }
     }
 }
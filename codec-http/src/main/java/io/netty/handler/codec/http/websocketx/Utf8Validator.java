@@ -36,8 +36,10 @@
 package io.netty.handler.codec.http.websocketx;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.handler.codec.CorruptedFrameException;
 import io.netty.util.ByteProcessor;
+import io.netty.util.CharsetUtil;
 
 /**
  * Checks UTF8 bytes for validity
@@ -71,6 +73,11 @@ final class Utf8Validator implements ByteProcessor {
 
     public void check(ByteBuf buffer) {
         checking = true;
+        if (state == UTF8_ACCEPT && ByteBufUtil.isText(buffer, CharsetUtil.UTF_8)) {
+            // Fast-path: the buffer does not continue a previous code point and only contains complete and valid
+            // UTF-8 sequences, so no state needs to be carried over.
+            return;
+        }
         buffer.forEachByte(this);
     }
 
@@ -21,6 +21,8 @@ import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.handler.codec.CodecException;
+import io.netty.handler.codec.compression.DecompressionException;
+import io.netty.handler.codec.compression.JdkZlibPool;
 import io.netty.handler.codec.compression.ZlibCodecFactory;
 import io.netty.handler.codec.compression.ZlibWrapper;
 import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
@@ -30,6 +32,8 @@ import io.netty.handler.codec.http.websocketx.WebSocketFrame;
 import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionDecoder;
 
 import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 /**
  * Deflate implementation of a payload decompressor for
@@ -42,6 +46,7 @@ abstract class DeflateDecoder extends WebSocketExtensionDecoder {
     private final boolean noContext;
 
     private EmbeddedChannel decoder;
+    private Inflater inflater;
 
     /**
      * Constructor
@@ -57,6 +62,92 @@ abstract class DeflateDecoder extends WebSocketExtensionDecoder {
 
     @Override
     protected void decode(ChannelHandlerContext ctx, WebSocketFrame msg, List<Object> out) throws Exception {
+        final ByteBuf uncompressedContent = noContext ? inflate(ctx, msg) : decompress(ctx, msg);
+
+        WebSocketFrame outMsg;
+        if (msg instanceof TextWebSocketFrame) {
+            outMsg = new TextWebSocketFrame(msg.isFinalFragment(), newRsv(msg), uncompressedContent);
+        } else if (msg instanceof BinaryWebSocketFrame) {
+            outMsg = new BinaryWebSocketFrame(msg.isFinalFragment(), newRsv(msg), uncompressedContent);
+        } else if (msg instanceof ContinuationWebSocketFrame) {
+            outMsg = new ContinuationWebSocketFrame(msg.isFinalFragment(), newRsv(msg), uncompressedContent);
+        } else {
+            throw new CodecException("unexpected frame type: " + msg.getClass().getName());
+        }
+        out.add(outMsg);
+    }
+
+    /**
+     * Decompresses the frame with an {@link Inflater} that is borrowed from the pool of the event loop until the
+     * end of the message, as it is not needed for the next message without context takeover.
+     */
+    private ByteBuf inflate(ChannelHandlerContext ctx, WebSocketFrame msg) throws DataFormatException {
+        Inflater inflater = this.inflater;
+        if (inflater == null) {
+            if (!(msg instanceof TextWebSocketFrame) && !(msg instanceof BinaryWebSocketFrame)) {
+                throw new CodecException("unexpected initial frame type: " + msg.getClass().getName());
+            }
+            inflater = JdkZlibPool.acquireInflater(true);
+            this.inflater = inflater;
+        }
+
+        ByteBuf content = msg.content();
+        int len = content.readableBytes();
+        ByteBuf uncompressed = ctx.alloc().heapBuffer(len << 1);
+        boolean success = false;
+        try {
+            if (content.hasArray()) {
+                inflater.setInput(content.array(), content.arrayOffset() + content.readerIndex(), len);
+            } else {
+                byte[] inAry = new byte[len];
+                content.getBytes(content.readerIndex(), inAry);
+                inflater.setInput(inAry);
+            }
+            inflate(inflater, uncompressed);
+            if (appendFrameTail(msg)) {
+                inflater.setInput(FRAME_TAIL);
+                inflate(inflater, uncompressed);
+            }
+            // Correctly handle empty frames
+            // See https://github.com/netty/netty/issues/4348
+            if (len > 0 && !uncompressed.isReadable()) {
+                throw new CodecException("cannot read uncompressed buffer");
+            }
+            success = true;
+        } catch (DataFormatException e) {
+            throw new DecompressionException("decompression failure", e);
+        } finally {
+            if (!success) {
+                uncompressed.release();
+                // The state of the inflater is undefined, so it must not be returned to the pool.
+                discardInflater();
+            } else if (msg.isFinalFragment()) {
+                releaseInflater();
+            }
+        }
+        return uncompressed;
+    }
+
+    private static void inflate(Inflater inflater, ByteBuf out) throws DataFormatException {
+        for (;;) {
+            if (!out.isWritable()) {
+                out.ensureWritable(Math.max(out.capacity() >>> 1, 64));
+            }
+            int writerIndex = out.writerIndex();
+            int numBytes = inflater.inflate(out.array(), out.arrayOffset() + writerIndex, out.writableBytes());
+            out.writerIndex(writerIndex + numBytes);
+            if (numBytes == 0) {
+                if (inflater.needsDictionary()) {
+                    throw new DecompressionException("decompression failure, unable to set dictionary");
+                }
+                if (inflater.needsInput() || inflater.finished()) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private ByteBuf decompress(ChannelHandlerContext ctx, WebSocketFrame msg) {
         if (decoder == null) {
             if (!(msg instanceof TextWebSocketFrame) && !(msg instanceof BinaryWebSocketFrame)) {
                 throw new CodecException("unexpected initial frame type: " + msg.getClass().getName());
@@ -89,22 +180,7 @@ abstract class DeflateDecoder extends WebSocketExtensionDecoder {
             throw new CodecException("cannot read uncompressed buffer");
         }
 
-        if (msg.isFinalFragment() && noContext) {
-            cleanup();
-        }
-
-        WebSocketFrame outMsg;
-        if (msg instanceof TextWebSocketFrame) {
-            outMsg = new TextWebSocketFrame(msg.isFinalFragment(), newRsv(msg), compositeUncompressedContent);
-        } else if (msg instanceof BinaryWebSocketFrame) {
-            outMsg = new BinaryWebSocketFrame(msg.isFinalFragment(), newRsv(msg), compositeUncompressedContent);
-        } else if (msg instanceof ContinuationWebSocketFrame) {
-            outMsg = new ContinuationWebSocketFrame(msg.isFinalFragment(), newRsv(msg),
-                    compositeUncompressedContent);
-        } else {
-            throw new CodecException("unexpected frame type: " + msg.getClass().getName());
-        }
-        out.add(outMsg);
+        return compositeUncompressedContent;
     }
 
     @Override
@@ -119,7 +195,24 @@ abstract class DeflateDecoder extends WebSocketExtensionDecoder {
         super.channelInactive(ctx);
     }
 
+    private void releaseInflater() {
+        Inflater inflater = this.inflater;
+        if (inflater != null) {
+            this.inflater = null;
+            JdkZlibPool.releaseInflater(inflater, true);
+        }
+    }
+
+    private void discardInflater() {
+        Inflater inflater = this.inflater;
+        if (inflater != null) {
+            this.inflater = null;
+            JdkZlibPool.discardInflater(inflater);
+        }
+    }
+
     private void cleanup() {
+        releaseInflater();
         if (decoder != null) {
             // Clean-up the previous encoder if not cleaned up correctly.
             if (decoder.finish()) {
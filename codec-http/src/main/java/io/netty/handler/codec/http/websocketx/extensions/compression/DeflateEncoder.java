@@ -16,11 +16,14 @@
 package io.netty.handler.codec.http.websocketx.extensions.compression;
 
 import static io.netty.handler.codec.http.websocketx.extensions.compression.PerMessageDeflateDecoder.*;
+import static io.netty.handler.codec.http.websocketx.extensions.compression.
+        PerMessageDeflateServerExtensionHandshaker.MAX_WINDOW_SIZE;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.CompositeByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.handler.codec.CodecException;
+import io.netty.handler.codec.compression.JdkZlibPool;
 import io.netty.handler.codec.compression.ZlibCodecFactory;
 import io.netty.handler.codec.compression.ZlibWrapper;
 import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
@@ -28,8 +31,10 @@ import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.WebSocketFrame;
 import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionEncoder;
+import io.netty.util.internal.PlatformDependent;
 
 import java.util.List;
+import java.util.zip.Deflater;
 
 /**
  * Deflate implementation of a payload compressor for
@@ -40,8 +45,10 @@ abstract class DeflateEncoder extends WebSocketExtensionEncoder {
     private final int compressionLevel;
     private final int windowSize;
     private final boolean noContext;
+    private final boolean pooled;
 
     private EmbeddedChannel encoder;
+    private Deflater deflater;
 
     /**
      * Constructor
@@ -53,6 +60,9 @@ abstract class DeflateEncoder extends WebSocketExtensionEncoder {
         this.compressionLevel = compressionLevel;
         this.windowSize = windowSize;
         this.noContext = noContext;
+        // Without context takeover a Deflater is only needed while a message is compressed, so borrow one from the
+        // pool of the event loop instead of keeping one per channel. Deflater.SYNC_FLUSH requires Java 7.
+        pooled = noContext && windowSize == MAX_WINDOW_SIZE && PlatformDependent.javaVersion() >= 7;
     }
 
     /**
@@ -70,6 +80,75 @@ abstract class DeflateEncoder extends WebSocketExtensionEncoder {
     @Override
     protected void encode(ChannelHandlerContext ctx, WebSocketFrame msg,
             List<Object> out) throws Exception {
+        final ByteBuf fullCompressedContent = pooled ? deflate(ctx, msg) : compress(ctx, msg);
+
+        ByteBuf compressedContent;
+        if (removeFrameTail(msg)) {
+            int realLength = fullCompressedContent.readableBytes() - FRAME_TAIL.length;
+            compressedContent = fullCompressedContent.slice(0, realLength);
+        } else {
+            compressedContent = fullCompressedContent;
+        }
+
+        WebSocketFrame outMsg;
+        if (msg instanceof TextWebSocketFrame) {
+            outMsg = new TextWebSocketFrame(msg.isFinalFragment(), rsv(msg), compressedContent);
+        } else if (msg instanceof BinaryWebSocketFrame) {
+            outMsg = new BinaryWebSocketFrame(msg.isFinalFragment(), rsv(msg), compressedContent);
+        } else if (msg instanceof ContinuationWebSocketFrame) {
+            outMsg = new ContinuationWebSocketFrame(msg.isFinalFragment(), rsv(msg), compressedContent);
+        } else {
+            throw new CodecException("unexpected frame type: " + msg.getClass().getName());
+        }
+        out.add(outMsg);
+    }
+
+    private ByteBuf deflate(ChannelHandlerContext ctx, WebSocketFrame msg) {
+        Deflater deflater = this.deflater;
+        if (deflater == null) {
+            deflater = JdkZlibPool.acquireDeflater(compressionLevel, true);
+            this.deflater = deflater;
+        }
+
+        ByteBuf content = msg.content();
+        int len = content.readableBytes();
+        if (content.hasArray()) {
+            deflater.setInput(content.array(), content.arrayOffset() + content.readerIndex(), len);
+        } else {
+            byte[] inAry = new byte[len];
+            content.getBytes(content.readerIndex(), inAry);
+            deflater.setInput(inAry);
+        }
+
+        ByteBuf compressed = ctx.alloc().heapBuffer((int) Math.ceil(len * 1.001) + 12 + FRAME_TAIL.length);
+        boolean success = false;
+        try {
+            for (;;) {
+                int writerIndex = compressed.writerIndex();
+                int numBytes = deflater.deflate(compressed.array(), compressed.arrayOffset() + writerIndex,
+                        compressed.writableBytes(), Deflater.SYNC_FLUSH);
+                compressed.writerIndex(writerIndex + numBytes);
+                if (compressed.isWritable()) {
+                    // The output was not limited by the buffer, so the flush is complete.
+                    break;
+                }
+                compressed.ensureWritable(compressed.capacity() >>> 1);
+            }
+            success = true;
+        } finally {
+            if (!success) {
+                compressed.release();
+                // The state of the deflater is undefined, so it must neither be used for the next fragment nor
+                // be returned to the pool.
+                discardDeflater();
+            } else if (msg.isFinalFragment()) {
+                releaseDeflater();
+            }
+        }
+        return compressed;
+    }
+
+    private ByteBuf compress(ChannelHandlerContext ctx, WebSocketFrame msg) {
         if (encoder == null) {
             encoder = new EmbeddedChannel(ZlibCodecFactory.newZlibEncoder(
                     ZlibWrapper.NONE, compressionLevel, windowSize, 8));
@@ -97,26 +176,7 @@ abstract class DeflateEncoder extends WebSocketExtensionEncoder {
         if (msg.isFinalFragment() && noContext) {
             cleanup();
         }
-
-        ByteBuf compressedContent;
-        if (removeFrameTail(msg)) {
-            int realLength = fullCompressedContent.readableBytes() - FRAME_TAIL.length;
-            compressedContent = fullCompressedContent.slice(0, realLength);
-        } else {
-            compressedContent = fullCompressedContent;
-        }
-
-        WebSocketFrame outMsg;
-        if (msg instanceof TextWebSocketFrame) {
-            outMsg = new TextWebSocketFrame(msg.isFinalFragment(), rsv(msg), compressedContent);
-        } else if (msg instanceof BinaryWebSocketFrame) {
-            outMsg = new BinaryWebSocketFrame(msg.isFinalFragment(), rsv(msg), compressedContent);
-        } else if (msg instanceof ContinuationWebSocketFrame) {
-            outMsg = new ContinuationWebSocketFrame(msg.isFinalFragment(), rsv(msg), compressedContent);
-        } else {
-            throw new CodecException("unexpected frame type: " + msg.getClass().getName());
-        }
-        out.add(outMsg);
+        return fullCompressedContent;
     }
 
     @Override
@@ -125,7 +185,24 @@ abstract class DeflateEncoder extends WebSocketExtensionEncoder {
         super.handlerRemoved(ctx);
     }
 
+    private void releaseDeflater() {
+        Deflater deflater = this.deflater;
+        if (deflater != null) {
+            this.deflater = null;
+            JdkZlibPool.releaseDeflater(deflater, compressionLevel, true);
+        }
+    }
+
+    private void discardDeflater() {
+        Deflater deflater = this.deflater;
+        if (deflater != null) {
+            this.deflater = null;
+            JdkZlibPool.discardDeflater(deflater);
+        }
+    }
+
     private void cleanup() {
+        releaseDeflater();
         if (encoder != null) {
             // Clean-up the previous encoder if not cleaned up correctly.
             if (encoder.finish()) {
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HttpCompressionCacheTest {
+
+    @Test
+    public void testGetReturnsRetainedDuplicate() {
+        HttpCompressionCache cache = new HttpCompressionCache(16);
+        ByteBuf content = Unpooled.copiedBuffer("abcd", CharsetUtil.US_ASCII);
+        assertTrue(cache.put("a", "gzip", content));
+        assertEquals(4, content.readableBytes());
+        content.release();
+
+        ByteBuf first = cache.get("a", "gzip");
+        assertTrue(first.isDirect());
+        assertEquals("abcd", first.toString(CharsetUtil.US_ASCII));
+        first.skipBytes(4);
+        ByteBuf second = cache.get("a", "gzip");
+        assertEquals(4, second.readableBytes());
+        assertNull(cache.get("a", "br"));
+        assertNull(cache.get("b", "gzip"));
+        assertEquals(2, cache.hits());
+        assertEquals(2, cache.misses());
+        assertEquals(0.5, cache.hitRatio(), 0);
+
+        // The content must stay accessible after the cache released it.
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals("abcd", second.toString(CharsetUtil.US_ASCII));
+        first.release();
+        assertTrue(second.release());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        HttpCompressionCache cache = new HttpCompressionCache(8);
+        put(cache, "a", "aaaa");
+        put(cache, "b", "bbbb");
+        cache.get("a", "gzip").release();
+        put(cache, "c", "cccc");
+
+        assertEquals(2, cache.entries());
+        assertEquals(8, cache.size());
+        assertEquals(1, cache.evictions());
+        assertNull(cache.get("b", "gzip"));
+        cache.get("a", "gzip").release();
+        cache.get("c", "gzip").release();
+        cache.clear();
+    }
+
+    @Test
+    public void testReplace() {
+        HttpCompressionCache cache = new HttpCompressionCache(8);
+        put(cache, "a", "aaaa");
+        put(cache, "a", "aa");
+        assertEquals(1, cache.entries());
+        assertEquals(2, cache.size());
+        assertEquals(0, cache.evictions());
+        cache.clear();
+    }
+
+    @Test
+    public void testTooLarge() {
+        HttpCompressionCache cache = new HttpCompressionCache(2);
+        ByteBuf content = Unpooled.copiedBuffer("abc", CharsetUtil.US_ASCII);
+        assertFalse(cache.put("a", "gzip", content));
+        content.release();
+        assertEquals(0, cache.entries());
+    }
+
+    @Test
+    public void testRemove() {
+        HttpCompressionCache cache = new HttpCompressionCache(16);
+        put(cache, "a", "aaaa");
+        ByteBuf content = Unpooled.copiedBuffer("AA", CharsetUtil.US_ASCII);
+        cache.put("a", "br", content);
+        content.release();
+        put(cache, "b", "bbbb");
+
+        assertEquals(2, cache.remove("a"));
+        assertEquals(1, cache.entries());
+        assertEquals(4, cache.size());
+        cache.clear();
+    }
+
+    private static void put(HttpCompressionCache cache, String key, String value) {
+        ByteBuf content = Unpooled.copiedBuffer(value, CharsetUtil.US_ASCII);
+        assertTrue(cache.put(key, "gzip", content));
+        content.release();
+    }
+}
@@ -15,11 +15,15 @@
  */
 package io.netty.handler.codec.http;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.handler.codec.EncoderException;
+import io.netty.handler.codec.compression.BrotliDecoder;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
 import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.codec.compression.ZstdDecoder;
 import io.netty.util.CharsetUtil;
 import io.netty.util.ReferenceCountUtil;
 import org.junit.Test;
@@ -30,6 +34,7 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
@@ -235,6 +240,99 @@ public class HttpContentCompressorTest {
         assertEquals(contentLengthHeaderValue, observedLength);
     }
 
+    @Test
+    public void testZstdNegotiation() throws Exception {
+        assertContentEncoding("zstd", "gzip;q=0.5, zstd");
+        assertContentEncoding("zstd", "zstd");
+        assertContentEncoding("gzip", "gzip, deflate, zstd");
+        assertContentEncoding("gzip", "zstd;q=0.5, *");
+        assertContentEncoding("gzip", "zstd;q=0, gzip;q=0.1");
+    }
+
+    @Test
+    public void testBrotliNegotiation() throws Exception {
+        assertContentEncoding("gzip", "gzip, deflate, br");
+        assertContentEncoding("gzip", "gzip, deflate, br, zstd");
+        assertContentEncoding("gzip", "BR;q=0.8, gzip;q=0.8");
+        assertContentEncoding("br", "br, gzip;q=0.8");
+        assertContentEncoding("br", "br");
+        assertContentEncoding("gzip", "br;q=0.5, gzip");
+        assertContentEncoding("gzip", "br;q=0, *");
+        assertContentEncoding("zstd", "br;q=0.5, zstd");
+    }
+
+    @Test
+    public void testBrotliPreferred() throws Exception {
+        assertContentEncoding("br", "gzip, deflate, br", true);
+        assertContentEncoding("br", "gzip, deflate, br, zstd", true);
+        assertContentEncoding("br", "BR;q=0.8, gzip;q=0.8", true);
+        assertContentEncoding("gzip", "br;q=0.5, gzip", true);
+        assertContentEncoding("zstd", "br;q=0.5, zstd", true);
+    }
+
+    private static void assertContentEncoding(String expected, String acceptEncoding) {
+        assertContentEncoding(expected, acceptEncoding, false);
+    }
+
+    private static void assertContentEncoding(String expected, String acceptEncoding, boolean preferBrotli) {
+        EmbeddedChannel ch = new EmbeddedChannel(new HttpContentCompressor(6, 15, 8, null, preferBrotli));
+        FullHttpRequest req = newRequest();
+        req.headers().set(HttpHeaderNames.ACCEPT_ENCODING, acceptEncoding);
+        ch.writeInbound(req);
+
+        ch.writeOutbound(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                Unpooled.copiedBuffer("Hello, World", CharsetUtil.US_ASCII)));
+
+        HttpResponse res = ch.readOutbound();
+        assertThat(res.headers().get(HttpHeaderNames.CONTENT_ENCODING), is(expected));
+        assertTrue(ch.finishAndReleaseAll());
+    }
+
+    @Test
+    public void testZstdFullContent() throws Exception {
+        assertCompressedFullContent("zstd", new EmbeddedChannel(new ZstdDecoder()));
+    }
+
+    @Test
+    public void testBrotliFullContent() throws Exception {
+        assertCompressedFullContent("br", new EmbeddedChannel(new BrotliDecoder()));
+    }
+
+    private static void assertCompressedFullContent(String contentEncoding, EmbeddedChannel decoder) {
+        EmbeddedChannel ch = new EmbeddedChannel(new HttpContentCompressor());
+        FullHttpRequest req = newRequest();
+        req.headers().set(HttpHeaderNames.ACCEPT_ENCODING, contentEncoding);
+        ch.writeInbound(req);
+
+        ch.writeOutbound(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                Unpooled.copiedBuffer("Hello, World", CharsetUtil.US_ASCII)));
+
+        HttpResponse res = ch.readOutbound();
+        assertThat(res, is(not(instanceOf(HttpContent.class))));
+        assertThat(res.headers().get(HttpHeaderNames.TRANSFER_ENCODING), is("chunked"));
+        assertThat(res.headers().get(HttpHeaderNames.CONTENT_ENCODING), is(contentEncoding));
+
+        for (;;) {
+            HttpContent c = ch.readOutbound();
+            if (c == null) {
+                break;
+            }
+            decoder.writeInbound(c.content());
+        }
+        ByteBuf decoded = Unpooled.buffer();
+        for (;;) {
+            ByteBuf b = decoder.readInbound();
+            if (b == null) {
+                break;
+            }
+            decoded.writeBytes(b);
+            b.release();
+        }
+        assertEquals("Hello, World", decoded.toString(CharsetUtil.US_ASCII));
+        decoded.release();
+        assertFalse(decoder.finish());
+    }
+
     @Test
     public void testFullContent() throws Exception {
         EmbeddedChannel ch = new EmbeddedChannel(new HttpContentCompressor());
@@ -265,6 +363,103 @@ public class HttpContentCompressorTest {
      * If the length of the content is unknown, {@link HttpContentEncoder} should not skip encoding the content
      * even if the actual length is turned out to be 0.
      */
+    @Test
+    public void testCachedFullContent() throws Exception {
+        HttpCompressionCache cache = new HttpCompressionCache(1024);
+        try {
+            ByteBuf compressed = writeCachedFullContent(cache, "\"v1\"");
+            assertEquals(0, cache.hits());
+            assertEquals(1, cache.misses());
+            assertEquals(1, cache.entries());
+            assertEquals(compressed.readableBytes(), cache.size());
+
+            // The second response is served from the cache and must be identical.
+            ByteBuf cached = writeCachedFullContent(cache, "\"v1\"");
+            assertEquals(compressed, cached);
+            assertEquals(1, cache.hits());
+            assertEquals(1, cache.misses());
+            assertEquals(0.5, cache.hitRatio(), 0);
+            compressed.release();
+            cached.release();
+        } finally {
+            cache.clear();
+        }
+    }
+
+    @Test
+    public void testWeakEntityTagNotCached() throws Exception {
+        HttpCompressionCache cache = new HttpCompressionCache(1024);
+        writeCachedFullContent(cache, "W/\"v1\"").release();
+        writeCachedFullContent(cache, "W/\"v1\"").release();
+        assertEquals(0, cache.entries());
+        assertEquals(0, cache.hits());
+        assertEquals(0, cache.misses());
+    }
+
+    @Test
+    public void testSameEntityTagDifferentUri() throws Exception {
+        HttpCompressionCache cache = new HttpCompressionCache(1024);
+        try {
+            writeCachedFullContent(cache, "/a", "\"v1\"", "Hello, World").release();
+            // Another resource using the same entity tag must not be served the content of the first one.
+            writeCachedFullContent(cache, "/b", "\"v1\"", "Goodbye, World").release();
+            assertEquals(0, cache.hits());
+            assertEquals(2, cache.misses());
+            assertEquals(2, cache.entries());
+
+            writeCachedFullContent(cache, "/b", "\"v1\"", "Goodbye, World").release();
+            assertEquals(1, cache.hits());
+        } finally {
+            cache.clear();
+        }
+    }
+
+    private static ByteBuf writeCachedFullContent(HttpCompressionCache cache, String etag) {
+        return writeCachedFullContent(cache, "/", etag, "Hello, World");
+    }
+
+    private static ByteBuf writeCachedFullContent(HttpCompressionCache cache, String uri, String etag,
+                                                  String content) {
+        EmbeddedChannel ch = new EmbeddedChannel(new HttpContentCompressor(cache));
+        FullHttpRequest req = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri);
+        req.headers().set(HttpHeaderNames.ACCEPT_ENCODING, "gzip");
+        ch.writeInbound(req);
+
+        FullHttpResponse fullRes = new DefaultFullHttpResponse(
+                HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                Unpooled.copiedBuffer(content, CharsetUtil.US_ASCII));
+        fullRes.headers().set(HttpHeaderNames.CONTENT_LENGTH, fullRes.content().readableBytes());
+        fullRes.headers().set(HttpHeaderNames.ETAG, etag);
+        ch.writeOutbound(fullRes);
+        assertEquals(0, fullRes.refCnt());
+
+        HttpResponse res = ch.readOutbound();
+        assertThat(res, is(not(instanceOf(HttpContent.class))));
+        assertThat(res.headers().get(HttpHeaderNames.CONTENT_ENCODING), is("gzip"));
+        assertThat(res.headers().get(HttpHeaderNames.ETAG), is(etag));
+
+        ByteBuf compressed = Unpooled.buffer();
+        for (;;) {
+            HttpContent c = ch.readOutbound();
+            compressed.writeBytes(c.content());
+            c.release();
+            if (c instanceof LastHttpContent) {
+                break;
+            }
+        }
+        assertThat(ch.readOutbound(), is(nullValue()));
+        assertEquals(HttpUtil.getContentLength(res), compressed.readableBytes());
+        ch.finishAndReleaseAll();
+
+        EmbeddedChannel decoder = new EmbeddedChannel(ZlibCodecFactory.newZlibDecoder(ZlibWrapper.GZIP));
+        decoder.writeInbound(compressed.retainedDuplicate());
+        ByteBuf decoded = decoder.readInbound();
+        assertEquals(content, decoded.toString(CharsetUtil.US_ASCII));
+        decoded.release();
+        assertFalse(decoder.finish());
+        return compressed;
+    }
+
     @Test
     public void testEmptySplitContent() throws Exception {
         EmbeddedChannel ch = new EmbeddedChannel(new HttpContentCompressor());
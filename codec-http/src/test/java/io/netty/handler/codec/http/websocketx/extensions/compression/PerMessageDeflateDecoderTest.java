@@ -19,14 +19,18 @@ import static org.junit.Assert.*;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.DecompressionException;
+import io.netty.handler.codec.compression.JdkZlibPool;
 import io.netty.handler.codec.compression.ZlibCodecFactory;
 import io.netty.handler.codec.compression.ZlibWrapper;
 import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtension;
+import io.netty.util.concurrent.FastThreadLocalThread;
 
 import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Test;
 
@@ -189,4 +193,40 @@ public class PerMessageDeflateDecoderTest {
         uncompressedFrame.release();
     }
 
+
+    @Test
+    public void testCorruptedFragmentDiscardsInflater() throws Throwable {
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        Thread thread = new FastThreadLocalThread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    long inflaters = JdkZlibPool.inflaters();
+                    long pooledInflaters = JdkZlibPool.pooledInflaters();
+                    EmbeddedChannel decoderChannel = new EmbeddedChannel(new PerMessageDeflateDecoder(true));
+                    // A deflate block with the reserved block type.
+                    BinaryWebSocketFrame frame = new BinaryWebSocketFrame(false, WebSocketExtension.RSV1,
+                            Unpooled.wrappedBuffer(new byte[] { (byte) 0xff, (byte) 0xff, (byte) 0xff }));
+                    try {
+                        decoderChannel.writeInbound(frame);
+                        fail();
+                    } catch (DecompressionException expected) {
+                        // expected
+                    }
+                    assertEquals(0, frame.refCnt());
+                    // The inflater failed in the middle of a message, so it must be ended rather than pooled.
+                    assertEquals(inflaters, JdkZlibPool.inflaters());
+                    assertEquals(pooledInflaters, JdkZlibPool.pooledInflaters());
+                    assertFalse(decoderChannel.finish());
+                } catch (Throwable cause) {
+                    error.set(cause);
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+        if (error.get() != null) {
+            throw error.get();
+        }
+    }
 }
@@ -19,6 +19,7 @@ import static org.junit.Assert.*;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.JdkZlibPool;
 import io.netty.handler.codec.compression.ZlibCodecFactory;
 import io.netty.handler.codec.compression.ZlibWrapper;
 import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
@@ -157,4 +158,56 @@ public class PerMessageDeflateEncoderTest {
         assertTrue(Arrays.equals(finalPayload3, payload3));
         uncompressedPayload3.release();
     }
+
+    @Test
+    public void testNoContextTakeover() {
+        long deflaters = JdkZlibPool.deflaters();
+        long inflaters = JdkZlibPool.inflaters();
+        EmbeddedChannel encoderChannel = new EmbeddedChannel(new PerMessageDeflateEncoder(9, 15, true));
+        EmbeddedChannel decoderChannel = new EmbeddedChannel(new PerMessageDeflateDecoder(true));
+
+        for (int i = 0; i < 3; i++) {
+            // initialize
+            byte[] payload1 = new byte[100];
+            random.nextBytes(payload1);
+            byte[] payload2 = new byte[200];
+            random.nextBytes(payload2);
+
+            BinaryWebSocketFrame frame1 = new BinaryWebSocketFrame(false,
+                    WebSocketExtension.RSV3, Unpooled.wrappedBuffer(payload1));
+            ContinuationWebSocketFrame frame2 = new ContinuationWebSocketFrame(true,
+                    WebSocketExtension.RSV3, Unpooled.wrappedBuffer(payload2));
+
+            // execute
+            encoderChannel.writeOutbound(frame1);
+            encoderChannel.writeOutbound(frame2);
+            BinaryWebSocketFrame compressedFrame1 = encoderChannel.readOutbound();
+            ContinuationWebSocketFrame compressedFrame2 = encoderChannel.readOutbound();
+
+            // test
+            assertEquals(WebSocketExtension.RSV1 | WebSocketExtension.RSV3, compressedFrame1.rsv());
+            assertEquals(WebSocketExtension.RSV3, compressedFrame2.rsv());
+            assertTrue(compressedFrame2.isFinalFragment());
+            assertEquals(deflaters, JdkZlibPool.deflaters());
+
+            decoderChannel.writeInbound(compressedFrame1);
+            decoderChannel.writeInbound(compressedFrame2);
+            BinaryWebSocketFrame uncompressedFrame1 = decoderChannel.readInbound();
+            ContinuationWebSocketFrame uncompressedFrame2 = decoderChannel.readInbound();
+            assertEquals(inflaters, JdkZlibPool.inflaters());
+
+            byte[] finalPayload1 = new byte[100];
+            uncompressedFrame1.content().readBytes(finalPayload1);
+            assertTrue(Arrays.equals(finalPayload1, payload1));
+            uncompressedFrame1.release();
+
+            byte[] finalPayload2 = new byte[200];
+            uncompressedFrame2.content().readBytes(finalPayload2);
+            assertTrue(Arrays.equals(finalPayload2, payload2));
+            uncompressedFrame2.release();
+        }
+
+        assertFalse(encoderChannel.finish());
+        assertFalse(decoderChannel.finish());
+    }
 }
@@ -5,7 +5,9 @@ import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundBatchHandler;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.MessageBatch;
 import io.netty.channel.socket.ChannelInputShutdownEvent;
 import io.netty.util.internal.StringUtil;
 
@@ -146,6 +148,62 @@ public abstract class ByteToMessageDecoder
         }
     };
 
+    /**
+     * Number of received bytes up to which {@link #ADAPTIVE_CUMULATOR} prefers to copy instead of composing.
+     */
+    private static final int ADAPTIVE_COPY_THRESHOLD = 4096;
+
+    /**
+     * Number of components at which {@link #ADAPTIVE_CUMULATOR} consolidates its {@link CompositeByteBuf}.
+     */
+    private static final int ADAPTIVE_MAX_COMPONENTS = 16;
+
+    /**
+     * Cumulate {@link ByteBuf}s by choosing between a memory copy and a {@link CompositeByteBuf} on every read.
+     * <ul>
+     *     <li>Bytes are copied if they fit into the cumulation without growing it, or if the received
+     *     {@link ByteBuf} is small enough for the copy to be cheaper than adding a component.</li>
+     *     <li>Otherwise the {@link ByteBuf}s are added to a {@link CompositeByteBuf}, after dropping the
+     *     components which were already read.</li>
+     *     <li>Once the {@link CompositeByteBuf} holds too many components it is consolidated into a single
+     *     {@link ByteBuf}, so decoders never have to walk a heavily fragmented buffer.</li>
+     * </ul>
+     * This avoids the repeated copies of {@link #MERGE_CUMULATOR} when large frames span many reads, while keeping
+     * lookups in the cumulation cheap.
+     */
+    public static final Cumulator ADAPTIVE_CUMULATOR = new Cumulator() {
+        @Override
+        public ByteBuf cumulate(ByteBufAllocator alloc, ByteBuf cumulation, ByteBuf in) {
+            int readable = in.readableBytes();
+            if (cumulation.refCnt() > 1 || cumulation.isReadOnly()) {
+                // See MERGE_CUMULATOR.
+                return MERGE_CUMULATOR.cumulate(alloc, cumulation, in);
+            }
+
+            if (cumulation instanceof CompositeByteBuf) {
+                CompositeByteBuf composite = (CompositeByteBuf) cumulation;
+                composite.discardReadComponents();
+                if (composite.numComponents() < ADAPTIVE_MAX_COMPONENTS) {
+                    composite.addComponent(true, in);
+                    return composite;
+                }
+                // Too fragmented, consolidate the readable bytes into a single buffer.
+                ByteBuf buffer = expandCumulation(alloc, composite, readable);
+                buffer.writeBytes(in);
+                in.release();
+                return buffer;
+            }
+
+            if (readable <= ADAPTIVE_COPY_THRESHOLD || cumulation.writableBytes() >= readable) {
+                return MERGE_CUMULATOR.cumulate(alloc, cumulation, in);
+            }
+            CompositeByteBuf composite = alloc.compositeBuffer(Integer.MAX_VALUE);
+            composite.addComponent(true, cumulation);
+            composite.addComponent(true, in);
+            return composite;
+        }
+    };
+
     private static final byte STATE_INIT = 0;
 
     private static final byte STATE_CALLING_CHILD_DECODE = 1;
@@ -158,6 +216,8 @@ public abstract class ByteToMessageDecoder
 
     private boolean singleDecode;
 
+    private boolean batchDecode;
+
     private boolean decodeWasNull;
 
     private boolean first;
@@ -176,6 +236,8 @@ public abstract class ByteToMessageDecoder
 
     private int numReads;
 
+    private final InboundMemoryCharge memoryCharge = new InboundMemoryCharge();
+
     protected ByteToMessageDecoder() {
         ensureNotSharable();
     }
@@ -200,6 +262,30 @@ public abstract class ByteToMessageDecoder
         return singleDecode;
     }
 
+    /**
+     * If set then all messages decoded from one {@link #channelRead(ChannelHandlerContext, Object)} call are
+     * forwarded together as a {@link MessageBatch}, so a {@link ChannelInboundBatchHandler} can process them in one
+     * call. Handlers which do not implement {@link ChannelInboundBatchHandler} still receive them one by one.
+     *
+     * As the messages are only forwarded once all readable bytes were decoded, this must not be used if a handler
+     * may remove or replace this decoder in response to a decoded message, for example during a protocol upgrade.
+     *
+     * Default is {@code false}.
+     */
+    public void setBatchDecode(boolean batchDecode) {
+        this.batchDecode = batchDecode;
+    }
+
+    /**
+     * If {@code true} then all messages decoded from one {@link #channelRead(ChannelHandlerContext, Object)} call
+     * are forwarded together as a {@link MessageBatch}.
+     *
+     * Default is {@code false}.
+     */
+    public boolean isBatchDecode() {
+        return batchDecode;
+    }
+
     /**
      * Set the {@link Cumulator} to use for cumulate the received {@link ByteBuf}s.
      */
@@ -267,6 +353,7 @@ public abstract class ByteToMessageDecoder
             numReads = 0;
             ctx.fireChannelReadComplete();
         }
+        memoryCharge.releaseAll(ctx);
         handlerRemoved0(ctx);
     }
 
@@ -309,10 +396,11 @@ public abstract class ByteToMessageDecoder
                     numReads = 0;
                     discardSomeReadBytes();
                 }
+                memoryCharge.update(ctx, cumulation == null ? 0 : cumulation.capacity());
 
                 int size = out.size();
                 decodeWasNull = !out.insertSinceRecycled();
-                fireChannelRead(ctx, out, size);
+                fireDecodedMessages(ctx, out, size);
                 out.recycle();
             }
         } else {
@@ -320,6 +408,21 @@ public abstract class ByteToMessageDecoder
         }
     }
 
+    /**
+     * Forward the first {@code size} decoded messages, as a {@link MessageBatch} if {@link #isBatchDecode()}.
+     */
+    private void fireDecodedMessages(ChannelHandlerContext ctx, CodecOutputList out, int size) {
+        if (batchDecode && size > 1) {
+            MessageBatch batch = MessageBatch.newInstance();
+            for (int i = 0; i < size; i++) {
+                batch.add(out.getUnsafe(i));
+            }
+            ctx.fireChannelRead(batch);
+        } else {
+            fireChannelRead(ctx, out, size);
+        }
+    }
+
     /**
      * Get {@code numElements} out of the {@link List} and forward these through the pipeline.
      */
@@ -348,7 +451,7 @@ public abstract class ByteToMessageDecoder
         discardSomeReadBytes();
         if (decodeWasNull) {
             decodeWasNull = false;
-            if (!ctx.channel().config().isAutoRead()) {
+            if (!ctx.channel().config().isAutoRead() && !memoryCharge.isReadSuspended(ctx)) {
                 ctx.read();
             }
         }
@@ -398,8 +501,9 @@ public abstract class ByteToMessageDecoder
                     cumulation.release();
                     cumulation = null;
                 }
+                memoryCharge.releaseAll(ctx);
                 int size = out.size();
-                fireChannelRead(ctx, out, size);
+                fireDecodedMessages(ctx, out, size);
                 if (size > 0) {
                     // Something was read, call fireChannelReadComplete()
                     ctx.fireChannelReadComplete();
@@ -439,7 +543,8 @@ public abstract class ByteToMessageDecoder
         try {
             while (in.isReadable()) {
                 int outSize = out.size();
-                if (outSize > 0) {
+                // In batch mode the messages are forwarded once all bytes were decoded.
+                if (outSize > 0 && !batchDecode) {
                     fireChannelRead(ctx, out, outSize);
                     out.clear();
                     // Check if this handler was removed before continuing with decoding.
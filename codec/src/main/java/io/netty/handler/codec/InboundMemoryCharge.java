@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.InboundMemoryBudget;
+
+/**
+ * Keeps track of the bytes a handler charged to the {@link ChannelOption#INBOUND_MEMORY_BUDGET} of its
+ * {@link io.netty.channel.Channel}, if any.
+ */
+final class InboundMemoryCharge {
+
+    private InboundMemoryBudget budget;
+    private boolean budgetLookedUp;
+    private long charged;
+
+    /**
+     * Charge or release the difference between {@code heldBytes} and what was charged before.
+     */
+    void update(ChannelHandlerContext ctx, long heldBytes) {
+        if (heldBytes == charged) {
+            return;
+        }
+        InboundMemoryBudget budget = budget(ctx);
+        if (budget == null) {
+            return;
+        }
+        long delta = heldBytes - charged;
+        charged = heldBytes;
+        if (delta > 0) {
+            budget.charge(ctx.channel(), delta);
+        } else {
+            budget.release(ctx.channel(), -delta);
+        }
+    }
+
+    /**
+     * Release everything that was charged before.
+     */
+    void releaseAll(ChannelHandlerContext ctx) {
+        update(ctx, 0);
+    }
+
+    /**
+     * Returns {@code true} if reading was suspended by the {@link InboundMemoryBudget}, in which case no read should
+     * be requested even if auto read is disabled.
+     */
+    boolean isReadSuspended(ChannelHandlerContext ctx) {
+        InboundMemoryBudget budget = budget(ctx);
+        return budget != null && budget.isSuspended(ctx.channel());
+    }
+
+    private InboundMemoryBudget budget(ChannelHandlerContext ctx) {
+        if (!budgetLookedUp) {
+            budget = ctx.channel().config().getOption(ChannelOption.INBOUND_MEMORY_BUDGET);
+            budgetLookedUp = true;
+        }
+        return budget;
+    }
+}
@@ -54,6 +54,8 @@ public abstract class MessageAggregator<I, S, C extends ByteBufHolder, O extends
 
     private ChannelFutureListener continueResponseWriteListener;
 
+    private final InboundMemoryCharge memoryCharge = new InboundMemoryCharge();
+
     /**
      * Creates a new instance.
      *
@@ -182,6 +184,16 @@ public abstract class MessageAggregator<I, S, C extends ByteBufHolder, O extends
         return ctx;
     }
 
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        try {
+            super.channelRead(ctx, msg);
+        } finally {
+            O currentMessage = this.currentMessage;
+            memoryCharge.update(ctx, currentMessage == null ? 0 : currentMessage.content().readableBytes());
+        }
+    }
+
     @Override
     protected void decode(final ChannelHandlerContext ctx, I msg, List<Object> out) throws Exception {
         if (isStartMessage(msg)) {
@@ -400,7 +412,7 @@ public abstract class MessageAggregator<I, S, C extends ByteBufHolder, O extends
         // We might need keep reading the channel until the full message is aggregated.
         //
         // See https://github.com/netty/netty/issues/6583
-        if (currentMessage != null && !ctx.channel().config().isAutoRead()) {
+        if (currentMessage != null && !ctx.channel().config().isAutoRead() && !memoryCharge.isReadSuspended(ctx)) {
             ctx.read();
         }
         ctx.fireChannelReadComplete();
@@ -413,6 +425,7 @@ public abstract class MessageAggregator<I, S, C extends ByteBufHolder, O extends
             super.channelInactive(ctx);
         } finally {
             releaseCurrentMessage();
+            memoryCharge.releaseAll(ctx);
         }
     }
 
@@ -429,6 +442,7 @@ public abstract class MessageAggregator<I, S, C extends ByteBufHolder, O extends
             // release current message if it is not null as it may be a left-over as there is not much more we can do in
             // this case
             releaseCurrentMessage();
+            memoryCharge.releaseAll(ctx);
         }
     }
 
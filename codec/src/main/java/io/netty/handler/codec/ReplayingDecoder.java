@@ -347,7 +347,7 @@ public abstract class ReplayingDecoder<S> extends ByteToMessageDecoder {
                 int oldReaderIndex = checkpoint = in.readerIndex();
                 int outSize = out.size();
 
-                if (outSize > 0) {
+                if (outSize > 0 && !isBatchDecode()) {
                     fireChannelRead(ctx, out, outSize);
                     out.clear();
 
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.Signal;
+
+/**
+ * Reads the little endian bit stream of the Brotli format directly from the cumulated input of a
+ * {@link BrotliDecoder}.
+ * <p>
+ * The input may end at any point of the stream. Consuming more bits than are available throws
+ * {@link #NEED_MORE_INPUT}, after which the decoder rolls back to the last {@link #mark()} and retries once more
+ * input has arrived, much like {@link io.netty.handler.codec.ReplayingDecoder} does.
+ * <p>
+ * Because a prefix code may be shorter than a byte, or even empty, decoding may make progress without consuming
+ * a whole byte. Bytes are therefore read from the input as soon as they are loaded into the bit buffer, so the
+ * {@link io.netty.handler.codec.ByteToMessageDecoder} always sees that input was read when output was produced.
+ */
+final class BrotliBitReader {
+
+    static final Signal NEED_MORE_INPUT = Signal.valueOf(BrotliBitReader.class, "NEED_MORE_INPUT");
+
+    private ByteBuf in;
+    private int position;
+    private int limit;
+
+    /**
+     * Bits that were loaded but not consumed yet, starting at the lowest bit. All higher bits are {@code 0}. These
+     * are kept when the input is released, so every byte that was loaded counts as read.
+     */
+    private long bits;
+    private int bitCount;
+
+    private int markedPosition;
+    private long markedBits;
+    private int markedBitCount;
+
+    /**
+     * Starts reading from the readable bytes of {@code in}.
+     */
+    void attach(ByteBuf in) {
+        this.in = in;
+        position = in.readerIndex();
+        limit = in.writerIndex();
+        mark();
+    }
+
+    /**
+     * Stops reading and advances the reader index of the input past all bytes that were loaded.
+     */
+    void detach() {
+        in.readerIndex(position);
+        in = null;
+    }
+
+    /**
+     * Remembers the current position, everything that was read up to here has been processed.
+     */
+    void mark() {
+        markedPosition = position;
+        markedBits = bits;
+        markedBitCount = bitCount;
+    }
+
+    /**
+     * Goes back to the position of the last {@link #mark()}.
+     */
+    void reset() {
+        position = markedPosition;
+        bits = markedBits;
+        bitCount = markedBitCount;
+    }
+
+    private void fill() {
+        if (bitCount <= 32 && limit - position >= 4) {
+            bits |= in.getUnsignedIntLE(position) << bitCount;
+            position += 4;
+            bitCount += 32;
+        }
+        while (bitCount <= 56 && position < limit) {
+            bits |= (long) in.getUnsignedByte(position++) << bitCount;
+            bitCount += 8;
+        }
+    }
+
+    /**
+     * Returns the next {@code numBits} bits, with {@code numBits <= 24}, without consuming them. Bits past the end
+     * of the input are read as {@code 0}.
+     */
+    int peekBits(int numBits) {
+        if (bitCount < numBits) {
+            fill();
+        }
+        return (int) bits & (1 << numBits) - 1;
+    }
+
+    /**
+     * Consumes {@code numBits} bits, with {@code numBits <= 24}.
+     */
+    void skipBits(int numBits) {
+        if (bitCount < numBits) {
+            fill();
+            if (bitCount < numBits) {
+                throw NEED_MORE_INPUT;
+            }
+        }
+        bits >>>= numBits;
+        bitCount -= numBits;
+    }
+
+    /**
+     * Reads and consumes {@code numBits} bits, with {@code numBits <= 24}.
+     */
+    int readBits(int numBits) {
+        int value = peekBits(numBits);
+        skipBits(numBits);
+        return value;
+    }
+
+    /**
+     * Skips the bits up to the next byte boundary, which must all be {@code 0}.
+     */
+    void alignToByte() {
+        if (readBits(bitCount & 7) != 0) {
+            throw new DecompressionException("non-zero padding bits");
+        }
+    }
+
+    /**
+     * Reads up to {@code length} bytes into {@code dst}, the reader must be aligned to a byte boundary.
+     *
+     * @return the number of bytes read, which is {@code 0} if no input is available
+     */
+    int readBytes(byte[] dst, int dstOffset, int length) {
+        int read = 0;
+        while (bitCount > 0 && read < length) {
+            dst[dstOffset + read++] = (byte) bits;
+            bits >>>= 8;
+            bitCount -= 8;
+        }
+        int direct = Math.min(length - read, limit - position);
+        in.getBytes(position, dst, dstOffset + read, direct);
+        position += direct;
+        return read + direct;
+    }
+
+    /**
+     * Skips up to {@code length} bytes, the reader must be aligned to a byte boundary.
+     *
+     * @return the number of bytes skipped, which is {@code 0} if no input is available
+     */
+    int skipBytes(int length) {
+        int skipped = 0;
+        while (bitCount > 0 && skipped < length) {
+            bits >>>= 8;
+            bitCount -= 8;
+            skipped++;
+        }
+        int direct = Math.min(length - skipped, limit - position);
+        position += direct;
+        return skipped + direct;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.buffer.ByteBuf;
+
+import java.util.Arrays;
+
+/**
+ * Writes the little endian bit stream of the Brotli format for a {@link BrotliEncoder}.
+ * <p>
+ * A meta-block does not need to end at a byte boundary, so the bits that do not complete a byte yet are kept
+ * across {@link #drainTo(ByteBuf)} calls and are written together with the following meta-block.
+ */
+final class BrotliBitWriter {
+
+    private byte[] buffer = new byte[4096];
+    private int position;
+    private long bits;
+    private int bitCount;
+
+    private int markedPosition;
+    private long markedBits;
+    private int markedBitCount;
+
+    /**
+     * Appends the lowest {@code numBits} bits of {@code value}, with {@code numBits <= 32}.
+     */
+    void writeBits(int value, int numBits) {
+        bits |= (value & 0xFFFFFFFFL & (1L << numBits) - 1) << bitCount;
+        bitCount += numBits;
+        if (bitCount >= 32) {
+            ensureCapacity(4);
+            byte[] buffer = this.buffer;
+            int position = this.position;
+            long bits = this.bits;
+            buffer[position] = (byte) bits;
+            buffer[position + 1] = (byte) (bits >>> 8);
+            buffer[position + 2] = (byte) (bits >>> 16);
+            buffer[position + 3] = (byte) (bits >>> 24);
+            this.position = position + 4;
+            this.bits = bits >>> 32;
+            bitCount -= 32;
+        }
+    }
+
+    /**
+     * Pads the stream with {@code 0} bits up to the next byte boundary.
+     */
+    void alignToByte() {
+        ensureCapacity(4);
+        while (bitCount > 0) {
+            buffer[position++] = (byte) bits;
+            bits >>>= 8;
+            bitCount = Math.max(0, bitCount - 8);
+        }
+    }
+
+    /**
+     * Appends {@code length} bytes of {@code src}, the stream must be aligned to a byte boundary.
+     */
+    void writeBytes(byte[] src, int offset, int length) {
+        assert bitCount == 0;
+        ensureCapacity(length);
+        System.arraycopy(src, offset, buffer, position, length);
+        position += length;
+    }
+
+    /**
+     * Returns {@code true} if the stream ends at a byte boundary.
+     */
+    boolean isAligned() {
+        return bitCount == 0;
+    }
+
+    /**
+     * Returns the number of bits written since the last {@link #drainTo(ByteBuf)}.
+     */
+    long bitLength() {
+        return ((long) position << 3) + bitCount;
+    }
+
+    /**
+     * Remembers the current position, so everything written afterwards can be discarded by {@link #reset()}.
+     */
+    void mark() {
+        markedPosition = position;
+        markedBits = bits;
+        markedBitCount = bitCount;
+    }
+
+    /**
+     * Discards everything written since the last {@link #mark()}.
+     */
+    void reset() {
+        position = markedPosition;
+        bits = markedBits;
+        bitCount = markedBitCount;
+    }
+
+    /**
+     * Writes all complete bytes to {@code out}, the remaining bits are kept.
+     */
+    void drainTo(ByteBuf out) {
+        while (bitCount >= 8) {
+            ensureCapacity(1);
+            buffer[position++] = (byte) bits;
+            bits >>>= 8;
+            bitCount -= 8;
+        }
+        out.writeBytes(buffer, 0, position);
+        position = 0;
+    }
+
+    private void ensureCapacity(int length) {
+        if (buffer.length - position < length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, position + length));
+        }
+    }
+}
@@ -0,0 +1,696 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import java.util.Arrays;
+
+import static io.netty.handler.codec.compression.BrotliConstants.*;
+
+/**
+ * Compresses the data of a {@link BrotliEncoder} into meta-blocks, see section 9 of
+ * <a href="https://tools.ietf.org/html/rfc7932">RFC 7932</a>.
+ * <p>
+ * This is a fast compressor in the spirit of the lowest Brotli quality levels: matches are found greedily with a
+ * hash chain over the whole window and every meta-block uses a single prefix code per category, without block
+ * splitting, context modeling or references to the static dictionary. A meta-block is stored uncompressed if that
+ * is smaller.
+ */
+final class BrotliCompressor {
+
+    private static final int HASH_LOG = 15;
+    private static final int MIN_MATCH_LENGTH = 4;
+    private static final int GOOD_MATCH_LENGTH = 128;
+    private static final int SKIP_TRIGGER = 6;
+
+    /**
+     * Size of the distance alphabet without direct distance codes and postfix bits.
+     */
+    private static final int NUM_DISTANCE_SYMBOLS = NUM_DISTANCE_SHORT_CODES + 48;
+
+    /**
+     * Static prefix code used for the code lengths of the code length alphabet, indexed by the code length.
+     */
+    private static final int[] CODE_LENGTH_CODE_LENGTH_CODES = { 0, 7, 3, 2, 1, 15 };
+    private static final int[] CODE_LENGTH_CODE_LENGTH_BITS = { 2, 4, 3, 2, 2, 4 };
+
+    /**
+     * Cells of insert-and-copy length codes with an explicit distance, indexed by the upper bits of the insert
+     * length code times {@code 3} plus the upper bits of the copy length code.
+     */
+    private static final int[] EXPLICIT_DISTANCE_CELLS = new int[9];
+
+    static {
+        for (int cell = 2; cell < COMMAND_INSERT_OFFSET.length; cell++) {
+            EXPLICIT_DISTANCE_CELLS[(COMMAND_INSERT_OFFSET[cell] >>> 3) * 3 + (COMMAND_COPY_OFFSET[cell] >>> 3)] =
+                    cell;
+        }
+    }
+
+    private final int maxDistance;
+    private final int searchDepth;
+    private final int chainSize;
+    private final int[] hashTable = new int[1 << HASH_LOG];
+    private final int[] chainTable;
+
+    /**
+     * Commands of the current meta-block.
+     */
+    private final int[] commands;
+    private final int[] insertLengths;
+    private final int[] copyLengths;
+    private final int[] distanceCodes;
+    private final int[] distanceExtras;
+    private int numCommands;
+
+    /**
+     * The last four distances, starting with the most recent one.
+     */
+    private final int[] distances = { 4, 11, 15, 16 };
+    private final int[] savedDistances = new int[4];
+
+    private final int[] literalHistogram = new int[NUM_LITERAL_SYMBOLS];
+    private final int[] commandHistogram = new int[NUM_COMMAND_SYMBOLS];
+    private final int[] distanceHistogram = new int[NUM_DISTANCE_SYMBOLS];
+    private final int[] literalLengths = new int[NUM_LITERAL_SYMBOLS];
+    private final int[] literalCodes = new int[NUM_LITERAL_SYMBOLS];
+    private final int[] commandLengths = new int[NUM_COMMAND_SYMBOLS];
+    private final int[] commandCodes = new int[NUM_COMMAND_SYMBOLS];
+    private final int[] distanceLengths = new int[NUM_DISTANCE_SYMBOLS];
+    private final int[] distanceCodeCodes = new int[NUM_DISTANCE_SYMBOLS];
+
+    /**
+     * Scratch space to store the code lengths of a prefix code.
+     */
+    private final int[] codeLengthSymbols = new int[NUM_COMMAND_SYMBOLS];
+    private final int[] codeLengthExtras = new int[NUM_COMMAND_SYMBOLS];
+    private int numCodeLengthSymbols;
+    private final int[] codeLengthHistogram = new int[CODE_LENGTH_CODES];
+    private final int[] codeLengthLengths = new int[CODE_LENGTH_CODES];
+    private final int[] codeLengthCodes = new int[CODE_LENGTH_CODES];
+
+    /**
+     * @param windowBits    the base two logarithm of the window size
+     * @param blockSize     the largest meta-block that will be compressed, a power of two which is not larger than
+     *                      the window
+     * @param searchDepth   the number of earlier positions that are tried to find the longest match
+     */
+    BrotliCompressor(int windowBits, int blockSize, int searchDepth) {
+        maxDistance = (1 << windowBits) - 16;
+        this.searchDepth = searchDepth;
+        chainSize = blockSize;
+        chainTable = new int[blockSize];
+        Arrays.fill(hashTable, -1);
+        int maxCommands = blockSize / MIN_MATCH_LENGTH + 1;
+        commands = new int[maxCommands];
+        insertLengths = new int[maxCommands];
+        copyLengths = new int[maxCommands];
+        distanceCodes = new int[maxCommands];
+        distanceExtras = new int[maxCommands];
+    }
+
+    /**
+     * Writes {@code data[start..end)} as a single meta-block. All data before {@code start}, up to the window size,
+     * may be referenced by it.
+     */
+    void compress(byte[] data, int start, int end, BrotliBitWriter writer) {
+        System.arraycopy(distances, 0, savedDistances, 0, 4);
+        findCommands(data, start, end);
+
+        int length = end - start;
+        writer.mark();
+        long startBits = writer.bitLength();
+        writeCompressed(data, start, end, writer);
+
+        long headerBits = startBits + metaBlockHeaderBits(length) + 1;
+        long uncompressedBits = (headerBits + 7 & ~7L) + ((long) length << 3);
+        if (writer.bitLength() > uncompressedBits) {
+            writer.reset();
+            System.arraycopy(savedDistances, 0, distances, 0, 4);
+            writeMetaBlockHeader(length, writer);
+            // ISUNCOMPRESSED
+            writer.writeBits(1, 1);
+            writer.alignToByte();
+            writer.writeBytes(data, start, length);
+        }
+    }
+
+    /**
+     * Moves all positions {@code shift} bytes back, after the data itself was moved to the start of the buffer.
+     * The {@code shift} must be a multiple of the block size.
+     */
+    void slide(int shift) {
+        slide(hashTable, shift);
+        slide(chainTable, shift);
+    }
+
+    private static void slide(int[] table, int shift) {
+        for (int i = 0; i < table.length; i++) {
+            int position = table[i] - shift;
+            table[i] = position < 0 ? -1 : position;
+        }
+    }
+
+    private void findCommands(byte[] data, int start, int end) {
+        final int[] hashTable = this.hashTable;
+        final int[] chainTable = this.chainTable;
+        final int chainMask = chainSize - 1;
+        numCommands = 0;
+        Arrays.fill(literalHistogram, 0);
+        Arrays.fill(commandHistogram, 0);
+        Arrays.fill(distanceHistogram, 0);
+
+        int anchor = start;
+        int position = start;
+        int hashLimit = end - MIN_MATCH_LENGTH;
+        int misses = 0;
+        while (position <= hashLimit) {
+            int maxLength = end - position;
+            int bestLength = 0;
+            int bestDistance = 0;
+
+            // Repeating the last distance is the cheapest match there is.
+            int lastDistance = distances[0];
+            if (lastDistance <= position && lastDistance <= maxDistance) {
+                int matchLength = commonLength(data, position - lastDistance, position, maxLength);
+                if (matchLength >= MIN_MATCH_LENGTH) {
+                    bestLength = matchLength;
+                    bestDistance = lastDistance;
+                }
+            }
+
+            int hash = hash(readInt(data, position));
+            int candidate = hashTable[hash];
+            chainTable[position & chainMask] = candidate;
+            hashTable[hash] = position;
+
+            int minCandidate = Math.max(0, position - maxDistance);
+            for (int depth = searchDepth; candidate >= minCandidate && depth > 0; depth--) {
+                if (bestLength < maxLength && data[candidate + bestLength] == data[position + bestLength]) {
+                    int matchLength = commonLength(data, candidate, position, maxLength);
+                    if (matchLength > bestLength) {
+                        bestLength = matchLength;
+                        bestDistance = position - candidate;
+                        if (matchLength >= GOOD_MATCH_LENGTH) {
+                            break;
+                        }
+                    }
+                }
+                if (candidate <= position - chainSize) {
+                    // The chain entry of this candidate was already reused by a later position.
+                    break;
+                }
+                candidate = chainTable[candidate & chainMask];
+            }
+
+            if (bestLength < MIN_MATCH_LENGTH) {
+                // Skip faster over data that does not seem to compress.
+                position += 1 + (misses++ >>> SKIP_TRIGGER);
+                continue;
+            }
+            misses = 0;
+
+            // Extend the match backwards over the pending literals.
+            while (position > anchor && position > bestDistance &&
+                   data[position - 1] == data[position - 1 - bestDistance]) {
+                position--;
+                bestLength++;
+            }
+
+            addCommand(data, anchor, position - anchor, bestLength, bestDistance);
+            int matchEnd = position + bestLength;
+            for (int i = position + 1; i < matchEnd && i <= hashLimit; i++) {
+                int h = hash(readInt(data, i));
+                chainTable[i & chainMask] = hashTable[h];
+                hashTable[h] = i;
+            }
+            position = matchEnd;
+            anchor = matchEnd;
+        }
+        if (anchor < end) {
+            addCommand(data, anchor, end - anchor, 0, 0);
+        }
+    }
+
+    /**
+     * Adds a command that inserts {@code insertLength} literals and then copies {@code copyLength} bytes from
+     * {@code distance} bytes back. A {@code copyLength} of {@code 0} is only allowed for the last command of a
+     * meta-block, whose copy length is never used.
+     */
+    private void addCommand(byte[] data, int literalsStart, int insertLength, int copyLength, int distance) {
+        int[] literalHistogram = this.literalHistogram;
+        for (int i = literalsStart; i < literalsStart + insertLength; i++) {
+            literalHistogram[data[i] & 0xFF]++;
+        }
+
+        int insertCode = insertLengthCode(insertLength);
+        int distanceCode = -1;
+        int distanceExtra = 0;
+        int command;
+        if (copyLength == 0) {
+            copyLength = COPY_LENGTH_BASE[0];
+            command = commandCode(insertCode, 0, insertCode < 8);
+        } else {
+            int copyCode = copyLengthCode(copyLength);
+            int[] distances = this.distances;
+            if (distance == distances[0]) {
+                distanceCode = 0;
+            } else if (distance == distances[1]) {
+                distanceCode = 1;
+            } else if (distance == distances[2]) {
+                distanceCode = 2;
+            } else if (distance == distances[3]) {
+                distanceCode = 3;
+            } else {
+                int value = distance + 3;
+                int numBits = 30 - Integer.numberOfLeadingZeros(value);
+                int highBit = value >>> numBits & 1;
+                distanceCode = NUM_DISTANCE_SHORT_CODES + ((numBits - 1) << 1 | highBit);
+                distanceExtra = value - ((2 + highBit) << numBits);
+            }
+            if (distanceCode == 0 && insertCode < 8 && copyCode < 16) {
+                // The last distance is used implicitly.
+                distanceCode = -1;
+                command = commandCode(insertCode, copyCode, true);
+            } else {
+                command = commandCode(insertCode, copyCode, false);
+                if (distanceCode != 0) {
+                    distances[3] = distances[2];
+                    distances[2] = distances[1];
+                    distances[1] = distances[0];
+                    distances[0] = distance;
+                }
+            }
+            if (distanceCode >= 0) {
+                distanceHistogram[distanceCode]++;
+            }
+        }
+        commandHistogram[command]++;
+
+        int index = numCommands++;
+        commands[index] = command;
+        insertLengths[index] = insertLength;
+        copyLengths[index] = copyLength;
+        distanceCodes[index] = distanceCode;
+        distanceExtras[index] = distanceExtra;
+    }
+
+    private static int commandCode(int insertCode, int copyCode, boolean implicitDistance) {
+        int cell;
+        if (implicitDistance) {
+            cell = copyCode >>> 3;
+        } else {
+            cell = EXPLICIT_DISTANCE_CELLS[(insertCode >>> 3) * 3 + (copyCode >>> 3)];
+        }
+        return cell << 6 | (insertCode & 7) << 3 | copyCode & 7;
+    }
+
+    private static int insertLengthCode(int length) {
+        if (length < 6) {
+            return length;
+        }
+        if (length < 130) {
+            int numBits = log2(length - 2) - 1;
+            return (numBits << 1) + (length - 2 >>> numBits) + 2;
+        }
+        if (length < 2114) {
+            return log2(length - 66) + 10;
+        }
+        return length < 6210 ? 21 : length < 22594 ? 22 : 23;
+    }
+
+    private static int copyLengthCode(int length) {
+        if (length < 10) {
+            return length - 2;
+        }
+        if (length < 134) {
+            int numBits = log2(length - 6) - 1;
+            return (numBits << 1) + (length - 6 >>> numBits) + 4;
+        }
+        if (length < 2118) {
+            return log2(length - 70) + 12;
+        }
+        return 23;
+    }
+
+    private void writeCompressed(byte[] data, int start, int end, BrotliBitWriter writer) {
+        writeMetaBlockHeader(end - start, writer);
+        // ISUNCOMPRESSED, a single block type for literals, commands and distances, no postfix bits and no direct
+        // distance codes.
+        writer.writeBits(0, 1 + 3 + 2 + 4);
+        writer.writeBits(CONTEXT_LSB6, 2);
+        // A single prefix code for literals and for distances, so there are no context maps.
+        writer.writeBits(0, 2);
+        writePrefixCode(literalHistogram, NUM_LITERAL_SYMBOLS, literalLengths, literalCodes, writer);
+        writePrefixCode(commandHistogram, NUM_COMMAND_SYMBOLS, commandLengths, commandCodes, writer);
+        writePrefixCode(distanceHistogram, NUM_DISTANCE_SYMBOLS, distanceLengths, distanceCodeCodes, writer);
+
+        final int[] literalLengths = this.literalLengths;
+        final int[] literalCodes = this.literalCodes;
+        int position = start;
+        for (int i = 0; i < numCommands; i++) {
+            int command = commands[i];
+            writer.writeBits(commandCodes[command], commandLengths[command]);
+            int cell = command >>> 6;
+            int insertCode = COMMAND_INSERT_OFFSET[cell] + (command >>> 3 & 7);
+            int copyCode = COMMAND_COPY_OFFSET[cell] + (command & 7);
+            int insertLength = insertLengths[i];
+            int copyLength = copyLengths[i];
+            writer.writeBits(insertLength - INSERT_LENGTH_BASE[insertCode], INSERT_LENGTH_EXTRA_BITS[insertCode]);
+            writer.writeBits(copyLength - COPY_LENGTH_BASE[copyCode], COPY_LENGTH_EXTRA_BITS[copyCode]);
+            for (int literalsEnd = position + insertLength; position < literalsEnd; position++) {
+                int literal = data[position] & 0xFF;
+                writer.writeBits(literalCodes[literal], literalLengths[literal]);
+            }
+            if (position == end) {
+                break;
+            }
+            int distanceCode = distanceCodes[i];
+            if (distanceCode >= 0) {
+                writer.writeBits(distanceCodeCodes[distanceCode], distanceLengths[distanceCode]);
+                if (distanceCode >= NUM_DISTANCE_SHORT_CODES) {
+                    writer.writeBits(distanceExtras[i], 1 + (distanceCode - NUM_DISTANCE_SHORT_CODES >>> 1));
+                }
+            }
+            position += copyLength;
+        }
+    }
+
+    private static int metaBlockHeaderBits(int length) {
+        return 1 + 2 + (numNibbles(length) << 2);
+    }
+
+    private static int numNibbles(int length) {
+        return Math.max(4, (log2(length - 1 | 1) >>> 2) + 1);
+    }
+
+    /**
+     * Writes the header of a meta-block that is not the last one, up to the ISUNCOMPRESSED bit.
+     */
+    private static void writeMetaBlockHeader(int length, BrotliBitWriter writer) {
+        int numNibbles = numNibbles(length);
+        // ISLAST
+        writer.writeBits(0, 1);
+        writer.writeBits(numNibbles - 4, 2);
+        writer.writeBits(length - 1, numNibbles << 2);
+    }
+
+    /**
+     * Builds a prefix code for the symbols of {@code histogram} and writes its definition.
+     */
+    private void writePrefixCode(int[] histogram, int alphabetSize, int[] codeLengths, int[] codes,
+                                 BrotliBitWriter writer) {
+        int alphabetBits = log2(alphabetSize - 1) + 1;
+        int[] symbols = new int[4];
+        int numSymbols = 0;
+        for (int symbol = 0; symbol < alphabetSize; symbol++) {
+            if (histogram[symbol] != 0) {
+                if (numSymbols < 4) {
+                    symbols[numSymbols] = symbol;
+                }
+                numSymbols++;
+            }
+        }
+        Arrays.fill(codeLengths, 0, alphabetSize, 0);
+        if (numSymbols > 4) {
+            buildCodeLengths(histogram, alphabetSize, MAX_HUFFMAN_CODE_LENGTH, numSymbols, codeLengths);
+            writeComplexPrefixCode(codeLengths, alphabetSize, writer);
+            assignCodes(codeLengths, alphabetSize, codes);
+            return;
+        }
+
+        // Simple prefix code, with the most frequent symbol first.
+        numSymbols = Math.max(numSymbols, 1);
+        for (int i = 1; i < numSymbols; i++) {
+            for (int j = i; j > 0 && histogram[symbols[j]] > histogram[symbols[j - 1]]; j--) {
+                int symbol = symbols[j];
+                symbols[j] = symbols[j - 1];
+                symbols[j - 1] = symbol;
+            }
+        }
+        writer.writeBits(1, 2);
+        writer.writeBits(numSymbols - 1, 2);
+        for (int i = 0; i < numSymbols; i++) {
+            writer.writeBits(symbols[i], alphabetBits);
+        }
+        switch (numSymbols) {
+            case 1:
+                // The only symbol has a code of length 0.
+                return;
+            case 2:
+                codeLengths[symbols[0]] = 1;
+                codeLengths[symbols[1]] = 1;
+                break;
+            case 3:
+                codeLengths[symbols[0]] = 1;
+                codeLengths[symbols[1]] = 2;
+                codeLengths[symbols[2]] = 2;
+                break;
+            default:
+                if (histogram[symbols[0]] > histogram[symbols[2]] + histogram[symbols[3]]) {
+                    writer.writeBits(1, 1);
+                    codeLengths[symbols[0]] = 1;
+                    codeLengths[symbols[1]] = 2;
+                    codeLengths[symbols[2]] = 3;
+                    codeLengths[symbols[3]] = 3;
+                } else {
+                    writer.writeBits(0, 1);
+                    for (int symbol : symbols) {
+                        codeLengths[symbol] = 2;
+                    }
+                }
+                break;
+        }
+        assignCodes(codeLengths, alphabetSize, codes);
+    }
+
+    /**
+     * Writes the code lengths of a complex prefix code, using run lengths for repeated code lengths.
+     */
+    private void writeComplexPrefixCode(int[] codeLengths, int alphabetSize, BrotliBitWriter writer) {
+        int last = alphabetSize - 1;
+        while (codeLengths[last] == 0) {
+            last--;
+        }
+
+        numCodeLengthSymbols = 0;
+        int previous = INITIAL_REPEATED_CODE_LENGTH;
+        for (int i = 0; i <= last;) {
+            int value = codeLengths[i];
+            int repeat = 1;
+            while (i + repeat <= last && codeLengths[i + repeat] == value) {
+                repeat++;
+            }
+            if (value == 0) {
+                addZeroCodeLengths(repeat);
+            } else {
+                addCodeLengths(previous, value, repeat);
+                previous = value;
+            }
+            i += repeat;
+        }
+
+        final int[] histogram = codeLengthHistogram;
+        final int[] lengths = codeLengthLengths;
+        Arrays.fill(histogram, 0);
+        Arrays.fill(lengths, 0);
+        int numUsed = 0;
+        int usedSymbol = 0;
+        for (int i = 0; i < numCodeLengthSymbols; i++) {
+            if (histogram[codeLengthSymbols[i]]++ == 0) {
+                numUsed++;
+                usedSymbol = codeLengthSymbols[i];
+            }
+        }
+        if (numUsed == 1) {
+            // A single code length symbol is coded without any bits, but needs a non zero length to be stored.
+            lengths[usedSymbol] = 1;
+        } else {
+            buildCodeLengths(histogram, CODE_LENGTH_CODES, MAX_CODE_LENGTH_CODE_LENGTH, numUsed, lengths);
+        }
+
+        int skip = 0;
+        if (lengths[CODE_LENGTH_CODE_ORDER[0]] == 0 && lengths[CODE_LENGTH_CODE_ORDER[1]] == 0) {
+            skip = lengths[CODE_LENGTH_CODE_ORDER[2]] == 0 ? 3 : 2;
+        }
+        int numStored = CODE_LENGTH_CODES;
+        if (numUsed > 1) {
+            while (lengths[CODE_LENGTH_CODE_ORDER[numStored - 1]] == 0) {
+                numStored--;
+            }
+        }
+        writer.writeBits(skip, 2);
+        for (int i = skip; i < numStored; i++) {
+            int length = lengths[CODE_LENGTH_CODE_ORDER[i]];
+            writer.writeBits(CODE_LENGTH_CODE_LENGTH_CODES[length], CODE_LENGTH_CODE_LENGTH_BITS[length]);
+        }
+
+        if (numUsed == 1) {
+            lengths[usedSymbol] = 0;
+        }
+        assignCodes(lengths, CODE_LENGTH_CODES, codeLengthCodes);
+        for (int i = 0; i < numCodeLengthSymbols; i++) {
+            int symbol = codeLengthSymbols[i];
+            writer.writeBits(codeLengthCodes[symbol], lengths[symbol]);
+            if (symbol == REPEAT_PREVIOUS_CODE_LENGTH) {
+                writer.writeBits(codeLengthExtras[i], 2);
+            } else if (symbol == REPEAT_ZERO_CODE_LENGTH) {
+                writer.writeBits(codeLengthExtras[i], 3);
+            }
+        }
+    }
+
+    private void addCodeLength(int symbol, int extra) {
+        codeLengthSymbols[numCodeLengthSymbols] = symbol;
+        codeLengthExtras[numCodeLengthSymbols] = extra;
+        numCodeLengthSymbols++;
+    }
+
+    /**
+     * Adds {@code repeat} times the non zero code length {@code value}. Consecutive repeat codes multiply their
+     * counts, so the digits of the count are added in reverse.
+     */
+    private void addCodeLengths(int previous, int value, int repeat) {
+        if (previous != value) {
+            addCodeLength(value, 0);
+            repeat--;
+        }
+        if (repeat == 7) {
+            addCodeLength(value, 0);
+            repeat--;
+        }
+        if (repeat < 3) {
+            for (int i = 0; i < repeat; i++) {
+                addCodeLength(value, 0);
+            }
+            return;
+        }
+        int first = numCodeLengthSymbols;
+        repeat -= 3;
+        for (;;) {
+            addCodeLength(REPEAT_PREVIOUS_CODE_LENGTH, repeat & 3);
+            repeat >>>= 2;
+            if (repeat == 0) {
+                break;
+            }
+            repeat--;
+        }
+        reverseCodeLengths(first);
+    }
+
+    /**
+     * Adds {@code repeat} code lengths of {@code 0}, in the same way as {@link #addCodeLengths(int, int, int)}.
+     */
+    private void addZeroCodeLengths(int repeat) {
+        if (repeat == 11) {
+            addCodeLength(0, 0);
+            repeat--;
+        }
+        if (repeat < 3) {
+            for (int i = 0; i < repeat; i++) {
+                addCodeLength(0, 0);
+            }
+            return;
+        }
+        int first = numCodeLengthSymbols;
+        repeat -= 3;
+        for (;;) {
+            addCodeLength(REPEAT_ZERO_CODE_LENGTH, repeat & 7);
+            repeat >>>= 3;
+            if (repeat == 0) {
+                break;
+            }
+            repeat--;
+        }
+        reverseCodeLengths(first);
+    }
+
+    private void reverseCodeLengths(int first) {
+        for (int i = first, j = numCodeLengthSymbols - 1; i < j; i++, j--) {
+            int extra = codeLengthExtras[i];
+            codeLengthExtras[i] = codeLengthExtras[j];
+            codeLengthExtras[j] = extra;
+        }
+    }
+
+    /**
+     * Computes length limited Huffman code lengths for the {@code numSymbols} symbols of {@code histogram}.
+     */
+    private static void buildCodeLengths(int[] histogram, int alphabetSize, int maxLength, int numSymbols,
+                                         int[] codeLengths) {
+        int[] sorted = new int[numSymbols];
+        int n = 0;
+        for (int symbol = 0; symbol < alphabetSize; symbol++) {
+            if (histogram[symbol] > 0) {
+                // frequency in the high bits, symbol in the low 10 bits
+                sorted[n++] = histogram[symbol] << 10 | symbol;
+            }
+        }
+        Arrays.sort(sorted);
+        int[] lengths = new int[numSymbols];
+        for (int i = 0; i < numSymbols; i++) {
+            lengths[i] = sorted[i] >>> 10;
+        }
+        Bzip2HuffmanAllocator.allocateHuffmanCodeLengths(lengths, maxLength);
+        for (int i = 0; i < numSymbols; i++) {
+            codeLengths[sorted[i] & 0x3FF] = lengths[i];
+        }
+    }
+
+    /**
+     * Assigns the canonical codes of the given code lengths. The codes are stored bit reversed, as they are
+     * written starting with their most significant bit.
+     */
+    private static void assignCodes(int[] codeLengths, int alphabetSize, int[] codes) {
+        int[] count = new int[MAX_HUFFMAN_CODE_LENGTH + 1];
+        for (int symbol = 0; symbol < alphabetSize; symbol++) {
+            count[codeLengths[symbol]]++;
+        }
+        count[0] = 0;
+        int[] nextCode = new int[MAX_HUFFMAN_CODE_LENGTH + 1];
+        int code = 0;
+        for (int length = 1; length <= MAX_HUFFMAN_CODE_LENGTH; length++) {
+            code = code + count[length - 1] << 1;
+            nextCode[length] = code;
+        }
+        for (int symbol = 0; symbol < alphabetSize; symbol++) {
+            int length = codeLengths[symbol];
+            if (length != 0) {
+                codes[symbol] = Integer.reverse(nextCode[length]++) >>> 32 - length;
+            }
+        }
+    }
+
+    private static int log2(int value) {
+        return 31 - Integer.numberOfLeadingZeros(value);
+    }
+
+    private static int commonLength(byte[] data, int candidate, int position, int maxLength) {
+        int length = 0;
+        while (length < maxLength && data[candidate + length] == data[position + length]) {
+            length++;
+        }
+        return length;
+    }
+
+    private static int hash(int value) {
+        return value * 0x9E3779B1 >>> 32 - HASH_LOG;
+    }
+
+    private static int readInt(byte[] data, int index) {
+        return data[index] & 0xFF | (data[index + 1] & 0xFF) << 8 |
+               (data[index + 2] & 0xFF) << 16 | (data[index + 3] & 0xFF) << 24;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+/**
+ * Constants for both the {@link BrotliEncoder} and the {@link BrotliDecoder}, as defined by
+ * <a href="https://tools.ietf.org/html/rfc7932">RFC 7932</a>.
+ */
+final class BrotliConstants {
+
+    static final int MIN_WINDOW_BITS = 10;
+    static final int MAX_WINDOW_BITS = 24;
+
+    /**
+     * Window size used by the {@link BrotliDecoder} if not specified otherwise, which is the largest one a stream
+     * may use.
+     */
+    static final int DEFAULT_MAX_WINDOW_SIZE = (1 << MAX_WINDOW_BITS) - 16;
+
+    static final int MAX_HUFFMAN_CODE_LENGTH = 15;
+    static final int MAX_CODE_LENGTH_CODE_LENGTH = 5;
+    static final int CODE_LENGTH_CODES = 18;
+    static final int REPEAT_PREVIOUS_CODE_LENGTH = 16;
+    static final int REPEAT_ZERO_CODE_LENGTH = 17;
+    static final int INITIAL_REPEATED_CODE_LENGTH = 8;
+
+    /**
+     * Order in which the code lengths of the code length alphabet are stored.
+     */
+    static final int[] CODE_LENGTH_CODE_ORDER = { 1, 2, 3, 4, 0, 5, 17, 6, 16, 7, 8, 9, 10, 11, 12, 13, 14, 15 };
+
+    /**
+     * Static prefix code used for the code lengths of the code length alphabet, indexed by the next 4 bits.
+     */
+    static final int[] CODE_LENGTH_PREFIX_LENGTH = { 2, 2, 2, 3, 2, 2, 2, 4, 2, 2, 2, 3, 2, 2, 2, 4 };
+    static final int[] CODE_LENGTH_PREFIX_VALUE = { 0, 4, 3, 2, 0, 4, 3, 1, 0, 4, 3, 2, 0, 4, 3, 5 };
+
+    static final int NUM_LITERAL_SYMBOLS = 256;
+    static final int NUM_COMMAND_SYMBOLS = 704;
+    static final int NUM_BLOCK_LENGTH_SYMBOLS = 26;
+    static final int NUM_DISTANCE_SHORT_CODES = 16;
+    static final int MAX_BLOCK_TYPES = 256;
+
+    static final int LITERAL_CONTEXT_BITS = 6;
+    static final int DISTANCE_CONTEXT_BITS = 2;
+
+    static final int CONTEXT_LSB6 = 0;
+    static final int CONTEXT_MSB6 = 1;
+    static final int CONTEXT_UTF8 = 2;
+    static final int CONTEXT_SIGNED = 3;
+
+    /**
+     * Block length codes, see section 6 of RFC 7932.
+     */
+    static final int[] BLOCK_LENGTH_BASE = {
+            1, 5, 9, 13, 17, 25, 33, 41, 49, 65, 81, 97, 113, 145, 177, 209, 241, 305, 369, 497, 753, 1265, 2289,
+            4337, 8433, 16625 };
+    static final int[] BLOCK_LENGTH_EXTRA_BITS = {
+            2, 2, 2, 2, 3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 6, 6, 7, 8, 9, 10, 11, 12, 13, 24 };
+
+    /**
+     * Insert and copy length codes, see section 5 of RFC 7932.
+     */
+    static final int[] INSERT_LENGTH_BASE = {
+            0, 1, 2, 3, 4, 5, 6, 8, 10, 14, 18, 26, 34, 50, 66, 98, 130, 194, 322, 578, 1090, 2114, 6210, 22594 };
+    static final int[] INSERT_LENGTH_EXTRA_BITS = {
+            0, 0, 0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 7, 8, 9, 10, 12, 14, 24 };
+    static final int[] COPY_LENGTH_BASE = {
+            2, 3, 4, 5, 6, 7, 8, 9, 10, 12, 14, 18, 22, 30, 38, 54, 70, 102, 134, 198, 326, 582, 1094, 2118 };
+    static final int[] COPY_LENGTH_EXTRA_BITS = {
+            0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 7, 8, 9, 10, 24 };
+
+    /**
+     * Offsets of the insert and copy length codes for each cell of 64 insert-and-copy length codes.
+     */
+    static final int[] COMMAND_INSERT_OFFSET = { 0, 0, 0, 0, 8, 8, 0, 16, 8, 16, 16 };
+    static final int[] COMMAND_COPY_OFFSET = { 0, 8, 0, 8, 0, 8, 16, 0, 16, 8, 16 };
+
+    /**
+     * Insert-and-copy length codes below this value implicitly reuse the last distance.
+     */
+    static final int IMPLICIT_DISTANCE_COMMANDS = 128;
+
+    /**
+     * Short distance codes relative to the last distances, see section 4 of RFC 7932.
+     */
+    static final int[] DISTANCE_SHORT_CODE_INDEX = { 0, 1, 2, 3, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 1, 1 };
+    static final int[] DISTANCE_SHORT_CODE_OFFSET = { 0, 0, 0, 0, -1, 1, -2, 2, -3, 3, -1, 1, -2, 2, -3, 3 };
+    static final int[] INITIAL_DISTANCES = { 16, 15, 11, 4 };
+
+    /**
+     * Lookup table of the literal context ids, see section 7.1 of RFC 7932. For every context mode there are
+     * 256 entries for the last byte followed by 256 entries for the byte before, the context id is the bitwise or
+     * of both.
+     */
+    static final byte[] CONTEXT_LOOKUP = new byte[4 * 512];
+
+    static {
+        int[] utf8Last = {
+                0, 0, 0, 0, 0, 0, 0, 0, 0, 4, 4, 0, 0, 4, 0, 0,
+                0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+                8, 12, 16, 12, 12, 20, 12, 16, 24, 28, 12, 12, 32, 12, 36, 12,
+                44, 44, 44, 44, 44, 44, 44, 44, 44, 44, 32, 32, 24, 40, 28, 12,
+                12, 48, 52, 52, 52, 48, 52, 52, 52, 48, 52, 52, 52, 52, 52, 48,
+                52, 52, 52, 52, 52, 48, 52, 52, 52, 52, 52, 24, 12, 28, 12, 12,
+                12, 56, 60, 60, 60, 56, 60, 60, 60, 56, 60, 60, 60, 60, 60, 56,
+                60, 60, 60, 60, 60, 56, 60, 60, 60, 60, 60, 24, 12, 28, 12, 0 };
+        int[] utf8SecondLast = {
+                0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+                0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+                0, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+                2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 1, 1, 1, 1, 1, 1,
+                1, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2,
+                2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 1, 1, 1, 1, 1,
+                1, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3,
+                3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 1, 1, 1, 1, 0 };
+        for (int i = 0; i < 256; i++) {
+            CONTEXT_LOOKUP[CONTEXT_LSB6 * 512 + i] = (byte) (i & 0x3F);
+            CONTEXT_LOOKUP[CONTEXT_MSB6 * 512 + i] = (byte) (i >>> 2);
+            if (i < 128) {
+                CONTEXT_LOOKUP[CONTEXT_UTF8 * 512 + i] = (byte) utf8Last[i];
+                CONTEXT_LOOKUP[CONTEXT_UTF8 * 512 + 256 + i] = (byte) utf8SecondLast[i];
+            } else {
+                // Continuation bytes alternate between 0 and 1, lead bytes between 2 and 3.
+                CONTEXT_LOOKUP[CONTEXT_UTF8 * 512 + i] = (byte) ((i < 192 ? 0 : 2) + (i & 1));
+                CONTEXT_LOOKUP[CONTEXT_UTF8 * 512 + 256 + i] = (byte) (i < 224 ? 0 : 2);
+            }
+            int signed = i == 0 ? 0 : i < 16 ? 1 : i < 64 ? 2 : i < 128 ? 3 :
+                         i < 192 ? 4 : i < 240 ? 5 : i < 255 ? 6 : 7;
+            CONTEXT_LOOKUP[CONTEXT_SIGNED * 512 + i] = (byte) (signed << 3);
+            CONTEXT_LOOKUP[CONTEXT_SIGNED * 512 + 256 + i] = (byte) signed;
+        }
+    }
+
+    private BrotliConstants() { }
+}
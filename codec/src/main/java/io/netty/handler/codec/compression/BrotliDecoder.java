@@ -0,0 +1,621 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.util.Signal;
+import io.netty.util.internal.ObjectUtil;
+
+import java.util.List;
+
+import static io.netty.handler.codec.compression.BrotliConstants.*;
+
+/**
+ * Uncompresses a {@link ByteBuf} encoded with the Brotli format.
+ *
+ * See <a href="https://tools.ietf.org/html/rfc7932">RFC 7932</a> for a full description of the format. The input
+ * is decoded as far as it is available, so only the window of the stream needs to be retained no matter how large
+ * its meta-blocks are. Uncompressed data is emitted every time the decoder runs out of input or window space.
+ */
+public class BrotliDecoder extends ByteToMessageDecoder {
+    /**
+     * Current state of stream.
+     */
+    private enum State {
+        STREAM_HEADER,
+        META_BLOCK_HEADER,
+        UNCOMPRESSED,
+        METADATA,
+        COMMAND,
+        LITERALS,
+        DISTANCE,
+        COPY,
+        FINISHED,
+        CORRUPTED
+    }
+
+    private static final int LITERAL = 0;
+    private static final int COMMAND = 1;
+    private static final int DISTANCE = 2;
+
+    /**
+     * Block length of a category that only has a single block type, which is larger than any meta-block.
+     */
+    private static final int UNLIMITED_BLOCK_LENGTH = 1 << 28;
+
+    private State currentState = State.STREAM_HEADER;
+
+    /**
+     * Largest window size that is accepted.
+     */
+    private final int maxWindowSize;
+
+    private final BrotliBitReader reader = new BrotliBitReader();
+
+    /**
+     * Already decompressed content which may be referenced by the following commands.
+     */
+    private byte[] window;
+    private int windowPosition;
+    private int windowLimit;
+    private int windowSize;
+    private int emittedPosition;
+    private long decompressedSize;
+
+    private boolean lastMetaBlock;
+    private int metaBlockRemaining;
+
+    private final int[] numBlockTypes = new int[3];
+    private final int[][] blockTypeTrees = new int[3][];
+    private final int[][] blockLengthTrees = new int[3][];
+    private final int[] blockTypes = new int[3];
+    private final int[] previousBlockTypes = new int[3];
+    private final int[] blockLengths = new int[3];
+
+    private int distancePostfixBits;
+    private int numDirectDistanceCodes;
+    private byte[] contextModes;
+    private byte[] literalContextMap;
+    private byte[] distanceContextMap;
+    private int[][] literalTrees;
+    private int[][] commandTrees;
+    private int[][] distanceTrees;
+    private int literalContextMapOffset;
+    private int contextLookupOffset;
+
+    /**
+     * Ring buffer of the last four distances.
+     */
+    private final int[] distances = INITIAL_DISTANCES.clone();
+    private int distanceIndex;
+
+    private int insertLength;
+    private int copyLength;
+    private int distanceCode;
+    private int distance;
+
+    private final int[] codeLengths = new int[NUM_COMMAND_SYMBOLS];
+    private byte[] wordBuffer;
+
+    /**
+     * Creates a new decoder which accepts all streams, the largest window of a stream is 16 MiB.
+     */
+    public BrotliDecoder() {
+        this(DEFAULT_MAX_WINDOW_SIZE);
+    }
+
+    /**
+     * Creates a new decoder.
+     *
+     * @param maxWindowSize  the largest window size, and so the largest amount of memory, a stream may require.
+     *                       Streams that declare a larger window are rejected with a {@link DecompressionException}
+     */
+    public BrotliDecoder(int maxWindowSize) {
+        this.maxWindowSize = ObjectUtil.checkPositive(maxWindowSize, "maxWindowSize");
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        if (currentState == State.FINISHED || currentState == State.CORRUPTED) {
+            in.skipBytes(in.readableBytes());
+            return;
+        }
+        reader.attach(in);
+        try {
+            decodeStream(ctx, out);
+        } catch (Signal replay) {
+            replay.expect(BrotliBitReader.NEED_MORE_INPUT);
+            reader.reset();
+        } catch (Exception e) {
+            currentState = State.CORRUPTED;
+            throw e;
+        } finally {
+            reader.detach();
+        }
+        emit(ctx, out);
+    }
+
+    private void decodeStream(ChannelHandlerContext ctx, List<Object> out) {
+        final BrotliBitReader reader = this.reader;
+        for (;;) {
+            switch (currentState) {
+                case STREAM_HEADER:
+                    int windowBits = readWindowBits();
+                    windowSize = (1 << windowBits) - 16;
+                    if (windowSize > maxWindowSize) {
+                        throw new DecompressionException(String.format(
+                                "unsupported window size: %d (expected: 0-%d)", windowSize, maxWindowSize));
+                    }
+                    windowLimit = windowSize + Math.max(windowSize, 1 << 16);
+                    window = new byte[Math.min(windowLimit, 1 << 16)];
+                    reader.mark();
+                    currentState = State.META_BLOCK_HEADER;
+                    break;
+                case META_BLOCK_HEADER:
+                    readMetaBlockHeader();
+                    reader.mark();
+                    break;
+                case UNCOMPRESSED:
+                    while (metaBlockRemaining > 0) {
+                        if (windowPosition == window.length) {
+                            makeRoom(ctx, out);
+                        }
+                        int read = reader.readBytes(
+                                window, windowPosition, Math.min(metaBlockRemaining, window.length - windowPosition));
+                        if (read == 0) {
+                            return;
+                        }
+                        reader.mark();
+                        windowPosition += read;
+                        decompressedSize += read;
+                        metaBlockRemaining -= read;
+                    }
+                    endMetaBlock();
+                    break;
+                case METADATA:
+                    while (metaBlockRemaining > 0) {
+                        int skipped = reader.skipBytes(metaBlockRemaining);
+                        if (skipped == 0) {
+                            return;
+                        }
+                        reader.mark();
+                        metaBlockRemaining -= skipped;
+                    }
+                    endMetaBlock();
+                    break;
+                case COMMAND:
+                    readCommand();
+                    currentState = State.LITERALS;
+                    // fall through
+                case LITERALS:
+                    readLiterals(ctx, out);
+                    if (metaBlockRemaining == 0) {
+                        // The copy length of the last command of a meta-block is ignored.
+                        endMetaBlock();
+                        break;
+                    }
+                    currentState = State.DISTANCE;
+                    // fall through
+                case DISTANCE:
+                    readDistance();
+                    currentState = State.COPY;
+                    // fall through
+                case COPY:
+                    copy(ctx, out);
+                    if (metaBlockRemaining == 0) {
+                        endMetaBlock();
+                    } else {
+                        currentState = State.COMMAND;
+                    }
+                    break;
+                case FINISHED:
+                    return;
+                default:
+                    throw new IllegalStateException();
+            }
+        }
+    }
+
+    private int readWindowBits() {
+        if (reader.readBits(1) == 0) {
+            return 16;
+        }
+        int n = reader.readBits(3);
+        if (n != 0) {
+            return 17 + n;
+        }
+        n = reader.readBits(3);
+        if (n == 1) {
+            throw new DecompressionException("large window streams are not supported");
+        }
+        return n == 0 ? 17 : 8 + n;
+    }
+
+    private void endMetaBlock() {
+        if (lastMetaBlock) {
+            reader.alignToByte();
+            reader.mark();
+            currentState = State.FINISHED;
+        } else {
+            currentState = State.META_BLOCK_HEADER;
+        }
+    }
+
+    /**
+     * Reads a complete meta-block header. It is read again from the start if the input ends before.
+     */
+    private void readMetaBlockHeader() {
+        final BrotliBitReader reader = this.reader;
+        lastMetaBlock = reader.readBits(1) != 0;
+        if (lastMetaBlock && reader.readBits(1) != 0) {
+            // ISLASTEMPTY
+            metaBlockRemaining = 0;
+            endMetaBlock();
+            return;
+        }
+
+        int numNibbles = reader.readBits(2) + 4;
+        if (numNibbles == 7) {
+            if (reader.readBits(1) != 0) {
+                throw new DecompressionException("reserved bit of a metadata block is set");
+            }
+            int numBytes = reader.readBits(2);
+            int length = 0;
+            for (int i = 0; i < numBytes; i++) {
+                int value = reader.readBits(8);
+                if (value == 0 && i > 0 && i + 1 == numBytes) {
+                    throw new DecompressionException("invalid metadata length");
+                }
+                length |= value << (i << 3);
+            }
+            reader.alignToByte();
+            metaBlockRemaining = numBytes == 0 ? 0 : length + 1;
+            currentState = State.METADATA;
+            return;
+        }
+
+        int length = 0;
+        for (int i = 0; i < numNibbles; i++) {
+            int value = reader.readBits(4);
+            if (value == 0 && i > 3 && i + 1 == numNibbles) {
+                throw new DecompressionException("invalid meta-block length");
+            }
+            length |= value << (i << 2);
+        }
+        metaBlockRemaining = length + 1;
+
+        if (!lastMetaBlock && reader.readBits(1) != 0) {
+            reader.alignToByte();
+            currentState = State.UNCOMPRESSED;
+            return;
+        }
+
+        final int[] codeLengths = this.codeLengths;
+        for (int category = 0; category < 3; category++) {
+            int numTypes = readVariableLength();
+            numBlockTypes[category] = numTypes;
+            blockTypes[category] = 0;
+            previousBlockTypes[category] = 1;
+            if (numTypes < 2) {
+                blockTypeTrees[category] = null;
+                blockLengthTrees[category] = null;
+                blockLengths[category] = UNLIMITED_BLOCK_LENGTH;
+                continue;
+            }
+            blockTypeTrees[category] = BrotliHuffmanTable.read(reader, numTypes + 2, codeLengths);
+            blockLengthTrees[category] = BrotliHuffmanTable.read(reader, NUM_BLOCK_LENGTH_SYMBOLS, codeLengths);
+            blockLengths[category] = readBlockLength(blockLengthTrees[category]);
+        }
+
+        distancePostfixBits = reader.readBits(2);
+        numDirectDistanceCodes = reader.readBits(4) << distancePostfixBits;
+
+        byte[] contextModes = new byte[numBlockTypes[LITERAL]];
+        for (int i = 0; i < contextModes.length; i++) {
+            contextModes[i] = (byte) reader.readBits(2);
+        }
+        this.contextModes = contextModes;
+
+        int numLiteralTrees = readVariableLength();
+        literalContextMap = readContextMap(numBlockTypes[LITERAL] << LITERAL_CONTEXT_BITS, numLiteralTrees);
+        int numDistanceTrees = readVariableLength();
+        distanceContextMap = readContextMap(numBlockTypes[DISTANCE] << DISTANCE_CONTEXT_BITS, numDistanceTrees);
+
+        literalTrees = readTrees(numLiteralTrees, NUM_LITERAL_SYMBOLS);
+        commandTrees = readTrees(numBlockTypes[COMMAND], NUM_COMMAND_SYMBOLS);
+        distanceTrees = readTrees(numDistanceTrees,
+                NUM_DISTANCE_SHORT_CODES + numDirectDistanceCodes + (48 << distancePostfixBits));
+
+        literalContextMapOffset = 0;
+        contextLookupOffset = contextModes[0] << 9;
+        currentState = State.COMMAND;
+    }
+
+    /**
+     * Reads a value between {@code 1} and {@code 256}, used for the number of block types and trees.
+     */
+    private int readVariableLength() {
+        if (reader.readBits(1) == 0) {
+            return 1;
+        }
+        int n = reader.readBits(3);
+        if (n == 0) {
+            return 2;
+        }
+        return (1 << n) + 1 + reader.readBits(n);
+    }
+
+    private int readBlockLength(int[] tree) {
+        int code = BrotliHuffmanTable.readSymbol(tree, reader);
+        return BLOCK_LENGTH_BASE[code] + reader.readBits(BLOCK_LENGTH_EXTRA_BITS[code]);
+    }
+
+    private int[][] readTrees(int numTrees, int alphabetSize) {
+        int[][] trees = new int[numTrees][];
+        for (int i = 0; i < numTrees; i++) {
+            trees[i] = BrotliHuffmanTable.read(reader, alphabetSize, codeLengths);
+        }
+        return trees;
+    }
+
+    private byte[] readContextMap(int size, int numTrees) {
+        byte[] contextMap = new byte[size];
+        if (numTrees < 2) {
+            return contextMap;
+        }
+        final BrotliBitReader reader = this.reader;
+        int maxRunLengthPrefix = reader.readBits(1) != 0 ? reader.readBits(4) + 1 : 0;
+        int[] table = BrotliHuffmanTable.read(reader, numTrees + maxRunLengthPrefix, codeLengths);
+        for (int i = 0; i < size;) {
+            int code = BrotliHuffmanTable.readSymbol(table, reader);
+            if (code == 0) {
+                i++;
+            } else if (code <= maxRunLengthPrefix) {
+                int zeros = (1 << code) + reader.readBits(code);
+                if (i + zeros > size) {
+                    throw new DecompressionException("context map run exceeds the context map");
+                }
+                i += zeros;
+            } else {
+                contextMap[i++] = (byte) (code - maxRunLengthPrefix);
+            }
+        }
+        if (reader.readBits(1) != 0) {
+            inverseMoveToFront(contextMap);
+        }
+        return contextMap;
+    }
+
+    private static void inverseMoveToFront(byte[] values) {
+        byte[] list = new byte[256];
+        for (int i = 0; i < list.length; i++) {
+            list[i] = (byte) i;
+        }
+        for (int i = 0; i < values.length; i++) {
+            int index = values[i] & 0xFF;
+            byte value = list[index];
+            values[i] = value;
+            System.arraycopy(list, 0, list, 1, index);
+            list[0] = value;
+        }
+    }
+
+    /**
+     * Switches to the next block of the given category.
+     */
+    private void switchBlockType(int category) {
+        int symbol = BrotliHuffmanTable.readSymbol(blockTypeTrees[category], reader);
+        int length = readBlockLength(blockLengthTrees[category]);
+
+        int type = symbol == 0 ? previousBlockTypes[category] :
+                   symbol == 1 ? blockTypes[category] + 1 : symbol - 2;
+        if (type >= numBlockTypes[category]) {
+            type -= numBlockTypes[category];
+        }
+        previousBlockTypes[category] = blockTypes[category];
+        blockTypes[category] = type;
+        blockLengths[category] = length;
+        if (category == LITERAL) {
+            literalContextMapOffset = type << LITERAL_CONTEXT_BITS;
+            contextLookupOffset = contextModes[type] << 9;
+        }
+        reader.mark();
+    }
+
+    private void readCommand() {
+        if (blockLengths[COMMAND] == 0) {
+            switchBlockType(COMMAND);
+        }
+        final BrotliBitReader reader = this.reader;
+        int command = BrotliHuffmanTable.readSymbol(commandTrees[blockTypes[COMMAND]], reader);
+        int cell = command >>> 6;
+        int insertCode = COMMAND_INSERT_OFFSET[cell] + (command >>> 3 & 7);
+        int copyCode = COMMAND_COPY_OFFSET[cell] + (command & 7);
+        int insertLength = INSERT_LENGTH_BASE[insertCode] + reader.readBits(INSERT_LENGTH_EXTRA_BITS[insertCode]);
+        int copyLength = COPY_LENGTH_BASE[copyCode] + reader.readBits(COPY_LENGTH_EXTRA_BITS[copyCode]);
+        reader.mark();
+
+        blockLengths[COMMAND]--;
+        if (insertLength > metaBlockRemaining) {
+            throw new DecompressionException("insert length exceeds the meta-block");
+        }
+        this.insertLength = insertLength;
+        this.copyLength = copyLength;
+        // -1 means that the distance code still has to be read.
+        distanceCode = command < IMPLICIT_DISTANCE_COMMANDS ? 0 : -1;
+    }
+
+    private void readLiterals(ChannelHandlerContext ctx, List<Object> out) {
+        final BrotliBitReader reader = this.reader;
+        final int[] blockLengths = this.blockLengths;
+        final byte[] contextLookup = CONTEXT_LOOKUP;
+        int position = windowPosition;
+        int last = position > 0 ? window[position - 1] & 0xFF : 0;
+        int secondLast = position > 1 ? window[position - 2] & 0xFF : 0;
+        while (insertLength > 0) {
+            if (blockLengths[LITERAL] == 0) {
+                switchBlockType(LITERAL);
+            }
+            if (windowPosition == window.length) {
+                makeRoom(ctx, out);
+            }
+            int context = contextLookup[contextLookupOffset + last] |
+                          contextLookup[contextLookupOffset + 256 + secondLast];
+            int[] tree = literalTrees[literalContextMap[literalContextMapOffset + context] & 0xFF];
+            int literal = BrotliHuffmanTable.readSymbol(tree, reader);
+            reader.mark();
+
+            window[windowPosition++] = (byte) literal;
+            secondLast = last;
+            last = literal;
+            blockLengths[LITERAL]--;
+            insertLength--;
+            metaBlockRemaining--;
+            decompressedSize++;
+        }
+    }
+
+    private void readDistance() {
+        if (distanceCode == 0) {
+            distance = distances[distanceIndex - 1 & 3];
+            return;
+        }
+        if (blockLengths[DISTANCE] == 0) {
+            switchBlockType(DISTANCE);
+        }
+        final BrotliBitReader reader = this.reader;
+        int context = copyLength > 4 ? 3 : copyLength - 2;
+        int treeIndex = distanceContextMap[(blockTypes[DISTANCE] << DISTANCE_CONTEXT_BITS) + context] & 0xFF;
+        int[] tree = distanceTrees[treeIndex];
+        int code = BrotliHuffmanTable.readSymbol(tree, reader);
+        int distance;
+        if (code < NUM_DISTANCE_SHORT_CODES) {
+            distance = distances[distanceIndex - 1 - DISTANCE_SHORT_CODE_INDEX[code] & 3] +
+                       DISTANCE_SHORT_CODE_OFFSET[code];
+            if (distance <= 0) {
+                throw new DecompressionException("invalid distance: " + distance);
+            }
+        } else if (code < NUM_DISTANCE_SHORT_CODES + numDirectDistanceCodes) {
+            distance = code - NUM_DISTANCE_SHORT_CODES + 1;
+        } else {
+            int postfixBits = distancePostfixBits;
+            int value = code - NUM_DISTANCE_SHORT_CODES - numDirectDistanceCodes;
+            int extraBits = 1 + (value >>> postfixBits + 1);
+            int offset = (2 + (value >>> postfixBits & 1) << extraBits) - 4;
+            distance = (offset + reader.readBits(extraBits) << postfixBits) +
+                       (value & (1 << postfixBits) - 1) + numDirectDistanceCodes + 1;
+        }
+        reader.mark();
+
+        blockLengths[DISTANCE]--;
+        distanceCode = code;
+        this.distance = distance;
+    }
+
+    private void copy(ChannelHandlerContext ctx, List<Object> out) {
+        int distance = this.distance;
+        int maxDistance = (int) Math.min(windowSize, decompressedSize);
+        if (distance > maxDistance) {
+            copyDictionaryWord(ctx, out, distance - maxDistance - 1);
+            return;
+        }
+        if (distanceCode != 0) {
+            distances[distanceIndex++ & 3] = distance;
+        }
+
+        int remaining = copyLength;
+        if (remaining > metaBlockRemaining) {
+            throw new DecompressionException("copy length exceeds the meta-block");
+        }
+        metaBlockRemaining -= remaining;
+        decompressedSize += remaining;
+        while (remaining > 0) {
+            if (windowPosition == window.length) {
+                makeRoom(ctx, out);
+            }
+            byte[] window = this.window;
+            int position = windowPosition;
+            int length = Math.min(remaining, window.length - position);
+            if (distance >= length) {
+                System.arraycopy(window, position - distance, window, position, length);
+            } else {
+                for (int i = position; i < position + length; i++) {
+                    window[i] = window[i - distance];
+                }
+            }
+            windowPosition += length;
+            remaining -= length;
+        }
+    }
+
+    private void copyDictionaryWord(ChannelHandlerContext ctx, List<Object> out, int wordId) {
+        int length = copyLength;
+        if (length < BrotliDictionary.MIN_WORD_LENGTH || length > BrotliDictionary.MAX_WORD_LENGTH) {
+            throw new DecompressionException("invalid dictionary word length: " + length);
+        }
+        int sizeBits = BrotliDictionary.sizeBits(length);
+        int transform = wordId >>> sizeBits;
+        if (transform >= BrotliDictionary.NUM_TRANSFORMS) {
+            throw new DecompressionException("invalid dictionary word transformation: " + transform);
+        }
+        if (wordBuffer == null) {
+            wordBuffer = new byte[BrotliDictionary.MAX_TRANSFORMED_WORD_LENGTH];
+        }
+        int wordLength = BrotliDictionary.transformWord(
+                wordBuffer, 0, length, wordId & (1 << sizeBits) - 1, transform);
+        if (wordLength > metaBlockRemaining) {
+            throw new DecompressionException("dictionary word exceeds the meta-block");
+        }
+        metaBlockRemaining -= wordLength;
+        decompressedSize += wordLength;
+        for (int i = 0; i < wordLength; i++) {
+            if (windowPosition == window.length) {
+                makeRoom(ctx, out);
+            }
+            window[windowPosition++] = wordBuffer[i];
+        }
+    }
+
+    private void emit(ChannelHandlerContext ctx, List<Object> out) {
+        int length = windowPosition - emittedPosition;
+        if (length > 0) {
+            ByteBuf uncompressed = ctx.alloc().buffer(length, length);
+            uncompressed.writeBytes(window, emittedPosition, length);
+            out.add(uncompressed);
+            emittedPosition = windowPosition;
+        }
+    }
+
+    /**
+     * Called once the window is full. Emits its content and then either grows it or moves the last
+     * {@link #windowSize} bytes that may still be referenced to its start.
+     */
+    private void makeRoom(ChannelHandlerContext ctx, List<Object> out) {
+        emit(ctx, out);
+        byte[] window = this.window;
+        if (window.length < windowLimit) {
+            byte[] newWindow = new byte[Math.min(windowLimit, window.length << 1)];
+            System.arraycopy(window, 0, newWindow, 0, windowPosition);
+            this.window = newWindow;
+        } else {
+            System.arraycopy(window, windowPosition - windowSize, window, 0, windowSize);
+            windowPosition = windowSize;
+            emittedPosition = windowSize;
+        }
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.util.CharsetUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The static dictionary of the Brotli format and the transformations that may be applied to its words, see
+ * section 8 of <a href="https://tools.ietf.org/html/rfc7932">RFC 7932</a>.
+ * <p>
+ * The dictionary is only loaded from the class path once a stream refers to it.
+ */
+final class BrotliDictionary {
+
+    static final int MIN_WORD_LENGTH = 4;
+    static final int MAX_WORD_LENGTH = 24;
+
+    /**
+     * Largest length of a transformed word, which includes the longest prefix and suffix.
+     */
+    static final int MAX_TRANSFORMED_WORD_LENGTH = MAX_WORD_LENGTH + 16;
+
+    private static final String RESOURCE = "brotli-dictionary.bin";
+    private static final int SIZE = 122784;
+
+    private static final int[] SIZE_BITS_BY_LENGTH = {
+            0, 0, 0, 0, 10, 10, 11, 11, 10, 10, 10, 10, 10, 9, 9, 8, 7, 7, 8, 7, 7, 6, 6, 5, 5 };
+    private static final int[] OFFSETS_BY_LENGTH = new int[MAX_WORD_LENGTH + 1];
+
+    private static final int IDENTITY = 0;
+    private static final int OMIT_LAST_1 = 1;
+    private static final int OMIT_LAST_2 = 2;
+    private static final int OMIT_LAST_3 = 3;
+    private static final int OMIT_LAST_4 = 4;
+    private static final int OMIT_LAST_5 = 5;
+    private static final int OMIT_LAST_6 = 6;
+    private static final int OMIT_LAST_7 = 7;
+    private static final int OMIT_LAST_8 = 8;
+    private static final int OMIT_LAST_9 = 9;
+    private static final int UPPERCASE_FIRST = 10;
+    private static final int UPPERCASE_ALL = 11;
+    private static final int OMIT_FIRST_1 = 12;
+    private static final int OMIT_FIRST_2 = 13;
+    private static final int OMIT_FIRST_3 = 14;
+    private static final int OMIT_FIRST_4 = 15;
+    private static final int OMIT_FIRST_5 = 16;
+    private static final int OMIT_FIRST_6 = 17;
+    private static final int OMIT_FIRST_7 = 18;
+    private static final int OMIT_FIRST_9 = 20;
+
+    /**
+     * The transformations in the order of their ids, as listed in appendix B of RFC 7932.
+     */
+    private static final Transform[] TRANSFORMS = {
+            transform("", IDENTITY, ""),
+            transform("", IDENTITY, " "),
+            transform(" ", IDENTITY, " "),
+            transform("", OMIT_FIRST_1, ""),
+            transform("", UPPERCASE_FIRST, " "),
+            transform("", IDENTITY, " the "),
+            transform(" ", IDENTITY, ""),
+            transform("s ", IDENTITY, " "),
+            transform("", IDENTITY, " of "),
+            transform("", UPPERCASE_FIRST, ""),
+            transform("", IDENTITY, " and "),
+            transform("", OMIT_FIRST_2, ""),
+            transform("", OMIT_LAST_1, ""),
+            transform(", ", IDENTITY, " "),
+            transform("", IDENTITY, ", "),
+            transform(" ", UPPERCASE_FIRST, " "),
+            transform("", IDENTITY, " in "),
+            transform("", IDENTITY, " to "),
+            transform("e ", IDENTITY, " "),
+            transform("", IDENTITY, "\""),
+            transform("", IDENTITY, "."),
+            transform("", IDENTITY, "\">"),
+            transform("", IDENTITY, "\n"),
+            transform("", OMIT_LAST_3, ""),
+            transform("", IDENTITY, "]"),
+            transform("", IDENTITY, " for "),
+            transform("", OMIT_FIRST_3, ""),
+            transform("", OMIT_LAST_2, ""),
+            transform("", IDENTITY, " a "),
+            transform("", IDENTITY, " that "),
+            transform(" ", UPPERCASE_FIRST, ""),
+            transform("", IDENTITY, ". "),
+            transform(".", IDENTITY, ""),
+            transform(" ", IDENTITY, ", "),
+            transform("", OMIT_FIRST_4, ""),
+            transform("", IDENTITY, " with "),
+            transform("", IDENTITY, "'"),
+            transform("", IDENTITY, " from "),
+            transform("", IDENTITY, " by "),
+            transform("", OMIT_FIRST_5, ""),
+            transform("", OMIT_FIRST_6, ""),
+            transform(" the ", IDENTITY, ""),
+            transform("", OMIT_LAST_4, ""),
+            transform("", IDENTITY, ". The "),
+            transform("", UPPERCASE_ALL, ""),
+            transform("", IDENTITY, " on "),
+            transform("", IDENTITY, " as "),
+            transform("", IDENTITY, " is "),
+            transform("", OMIT_LAST_7, ""),
+            transform("", OMIT_LAST_1, "ing "),
+            transform("", IDENTITY, "\n\t"),
+            transform("", IDENTITY, ":"),
+            transform(" ", IDENTITY, ". "),
+            transform("", IDENTITY, "ed "),
+            transform("", OMIT_FIRST_9, ""),
+            transform("", OMIT_FIRST_7, ""),
+            transform("", OMIT_LAST_6, ""),
+            transform("", IDENTITY, "("),
+            transform("", UPPERCASE_FIRST, ", "),
+            transform("", OMIT_LAST_8, ""),
+            transform("", IDENTITY, " at "),
+            transform("", IDENTITY, "ly "),
+            transform(" the ", IDENTITY, " of "),
+            transform("", OMIT_LAST_5, ""),
+            transform("", OMIT_LAST_9, ""),
+            transform(" ", UPPERCASE_FIRST, ", "),
+            transform("", UPPERCASE_FIRST, "\""),
+            transform(".", IDENTITY, "("),
+            transform("", UPPERCASE_ALL, " "),
+            transform("", UPPERCASE_FIRST, "\">"),
+            transform("", IDENTITY, "=\""),
+            transform(" ", IDENTITY, "."),
+            transform(".com/", IDENTITY, ""),
+            transform(" the ", IDENTITY, " of the "),
+            transform("", UPPERCASE_FIRST, "'"),
+            transform("", IDENTITY, ". This "),
+            transform("", IDENTITY, ","),
+            transform(".", IDENTITY, " "),
+            transform("", UPPERCASE_FIRST, "("),
+            transform("", UPPERCASE_FIRST, "."),
+            transform("", IDENTITY, " not "),
+            transform(" ", IDENTITY, "=\""),
+            transform("", IDENTITY, "er "),
+            transform(" ", UPPERCASE_ALL, " "),
+            transform("", IDENTITY, "al "),
+            transform(" ", UPPERCASE_ALL, ""),
+            transform("", IDENTITY, "='"),
+            transform("", UPPERCASE_ALL, "\""),
+            transform("", UPPERCASE_FIRST, ". "),
+            transform(" ", IDENTITY, "("),
+            transform("", IDENTITY, "ful "),
+            transform(" ", UPPERCASE_FIRST, ". "),
+            transform("", IDENTITY, "ive "),
+            transform("", IDENTITY, "less "),
+            transform("", UPPERCASE_ALL, "'"),
+            transform("", IDENTITY, "est "),
+            transform(" ", UPPERCASE_FIRST, "."),
+            transform("", UPPERCASE_ALL, "\">"),
+            transform(" ", IDENTITY, "='"),
+            transform("", UPPERCASE_FIRST, ","),
+            transform("", IDENTITY, "ize "),
+            transform("", UPPERCASE_ALL, "."),
+            transform("\u00a0", IDENTITY, ""),
+            transform(" ", IDENTITY, ","),
+            transform("", UPPERCASE_FIRST, "=\""),
+            transform("", UPPERCASE_ALL, "=\""),
+            transform("", IDENTITY, "ous "),
+            transform("", UPPERCASE_ALL, ", "),
+            transform("", UPPERCASE_FIRST, "='"),
+            transform(" ", UPPERCASE_FIRST, ","),
+            transform(" ", UPPERCASE_ALL, "=\""),
+            transform(" ", UPPERCASE_ALL, ", "),
+            transform("", UPPERCASE_ALL, ","),
+            transform("", UPPERCASE_ALL, "("),
+            transform("", UPPERCASE_ALL, ". "),
+            transform(" ", UPPERCASE_ALL, "."),
+            transform("", UPPERCASE_ALL, "='"),
+            transform(" ", UPPERCASE_ALL, ". "),
+            transform(" ", UPPERCASE_FIRST, "=\""),
+            transform(" ", UPPERCASE_ALL, "='"),
+            transform(" ", UPPERCASE_FIRST, "='")
+    };
+
+    static final int NUM_TRANSFORMS = TRANSFORMS.length;
+
+    private static final byte[] DATA;
+
+    static {
+        for (int length = MIN_WORD_LENGTH; length < MAX_WORD_LENGTH; length++) {
+            OFFSETS_BY_LENGTH[length + 1] = OFFSETS_BY_LENGTH[length] + (length << SIZE_BITS_BY_LENGTH[length]);
+        }
+        DATA = load();
+    }
+
+    private static byte[] load() {
+        InputStream in = BrotliDictionary.class.getResourceAsStream(RESOURCE);
+        if (in == null) {
+            throw new IllegalStateException("missing resource: " + RESOURCE);
+        }
+        try {
+            byte[] data = new byte[SIZE];
+            int length = 0;
+            int read;
+            while (length < SIZE && (read = in.read(data, length, SIZE - length)) > 0) {
+                length += read;
+            }
+            if (length != SIZE || in.read() != -1) {
+                throw new IllegalStateException("unexpected size of " + RESOURCE);
+            }
+            return data;
+        } catch (IOException e) {
+            throw new IllegalStateException("failed to read " + RESOURCE, e);
+        } finally {
+            try {
+                in.close();
+            } catch (IOException ignore) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bits used to select a word of the given {@code length}.
+     */
+    static int sizeBits(int length) {
+        return SIZE_BITS_BY_LENGTH[length];
+    }
+
+    /**
+     * Writes the word with the given {@code length} and {@code index} after applying the transformation
+     * {@code transformId} into {@code dst}.
+     *
+     * @return the number of bytes written, which is at most {@link #MAX_TRANSFORMED_WORD_LENGTH}
+     */
+    static int transformWord(byte[] dst, int dstOffset, int length, int index, int transformId) {
+        Transform transform = TRANSFORMS[transformId];
+        int position = dstOffset;
+        byte[] prefix = transform.prefix;
+        System.arraycopy(prefix, 0, dst, position, prefix.length);
+        position += prefix.length;
+
+        int wordOffset = OFFSETS_BY_LENGTH[length] + index * length;
+        int type = transform.type;
+        if (type <= OMIT_LAST_9) {
+            length = Math.max(0, length - type);
+        } else if (type >= OMIT_FIRST_1) {
+            int omitted = Math.min(length, type - OMIT_FIRST_1 + 1);
+            wordOffset += omitted;
+            length -= omitted;
+        }
+        System.arraycopy(DATA, wordOffset, dst, position, length);
+        if (type == UPPERCASE_FIRST) {
+            toUpperCase(dst, position, position + length);
+        } else if (type == UPPERCASE_ALL) {
+            for (int i = position; i < position + length;) {
+                i += toUpperCase(dst, i, position + length);
+            }
+        }
+        position += length;
+
+        byte[] suffix = transform.suffix;
+        System.arraycopy(suffix, 0, dst, position, suffix.length);
+        position += suffix.length;
+        return position - dstOffset;
+    }
+
+    /**
+     * Turns the UTF-8 character at {@code offset} into upper case the way the format defines it.
+     *
+     * @return the length of the character
+     */
+    private static int toUpperCase(byte[] word, int offset, int limit) {
+        int c = word[offset] & 0xFF;
+        if (c < 0xC0) {
+            if (c >= 'a' && c <= 'z') {
+                word[offset] ^= 32;
+            }
+            return 1;
+        }
+        if (c < 0xE0) {
+            if (offset + 1 < limit) {
+                word[offset + 1] ^= 32;
+            }
+            return 2;
+        }
+        if (offset + 2 < limit) {
+            word[offset + 2] ^= 5;
+        }
+        return 3;
+    }
+
+    private static Transform transform(String prefix, int type, String suffix) {
+        return new Transform(prefix.getBytes(CharsetUtil.UTF_8), type, suffix.getBytes(CharsetUtil.UTF_8));
+    }
+
+    private static final class Transform {
+        final byte[] prefix;
+        final int type;
+        final byte[] suffix;
+
+        Transform(byte[] prefix, int type, byte[] suffix) {
+            this.prefix = prefix;
+            this.type = type;
+            this.suffix = suffix;
+        }
+    }
+
+    private BrotliDictionary() { }
+}
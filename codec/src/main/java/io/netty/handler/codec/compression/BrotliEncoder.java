@@ -0,0 +1,382 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.ChannelPromiseNotifier;
+import io.netty.handler.codec.EncoderException;
+import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.internal.ObjectUtil;
+
+import java.util.concurrent.TimeUnit;
+
+import static io.netty.handler.codec.compression.BrotliConstants.*;
+import static io.netty.util.internal.ThrowableUtil.unknownStackTrace;
+
+/**
+ * Compresses a {@link ByteBuf} using the Brotli format.
+ *
+ * See <a href="https://tools.ietf.org/html/rfc7932">RFC 7932</a> for a full description of the format. This encoder
+ * is meant for compressing data on the fly: it only supports the low quality levels {@code 0} to {@code 4}, which
+ * trade compression ratio for speed. Data is compressed in meta-blocks of up to 64 KB, a meta-block is also written
+ * whenever the {@link ChannelPipeline} is flushed, followed by padding so the peer is able to decode all data
+ * written so far.
+ */
+public class BrotliEncoder extends MessageToByteEncoder<ByteBuf> {
+    private static final EncoderException ENCODE_FINSHED_EXCEPTION = unknownStackTrace(new EncoderException(
+                    new IllegalStateException("encode finished and not enough space to write remaining data")),
+                    BrotliEncoder.class, "encode");
+
+    static final int DEFAULT_QUALITY = 4;
+    static final int MAX_QUALITY = 4;
+    static final int DEFAULT_WINDOW_BITS = 18;
+    static final int DEFAULT_MAX_ENCODE_SIZE = Integer.MAX_VALUE;
+
+    private static final int MAX_BLOCK_SIZE = 1 << 16;
+
+    /**
+     * Largest number of bytes a meta-block needs in addition to its content, as it is only compressed if that is
+     * smaller than storing it uncompressed.
+     */
+    private static final int META_BLOCK_OVERHEAD = 5;
+
+    /**
+     * Stream header, and the empty meta-blocks written on flush and on close.
+     */
+    private static final int STREAM_OVERHEAD = 1 + 2 + 2;
+
+    private final int quality;
+    private final int windowBits;
+    private final int blockSize;
+
+    /**
+     * Maximum size for any buffer to write encoded (compressed) data into.
+     */
+    private final int maxEncodeSize;
+
+    private final BrotliBitWriter writer = new BrotliBitWriter();
+
+    /**
+     * Underlying compressor in use, created once the first meta-block is written.
+     */
+    private BrotliCompressor compressor;
+
+    /**
+     * The window followed by the data that was not compressed yet, starting at {@link #start}.
+     */
+    private byte[] data;
+    private int start;
+    private int end;
+
+    private boolean streamHeaderWritten;
+
+    /**
+     * Indicates if the compressed stream has been finished.
+     */
+    private volatile boolean finished;
+
+    /**
+     * Used to interact with its {@link ChannelPipeline} and other handlers.
+     */
+    private volatile ChannelHandlerContext ctx;
+
+    /**
+     * Creates a new encoder with the default quality ({@code 4}) and window size (256 KB).
+     */
+    public BrotliEncoder() {
+        this(DEFAULT_QUALITY);
+    }
+
+    /**
+     * Creates a new encoder with the specified {@code quality} and the default window size (256 KB).
+     *
+     * @param quality  {@code 0} yields the fastest compression and {@code 4} yields the best compression
+     */
+    public BrotliEncoder(int quality) {
+        this(quality, DEFAULT_WINDOW_BITS);
+    }
+
+    /**
+     * Creates a new encoder.
+     *
+     * @param quality     {@code 0} yields the fastest compression and {@code 4} yields the best compression
+     * @param windowBits  the base two logarithm of the window size, which limits how far back data may be referenced
+     *                    and so how much memory the encoder and the decoder need. Must be between {@code 10} and
+     *                    {@code 24}
+     */
+    public BrotliEncoder(int quality, int windowBits) {
+        this(quality, windowBits, DEFAULT_MAX_ENCODE_SIZE);
+    }
+
+    /**
+     * Creates a new encoder.
+     *
+     * @param quality        {@code 0} yields the fastest compression and {@code 4} yields the best compression
+     * @param windowBits     the base two logarithm of the window size, which limits how far back data may be
+     *                       referenced and so how much memory the encoder and the decoder need. Must be between
+     *                       {@code 10} and {@code 24}
+     * @param maxEncodeSize  the maximum size for an encode (compressed) buffer
+     */
+    public BrotliEncoder(int quality, int windowBits, int maxEncodeSize) {
+        if (quality < 0 || quality > MAX_QUALITY) {
+            throw new IllegalArgumentException(String.format(
+                    "quality: %d (expected: 0-%d)", quality, MAX_QUALITY));
+        }
+        if (windowBits < MIN_WINDOW_BITS || windowBits > MAX_WINDOW_BITS) {
+            throw new IllegalArgumentException(String.format(
+                    "windowBits: %d (expected: %d-%d)", windowBits, MIN_WINDOW_BITS, MAX_WINDOW_BITS));
+        }
+        this.quality = quality;
+        this.windowBits = windowBits;
+        blockSize = Math.min(1 << windowBits, MAX_BLOCK_SIZE);
+        this.maxEncodeSize = ObjectUtil.checkPositive(maxEncodeSize, "maxEncodeSize");
+    }
+
+    /**
+     * Returns the number of bytes that can be buffered before the next meta-block is written.
+     */
+    private int writableBytes() {
+        return Math.min(blockSize - (end - start), data.length - end);
+    }
+
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, ByteBuf msg, boolean preferDirect) {
+        return allocateBuffer(ctx, msg, preferDirect, true);
+    }
+
+    private ByteBuf allocateBuffer(ChannelHandlerContext ctx, ByteBuf msg, boolean preferDirect,
+                                   boolean allowEmptyReturn) {
+        int remaining = msg.readableBytes() + end - start;
+
+        // quick overflow check
+        if (remaining < 0) {
+            throw new EncoderException("too much data to allocate a buffer for compression");
+        }
+        if (allowEmptyReturn && msg.readableBytes() < writableBytes()) {
+            return Unpooled.EMPTY_BUFFER;
+        }
+
+        // Meta-blocks are never larger than their uncompressed content plus a header.
+        long targetBufSize = STREAM_OVERHEAD + remaining + (long) META_BLOCK_OVERHEAD * (remaining / blockSize + 2);
+        if (targetBufSize > maxEncodeSize) {
+            throw new EncoderException(String.format("requested encode buffer size (%d bytes) exceeds the maximum " +
+                                                     "allowable size (%d bytes)", targetBufSize, maxEncodeSize));
+        }
+
+        if (preferDirect) {
+            return ctx.alloc().ioBuffer((int) targetBufSize);
+        } else {
+            return ctx.alloc().heapBuffer((int) targetBufSize);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Encodes the input buffer into meta-blocks of up to {@link #blockSize} bytes in the output buffer. Data is only
+     * compressed and written once we hit the {@link #blockSize}; else, it is copied into the window to await more
+     * data.
+     */
+    @Override
+    protected void encode(ChannelHandlerContext ctx, ByteBuf in, ByteBuf out) throws Exception {
+        if (finished) {
+            if (!out.isWritable(in.readableBytes())) {
+                // out should be EMPTY_BUFFER because we should have allocated enough space above in allocateBuffer.
+                throw ENCODE_FINSHED_EXCEPTION;
+            }
+            out.writeBytes(in);
+            return;
+        }
+
+        int length;
+        while ((length = in.readableBytes()) > 0) {
+            final int nextChunkSize = Math.min(length, writableBytes());
+            in.readBytes(data, end, nextChunkSize);
+            end += nextChunkSize;
+
+            if (writableBytes() == 0) {
+                flushBufferedData(out);
+            }
+        }
+    }
+
+    private void writeStreamHeader() {
+        if (streamHeaderWritten) {
+            return;
+        }
+        streamHeaderWritten = true;
+        final BrotliBitWriter writer = this.writer;
+        if (windowBits == 16) {
+            writer.writeBits(0, 1);
+        } else if (windowBits > 17) {
+            writer.writeBits(1, 1);
+            writer.writeBits(windowBits - 17, 3);
+        } else {
+            writer.writeBits(1, 1);
+            writer.writeBits(0, 3);
+            writer.writeBits(windowBits == 17 ? 0 : windowBits - 8, 3);
+        }
+    }
+
+    private void flushBufferedData(ByteBuf out) {
+        writeStreamHeader();
+        if (end > start) {
+            if (compressor == null) {
+                compressor = new BrotliCompressor(windowBits, blockSize, 1 << quality);
+            }
+            compressor.compress(data, start, end, writer);
+            start = end;
+            if (end == data.length) {
+                // Keep the window and make room for the next meta-block.
+                int shift = end - (1 << windowBits);
+                System.arraycopy(data, shift, data, 0, end - shift);
+                compressor.slide(shift);
+                start -= shift;
+                end -= shift;
+            }
+        }
+        writer.drainTo(out);
+    }
+
+    /**
+     * Pads the stream up to the next byte boundary, using an empty metadata meta-block.
+     */
+    private void alignToByte(ByteBuf out) {
+        if (!writer.isAligned()) {
+            // ISLAST, MNIBBLES of a metadata block, the reserved bit and MSKIPBYTES.
+            writer.writeBits(3 << 1, 1 + 2 + 1 + 2);
+            writer.alignToByte();
+            writer.drainTo(out);
+        }
+    }
+
+    @Override
+    public void flush(final ChannelHandlerContext ctx) throws Exception {
+        if (!finished && (end > start || !writer.isAligned())) {
+            final ByteBuf buf = allocateBuffer(ctx, Unpooled.EMPTY_BUFFER, isPreferDirect(), false);
+            flushBufferedData(buf);
+            alignToByte(buf);
+            ctx.write(buf);
+        }
+        ctx.flush();
+    }
+
+    private ChannelFuture finishEncode(final ChannelHandlerContext ctx, ChannelPromise promise) {
+        if (finished) {
+            promise.setSuccess();
+            return promise;
+        }
+        finished = true;
+
+        final ByteBuf footer = ctx.alloc().heapBuffer(
+                STREAM_OVERHEAD + META_BLOCK_OVERHEAD * 2 + end - start);
+        flushBufferedData(footer);
+
+        // ISLAST and ISLASTEMPTY end the stream.
+        writer.writeBits(3, 2);
+        writer.alignToByte();
+        writer.drainTo(footer);
+
+        return ctx.writeAndFlush(footer, promise);
+    }
+
+    /**
+     * Returns {@code true} if and only if the compressed stream has been finished.
+     */
+    public boolean isClosed() {
+        return finished;
+    }
+
+    /**
+     * Close this {@link BrotliEncoder} and so finish the encoding.
+     *
+     * The returned {@link ChannelFuture} will be notified once the operation completes.
+     */
+    public ChannelFuture close() {
+        return close(ctx().newPromise());
+    }
+
+    /**
+     * Close this {@link BrotliEncoder} and so finish the encoding.
+     * The given {@link ChannelFuture} will be notified once the operation
+     * completes and will also be returned.
+     */
+    public ChannelFuture close(final ChannelPromise promise) {
+        ChannelHandlerContext ctx = ctx();
+        EventExecutor executor = ctx.executor();
+        if (executor.inEventLoop()) {
+            return finishEncode(ctx, promise);
+        } else {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ChannelFuture f = finishEncode(ctx(), promise);
+                    f.addListener(new ChannelPromiseNotifier(promise));
+                }
+            });
+            return promise;
+        }
+    }
+
+    @Override
+    public void close(final ChannelHandlerContext ctx, final ChannelPromise promise) throws Exception {
+        ChannelFuture f = finishEncode(ctx, ctx.newPromise());
+        f.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture f) throws Exception {
+                ctx.close(promise);
+            }
+        });
+
+        if (!f.isDone()) {
+            // Ensure the channel is closed even if the write operation completes in time.
+            ctx.executor().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    ctx.close(promise);
+                }
+            }, 10, TimeUnit.SECONDS); // FIXME: Magic number
+        }
+    }
+
+    private ChannelHandlerContext ctx() {
+        ChannelHandlerContext ctx = this.ctx;
+        if (ctx == null) {
+            throw new IllegalStateException("not added to a pipeline");
+        }
+        return ctx;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+        data = new byte[(1 << windowBits) + blockSize];
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        super.handlerRemoved(ctx);
+        data = null;
+        compressor = null;
+    }
+}
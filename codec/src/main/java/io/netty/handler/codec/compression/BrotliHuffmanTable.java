@@ -0,0 +1,257 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import java.util.Arrays;
+
+import static io.netty.handler.codec.compression.BrotliConstants.*;
+
+/**
+ * Reads the prefix code definitions of the Brotli format, see section 3 of
+ * <a href="https://tools.ietf.org/html/rfc7932">RFC 7932</a>, and decodes symbols with them.
+ * <p>
+ * A decoding table is an {@code int[]} indexed by the next {@value #ROOT_BITS} bits of the stream. Every entry
+ * holds a symbol in its upper and the length of its code in its lower 16 bits. Codes that are longer than
+ * {@value #ROOT_BITS} bits are resolved by a second level table whose offset is stored instead of the symbol.
+ */
+final class BrotliHuffmanTable {
+
+    private static final int ROOT_BITS = 8;
+    private static final int ROOT_SIZE = 1 << ROOT_BITS;
+
+    /**
+     * Decodes the next symbol.
+     */
+    static int readSymbol(int[] table, BrotliBitReader reader) {
+        int bits = reader.peekBits(MAX_HUFFMAN_CODE_LENGTH);
+        int entry = table[bits & ROOT_SIZE - 1];
+        int length = entry & 0xFFFF;
+        if (length > ROOT_BITS) {
+            entry = table[(entry >>> 16) + (bits >>> ROOT_BITS & (1 << length - ROOT_BITS) - 1)];
+            length = ROOT_BITS + (entry & 0xFFFF);
+        }
+        reader.skipBits(length);
+        return entry >>> 16;
+    }
+
+    /**
+     * Reads the definition of a prefix code for an alphabet of {@code alphabetSize} symbols.
+     *
+     * @param codeLengths  scratch space for at least {@code alphabetSize} code lengths
+     */
+    static int[] read(BrotliBitReader reader, int alphabetSize, int[] codeLengths) {
+        Arrays.fill(codeLengths, 0, alphabetSize, 0);
+        int skip = reader.readBits(2);
+        if (skip == 1) {
+            return readSimple(reader, alphabetSize, codeLengths);
+        }
+
+        // Code lengths of the code length alphabet, stored with a static prefix code.
+        int[] codeLengthCodeLengths = new int[CODE_LENGTH_CODES];
+        int space = 32;
+        int numCodes = 0;
+        for (int i = skip; i < CODE_LENGTH_CODES && space > 0; i++) {
+            int bits = reader.peekBits(4);
+            reader.skipBits(CODE_LENGTH_PREFIX_LENGTH[bits]);
+            int length = CODE_LENGTH_PREFIX_VALUE[bits];
+            codeLengthCodeLengths[CODE_LENGTH_CODE_ORDER[i]] = length;
+            if (length != 0) {
+                space -= 32 >>> length;
+                numCodes++;
+            }
+        }
+        if (space != 0 && numCodes != 1) {
+            throw new DecompressionException("invalid code length code lengths");
+        }
+        int[] codeLengthTable = build(codeLengthCodeLengths, CODE_LENGTH_CODES, numCodes == 1);
+
+        int symbol = 0;
+        int previousCodeLength = INITIAL_REPEATED_CODE_LENGTH;
+        int repeat = 0;
+        int repeatCodeLength = 0;
+        space = 1 << MAX_HUFFMAN_CODE_LENGTH;
+        while (symbol < alphabetSize && space > 0) {
+            int codeLength = readSymbol(codeLengthTable, reader);
+            if (codeLength < REPEAT_PREVIOUS_CODE_LENGTH) {
+                repeat = 0;
+                codeLengths[symbol++] = codeLength;
+                if (codeLength != 0) {
+                    previousCodeLength = codeLength;
+                    space -= (1 << MAX_HUFFMAN_CODE_LENGTH) >>> codeLength;
+                }
+                continue;
+            }
+
+            int extraBits = codeLength == REPEAT_PREVIOUS_CODE_LENGTH ? 2 : 3;
+            int newLength = codeLength == REPEAT_PREVIOUS_CODE_LENGTH ? previousCodeLength : 0;
+            if (repeatCodeLength != newLength) {
+                repeat = 0;
+                repeatCodeLength = newLength;
+            }
+            int oldRepeat = repeat;
+            if (repeat > 0) {
+                repeat = repeat - 2 << extraBits;
+            }
+            repeat += reader.readBits(extraBits) + 3;
+            int delta = repeat - oldRepeat;
+            if (symbol + delta > alphabetSize) {
+                throw new DecompressionException("code length repeat exceeds the alphabet");
+            }
+            Arrays.fill(codeLengths, symbol, symbol + delta, repeatCodeLength);
+            symbol += delta;
+            if (repeatCodeLength != 0) {
+                space -= delta << MAX_HUFFMAN_CODE_LENGTH - repeatCodeLength;
+            }
+        }
+        if (space != 0) {
+            throw new DecompressionException("invalid prefix code: code lengths do not form a complete code");
+        }
+        return build(codeLengths, alphabetSize, false);
+    }
+
+    private static int[] readSimple(BrotliBitReader reader, int alphabetSize, int[] codeLengths) {
+        int alphabetBits = 32 - Integer.numberOfLeadingZeros(alphabetSize - 1);
+        int numSymbols = reader.readBits(2) + 1;
+        int[] symbols = new int[numSymbols];
+        for (int i = 0; i < numSymbols; i++) {
+            int symbol = reader.readBits(alphabetBits);
+            if (symbol >= alphabetSize) {
+                throw new DecompressionException("invalid symbol in simple prefix code: " + symbol);
+            }
+            for (int j = 0; j < i; j++) {
+                if (symbols[j] == symbol) {
+                    throw new DecompressionException("duplicate symbol in simple prefix code: " + symbol);
+                }
+            }
+            symbols[i] = symbol;
+        }
+        switch (numSymbols) {
+            case 1:
+                return single(symbols[0]);
+            case 2:
+                codeLengths[symbols[0]] = 1;
+                codeLengths[symbols[1]] = 1;
+                break;
+            case 3:
+                codeLengths[symbols[0]] = 1;
+                codeLengths[symbols[1]] = 2;
+                codeLengths[symbols[2]] = 2;
+                break;
+            default:
+                if (reader.readBits(1) == 0) {
+                    for (int symbol : symbols) {
+                        codeLengths[symbol] = 2;
+                    }
+                } else {
+                    codeLengths[symbols[0]] = 1;
+                    codeLengths[symbols[1]] = 2;
+                    codeLengths[symbols[2]] = 3;
+                    codeLengths[symbols[3]] = 3;
+                }
+                break;
+        }
+        return build(codeLengths, alphabetSize, false);
+    }
+
+    /**
+     * Returns a table that decodes {@code symbol} without consuming any bits.
+     */
+    private static int[] single(int symbol) {
+        int[] table = new int[ROOT_SIZE];
+        Arrays.fill(table, symbol << 16);
+        return table;
+    }
+
+    /**
+     * Builds the decoding table of the canonical prefix code with the given complete code lengths.
+     *
+     * @param singleSymbol  {@code true} if only one symbol has a code, which is then decoded without consuming
+     *                      any bits
+     */
+    private static int[] build(int[] codeLengths, int alphabetSize, boolean singleSymbol) {
+        if (singleSymbol) {
+            for (int symbol = 0; symbol < alphabetSize; symbol++) {
+                if (codeLengths[symbol] != 0) {
+                    return single(symbol);
+                }
+            }
+        }
+
+        int[] count = new int[MAX_HUFFMAN_CODE_LENGTH + 1];
+        for (int symbol = 0; symbol < alphabetSize; symbol++) {
+            count[codeLengths[symbol]]++;
+        }
+        count[0] = 0;
+        int[] nextCode = new int[MAX_HUFFMAN_CODE_LENGTH + 1];
+        int code = 0;
+        for (int length = 1; length <= MAX_HUFFMAN_CODE_LENGTH; length++) {
+            code = code + count[length - 1] << 1;
+            nextCode[length] = code;
+        }
+
+        // The codes are stored starting with their most significant bit, so they are indexed reversed.
+        int[] reversedCodes = new int[alphabetSize];
+        int[] subTableBits = new int[ROOT_SIZE];
+        for (int symbol = 0; symbol < alphabetSize; symbol++) {
+            int length = codeLengths[symbol];
+            if (length != 0) {
+                int reversed = Integer.reverse(nextCode[length]++) >>> 32 - length;
+                reversedCodes[symbol] = reversed;
+                if (length > ROOT_BITS) {
+                    int root = reversed & ROOT_SIZE - 1;
+                    subTableBits[root] = Math.max(subTableBits[root], length - ROOT_BITS);
+                }
+            }
+        }
+        int[] subTableOffsets = new int[ROOT_SIZE];
+        int size = ROOT_SIZE;
+        for (int root = 0; root < ROOT_SIZE; root++) {
+            if (subTableBits[root] != 0) {
+                subTableOffsets[root] = size;
+                size += 1 << subTableBits[root];
+            }
+        }
+
+        int[] table = new int[size];
+        for (int root = 0; root < ROOT_SIZE; root++) {
+            if (subTableBits[root] != 0) {
+                table[root] = subTableOffsets[root] << 16 | ROOT_BITS + subTableBits[root];
+            }
+        }
+        for (int symbol = 0; symbol < alphabetSize; symbol++) {
+            int length = codeLengths[symbol];
+            if (length == 0) {
+                continue;
+            }
+            int reversed = reversedCodes[symbol];
+            if (length <= ROOT_BITS) {
+                for (int i = reversed; i < ROOT_SIZE; i += 1 << length) {
+                    table[i] = symbol << 16 | length;
+                }
+            } else {
+                int root = reversed & ROOT_SIZE - 1;
+                int offset = subTableOffsets[root];
+                int subLength = length - ROOT_BITS;
+                for (int i = reversed >>> ROOT_BITS; i < 1 << subTableBits[root]; i += 1 << subLength) {
+                    table[offset + i] = symbol << 16 | subLength;
+                }
+            }
+        }
+        return table;
+    }
+
+    private BrotliHuffmanTable() { }
+}
@@ -20,6 +20,7 @@ import io.netty.util.ByteProcessor;
 import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.PlatformDependent;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
 import java.util.zip.Adler32;
@@ -35,12 +36,28 @@ import java.util.zip.Checksum;
 abstract class ByteBufChecksum implements Checksum {
     private static final Method ADLER32_UPDATE_METHOD;
     private static final Method CRC32_UPDATE_METHOD;
+    private static final Constructor<?> CRC32C_CONSTRUCTOR;
+    private static final Method CRC32C_UPDATE_METHOD;
 
     static {
         // See if we can use fast-path when using ByteBuf that is not heap based as Adler32 and CRC32 added support
         // for update(ByteBuffer) in JDK8.
         ADLER32_UPDATE_METHOD = updateByteBuffer(new Adler32());
         CRC32_UPDATE_METHOD = updateByteBuffer(new CRC32());
+
+        // JDK9 added java.util.zip.CRC32C which is backed by an intrinsic on most platforms.
+        Constructor<?> crc32cConstructor = null;
+        Method crc32cUpdateMethod = null;
+        if (PlatformDependent.javaVersion() >= 9) {
+            try {
+                crc32cConstructor = Class.forName("java.util.zip.CRC32C").getConstructor();
+                crc32cUpdateMethod = updateByteBuffer((Checksum) crc32cConstructor.newInstance());
+            } catch (Throwable ignore) {
+                crc32cConstructor = null;
+            }
+        }
+        CRC32C_CONSTRUCTOR = crc32cUpdateMethod == null ? null : crc32cConstructor;
+        CRC32C_UPDATE_METHOD = crc32cUpdateMethod;
     }
 
     private final ByteProcessor updateProcessor = new ByteProcessor() {
@@ -55,7 +72,7 @@ abstract class ByteBufChecksum implements Checksum {
         if (PlatformDependent.javaVersion() >= 8) {
             try {
                 Method method = checksum.getClass().getDeclaredMethod("update", ByteBuffer.class);
-                method.invoke(method, ByteBuffer.allocate(1));
+                method.invoke(checksum, ByteBuffer.allocate(1));
                 return method;
             } catch (Throwable ignore) {
                 return null;
@@ -66,6 +83,9 @@ abstract class ByteBufChecksum implements Checksum {
 
     static ByteBufChecksum wrapChecksum(Checksum checksum) {
         ObjectUtil.checkNotNull(checksum, "checksum");
+        if (checksum instanceof ByteBufChecksum) {
+            return (ByteBufChecksum) checksum;
+        }
         if (checksum instanceof Adler32 && ADLER32_UPDATE_METHOD != null) {
             return new ReflectiveByteBufChecksum(checksum, ADLER32_UPDATE_METHOD);
         }
@@ -75,6 +95,21 @@ abstract class ByteBufChecksum implements Checksum {
         return new SlowByteBufChecksum(checksum);
     }
 
+    /**
+     * Returns a new CRC32C {@link ByteBufChecksum}, which delegates to {@code java.util.zip.CRC32C} when running
+     * on JDK9 or later and falls back to {@link Crc32c} otherwise.
+     */
+    static ByteBufChecksum newCrc32c() {
+        if (CRC32C_CONSTRUCTOR != null) {
+            try {
+                return new ReflectiveByteBufChecksum((Checksum) CRC32C_CONSTRUCTOR.newInstance(), CRC32C_UPDATE_METHOD);
+            } catch (Throwable ignore) {
+                // Fall through to the pure Java implementation.
+            }
+        }
+        return new Crc32c();
+    }
+
     /**
      * @see #update(byte[], int, int)
      */
@@ -100,7 +135,8 @@ abstract class ByteBufChecksum implements Checksum {
                 update(b.array(), b.arrayOffset() + off, len);
             } else {
                 try {
-                    method.invoke(checksum, CompressionUtil.safeNioBuffer(b));
+                    ByteBuffer buffer = b.nioBufferCount() == 1 ? b.internalNioBuffer(off, len) : b.nioBuffer(off, len);
+                    method.invoke(checksum, buffer);
                 } catch (Throwable cause) {
                     throw new Error();
                 }
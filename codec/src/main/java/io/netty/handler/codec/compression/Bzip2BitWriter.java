@@ -95,6 +95,30 @@ final class Bzip2BitWriter {
         writeBits(out, 32, value);
     }
 
+    /**
+     * Writes the first {@code bitLength} bits of {@code in}, which holds the output of another bit writer, to the
+     * output {@link ByteBuf}.
+     * @param bitLength The number of bits to write
+     */
+    void writeBits(ByteBuf out, ByteBuf in, long bitLength) {
+        for (; bitLength >= 32; bitLength -= 32) {
+            writeInt(out, in.readInt());
+        }
+        for (; bitLength >= 8; bitLength -= 8) {
+            writeBits(out, 8, in.readUnsignedByte());
+        }
+        if (bitLength > 0) {
+            writeBits(out, (int) bitLength, in.readUnsignedByte() >>> 8 - bitLength);
+        }
+    }
+
+    /**
+     * Returns the number of bits which were not written to the output {@link ByteBuf} yet.
+     */
+    int pendingBits() {
+        return bitCount;
+    }
+
     /**
      * Writes any remaining bits to the output {@link ByteBuf},
      * zero padding to a whole byte as required.
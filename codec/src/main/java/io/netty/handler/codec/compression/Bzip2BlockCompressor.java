@@ -285,6 +285,13 @@ final class Bzip2BlockCompressor {
         return blockLength == 0 && rleLength == 0;
     }
 
+    /**
+     * Gets the {@link Bzip2BitWriter} the block is written with.
+     */
+    Bzip2BitWriter writer() {
+        return writer;
+    }
+
     /**
      * Gets the CRC of the completed block. Only valid after calling {@link #close(ByteBuf)}.
      * @return The block's CRC
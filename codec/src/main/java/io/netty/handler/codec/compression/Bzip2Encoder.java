@@ -16,15 +16,19 @@
 package io.netty.handler.codec.compression;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.ChannelPromise;
 import io.netty.channel.ChannelPromiseNotifier;
+import io.netty.handler.codec.EncoderException;
 import io.netty.handler.codec.MessageToByteEncoder;
 import io.netty.util.concurrent.EventExecutor;
 
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 import static io.netty.handler.codec.compression.Bzip2Constants.*;
@@ -67,6 +71,11 @@ public class Bzip2Encoder extends MessageToByteEncoder<ByteBuf> {
      */
     private Bzip2BlockCompressor blockCompressor;
 
+    /**
+     * Compresses the blocks concurrently if not {@code null}.
+     */
+    private final ParallelBlockWriter parallelWriter;
+
     /**
      * (@code true} if the compressed stream has been finished, otherwise {@code false}.
      */
@@ -92,30 +101,82 @@ public class Bzip2Encoder extends MessageToByteEncoder<ByteBuf> {
      *        but give better compression ratios. {@code 9} will usually be the best value to use.
      */
     public Bzip2Encoder(final int blockSizeMultiplier) {
+        this(blockSizeMultiplier, null);
+    }
+
+    /**
+     * Creates a new bzip2 encoder with the specified {@code blockSizeMultiplier} that compresses blocks
+     * concurrently on the specified {@link Executor}. The compressed blocks are written in order, and the channel
+     * is marked as not writable while too many blocks are waiting for compression.
+     * @param blockSizeMultiplier
+     *        The Bzip2 block size as a multiple of 100,000 bytes (minimum {@code 1}, maximum {@code 9}).
+     *        Larger block sizes require more memory for both compression and decompression,
+     *        but give better compression ratios. {@code 9} will usually be the best value to use.
+     * @param executor
+     *        The {@link Executor} which compresses the blocks, or {@code null} to compress them on the event loop.
+     */
+    public Bzip2Encoder(final int blockSizeMultiplier, Executor executor) {
         if (blockSizeMultiplier < MIN_BLOCK_SIZE || blockSizeMultiplier > MAX_BLOCK_SIZE) {
             throw new IllegalArgumentException(
                     "blockSizeMultiplier: " + blockSizeMultiplier + " (expected: 1-9)");
         }
         streamBlockSize = blockSizeMultiplier * BASE_BLOCK_SIZE;
+        parallelWriter = executor == null ? null : new ParallelBlockWriter(
+                executor, (long) streamBlockSize * ParallelBlockWriter.DEFAULT_MAX_PENDING_BLOCKS);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (parallelWriter == null || !acceptOutboundMessage(msg)) {
+            super.write(ctx, msg, promise);
+            return;
+        }
+        // Everything is written through the parallelWriter to keep the order, so the promise must only be notified
+        // once the blocks created from the message were written.
+        ByteBuf in = (ByteBuf) msg;
+        boolean success = false;
+        parallelWriter.deferWrites();
+        try {
+            encode(ctx, in, Unpooled.EMPTY_BUFFER);
+            success = true;
+        } catch (EncoderException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new EncoderException(e);
+        } finally {
+            in.release();
+            // If encoding failed the promise is failed by the pipeline.
+            parallelWriter.notifyWritten(ctx, success ? promise : null);
+        }
     }
 
     @Override
     protected void encode(ChannelHandlerContext ctx, ByteBuf in, ByteBuf out) throws Exception {
         if (finished) {
-            out.writeBytes(in);
+            if (parallelWriter != null) {
+                parallelWriter.write(ctx, in.readRetainedSlice(in.readableBytes()), null);
+            } else {
+                out.writeBytes(in);
+            }
             return;
         }
 
         for (;;) {
             switch (currentState) {
                 case INIT:
-                    out.ensureWritable(4);
-                    out.writeMedium(MAGIC_NUMBER);
-                    out.writeByte('0' + streamBlockSize / BASE_BLOCK_SIZE);
+                    if (parallelWriter != null) {
+                        ByteBuf header = ctx.alloc().buffer(4);
+                        writeHeader(header);
+                        parallelWriter.write(ctx, header, null);
+                    } else {
+                        out.ensureWritable(4);
+                        writeHeader(out);
+                    }
                     currentState = State.INIT_BLOCK;
                     // fall through
                 case INIT_BLOCK:
-                    blockCompressor = new Bzip2BlockCompressor(writer, streamBlockSize);
+                    blockCompressor = new Bzip2BlockCompressor(
+                            parallelWriter != null ? new Bzip2BitWriter() : writer, streamBlockSize);
                     currentState = State.WRITE_DATA;
                     // fall through
                 case WRITE_DATA:
@@ -136,7 +197,11 @@ public class Bzip2Encoder extends MessageToByteEncoder<ByteBuf> {
                     currentState = State.CLOSE_BLOCK;
                     // fall through
                 case CLOSE_BLOCK:
-                    closeBlock(out);
+                    if (parallelWriter != null) {
+                        submitBlock(ctx);
+                    } else {
+                        closeBlock(out);
+                    }
                     currentState = State.INIT_BLOCK;
                     break;
                 default:
@@ -145,6 +210,21 @@ public class Bzip2Encoder extends MessageToByteEncoder<ByteBuf> {
         }
     }
 
+    private void writeHeader(ByteBuf out) {
+        out.writeMedium(MAGIC_NUMBER);
+        out.writeByte('0' + streamBlockSize / BASE_BLOCK_SIZE);
+    }
+
+    /**
+     * Submit current block for concurrent compression.
+     */
+    private void submitBlock(ChannelHandlerContext ctx) {
+        final Bzip2BlockCompressor blockCompressor = this.blockCompressor;
+        if (blockCompressor != null && !blockCompressor.isEmpty()) {
+            parallelWriter.submit(ctx, new Bzip2Block(blockCompressor, ctx.alloc()));
+        }
+    }
+
     /**
      * Close current block and update {@link #streamCRC}.
      */
@@ -223,22 +303,45 @@ public class Bzip2Encoder extends MessageToByteEncoder<ByteBuf> {
         }
         finished = true;
 
+        if (parallelWriter != null) {
+            submitBlock(ctx);
+            blockCompressor = null;
+            parallelWriter.write(ctx, new ParallelBlockWriter.UncompressedBlock() {
+                @Override
+                ByteBuf encoded(ChannelHandlerContext ctx) {
+                    ByteBuf footer = ctx.alloc().buffer();
+                    writeFooter(footer);
+                    return footer;
+                }
+
+                @Override
+                void release() {
+                    // NOOP
+                }
+            }, promise);
+            parallelWriter.flush(ctx);
+            return promise;
+        }
+
         final ByteBuf footer = ctx.alloc().buffer();
         closeBlock(footer);
 
-        final int streamCRC = this.streamCRC;
-        final Bzip2BitWriter writer = this.writer;
         try {
-            writer.writeBits(footer, 24, END_OF_STREAM_MAGIC_1);
-            writer.writeBits(footer, 24, END_OF_STREAM_MAGIC_2);
-            writer.writeInt(footer, streamCRC);
-            writer.flush(footer);
+            writeFooter(footer);
         } finally {
             blockCompressor = null;
         }
         return ctx.writeAndFlush(footer, promise);
     }
 
+    private void writeFooter(ByteBuf footer) {
+        final Bzip2BitWriter writer = this.writer;
+        writer.writeBits(footer, 24, END_OF_STREAM_MAGIC_1);
+        writer.writeBits(footer, 24, END_OF_STREAM_MAGIC_2);
+        writer.writeInt(footer, streamCRC);
+        writer.flush(footer);
+    }
+
     private ChannelHandlerContext ctx() {
         ChannelHandlerContext ctx = this.ctx;
         if (ctx == null) {
@@ -247,8 +350,75 @@ public class Bzip2Encoder extends MessageToByteEncoder<ByteBuf> {
         return ctx;
     }
 
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        if (parallelWriter != null) {
+            parallelWriter.flush(ctx);
+        } else {
+            ctx.flush();
+        }
+    }
+
     @Override
     public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
         this.ctx = ctx;
     }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        if (parallelWriter != null) {
+            parallelWriter.release();
+        }
+        super.handlerRemoved(ctx);
+    }
+
+    /**
+     * A block which is compressed with its own {@link Bzip2BitWriter} and then appended to the stream.
+     */
+    private final class Bzip2Block extends ParallelBlockWriter.Block {
+        private final Bzip2BlockCompressor blockCompressor;
+        private final ByteBufAllocator alloc;
+        private ByteBuf compressed;
+        private long bitLength;
+
+        Bzip2Block(Bzip2BlockCompressor blockCompressor, ByteBufAllocator alloc) {
+            super(streamBlockSize);
+            this.blockCompressor = blockCompressor;
+            this.alloc = alloc;
+        }
+
+        @Override
+        void compress() {
+            final Bzip2BitWriter writer = blockCompressor.writer();
+            ByteBuf compressed = alloc.buffer();
+            try {
+                blockCompressor.close(compressed);
+                bitLength = compressed.readableBytes() * 8L + writer.pendingBits();
+                writer.flush(compressed);
+            } catch (RuntimeException e) {
+                compressed.release();
+                throw e;
+            }
+            this.compressed = compressed;
+        }
+
+        @Override
+        ByteBuf encoded(ChannelHandlerContext ctx) {
+            ByteBuf out = ctx.alloc().buffer(compressed.readableBytes() + 4);
+            writer.writeBits(out, compressed, bitLength);
+            compressed.release();
+            compressed = null;
+            final int blockCRC = blockCompressor.crc();
+            streamCRC = (streamCRC << 1 | streamCRC >>> 31) ^ blockCRC;
+            return out;
+        }
+
+        @Override
+        void release() {
+            if (compressed != null) {
+                compressed.release();
+                compressed = null;
+            }
+        }
+    }
 }
@@ -26,6 +26,10 @@ import java.util.zip.Inflater;
 
 /**
  * Decompress a {@link ByteBuf} using the inflate algorithm.
+ * <p>
+ * When running on Java 11 or later, direct buffers are decompressed into direct buffers without being copied into a
+ * {@code byte[]} first. The underlying {@link Inflater} is borrowed from a pool that is local to the event loop and
+ * returned once the handler is removed.
  */
 public class JdkZlibDecoder extends ZlibDecoder {
     private static final int FHCRC = 0x02;
@@ -35,6 +39,8 @@ public class JdkZlibDecoder extends ZlibDecoder {
     private static final int FRESERVED = 0xE0;
 
     private Inflater inflater;
+    private final JdkZlibNio nio = JdkZlibNio.isSupported() ? new JdkZlibNio() : null;
+    private boolean nowrap;
     private final byte[] dictionary;
 
     // GZIP related
@@ -90,15 +96,14 @@ public class JdkZlibDecoder extends ZlibDecoder {
         }
         switch (wrapper) {
             case GZIP:
-                inflater = new Inflater(true);
+                nowrap = true;
                 crc = ByteBufChecksum.wrapChecksum(new CRC32());
                 break;
             case NONE:
-                inflater = new Inflater(true);
+                nowrap = true;
                 crc = null;
                 break;
             case ZLIB:
-                inflater = new Inflater();
                 crc = null;
                 break;
             case ZLIB_OR_NONE:
@@ -136,11 +141,16 @@ public class JdkZlibDecoder extends ZlibDecoder {
                 return;
             }
 
-            boolean nowrap = !looksLikeZlib(in.getShort(in.readerIndex()));
-            inflater = new Inflater(nowrap);
+            nowrap = !looksLikeZlib(in.getShort(in.readerIndex()));
             decideZlibOrNone = false;
         }
 
+        Inflater inflater = this.inflater;
+        if (inflater == null) {
+            inflater = JdkZlibPool.acquireInflater(nowrap);
+            this.inflater = inflater;
+        }
+
         if (crc != null) {
             switch (gzipState) {
                 case FOOTER_START:
@@ -159,26 +169,37 @@ public class JdkZlibDecoder extends ZlibDecoder {
             readableBytes = in.readableBytes();
         }
 
+        ByteBuf decompressed;
         if (in.hasArray()) {
             inflater.setInput(in.array(), in.arrayOffset() + in.readerIndex(), readableBytes);
+            decompressed = ctx.alloc().heapBuffer(readableBytes << 1);
+        } else if (nio != null && in.nioBufferCount() == 1) {
+            // let zlib read directly from the memory of the buffer and keep the result direct as well
+            nio.setInput(inflater, in.internalNioBuffer(in.readerIndex(), readableBytes));
+            decompressed = ctx.alloc().directBuffer(readableBytes << 1);
         } else {
             byte[] array = new byte[readableBytes];
             in.getBytes(in.readerIndex(), array);
             inflater.setInput(array);
+            decompressed = ctx.alloc().heapBuffer(readableBytes << 1);
         }
 
-        ByteBuf decompressed = ctx.alloc().heapBuffer(inflater.getRemaining() << 1);
         try {
             boolean readFooter = false;
             while (!inflater.needsInput()) {
-                byte[] outArray = decompressed.array();
                 int writerIndex = decompressed.writerIndex();
-                int outIndex = decompressed.arrayOffset() + writerIndex;
-                int outputLength = inflater.inflate(outArray, outIndex, decompressed.writableBytes());
+                int outputLength;
+                if (decompressed.hasArray()) {
+                    outputLength = inflater.inflate(decompressed.array(), decompressed.arrayOffset() + writerIndex,
+                                                    decompressed.writableBytes());
+                } else {
+                    outputLength = nio.inflate(
+                            inflater, decompressed.internalNioBuffer(writerIndex, decompressed.writableBytes()));
+                }
                 if (outputLength > 0) {
                     decompressed.writerIndex(writerIndex + outputLength);
                     if (crc != null) {
-                        crc.update(outArray, outIndex, outputLength);
+                        crc.update(decompressed, writerIndex, outputLength);
                     }
                 } else {
                     if (inflater.needsDictionary()) {
@@ -225,8 +246,10 @@ public class JdkZlibDecoder extends ZlibDecoder {
     @Override
     protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
         super.handlerRemoved0(ctx);
+        Inflater inflater = this.inflater;
         if (inflater != null) {
-            inflater.end();
+            this.inflater = null;
+            JdkZlibPool.releaseInflater(inflater, nowrap);
         }
     }
 
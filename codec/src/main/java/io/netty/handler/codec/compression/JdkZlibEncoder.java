@@ -29,18 +29,25 @@ import java.util.zip.Deflater;
 
 /**
  * Compresses a {@link ByteBuf} using the deflate algorithm.
+ * <p>
+ * When running on Java 11 or later, direct buffers are compressed in place without being copied into a
+ * {@code byte[]} first. Unless a preset dictionary is used the underlying {@link Deflater} is borrowed from a pool
+ * that is local to the event loop and returned once the stream is finished or the handler is removed.
  */
 public class JdkZlibEncoder extends ZlibEncoder {
 
     private final ZlibWrapper wrapper;
-    private final Deflater deflater;
+    private final int compressionLevel;
+    private final boolean pooled;
+    private Deflater deflater;
+    private final JdkZlibNio nio = JdkZlibNio.isSupported() ? new JdkZlibNio() : null;
     private volatile boolean finished;
     private volatile ChannelHandlerContext ctx;
 
     /*
      * GZIP support
      */
-    private final CRC32 crc = new CRC32();
+    private final ByteBufChecksum crc = ByteBufChecksum.wrapChecksum(new CRC32());
     private static final byte[] gzipHeader = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
     private boolean writeHeader = true;
 
@@ -105,7 +112,8 @@ public class JdkZlibEncoder extends ZlibEncoder {
         }
 
         this.wrapper = wrapper;
-        deflater = new Deflater(compressionLevel, wrapper != ZlibWrapper.ZLIB);
+        this.compressionLevel = compressionLevel;
+        pooled = true;
     }
 
     /**
@@ -146,6 +154,8 @@ public class JdkZlibEncoder extends ZlibEncoder {
         }
 
         wrapper = ZlibWrapper.ZLIB;
+        this.compressionLevel = compressionLevel;
+        pooled = false;
         deflater = new Deflater(compressionLevel);
         deflater.setDictionary(dictionary);
     }
@@ -199,20 +209,6 @@ public class JdkZlibEncoder extends ZlibEncoder {
             return;
         }
 
-        int offset;
-        byte[] inAry;
-        if (uncompressed.hasArray()) {
-            // if it is backed by an array we not need to to do a copy at all
-            inAry = uncompressed.array();
-            offset = uncompressed.arrayOffset() + uncompressed.readerIndex();
-            // skip all bytes as we will consume all of them
-            uncompressed.skipBytes(len);
-        } else {
-            inAry = new byte[len];
-            uncompressed.readBytes(inAry);
-            offset = 0;
-        }
-
         if (writeHeader) {
             writeHeader = false;
             if (wrapper == ZlibWrapper.GZIP) {
@@ -221,10 +217,24 @@ public class JdkZlibEncoder extends ZlibEncoder {
         }
 
         if (wrapper == ZlibWrapper.GZIP) {
-            crc.update(inAry, offset, len);
+            crc.update(uncompressed, uncompressed.readerIndex(), len);
+        }
+
+        Deflater deflater = deflater();
+        if (uncompressed.hasArray()) {
+            // if it is backed by an array we not need to to do a copy at all
+            deflater.setInput(uncompressed.array(), uncompressed.arrayOffset() + uncompressed.readerIndex(), len);
+        } else if (nio != null && uncompressed.nioBufferCount() == 1) {
+            // let zlib read directly from the memory of the buffer
+            nio.setInput(deflater, uncompressed.internalNioBuffer(uncompressed.readerIndex(), len));
+        } else {
+            byte[] inAry = new byte[len];
+            uncompressed.getBytes(uncompressed.readerIndex(), inAry);
+            deflater.setInput(inAry);
         }
+        // skip all bytes as we will consume all of them
+        uncompressed.skipBytes(len);
 
-        deflater.setInput(inAry, offset, len);
         while (!deflater.needsInput()) {
             deflate(out);
         }
@@ -246,6 +256,10 @@ public class JdkZlibEncoder extends ZlibEncoder {
                     // no op
             }
         }
+        if (!msg.hasArray() && nio != null) {
+            // Keep direct memory direct as zlib can write into it without an extra copy.
+            return ctx.alloc().directBuffer(sizeEstimate);
+        }
         return ctx.alloc().heapBuffer(sizeEstimate);
     }
 
@@ -277,6 +291,7 @@ public class JdkZlibEncoder extends ZlibEncoder {
         }
 
         finished = true;
+        Deflater deflater = deflater();
         ByteBuf footer = ctx.alloc().heapBuffer();
         if (writeHeader && wrapper == ZlibWrapper.GZIP) {
             // Write the GZIP header first if not written yet. (i.e. user wrote nothing.)
@@ -306,7 +321,7 @@ public class JdkZlibEncoder extends ZlibEncoder {
             footer.writeByte(uncBytes >>> 16);
             footer.writeByte(uncBytes >>> 24);
         }
-        deflater.end();
+        releaseDeflater();
         return ctx.writeAndFlush(footer, promise);
     }
 
@@ -314,14 +329,52 @@ public class JdkZlibEncoder extends ZlibEncoder {
         int numBytes;
         do {
             int writerIndex = out.writerIndex();
-            numBytes = deflater.deflate(
-                    out.array(), out.arrayOffset() + writerIndex, out.writableBytes(), Deflater.SYNC_FLUSH);
+            if (out.hasArray()) {
+                numBytes = deflater.deflate(
+                        out.array(), out.arrayOffset() + writerIndex, out.writableBytes(), Deflater.SYNC_FLUSH);
+            } else {
+                numBytes = nio.deflate(
+                        deflater, out.internalNioBuffer(writerIndex, out.writableBytes()), Deflater.SYNC_FLUSH);
+            }
             out.writerIndex(writerIndex + numBytes);
         } while (numBytes > 0);
     }
 
+    private Deflater deflater() {
+        Deflater deflater = this.deflater;
+        if (deflater == null) {
+            deflater = JdkZlibPool.acquireDeflater(compressionLevel, wrapper != ZlibWrapper.ZLIB);
+            this.deflater = deflater;
+        }
+        return deflater;
+    }
+
+    private void releaseDeflater() {
+        Deflater deflater = this.deflater;
+        if (deflater != null) {
+            this.deflater = null;
+            if (pooled) {
+                JdkZlibPool.releaseDeflater(deflater, compressionLevel, wrapper != ZlibWrapper.ZLIB);
+            } else {
+                deflater.end();
+            }
+        }
+    }
+
     @Override
     public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
         this.ctx = ctx;
     }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        try {
+            super.handlerRemoved(ctx);
+        } finally {
+            if (!finished) {
+                finished = true;
+                releaseDeflater();
+            }
+        }
+    }
 }
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Gives access to the {@link ByteBuffer} based methods of {@link Deflater} and {@link Inflater} that were added in
+ * Java 11, which let zlib read from and write to direct memory without copying it into a {@code byte[]} first.
+ * <p>
+ * The methods are invoked via reflection as the code base still targets Java 6, which rules out
+ * {@code java.lang.invoke.MethodHandle}. To keep the per call overhead low each instance reuses its argument arrays.
+ */
+final class JdkZlibNio {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(JdkZlibNio.class);
+
+    private static final Method DEFLATER_SET_INPUT;
+    private static final Method DEFLATER_DEFLATE;
+    private static final Method INFLATER_SET_INPUT;
+    private static final Method INFLATER_INFLATE;
+
+    static {
+        Method deflaterSetInput = null;
+        Method deflaterDeflate = null;
+        Method inflaterSetInput = null;
+        Method inflaterInflate = null;
+        if (PlatformDependent.javaVersion() >= 11) {
+            try {
+                deflaterSetInput = Deflater.class.getMethod("setInput", ByteBuffer.class);
+                deflaterDeflate = Deflater.class.getMethod("deflate", ByteBuffer.class, int.class);
+                inflaterSetInput = Inflater.class.getMethod("setInput", ByteBuffer.class);
+                inflaterInflate = Inflater.class.getMethod("inflate", ByteBuffer.class);
+            } catch (Throwable cause) {
+                logger.debug("Deflater/Inflater ByteBuffer methods: unavailable", cause);
+                deflaterSetInput = null;
+                deflaterDeflate = null;
+                inflaterSetInput = null;
+                inflaterInflate = null;
+            }
+        }
+        DEFLATER_SET_INPUT = deflaterSetInput;
+        DEFLATER_DEFLATE = deflaterDeflate;
+        INFLATER_SET_INPUT = inflaterSetInput;
+        INFLATER_INFLATE = inflaterInflate;
+        logger.debug("Deflater/Inflater ByteBuffer methods: {}", isSupported());
+    }
+
+    // Reused for every call, so invoking the methods via reflection does not allocate a new varargs array each time.
+    private final Object[] oneArg = new Object[1];
+    private final Object[] twoArgs = new Object[2];
+
+    /**
+     * Creates a new instance, which must only be used if {@link #isSupported()} returns {@code true}. Instances are
+     * not thread-safe, every encoder and decoder uses its own.
+     */
+    JdkZlibNio() {
+        assert isSupported();
+    }
+
+    /**
+     * Returns {@code true} if the {@link ByteBuffer} based methods can be used.
+     */
+    static boolean isSupported() {
+        return DEFLATER_SET_INPUT != null;
+    }
+
+    void setInput(Deflater deflater, ByteBuffer input) {
+        Object[] args = oneArg;
+        args[0] = input;
+        try {
+            DEFLATER_SET_INPUT.invoke(deflater, args);
+        } catch (InvocationTargetException e) {
+            throw rethrow(e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            args[0] = null;
+        }
+    }
+
+    int deflate(Deflater deflater, ByteBuffer output, int flush) {
+        Object[] args = twoArgs;
+        args[0] = output;
+        // The flush modes are all in the range of the Integer cache, so this does not allocate.
+        args[1] = flush;
+        try {
+            return (Integer) DEFLATER_DEFLATE.invoke(deflater, args);
+        } catch (InvocationTargetException e) {
+            throw rethrow(e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            args[0] = null;
+        }
+    }
+
+    void setInput(Inflater inflater, ByteBuffer input) {
+        Object[] args = oneArg;
+        args[0] = input;
+        try {
+            INFLATER_SET_INPUT.invoke(inflater, args);
+        } catch (InvocationTargetException e) {
+            throw rethrow(e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            args[0] = null;
+        }
+    }
+
+    int inflate(Inflater inflater, ByteBuffer output) throws DataFormatException {
+        Object[] args = oneArg;
+        args[0] = output;
+        try {
+            return (Integer) INFLATER_INFLATE.invoke(inflater, args);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof DataFormatException) {
+                throw (DataFormatException) e.getCause();
+            }
+            throw rethrow(e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            args[0] = null;
+        }
+    }
+
+    private static RuntimeException rethrow(InvocationTargetException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new CompressionException(cause);
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.concurrent.FastThreadLocalThread;
+import io.netty.util.internal.LongCounter;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Pools {@link Deflater}s and {@link Inflater}s per {@link FastThreadLocalThread}, so the native zlib state is reused
+ * across the streams handled by an event loop instead of being allocated for each of them, e.g. for every compressed
+ * HTTP response. Codecs which only need a context while a message is processed, like WebSocket compression without
+ * context takeover, should borrow it for that time only, so idle channels do not hold any native memory.
+ * <p>
+ * The pool also accounts for all contexts it created that were not ended yet, see {@link #usedNativeMemory()}.
+ * <p>
+ * Every borrowed context must be returned exactly once, from the thread that borrowed it, and must not be used
+ * afterwards. A context whose stream was not completed cleanly, e.g. because an exception was thrown while it was
+ * used, should be given back with {@link #discardDeflater(Deflater)} or {@link #discardInflater(Inflater)}.
+ */
+@UnstableApi
+public final class JdkZlibPool {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(JdkZlibPool.class);
+
+    /**
+     * The native memory used by a {@link Deflater} with the default window size and memory level, as documented
+     * by zlib: {@code (1 << (windowBits + 2)) + (1 << (memLevel + 9))} plus a few kilobytes.
+     */
+    private static final int DEFLATER_NATIVE_MEMORY = (1 << 17) + (1 << 17) + 6 * 1024;
+
+    /**
+     * The native memory used by an {@link Inflater}, as documented by zlib: {@code 1 << windowBits} plus about
+     * 7 kilobytes.
+     */
+    private static final int INFLATER_NATIVE_MEMORY = (1 << 15) + 7 * 1024;
+
+    private static final int MAX_POOLED;
+
+    private static final LongCounter DEFLATERS = PlatformDependent.newLongCounter();
+    private static final LongCounter POOLED_DEFLATERS = PlatformDependent.newLongCounter();
+    private static final LongCounter INFLATERS = PlatformDependent.newLongCounter();
+    private static final LongCounter POOLED_INFLATERS = PlatformDependent.newLongCounter();
+
+    static {
+        MAX_POOLED = Math.max(0, SystemPropertyUtil.getInt("io.netty.jdkzlib.maxPooled", 8));
+        logger.debug("-Dio.netty.jdkzlib.maxPooled: {}", MAX_POOLED);
+    }
+
+    private static final FastThreadLocal<Pools> POOLS = new FastThreadLocal<Pools>() {
+        @Override
+        protected Pools initialValue() {
+            return new Pools();
+        }
+
+        @Override
+        protected void onRemoval(Pools pools) {
+            pools.end();
+        }
+    };
+
+    private JdkZlibPool() { }
+
+    /**
+     * Borrows a {@link Deflater} with the given settings, which must be returned with
+     * {@link #releaseDeflater(Deflater, int, boolean)} once it is not needed anymore.
+     */
+    public static Deflater acquireDeflater(int compressionLevel, boolean nowrap) {
+        if (compressionLevel < 0 || compressionLevel > 9) {
+            throw new IllegalArgumentException("compressionLevel: " + compressionLevel + " (expected: 0-9)");
+        }
+        if (isPooling()) {
+            Deflater deflater = POOLS.get().deflaters[deflaterIndex(compressionLevel, nowrap)].pollFirst();
+            if (deflater != null) {
+                POOLED_DEFLATERS.decrement();
+                return deflater;
+            }
+        }
+        Deflater deflater = new Deflater(compressionLevel, nowrap);
+        DEFLATERS.increment();
+        return deflater;
+    }
+
+    /**
+     * Returns the {@link Deflater} which must not be used anymore afterwards.
+     */
+    public static void releaseDeflater(Deflater deflater, int compressionLevel, boolean nowrap) {
+        if (isPooling()) {
+            ArrayDeque<Deflater> pool = POOLS.get().deflaters[deflaterIndex(compressionLevel, nowrap)];
+            if (pool.size() < MAX_POOLED) {
+                deflater.reset();
+                pool.addFirst(deflater);
+                POOLED_DEFLATERS.increment();
+                return;
+            }
+        }
+        endDeflater(deflater);
+    }
+
+    /**
+     * Ends the borrowed {@link Deflater} instead of returning it to the pool, which must not be used anymore
+     * afterwards.
+     */
+    public static void discardDeflater(Deflater deflater) {
+        endDeflater(deflater);
+    }
+
+    /**
+     * Borrows an {@link Inflater}, which must be returned with {@link #releaseInflater(Inflater, boolean)} once it
+     * is not needed anymore.
+     */
+    public static Inflater acquireInflater(boolean nowrap) {
+        if (isPooling()) {
+            Inflater inflater = POOLS.get().inflaters[nowrap ? 1 : 0].pollFirst();
+            if (inflater != null) {
+                POOLED_INFLATERS.decrement();
+                return inflater;
+            }
+        }
+        Inflater inflater = new Inflater(nowrap);
+        INFLATERS.increment();
+        return inflater;
+    }
+
+    /**
+     * Returns the {@link Inflater} which must not be used anymore afterwards.
+     */
+    public static void releaseInflater(Inflater inflater, boolean nowrap) {
+        if (isPooling()) {
+            ArrayDeque<Inflater> pool = POOLS.get().inflaters[nowrap ? 1 : 0];
+            if (pool.size() < MAX_POOLED) {
+                inflater.reset();
+                pool.addFirst(inflater);
+                POOLED_INFLATERS.increment();
+                return;
+            }
+        }
+        endInflater(inflater);
+    }
+
+    /**
+     * Ends the borrowed {@link Inflater} instead of returning it to the pool, which must not be used anymore
+     * afterwards.
+     */
+    public static void discardInflater(Inflater inflater) {
+        endInflater(inflater);
+    }
+
+    /**
+     * Returns the number of {@link Deflater}s created by the pool which were not ended yet, including the pooled
+     * ones.
+     */
+    public static long deflaters() {
+        return DEFLATERS.value();
+    }
+
+    /**
+     * Returns the number of idle {@link Deflater}s held by the pools of all threads.
+     */
+    public static long pooledDeflaters() {
+        return POOLED_DEFLATERS.value();
+    }
+
+    /**
+     * Returns the number of {@link Inflater}s created by the pool which were not ended yet, including the pooled
+     * ones.
+     */
+    public static long inflaters() {
+        return INFLATERS.value();
+    }
+
+    /**
+     * Returns the number of idle {@link Inflater}s held by the pools of all threads.
+     */
+    public static long pooledInflaters() {
+        return POOLED_INFLATERS.value();
+    }
+
+    /**
+     * Returns an estimate of the native memory used by the {@link Deflater}s and {@link Inflater}s created by the
+     * pool which were not ended yet.
+     */
+    public static long usedNativeMemory() {
+        return deflaters() * DEFLATER_NATIVE_MEMORY + inflaters() * INFLATER_NATIVE_MEMORY;
+    }
+
+    private static void endDeflater(Deflater deflater) {
+        deflater.end();
+        DEFLATERS.decrement();
+    }
+
+    private static void endInflater(Inflater inflater) {
+        inflater.end();
+        INFLATERS.decrement();
+    }
+
+    private static boolean isPooling() {
+        return MAX_POOLED > 0 && Thread.currentThread() instanceof FastThreadLocalThread;
+    }
+
+    private static int deflaterIndex(int compressionLevel, boolean nowrap) {
+        return compressionLevel << 1 | (nowrap ? 1 : 0);
+    }
+
+    private static final class Pools {
+        @SuppressWarnings("unchecked")
+        final ArrayDeque<Deflater>[] deflaters = new ArrayDeque[20];
+        @SuppressWarnings("unchecked")
+        final ArrayDeque<Inflater>[] inflaters = new ArrayDeque[2];
+
+        Pools() {
+            for (int i = 0; i < deflaters.length; i++) {
+                deflaters[i] = new ArrayDeque<Deflater>();
+            }
+            for (int i = 0; i < inflaters.length; i++) {
+                inflaters[i] = new ArrayDeque<Inflater>();
+            }
+        }
+
+        void end() {
+            for (ArrayDeque<Deflater> pool : deflaters) {
+                for (Deflater deflater : pool) {
+                    endDeflater(deflater);
+                    POOLED_DEFLATERS.decrement();
+                }
+                pool.clear();
+            }
+            for (ArrayDeque<Inflater> pool : inflaters) {
+                for (Inflater inflater : pool) {
+                    endInflater(inflater);
+                    POOLED_INFLATERS.decrement();
+                }
+                pool.clear();
+            }
+        }
+    }
+}
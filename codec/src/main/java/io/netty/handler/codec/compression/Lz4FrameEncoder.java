@@ -17,6 +17,7 @@
 package io.netty.handler.codec.compression;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
@@ -31,9 +32,9 @@ import io.netty.util.internal.ObjectUtil;
 import net.jpountz.lz4.LZ4Compressor;
 import net.jpountz.lz4.LZ4Exception;
 import net.jpountz.lz4.LZ4Factory;
-import net.jpountz.xxhash.XXHashFactory;
 
 import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.zip.Checksum;
 
@@ -44,7 +45,6 @@ import static io.netty.handler.codec.compression.Lz4Constants.COMPRESSED_LENGTH_
 import static io.netty.handler.codec.compression.Lz4Constants.COMPRESSION_LEVEL_BASE;
 import static io.netty.handler.codec.compression.Lz4Constants.DECOMPRESSED_LENGTH_OFFSET;
 import static io.netty.handler.codec.compression.Lz4Constants.DEFAULT_BLOCK_SIZE;
-import static io.netty.handler.codec.compression.Lz4Constants.DEFAULT_SEED;
 import static io.netty.handler.codec.compression.Lz4Constants.HEADER_LENGTH;
 import static io.netty.handler.codec.compression.Lz4Constants.MAGIC_NUMBER;
 import static io.netty.handler.codec.compression.Lz4Constants.MAX_BLOCK_SIZE;
@@ -101,6 +101,11 @@ public class Lz4FrameEncoder extends MessageToByteEncoder<ByteBuf> {
      */
     private final int maxEncodeSize;
 
+    /**
+     * Compresses the blocks concurrently if not {@code null}.
+     */
+    private final ParallelBlockWriter parallelWriter;
+
     /**
      * Indicates if the compressed stream has been finished.
      */
@@ -129,8 +134,7 @@ public class Lz4FrameEncoder extends MessageToByteEncoder<ByteBuf> {
      *                        and is slower but compresses more efficiently
      */
     public Lz4FrameEncoder(boolean highCompressor) {
-        this(LZ4Factory.fastestInstance(), highCompressor, DEFAULT_BLOCK_SIZE,
-                XXHashFactory.fastestInstance().newStreamingHash32(DEFAULT_SEED).asChecksum());
+        this(LZ4Factory.fastestInstance(), highCompressor, DEFAULT_BLOCK_SIZE, new Lz4XxHash32());
     }
 
     /**
@@ -164,6 +168,28 @@ public class Lz4FrameEncoder extends MessageToByteEncoder<ByteBuf> {
          */
     public Lz4FrameEncoder(LZ4Factory factory, boolean highCompressor, int blockSize,
                            Checksum checksum, int maxEncodeSize) {
+        this(factory, highCompressor, blockSize, checksum, maxEncodeSize, null);
+    }
+
+    /**
+     * Creates a new customizable LZ4 encoder that compresses blocks concurrently on the specified
+     * {@link Executor}. The compressed blocks are written in order, and the channel is marked as not writable
+     * while too many blocks are waiting for compression. The checksums are still calculated on the event loop.
+     *
+     * @param factory         user customizable {@link LZ4Factory} instance
+     *                        which may be JNI bindings to the original C implementation, a pure Java implementation
+     *                        or a Java implementation that uses the {@link sun.misc.Unsafe}
+     * @param highCompressor  if {@code true} codec will use compressor which requires more memory
+     *                        and is slower but compresses more efficiently
+     * @param blockSize       the maximum number of bytes to try to compress at once,
+     *                        must be >= 64 and <= 32 M
+     * @param checksum        the {@link Checksum} instance to use to check data for integrity
+     * @param maxEncodeSize   the maximum size for an encode (compressed) buffer
+     * @param executor        the {@link Executor} which compresses the blocks,
+     *                        or {@code null} to compress them on the event loop
+     */
+    public Lz4FrameEncoder(LZ4Factory factory, boolean highCompressor, int blockSize,
+                           Checksum checksum, int maxEncodeSize, Executor executor) {
         if (factory == null) {
             throw new NullPointerException("factory");
         }
@@ -177,6 +203,8 @@ public class Lz4FrameEncoder extends MessageToByteEncoder<ByteBuf> {
         compressionLevel = compressionLevel(blockSize);
         this.blockSize = blockSize;
         this.maxEncodeSize = ObjectUtil.checkPositive(maxEncodeSize, "maxEncodeSize");
+        parallelWriter = executor == null ? null : new ParallelBlockWriter(
+                executor, (long) blockSize * ParallelBlockWriter.DEFAULT_MAX_PENDING_BLOCKS);
         finished = false;
     }
 
@@ -198,6 +226,31 @@ public class Lz4FrameEncoder extends MessageToByteEncoder<ByteBuf> {
         return allocateBuffer(ctx, msg, preferDirect, true);
     }
 
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (parallelWriter == null || !acceptOutboundMessage(msg)) {
+            super.write(ctx, msg, promise);
+            return;
+        }
+        // Everything is written through the parallelWriter to keep the order, so the promise must only be notified
+        // once the blocks created from the message were written.
+        ByteBuf in = (ByteBuf) msg;
+        boolean success = false;
+        parallelWriter.deferWrites();
+        try {
+            encode(ctx, in, Unpooled.EMPTY_BUFFER);
+            success = true;
+        } catch (EncoderException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new EncoderException(e);
+        } finally {
+            in.release();
+            // If encoding failed the promise is failed by the pipeline.
+            parallelWriter.notifyWritten(ctx, success ? promise : null);
+        }
+    }
+
     private ByteBuf allocateBuffer(ChannelHandlerContext ctx, ByteBuf msg, boolean preferDirect,
                                    boolean allowEmptyReturn) {
         int targetBufSize = 0;
@@ -244,6 +297,10 @@ public class Lz4FrameEncoder extends MessageToByteEncoder<ByteBuf> {
     @Override
     protected void encode(ChannelHandlerContext ctx, ByteBuf in, ByteBuf out) throws Exception {
         if (finished) {
+            if (parallelWriter != null) {
+                parallelWriter.write(ctx, in.readRetainedSlice(in.readableBytes()), null);
+                return;
+            }
             if (!out.isWritable(in.readableBytes())) {
                 // out should be EMPTY_BUFFER because we should have allocated enough space above in allocateBuffer.
                 throw ENCODE_FINSHED_EXCEPTION;
@@ -252,14 +309,18 @@ public class Lz4FrameEncoder extends MessageToByteEncoder<ByteBuf> {
             return;
         }
 
-        final ByteBuf buffer = this.buffer;
         int length;
         while ((length = in.readableBytes()) > 0) {
+            final ByteBuf buffer = this.buffer;
             final int nextChunkSize = Math.min(length, buffer.writableBytes());
             in.readBytes(buffer, nextChunkSize);
 
             if (!buffer.isWritable()) {
-                flushBufferedData(out);
+                if (parallelWriter != null) {
+                    submitBufferedData(ctx);
+                } else {
+                    flushBufferedData(out);
+                }
             }
         }
     }
@@ -269,10 +330,33 @@ public class Lz4FrameEncoder extends MessageToByteEncoder<ByteBuf> {
         if (flushableBytes == 0) {
             return;
         }
+        compressBlock(buffer, checksum(buffer), out);
+        buffer.clear();
+    }
+
+    /**
+     * Hands the buffered data over to the {@link #parallelWriter} and replaces the {@link #buffer}.
+     */
+    private void submitBufferedData(ChannelHandlerContext ctx) {
+        final ByteBuf buffer = this.buffer;
+        if (!buffer.isReadable()) {
+            return;
+        }
+        this.buffer = ctx.alloc().heapBuffer(blockSize, blockSize);
+        parallelWriter.submit(ctx, new Lz4Block(buffer, checksum(buffer), ctx.alloc()));
+    }
+
+    private int checksum(ByteBuf buffer) {
         checksum.reset();
-        checksum.update(buffer, buffer.readerIndex(), flushableBytes);
-        final int check = (int) checksum.getValue();
+        checksum.update(buffer, buffer.readerIndex(), buffer.readableBytes());
+        return (int) checksum.getValue();
+    }
 
+    /**
+     * Compresses the readable bytes of {@code buffer} into a block. Only accesses thread-safe state.
+     */
+    private void compressBlock(ByteBuf buffer, int check, ByteBuf out) {
+        final int flushableBytes = buffer.readableBytes();
         final int bufSize = compressor.maxCompressedLength(flushableBytes) + HEADER_LENGTH;
         out.ensureWritable(bufSize);
         final int idx = out.writerIndex();
@@ -290,7 +374,7 @@ public class Lz4FrameEncoder extends MessageToByteEncoder<ByteBuf> {
         if (compressedLength >= flushableBytes) {
             blockType = BLOCK_TYPE_NON_COMPRESSED;
             compressedLength = flushableBytes;
-            out.setBytes(idx + HEADER_LENGTH, buffer, 0, flushableBytes);
+            out.setBytes(idx + HEADER_LENGTH, buffer, buffer.readerIndex(), flushableBytes);
         } else {
             blockType = BLOCK_TYPE_COMPRESSED;
         }
@@ -301,11 +385,17 @@ public class Lz4FrameEncoder extends MessageToByteEncoder<ByteBuf> {
         out.setIntLE(idx + DECOMPRESSED_LENGTH_OFFSET, flushableBytes);
         out.setIntLE(idx + CHECKSUM_OFFSET, check);
         out.writerIndex(idx + HEADER_LENGTH + compressedLength);
-        buffer.clear();
     }
 
     @Override
     public void flush(final ChannelHandlerContext ctx) throws Exception {
+        if (parallelWriter != null) {
+            if (buffer != null) {
+                submitBufferedData(ctx);
+            }
+            parallelWriter.flush(ctx);
+            return;
+        }
         if (buffer != null && buffer.isReadable()) {
             final ByteBuf buf = allocateBuffer(ctx, Unpooled.EMPTY_BUFFER, isPreferDirect(), false);
             flushBufferedData(buf);
@@ -321,6 +411,9 @@ public class Lz4FrameEncoder extends MessageToByteEncoder<ByteBuf> {
         }
         finished = true;
 
+        if (parallelWriter != null) {
+            submitBufferedData(ctx);
+        }
         final ByteBuf footer = ctx.alloc().heapBuffer(
                 compressor.maxCompressedLength(buffer.readableBytes()) + HEADER_LENGTH);
         flushBufferedData(footer);
@@ -334,6 +427,11 @@ public class Lz4FrameEncoder extends MessageToByteEncoder<ByteBuf> {
 
         footer.writerIndex(idx + HEADER_LENGTH);
 
+        if (parallelWriter != null) {
+            parallelWriter.write(ctx, footer, promise);
+            parallelWriter.flush(ctx);
+            return promise;
+        }
         return ctx.writeAndFlush(footer, promise);
     }
 
@@ -415,6 +513,9 @@ public class Lz4FrameEncoder extends MessageToByteEncoder<ByteBuf> {
     @Override
     public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
         super.handlerRemoved(ctx);
+        if (parallelWriter != null) {
+            parallelWriter.release();
+        }
         if (buffer != null) {
             buffer.release();
             buffer = null;
@@ -424,4 +525,48 @@ public class Lz4FrameEncoder extends MessageToByteEncoder<ByteBuf> {
     final ByteBuf getBackingBuffer() {
         return buffer;
     }
+
+    private final class Lz4Block extends ParallelBlockWriter.Block {
+        private final ByteBuf buffer;
+        private final int check;
+        private final ByteBufAllocator alloc;
+        private ByteBuf compressed;
+
+        Lz4Block(ByteBuf buffer, int check, ByteBufAllocator alloc) {
+            super(buffer.readableBytes());
+            this.buffer = buffer;
+            this.check = check;
+            this.alloc = alloc;
+        }
+
+        @Override
+        void compress() {
+            try {
+                ByteBuf compressed = alloc.heapBuffer(
+                        compressor.maxCompressedLength(buffer.readableBytes()) + HEADER_LENGTH);
+                try {
+                    compressBlock(buffer, check, compressed);
+                } catch (RuntimeException e) {
+                    compressed.release();
+                    throw e;
+                }
+                this.compressed = compressed;
+            } finally {
+                buffer.release();
+            }
+        }
+
+        @Override
+        ByteBuf encoded(ChannelHandlerContext ctx) {
+            return compressed;
+        }
+
+        @Override
+        void release() {
+            if (compressed != null) {
+                compressed.release();
+                compressed = null;
+            }
+        }
+    }
 }
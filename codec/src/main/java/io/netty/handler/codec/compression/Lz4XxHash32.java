@@ -0,0 +1,37 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import static io.netty.handler.codec.compression.Lz4Constants.DEFAULT_SEED;
+
+/**
+ * The xxHash32 {@link java.util.zip.Checksum} used by default by {@link Lz4FrameEncoder} and {@link Lz4FrameDecoder}.
+ *
+ * The {@link java.util.zip.Checksum} view of lz4-java's {@code StreamingXXHash32}, which these codecs used before,
+ * discards the most significant nibble of the hash. The same mask is applied here so that streams stay compatible
+ * in both directions.
+ */
+final class Lz4XxHash32 extends XxHash32 {
+
+    Lz4XxHash32() {
+        super(DEFAULT_SEED);
+    }
+
+    @Override
+    public long getValue() {
+        return super.getValue() & 0xFFFFFFFL;
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.ChannelPromiseNotifier;
+import io.netty.handler.codec.EncoderException;
+import io.netty.util.internal.ObjectUtil;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Compresses independent blocks of a stream concurrently on an {@link Executor} and writes the compressed blocks
+ * to the {@link ChannelHandlerContext} strictly in the order they were added.
+ * <p>
+ * While the uncompressed size of the blocks in flight exceeds the configured limit, the channel is marked as not
+ * writable through a {@linkplain ChannelOutboundBuffer#setUserDefinedWritability(int, boolean) user-defined
+ * writability flag}, so that well-behaved producers stop writing until the executor caught up.
+ * <p>
+ * All methods must be called from the {@link io.netty.channel.EventLoop} of the channel.
+ */
+final class ParallelBlockWriter {
+
+    /**
+     * The index of the user-defined writability flag, chosen to not collide with the traffic shaping handlers.
+     */
+    static final int USER_DEFINED_WRITABILITY_INDEX = 4;
+
+    /**
+     * The number of blocks that may be in flight before the channel is marked as not writable, if not specified.
+     */
+    static final int DEFAULT_MAX_PENDING_BLOCKS = 16;
+
+    private final ArrayDeque<Block> blocks = new ArrayDeque<Block>();
+    private final Executor executor;
+    private final long maxPendingBytes;
+    private long pendingBytes;
+    private boolean unwritable;
+    private boolean released;
+    private boolean deferWrites;
+    private final Runnable writeTask = new Runnable() {
+        @Override
+        public void run() {
+            writeCompleted();
+        }
+    };
+    private ChannelHandlerContext ctx;
+
+    ParallelBlockWriter(Executor executor, long maxPendingBytes) {
+        this.executor = ObjectUtil.checkNotNull(executor, "executor");
+        this.maxPendingBytes = ObjectUtil.checkPositive(maxPendingBytes, "maxPendingBytes");
+    }
+
+    /**
+     * A block of the stream.
+     */
+    abstract static class Block implements Runnable {
+        private final int uncompressedLength;
+        private ParallelBlockWriter writer;
+        private Throwable cause;
+        private volatile boolean done;
+        private boolean flush;
+        private ChannelPromise promise;
+
+        /**
+         * @param uncompressedLength the number of uncompressed bytes held by this block, used for backpressure
+         */
+        Block(int uncompressedLength) {
+            this.uncompressedLength = uncompressedLength;
+        }
+
+        /**
+         * Compresses the block. Invoked by the {@link Executor}, must not access any state of the encoder.
+         */
+        abstract void compress() throws Exception;
+
+        /**
+         * Returns the compressed block. Invoked from the event loop in the order the blocks were added, so this may
+         * access the state of the encoder.
+         */
+        abstract ByteBuf encoded(ChannelHandlerContext ctx);
+
+        /**
+         * Releases all resources held by the block if it will not be written.
+         */
+        abstract void release();
+
+        @Override
+        public final void run() {
+            compressAndComplete();
+            writer.ctx.executor().execute(writer.writeTask);
+        }
+
+        final void compressAndComplete() {
+            try {
+                compress();
+            } catch (Throwable t) {
+                cause = t;
+            }
+            done = true;
+        }
+    }
+
+    /**
+     * A block which does not need to be compressed.
+     */
+    abstract static class UncompressedBlock extends Block {
+        UncompressedBlock() {
+            super(0);
+        }
+
+        @Override
+        final void compress() {
+            throw new IllegalStateException();
+        }
+    }
+
+    private static final class EncodedBlock extends UncompressedBlock {
+        private final ByteBuf encoded;
+
+        EncodedBlock(ByteBuf encoded) {
+            this.encoded = encoded;
+        }
+
+        @Override
+        ByteBuf encoded(ChannelHandlerContext ctx) {
+            return encoded;
+        }
+
+        @Override
+        void release() {
+            encoded.release();
+        }
+    }
+
+    /**
+     * Submits {@code block} to the {@link Executor} for compression, or compresses it in the calling thread if the
+     * {@link Executor} rejects it.
+     */
+    void submit(ChannelHandlerContext ctx, Block block) {
+        add(ctx, block);
+        try {
+            executor.execute(block);
+        } catch (RejectedExecutionException e) {
+            // The block was already added, so compress it right away rather than stalling the stream.
+            block.compressAndComplete();
+            if (!deferWrites) {
+                writeCompleted();
+            }
+        }
+    }
+
+    /**
+     * Defers writing blocks which are complete already until {@link #notifyWritten(ChannelHandlerContext,
+     * ChannelPromise)} is called, so that the promise of the message they are created from can be attached to them.
+     */
+    void deferWrites() {
+        deferWrites = true;
+    }
+
+    /**
+     * Notifies {@code promise} if not {@code null} once all blocks added so far were written, or fails it if one
+     * of them was not, and writes all blocks that were deferred.
+     */
+    void notifyWritten(ChannelHandlerContext ctx, ChannelPromise promise) {
+        deferWrites = false;
+        if (promise != null) {
+            Block last = blocks.peekLast();
+            if (last == null) {
+                // Everything was handed over to the ChannelHandlerContext already, so keep the order there.
+                ctx.write(Unpooled.EMPTY_BUFFER, promise);
+                return;
+            }
+            if (!promise.isVoid()) {
+                if (last.promise == null || last.promise.isVoid()) {
+                    last.promise = promise;
+                } else {
+                    last.promise.addListener(new ChannelPromiseNotifier(promise));
+                }
+            }
+        }
+        writeCompleted();
+    }
+
+    /**
+     * Writes {@code encoded} after all blocks added before, notifying {@code promise} if not {@code null}.
+     */
+    void write(ChannelHandlerContext ctx, ByteBuf encoded, ChannelPromise promise) {
+        write(ctx, new EncodedBlock(encoded), promise);
+    }
+
+    /**
+     * Writes {@code block}, which needs no compression, after all blocks added before, notifying {@code promise}
+     * if not {@code null}.
+     */
+    void write(ChannelHandlerContext ctx, Block block, ChannelPromise promise) {
+        add(ctx, block);
+        block.done = true;
+        block.promise = promise;
+        if (!deferWrites) {
+            writeCompleted();
+        }
+    }
+
+    private void add(ChannelHandlerContext ctx, Block block) {
+        assert ctx.executor().inEventLoop();
+        this.ctx = ctx;
+        block.writer = this;
+        blocks.add(block);
+        pendingBytes += block.uncompressedLength;
+        if (!unwritable && pendingBytes > maxPendingBytes) {
+            setWritable(ctx, false);
+        }
+    }
+
+    /**
+     * Flushes the channel, and again once all blocks added so far were written.
+     */
+    void flush(ChannelHandlerContext ctx) {
+        Block last = blocks.peekLast();
+        if (last != null) {
+            last.flush = true;
+        }
+        ctx.flush();
+    }
+
+    /**
+     * Returns {@code true} if there are blocks which were not written yet.
+     */
+    boolean hasPendingBlocks() {
+        return !blocks.isEmpty();
+    }
+
+    /**
+     * Releases all blocks which were not written yet, and releases blocks that are still compressed once they
+     * complete.
+     */
+    void release() {
+        released = true;
+        writeCompleted();
+        if (unwritable) {
+            setWritable(ctx, true);
+        }
+    }
+
+    private void writeCompleted() {
+        ChannelHandlerContext ctx = this.ctx;
+        boolean flush = false;
+        for (;;) {
+            Block block = blocks.peek();
+            if (block == null || !block.done) {
+                break;
+            }
+            blocks.poll();
+            pendingBytes -= block.uncompressedLength;
+
+            if (released) {
+                block.release();
+                if (block.promise != null) {
+                    block.promise.tryFailure(new EncoderException("encoder removed"));
+                }
+                continue;
+            }
+            if (block.cause != null) {
+                block.release();
+                if (block.promise != null) {
+                    block.promise.tryFailure(new EncoderException(block.cause));
+                }
+                // The stream can not be continued without the block, so give up on the channel.
+                ctx.fireExceptionCaught(new EncoderException(block.cause));
+                ctx.close();
+                released = true;
+                continue;
+            }
+            ByteBuf encoded = block.encoded(ctx);
+            if (block.promise != null) {
+                ctx.write(encoded, block.promise);
+            } else {
+                ctx.write(encoded);
+            }
+            flush |= block.flush;
+        }
+        if (flush) {
+            ctx.flush();
+        }
+        if (unwritable && pendingBytes <= maxPendingBytes >>> 1) {
+            setWritable(ctx, true);
+        }
+    }
+
+    private void setWritable(ChannelHandlerContext ctx, boolean writable) {
+        unwritable = !writable;
+        ChannelOutboundBuffer buffer = ctx.channel().unsafe().outboundBuffer();
+        if (buffer != null) {
+            buffer.setUserDefinedWritability(USER_DEFINED_WRITABILITY_INDEX, writable);
+        }
+    }
+}
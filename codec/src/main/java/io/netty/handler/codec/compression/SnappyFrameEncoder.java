@@ -16,9 +16,17 @@
 package io.netty.handler.codec.compression;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.EncoderException;
 import io.netty.handler.codec.MessageToByteEncoder;
 
+import java.util.concurrent.Executor;
+
 import static io.netty.handler.codec.compression.Snappy.*;
 
 /**
@@ -42,20 +50,128 @@ public class SnappyFrameEncoder extends MessageToByteEncoder<ByteBuf> {
         (byte) 0xff, 0x06, 0x00, 0x00, 0x73, 0x4e, 0x61, 0x50, 0x70, 0x59
     };
 
+    /**
+     * The maximum number of bytes compressed by a single task if the chunks are compressed concurrently.
+     */
+    private static final int PARALLEL_BLOCK_SIZE = 8 * Short.MAX_VALUE;
+
     private final Snappy snappy = new Snappy();
+    private final ParallelBlockWriter parallelWriter;
     private boolean started;
 
+    /**
+     * Creates a new encoder which compresses on the event loop.
+     */
+    public SnappyFrameEncoder() {
+        this(null);
+    }
+
+    /**
+     * Creates a new encoder which compresses the chunks of large buffers concurrently on the specified
+     * {@link Executor}. The compressed chunks are written in order, and the channel is marked as not writable
+     * while too many chunks are waiting for compression.
+     *
+     * @param executor the {@link Executor} which compresses the chunks,
+     *                 or {@code null} to compress them on the event loop
+     */
+    public SnappyFrameEncoder(Executor executor) {
+        parallelWriter = executor == null ? null : new ParallelBlockWriter(
+                executor, (long) PARALLEL_BLOCK_SIZE * ParallelBlockWriter.DEFAULT_MAX_PENDING_BLOCKS);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (parallelWriter == null || !acceptOutboundMessage(msg)) {
+            super.write(ctx, msg, promise);
+            return;
+        }
+        // Everything is written through the parallelWriter to keep the order, so the promise must only be notified
+        // once the blocks created from the message were written.
+        ByteBuf in = (ByteBuf) msg;
+        boolean success = false;
+        parallelWriter.deferWrites();
+        try {
+            encode(ctx, in, Unpooled.EMPTY_BUFFER);
+            success = true;
+        } catch (EncoderException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new EncoderException(e);
+        } finally {
+            in.release();
+            // If encoding failed the promise is failed by the pipeline.
+            parallelWriter.notifyWritten(ctx, success ? promise : null);
+        }
+    }
+
     @Override
     protected void encode(ChannelHandlerContext ctx, ByteBuf in, ByteBuf out) throws Exception {
         if (!in.isReadable()) {
             return;
         }
 
+        if (parallelWriter != null) {
+            if (!started) {
+                started = true;
+                parallelWriter.write(ctx, Unpooled.wrappedBuffer(STREAM_START), null);
+            }
+            if (in.readableBytes() <= Short.MAX_VALUE) {
+                // Not worth to hand a single chunk over to the executor.
+                ByteBuf encoded = ctx.alloc().buffer(in.readableBytes() + 16);
+                writeChunks(snappy, in, encoded);
+                parallelWriter.write(ctx, encoded, null);
+                return;
+            }
+            while (in.isReadable()) {
+                ByteBuf slice = in.readRetainedSlice(Math.min(in.readableBytes(), PARALLEL_BLOCK_SIZE));
+                parallelWriter.submit(ctx, new SnappyBlock(slice, ctx.alloc()));
+            }
+            return;
+        }
+
         if (!started) {
             started = true;
             out.writeBytes(STREAM_START);
         }
+        writeChunks(snappy, in, out);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        if (parallelWriter != null) {
+            parallelWriter.flush(ctx);
+        } else {
+            ctx.flush();
+        }
+    }
+
+    @Override
+    public void close(final ChannelHandlerContext ctx, final ChannelPromise promise) throws Exception {
+        if (parallelWriter == null || !parallelWriter.hasPendingBlocks()) {
+            ctx.close(promise);
+            return;
+        }
+        // Close once the pending chunks were written.
+        ChannelPromise written = ctx.newPromise();
+        parallelWriter.write(ctx, Unpooled.EMPTY_BUFFER, written);
+        parallelWriter.flush(ctx);
+        written.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                ctx.close(promise);
+            }
+        });
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        if (parallelWriter != null) {
+            parallelWriter.release();
+        }
+        super.handlerRemoved(ctx);
+    }
 
+    private static void writeChunks(Snappy snappy, ByteBuf in, ByteBuf out) {
         int dataLength = in.readableBytes();
         if (dataLength > MIN_COMPRESSIBLE_LENGTH) {
             for (;;) {
@@ -120,4 +236,45 @@ public class SnappyFrameEncoder extends MessageToByteEncoder<ByteBuf> {
     private static void calculateAndWriteChecksum(ByteBuf slice, ByteBuf out) {
         out.writeIntLE(calculateChecksum(slice));
     }
+
+    private static final class SnappyBlock extends ParallelBlockWriter.Block {
+        private final ByteBuf slice;
+        private final ByteBufAllocator alloc;
+        private ByteBuf compressed;
+
+        SnappyBlock(ByteBuf slice, ByteBufAllocator alloc) {
+            super(slice.readableBytes());
+            this.slice = slice;
+            this.alloc = alloc;
+        }
+
+        @Override
+        void compress() {
+            try {
+                ByteBuf compressed = alloc.buffer(slice.readableBytes() + (slice.readableBytes() >>> 4) + 64);
+                try {
+                    writeChunks(new Snappy(), slice, compressed);
+                } catch (RuntimeException e) {
+                    compressed.release();
+                    throw e;
+                }
+                this.compressed = compressed;
+            } finally {
+                slice.release();
+            }
+        }
+
+        @Override
+        ByteBuf encoded(ChannelHandlerContext ctx) {
+            return compressed;
+        }
+
+        @Override
+        void release() {
+            if (compressed != null) {
+                compressed.release();
+                compressed = null;
+            }
+        }
+    }
 }
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.internal.PlatformDependent;
+
+/**
+ * Streaming implementation of the <a href="https://github.com/Cyan4973/xxHash">xxHash32</a> hash function.
+ *
+ * Unlike a {@link java.util.zip.Checksum} obtained from lz4-java this implementation reads direct buffers straight
+ * from their memory address instead of feeding them one byte at a time.
+ */
+class XxHash32 extends ByteBufChecksum {
+
+    private static final int PRIME32_1 = 0x9E3779B1;
+    private static final int PRIME32_2 = 0x85EBCA77;
+    private static final int PRIME32_3 = 0xC2B2AE3D;
+    private static final int PRIME32_4 = 0x27D4EB2F;
+    private static final int PRIME32_5 = 0x165667B1;
+    private static final boolean UNALIGNED = PlatformDependent.hasUnsafe() && PlatformDependent.isUnaligned();
+
+    private final int seed;
+    private final byte[] buffer = new byte[16];
+    private int bufferSize;
+    private long totalLength;
+    private int v1;
+    private int v2;
+    private int v3;
+    private int v4;
+
+    XxHash32() {
+        this(0);
+    }
+
+    XxHash32(int seed) {
+        this.seed = seed;
+        reset();
+    }
+
+    @Override
+    public void update(int b) {
+        buffer[bufferSize++] = (byte) b;
+        totalLength++;
+        if (bufferSize == 16) {
+            processStripe(buffer, 0);
+            bufferSize = 0;
+        }
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        totalLength += len;
+        if (bufferSize + len < 16) {
+            System.arraycopy(b, off, buffer, bufferSize, len);
+            bufferSize += len;
+            return;
+        }
+
+        int end = off + len;
+        if (bufferSize > 0) {
+            int fill = 16 - bufferSize;
+            System.arraycopy(b, off, buffer, bufferSize, fill);
+            processStripe(buffer, 0);
+            off += fill;
+            bufferSize = 0;
+        }
+        int v1 = this.v1;
+        int v2 = this.v2;
+        int v3 = this.v3;
+        int v4 = this.v4;
+        for (; off <= end - 16; off += 16) {
+            v1 = round(v1, getIntLE(b, off));
+            v2 = round(v2, getIntLE(b, off + 4));
+            v3 = round(v3, getIntLE(b, off + 8));
+            v4 = round(v4, getIntLE(b, off + 12));
+        }
+        this.v1 = v1;
+        this.v2 = v2;
+        this.v3 = v3;
+        this.v4 = v4;
+        bufferSize = end - off;
+        System.arraycopy(b, off, buffer, 0, bufferSize);
+    }
+
+    @Override
+    public void update(ByteBuf b, int off, int len) {
+        if (b.hasArray()) {
+            update(b.array(), b.arrayOffset() + off, len);
+        } else if (b.hasMemoryAddress() && UNALIGNED) {
+            updateAddress(b.memoryAddress() + off, len);
+        } else {
+            super.update(b, off, len);
+        }
+    }
+
+    private void updateAddress(long address, int len) {
+        totalLength += len;
+        if (bufferSize + len < 16) {
+            PlatformDependent.copyMemory(address, buffer, bufferSize, len);
+            bufferSize += len;
+            return;
+        }
+
+        long end = address + len;
+        if (bufferSize > 0) {
+            int fill = 16 - bufferSize;
+            PlatformDependent.copyMemory(address, buffer, bufferSize, fill);
+            processStripe(buffer, 0);
+            address += fill;
+            bufferSize = 0;
+        }
+        int v1 = this.v1;
+        int v2 = this.v2;
+        int v3 = this.v3;
+        int v4 = this.v4;
+        for (; address <= end - 16; address += 16) {
+            v1 = round(v1, getIntLE(address));
+            v2 = round(v2, getIntLE(address + 4));
+            v3 = round(v3, getIntLE(address + 8));
+            v4 = round(v4, getIntLE(address + 12));
+        }
+        this.v1 = v1;
+        this.v2 = v2;
+        this.v3 = v3;
+        this.v4 = v4;
+        bufferSize = (int) (end - address);
+        PlatformDependent.copyMemory(address, buffer, 0, bufferSize);
+    }
+
+    private void processStripe(byte[] b, int off) {
+        v1 = round(v1, getIntLE(b, off));
+        v2 = round(v2, getIntLE(b, off + 4));
+        v3 = round(v3, getIntLE(b, off + 8));
+        v4 = round(v4, getIntLE(b, off + 12));
+    }
+
+    @Override
+    public long getValue() {
+        int hash;
+        if (totalLength >= 16) {
+            hash = Integer.rotateLeft(v1, 1) + Integer.rotateLeft(v2, 7) +
+                   Integer.rotateLeft(v3, 12) + Integer.rotateLeft(v4, 18);
+        } else {
+            hash = seed + PRIME32_5;
+        }
+        hash += (int) totalLength;
+
+        int off = 0;
+        for (; off <= bufferSize - 4; off += 4) {
+            hash += getIntLE(buffer, off) * PRIME32_3;
+            hash = Integer.rotateLeft(hash, 17) * PRIME32_4;
+        }
+        for (; off < bufferSize; off++) {
+            hash += (buffer[off] & 0xFF) * PRIME32_5;
+            hash = Integer.rotateLeft(hash, 11) * PRIME32_1;
+        }
+
+        hash ^= hash >>> 15;
+        hash *= PRIME32_2;
+        hash ^= hash >>> 13;
+        hash *= PRIME32_3;
+        hash ^= hash >>> 16;
+        return hash & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public void reset() {
+        v1 = seed + PRIME32_1 + PRIME32_2;
+        v2 = seed + PRIME32_2;
+        v3 = seed;
+        v4 = seed - PRIME32_1;
+        bufferSize = 0;
+        totalLength = 0;
+    }
+
+    private static int round(int acc, int input) {
+        acc += input * PRIME32_2;
+        acc = Integer.rotateLeft(acc, 13);
+        return acc * PRIME32_1;
+    }
+
+    private static int getIntLE(long address) {
+        int value = PlatformDependent.getInt(address);
+        return PlatformDependent.BIG_ENDIAN_NATIVE_ORDER ? Integer.reverseBytes(value) : value;
+    }
+
+    private static int getIntLE(byte[] b, int off) {
+        if (UNALIGNED) {
+            int value = PlatformDependent.getInt(b, off);
+            return PlatformDependent.BIG_ENDIAN_NATIVE_ORDER ? Integer.reverseBytes(value) : value;
+        }
+        return b[off] & 0xFF | (b[off + 1] & 0xFF) << 8 | (b[off + 2] & 0xFF) << 16 | (b[off + 3] & 0xFF) << 24;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import java.util.zip.Checksum;
+
+/**
+ * Streaming implementation of the <a href="https://github.com/Cyan4973/xxHash">xxHash64</a> hash function, which is
+ * used for the content checksum of Zstandard frames.
+ */
+final class XxHash64 implements Checksum {
+
+    private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME64_3 = 0x165667B19E3779F9L;
+    private static final long PRIME64_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME64_5 = 0x27D4EB2F165667C5L;
+
+    private final long seed;
+    private final byte[] buffer = new byte[32];
+    private int bufferSize;
+    private long totalLength;
+    private long v1;
+    private long v2;
+    private long v3;
+    private long v4;
+
+    XxHash64() {
+        this(0);
+    }
+
+    XxHash64(long seed) {
+        this.seed = seed;
+        reset();
+    }
+
+    @Override
+    public void update(int b) {
+        buffer[bufferSize++] = (byte) b;
+        totalLength++;
+        if (bufferSize == 32) {
+            processStripe(buffer, 0);
+            bufferSize = 0;
+        }
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        totalLength += len;
+        if (bufferSize + len < 32) {
+            System.arraycopy(b, off, buffer, bufferSize, len);
+            bufferSize += len;
+            return;
+        }
+
+        int end = off + len;
+        if (bufferSize > 0) {
+            int fill = 32 - bufferSize;
+            System.arraycopy(b, off, buffer, bufferSize, fill);
+            processStripe(buffer, 0);
+            off += fill;
+            bufferSize = 0;
+        }
+        for (; off <= end - 32; off += 32) {
+            processStripe(b, off);
+        }
+        bufferSize = end - off;
+        System.arraycopy(b, off, buffer, 0, bufferSize);
+    }
+
+    private void processStripe(byte[] b, int off) {
+        v1 = round(v1, readLongLE(b, off));
+        v2 = round(v2, readLongLE(b, off + 8));
+        v3 = round(v3, readLongLE(b, off + 16));
+        v4 = round(v4, readLongLE(b, off + 24));
+    }
+
+    @Override
+    public long getValue() {
+        long hash;
+        if (totalLength >= 32) {
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = mergeRound(hash, v1);
+            hash = mergeRound(hash, v2);
+            hash = mergeRound(hash, v3);
+            hash = mergeRound(hash, v4);
+        } else {
+            hash = seed + PRIME64_5;
+        }
+        hash += totalLength;
+
+        int off = 0;
+        for (; off <= bufferSize - 8; off += 8) {
+            hash ^= round(0, readLongLE(buffer, off));
+            hash = Long.rotateLeft(hash, 27) * PRIME64_1 + PRIME64_4;
+        }
+        if (off <= bufferSize - 4) {
+            hash ^= (readIntLE(buffer, off) & 0xFFFFFFFFL) * PRIME64_1;
+            hash = Long.rotateLeft(hash, 23) * PRIME64_2 + PRIME64_3;
+            off += 4;
+        }
+        for (; off < bufferSize; off++) {
+            hash ^= (buffer[off] & 0xFF) * PRIME64_5;
+            hash = Long.rotateLeft(hash, 11) * PRIME64_1;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= PRIME64_2;
+        hash ^= hash >>> 29;
+        hash *= PRIME64_3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    @Override
+    public void reset() {
+        v1 = seed + PRIME64_1 + PRIME64_2;
+        v2 = seed + PRIME64_2;
+        v3 = seed;
+        v4 = seed - PRIME64_1;
+        bufferSize = 0;
+        totalLength = 0;
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME64_2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME64_1;
+    }
+
+    private static long mergeRound(long acc, long value) {
+        acc ^= round(0, value);
+        return acc * PRIME64_1 + PRIME64_4;
+    }
+
+    private static long readLongLE(byte[] b, int off) {
+        return readIntLE(b, off) & 0xFFFFFFFFL | (long) readIntLE(b, off + 4) << 32;
+    }
+
+    private static int readIntLE(byte[] b, int off) {
+        return b[off] & 0xFF | (b[off + 1] & 0xFF) << 8 | (b[off + 2] & 0xFF) << 16 | (b[off + 3] & 0xFF) << 24;
+    }
+}
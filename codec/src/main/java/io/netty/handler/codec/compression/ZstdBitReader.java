@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+/**
+ * Reads the bit streams used by Zstandard for Huffman and FSE coded data. These streams are written forward but
+ * read backward, starting at the highest bit of their last byte that follows the final {@code 1} padding bit.
+ */
+final class ZstdBitReader {
+
+    private byte[] buffer;
+    private int start;
+    private int position;
+    private long container;
+    private int bitsConsumed;
+
+    /**
+     * Prepares this reader for the stream stored in {@code buffer} at {@code [start, end)}.
+     */
+    void init(byte[] buffer, int start, int end) {
+        if (end <= start) {
+            throw new DecompressionException("empty bit stream");
+        }
+        int lastByte = buffer[end - 1] & 0xFF;
+        if (lastByte == 0) {
+            throw new DecompressionException("bit stream is missing its end mark");
+        }
+        this.buffer = buffer;
+        this.start = start;
+        bitsConsumed = 8 - ZstdConstants.highestBit(lastByte);
+        int length = end - start;
+        if (length >= 8) {
+            position = end - 8;
+            container = readLongLE(buffer, position);
+        } else {
+            position = start;
+            container = 0;
+            for (int i = 0; i < length; i++) {
+                container |= (buffer[start + i] & 0xFFL) << (i << 3);
+            }
+            bitsConsumed += (8 - length) << 3;
+        }
+    }
+
+    /**
+     * Returns the next {@code numBits} bits without consuming them. Bits past the beginning of the stream are
+     * read as {@code 0}.
+     */
+    int peekBits(int numBits) {
+        if (bitsConsumed >= 64) {
+            return 0;
+        }
+        return (int) (container << bitsConsumed >>> 1 >>> 63 - numBits);
+    }
+
+    void skipBits(int numBits) {
+        bitsConsumed += numBits;
+    }
+
+    int readBits(int numBits) {
+        int value = peekBits(numBits);
+        bitsConsumed += numBits;
+        return value;
+    }
+
+    /**
+     * Refills the internal bit container so at least 56 bits can be read, unless the beginning of the stream is
+     * reached.
+     */
+    void reload() {
+        if (bitsConsumed > 64) {
+            return;
+        }
+        if (position - start >= 8) {
+            position -= bitsConsumed >>> 3;
+            bitsConsumed &= 7;
+        } else if (position == start) {
+            return;
+        } else {
+            int numBytes = Math.min(bitsConsumed >>> 3, position - start);
+            position -= numBytes;
+            bitsConsumed -= numBytes << 3;
+        }
+        container = readLongLE(buffer, position);
+    }
+
+    /**
+     * Returns {@code true} if more bits were consumed than the stream contains.
+     */
+    boolean isOverflowed() {
+        return bitsConsumed > 64;
+    }
+
+    /**
+     * Returns {@code true} if exactly all bits of the stream were consumed.
+     */
+    boolean isFullyConsumed() {
+        return position == start && bitsConsumed == 64;
+    }
+
+    static long readLongLE(byte[] buffer, int index) {
+        return buffer[index] & 0xFFL |
+               (buffer[index + 1] & 0xFFL) << 8 |
+               (buffer[index + 2] & 0xFFL) << 16 |
+               (buffer[index + 3] & 0xFFL) << 24 |
+               (buffer[index + 4] & 0xFFL) << 32 |
+               (buffer[index + 5] & 0xFFL) << 40 |
+               (buffer[index + 6] & 0xFFL) << 48 |
+               (buffer[index + 7] & 0xFFL) << 56;
+    }
+}
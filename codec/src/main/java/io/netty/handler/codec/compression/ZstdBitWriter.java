@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+/**
+ * Writes the bit streams used by Zstandard for Huffman and FSE coded data, which are later read backward by
+ * {@link ZstdBitReader}.
+ */
+final class ZstdBitWriter {
+
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    private long container;
+    private int bitCount;
+
+    /**
+     * Prepares this writer to write into {@code buffer} starting at {@code offset} and never past {@code limit}.
+     */
+    void init(byte[] buffer, int offset, int limit) {
+        this.buffer = buffer;
+        this.limit = limit;
+        position = offset;
+        container = 0;
+        bitCount = 0;
+    }
+
+    /**
+     * Appends the lowest {@code numBits} bits of {@code value}, at most 32 bits at a time.
+     *
+     * @return {@code false} if the stream does not fit into the buffer anymore
+     */
+    boolean addBits(int value, int numBits) {
+        container |= (value & 0xFFFFFFFFL & (1L << numBits) - 1) << bitCount;
+        bitCount += numBits;
+        return flush();
+    }
+
+    /**
+     * Appends the final mark bit and writes the remaining bits.
+     *
+     * @return the position after the last written byte or {@code -1} if the stream did not fit into the buffer
+     */
+    int finish() {
+        if (!addBits(1, 1)) {
+            return -1;
+        }
+        if (bitCount > 0) {
+            if (position >= limit) {
+                return -1;
+            }
+            buffer[position++] = (byte) container;
+            container = 0;
+            bitCount = 0;
+        }
+        return position;
+    }
+
+    private boolean flush() {
+        while (bitCount >= 8) {
+            if (position >= limit) {
+                return false;
+            }
+            buffer[position++] = (byte) container;
+            container >>>= 8;
+            bitCount -= 8;
+        }
+        return true;
+    }
+}
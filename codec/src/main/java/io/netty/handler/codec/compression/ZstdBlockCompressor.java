@@ -0,0 +1,594 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import java.util.Arrays;
+
+import static io.netty.handler.codec.compression.ZstdConstants.*;
+
+/**
+ * Compresses the content of a single Zstandard block. Matches are found with a hash chain within the block, the
+ * literals are Huffman coded if that pays off and the sequences are coded with the predefined FSE distributions.
+ */
+final class ZstdBlockCompressor {
+
+    private static final int HASH_LOG = 16;
+    private static final int MIN_MATCH_LENGTH = 4;
+    private static final int GOOD_MATCH_LENGTH = 128;
+    private static final int SKIP_TRIGGER = 6;
+
+    /**
+     * Smallest number of literals for which Huffman coding is tried.
+     */
+    private static final int MIN_HUFFMAN_LITERALS = 64;
+
+    /**
+     * Largest symbol whose Huffman weight can be written without compressing the weights themselves.
+     */
+    private static final int MAX_DIRECT_WEIGHTS_SYMBOL = 128;
+
+    private static final byte[] LITERALS_LENGTH_CODES = codeTable(LITERALS_LENGTH_BASE, 0, 64);
+    private static final byte[] MATCH_LENGTH_CODES = codeTable(MATCH_LENGTH_BASE, MIN_MATCH, 128);
+
+    private static final FseEncodingTable LITERALS_LENGTH_TABLE = new FseEncodingTable(
+            LITERALS_LENGTH_DEFAULT_DISTRIBUTION, LITERALS_LENGTH_DEFAULT_ACCURACY_LOG);
+    private static final FseEncodingTable MATCH_LENGTH_TABLE = new FseEncodingTable(
+            MATCH_LENGTH_DEFAULT_DISTRIBUTION, MATCH_LENGTH_DEFAULT_ACCURACY_LOG);
+    private static final FseEncodingTable OFFSET_TABLE = new FseEncodingTable(
+            OFFSET_DEFAULT_DISTRIBUTION, OFFSET_DEFAULT_ACCURACY_LOG);
+
+    private final int searchDepth;
+    private final int[] hashTable = new int[1 << HASH_LOG];
+    private final int[] chainTable;
+    private final byte[] literals;
+    private final int[] literalsLengths;
+    private final int[] matchLengths;
+    private final int[] offsets;
+    private final int[] frequencies = new int[256];
+    private final int[] codeLengths = new int[256];
+    private final int[] codes = new int[256];
+    private final ZstdBitWriter writer = new ZstdBitWriter();
+    private int numLiterals;
+    private int numSequences;
+
+    /**
+     * @param blockSize    the largest block that will be compressed
+     * @param searchDepth  the number of earlier positions that are tried to find the longest match
+     */
+    ZstdBlockCompressor(int blockSize, int searchDepth) {
+        this.searchDepth = searchDepth;
+        chainTable = new int[blockSize];
+        literals = new byte[blockSize];
+        int maxSequences = blockSize / MIN_MATCH_LENGTH + 1;
+        literalsLengths = new int[maxSequences];
+        matchLengths = new int[maxSequences];
+        offsets = new int[maxSequences];
+    }
+
+    /**
+     * Compresses {@code length} bytes of {@code src} into {@code dst}.
+     *
+     * @return the size of the compressed block or {@code -1} if it would not be smaller than {@code dstLimit -
+     *         dstOffset} bytes
+     */
+    int compress(byte[] src, int srcOffset, int length, byte[] dst, int dstOffset, int dstLimit) {
+        findSequences(src, srcOffset, length);
+        int position = writeLiterals(dst, dstOffset, dstLimit);
+        if (position < 0) {
+            return -1;
+        }
+        position = writeSequences(dst, position, dstLimit);
+        if (position < 0) {
+            return -1;
+        }
+        return position - dstOffset;
+    }
+
+    private void findSequences(byte[] src, int base, int length) {
+        int[] hashTable = this.hashTable;
+        int[] chainTable = this.chainTable;
+        Arrays.fill(hashTable, -1);
+        numLiterals = 0;
+        numSequences = 0;
+
+        int anchor = 0;
+        int position = 0;
+        int hashLimit = length - MIN_MATCH_LENGTH;
+        int misses = 0;
+        while (position <= hashLimit) {
+            int hash = hash(readInt(src, base + position));
+            int candidate = hashTable[hash];
+            chainTable[position] = candidate;
+            hashTable[hash] = position;
+
+            int bestLength = 0;
+            int bestPosition = 0;
+            int maxLength = length - position;
+            for (int depth = searchDepth; candidate >= 0 && depth > 0; depth--) {
+                if (bestLength < maxLength && src[base + candidate + bestLength] == src[base + position + bestLength]) {
+                    int matchLength = commonLength(src, base + candidate, base + position, maxLength);
+                    if (matchLength > bestLength) {
+                        bestLength = matchLength;
+                        bestPosition = candidate;
+                        if (matchLength >= GOOD_MATCH_LENGTH) {
+                            break;
+                        }
+                    }
+                }
+                candidate = chainTable[candidate];
+            }
+
+            if (bestLength < MIN_MATCH_LENGTH) {
+                // Skip faster over data that does not seem to compress.
+                position += 1 + (misses++ >>> SKIP_TRIGGER);
+                continue;
+            }
+            misses = 0;
+
+            // Extend the match backwards over the pending literals.
+            while (position > anchor && bestPosition > 0 && src[base + position - 1] == src[base + bestPosition - 1]) {
+                position--;
+                bestPosition--;
+                bestLength++;
+            }
+
+            addSequence(src, base + anchor, position - anchor, bestLength, position - bestPosition);
+            int matchEnd = position + bestLength;
+            for (int i = position + 1; i < matchEnd && i <= hashLimit; i++) {
+                int h = hash(readInt(src, base + i));
+                chainTable[i] = hashTable[h];
+                hashTable[h] = i;
+            }
+            position = matchEnd;
+            anchor = matchEnd;
+        }
+        System.arraycopy(src, base + anchor, literals, numLiterals, length - anchor);
+        numLiterals += length - anchor;
+    }
+
+    private void addSequence(byte[] src, int literalsStart, int literalsLength, int matchLength, int offset) {
+        System.arraycopy(src, literalsStart, literals, numLiterals, literalsLength);
+        numLiterals += literalsLength;
+        literalsLengths[numSequences] = literalsLength;
+        matchLengths[numSequences] = matchLength;
+        offsets[numSequences] = offset;
+        numSequences++;
+    }
+
+    private static int commonLength(byte[] src, int candidate, int position, int maxLength) {
+        int length = 0;
+        while (length < maxLength && src[candidate + length] == src[position + length]) {
+            length++;
+        }
+        return length;
+    }
+
+    private static int hash(int value) {
+        return value * 0x9E3779B1 >>> 32 - HASH_LOG;
+    }
+
+    private static int readInt(byte[] src, int index) {
+        return src[index] & 0xFF | (src[index + 1] & 0xFF) << 8 |
+               (src[index + 2] & 0xFF) << 16 | (src[index + 3] & 0xFF) << 24;
+    }
+
+    private int writeLiterals(byte[] dst, int offset, int limit) {
+        int numLiterals = this.numLiterals;
+        int[] frequencies = this.frequencies;
+        Arrays.fill(frequencies, 0);
+        byte[] literals = this.literals;
+        int maxSymbol = 0;
+        int numSymbols = 0;
+        for (int i = 0; i < numLiterals; i++) {
+            int symbol = literals[i] & 0xFF;
+            if (frequencies[symbol]++ == 0) {
+                numSymbols++;
+                if (symbol > maxSymbol) {
+                    maxSymbol = symbol;
+                }
+            }
+        }
+
+        if (numSymbols == 1 && numLiterals > 1) {
+            int position = writeLiteralsHeader(dst, offset, limit, LITERALS_TYPE_RLE, numLiterals);
+            if (position < 0 || position >= limit) {
+                return -1;
+            }
+            dst[position] = literals[0];
+            return position + 1;
+        }
+
+        if (numLiterals >= MIN_HUFFMAN_LITERALS && maxSymbol <= MAX_DIRECT_WEIGHTS_SYMBOL) {
+            int position = writeHuffmanLiterals(dst, offset, Math.min(limit, offset + numLiterals), maxSymbol,
+                                                numSymbols);
+            if (position >= 0) {
+                return position;
+            }
+        }
+
+        int position = writeLiteralsHeader(dst, offset, limit, LITERALS_TYPE_RAW, numLiterals);
+        if (position < 0 || numLiterals > limit - position) {
+            return -1;
+        }
+        System.arraycopy(literals, 0, dst, position, numLiterals);
+        return position + numLiterals;
+    }
+
+    private static int writeLiteralsHeader(byte[] dst, int offset, int limit, int type, int size) {
+        if (size < 32) {
+            if (limit - offset < 1) {
+                return -1;
+            }
+            dst[offset] = (byte) (type | size << 3);
+            return offset + 1;
+        }
+        if (size < 4096) {
+            if (limit - offset < 2) {
+                return -1;
+            }
+            dst[offset] = (byte) (type | 1 << 2 | size << 4);
+            dst[offset + 1] = (byte) (size >>> 4);
+            return offset + 2;
+        }
+        if (limit - offset < 3) {
+            return -1;
+        }
+        dst[offset] = (byte) (type | 3 << 2 | size << 4);
+        dst[offset + 1] = (byte) (size >>> 4);
+        dst[offset + 2] = (byte) (size >>> 12);
+        return offset + 3;
+    }
+
+    /**
+     * Writes the literals as a Huffman coded literals section.
+     *
+     * @return the position after the section or {@code -1} if it would not fit before {@code limit}
+     */
+    private int writeHuffmanLiterals(byte[] dst, int offset, int limit, int maxSymbol, int numSymbols) {
+        if (!buildHuffmanCode(maxSymbol, numSymbols)) {
+            return -1;
+        }
+        int numLiterals = this.numLiterals;
+        boolean singleStream = numLiterals <= 1023;
+        int sizeFormat;
+        int headerSize;
+        if (singleStream) {
+            sizeFormat = 0;
+            headerSize = 3;
+        } else if (numLiterals <= 16383) {
+            sizeFormat = 2;
+            headerSize = 4;
+        } else {
+            sizeFormat = 3;
+            headerSize = 5;
+        }
+
+        // Huffman tree description, the weight of the last symbol is implied.
+        int position = offset + headerSize;
+        int descriptionSize = 1 + (maxSymbol + 1 >>> 1);
+        if (limit - position < descriptionSize) {
+            return -1;
+        }
+        int maxBits = 0;
+        for (int symbol = 0; symbol <= maxSymbol; symbol++) {
+            maxBits = Math.max(maxBits, codeLengths[symbol]);
+        }
+        dst[position++] = (byte) (127 + maxSymbol);
+        for (int symbol = 0; symbol < maxSymbol; symbol += 2) {
+            int weight1 = weight(codeLengths[symbol], maxBits);
+            int weight2 = symbol + 1 < maxSymbol ? weight(codeLengths[symbol + 1], maxBits) : 0;
+            dst[position++] = (byte) (weight1 << 4 | weight2);
+        }
+
+        if (singleStream) {
+            position = writeHuffmanStream(0, numLiterals, dst, position, limit);
+        } else {
+            int jumpTable = position;
+            position += 6;
+            int segmentSize = numLiterals + 3 >>> 2;
+            for (int i = 0; i < 4 && position >= 0; i++) {
+                int start = i * segmentSize;
+                int end = Math.min(numLiterals, start + segmentSize);
+                int streamStart = position;
+                position = writeHuffmanStream(start, end, dst, position, limit);
+                if (i < 3 && position >= 0) {
+                    int streamSize = position - streamStart;
+                    dst[jumpTable + 2 * i] = (byte) streamSize;
+                    dst[jumpTable + 2 * i + 1] = (byte) (streamSize >>> 8);
+                }
+            }
+        }
+        if (position < 0) {
+            return -1;
+        }
+
+        int compressedSize = position - offset - headerSize;
+        long header = LITERALS_TYPE_COMPRESSED | sizeFormat << 2 | (long) numLiterals << 4;
+        switch (headerSize) {
+            case 3:
+                header |= (long) compressedSize << 14;
+                break;
+            case 4:
+                header |= (long) compressedSize << 18;
+                break;
+            default:
+                header |= (long) compressedSize << 22;
+                break;
+        }
+        for (int i = 0; i < headerSize; i++) {
+            dst[offset + i] = (byte) (header >>> (i << 3));
+        }
+        return position;
+    }
+
+    private static int weight(int codeLength, int maxBits) {
+        return codeLength == 0 ? 0 : maxBits + 1 - codeLength;
+    }
+
+    /**
+     * Computes length limited canonical Huffman codes for the current literals, ordered the way section 4.2.1.3 of
+     * RFC 8878 requires.
+     */
+    private boolean buildHuffmanCode(int maxSymbol, int numSymbols) {
+        int[] frequencies = this.frequencies;
+        int[] codeLengths = this.codeLengths;
+        int[] sorted = new int[numSymbols];
+        int n = 0;
+        for (int symbol = 0; symbol <= maxSymbol; symbol++) {
+            if (frequencies[symbol] > 0) {
+                // frequency in the high bits, symbol in the low 9 bits
+                sorted[n++] = frequencies[symbol] << 9 | symbol;
+            }
+        }
+        Arrays.sort(sorted);
+        int[] lengths = new int[numSymbols];
+        for (int i = 0; i < numSymbols; i++) {
+            lengths[i] = sorted[i] >>> 9;
+        }
+        Bzip2HuffmanAllocator.allocateHuffmanCodeLengths(lengths, HUFFMAN_MAX_BITS);
+
+        Arrays.fill(codeLengths, 0);
+        int maxBits = 0;
+        for (int i = 0; i < numSymbols; i++) {
+            int length = lengths[i];
+            codeLengths[sorted[i] & 0x1FF] = length;
+            maxBits = Math.max(maxBits, length);
+        }
+        if (maxBits > HUFFMAN_MAX_BITS) {
+            return false;
+        }
+        // The weights can only describe complete prefix codes.
+        long kraftSum = 0;
+        for (int symbol = 0; symbol <= maxSymbol; symbol++) {
+            if (codeLengths[symbol] > 0) {
+                kraftSum += 1L << maxBits - codeLengths[symbol];
+            }
+        }
+        if (kraftSum != 1L << maxBits) {
+            return false;
+        }
+
+        // Codes of larger weights (so shorter lengths) follow those of smaller weights, ties are broken by symbol.
+        int next = 0;
+        for (int weight = 1; weight <= maxBits; weight++) {
+            int length = maxBits + 1 - weight;
+            for (int symbol = 0; symbol <= maxSymbol; symbol++) {
+                if (codeLengths[symbol] == length) {
+                    codes[symbol] = next >>> weight - 1;
+                    next += 1 << weight - 1;
+                }
+            }
+        }
+        return true;
+    }
+
+    private int writeHuffmanStream(int start, int end, byte[] dst, int offset, int limit) {
+        ZstdBitWriter writer = this.writer;
+        writer.init(dst, offset, limit);
+        byte[] literals = this.literals;
+        int[] codes = this.codes;
+        int[] codeLengths = this.codeLengths;
+        // The stream is read backward, so the first literal must be written last.
+        for (int i = end - 1; i >= start; i--) {
+            int symbol = literals[i] & 0xFF;
+            if (!writer.addBits(codes[symbol], codeLengths[symbol])) {
+                return -1;
+            }
+        }
+        return writer.finish();
+    }
+
+    private int writeSequences(byte[] dst, int offset, int limit) {
+        int numSequences = this.numSequences;
+        if (limit - offset < 4) {
+            return -1;
+        }
+        if (numSequences < 128) {
+            dst[offset++] = (byte) numSequences;
+        } else if (numSequences < 0x7F00) {
+            dst[offset++] = (byte) ((numSequences >>> 8) + 128);
+            dst[offset++] = (byte) numSequences;
+        } else {
+            dst[offset++] = (byte) 255;
+            dst[offset++] = (byte) (numSequences - 0x7F00);
+            dst[offset++] = (byte) (numSequences - 0x7F00 >>> 8);
+        }
+        if (numSequences == 0) {
+            return offset;
+        }
+        dst[offset++] = (byte) (SEQUENCE_MODE_PREDEFINED << 6 | SEQUENCE_MODE_PREDEFINED << 4 |
+                                SEQUENCE_MODE_PREDEFINED << 2);
+
+        ZstdBitWriter writer = this.writer;
+        writer.init(dst, offset, limit);
+
+        // Sequences are read backward as well, so start with the last one.
+        int last = numSequences - 1;
+        int literalsLength = literalsLengths[last];
+        int matchLength = matchLengths[last];
+        int offsetValue = offsets[last] + 3;
+        int literalsLengthCode = literalsLengthCode(literalsLength);
+        int matchLengthCode = matchLengthCode(matchLength);
+        int offsetCode = highestBit(offsetValue);
+
+        int matchLengthState = MATCH_LENGTH_TABLE.initialState(matchLengthCode);
+        int offsetState = OFFSET_TABLE.initialState(offsetCode);
+        int literalsLengthState = LITERALS_LENGTH_TABLE.initialState(literalsLengthCode);
+        boolean fits = writeSequenceBits(writer, literalsLength, literalsLengthCode, matchLength, matchLengthCode,
+                                         offsetValue, offsetCode);
+
+        for (int i = last - 1; i >= 0 && fits; i--) {
+            literalsLength = literalsLengths[i];
+            matchLength = matchLengths[i];
+            offsetValue = offsets[i] + 3;
+            literalsLengthCode = literalsLengthCode(literalsLength);
+            matchLengthCode = matchLengthCode(matchLength);
+            offsetCode = highestBit(offsetValue);
+
+            offsetState = OFFSET_TABLE.encode(writer, offsetState, offsetCode);
+            matchLengthState = MATCH_LENGTH_TABLE.encode(writer, matchLengthState, matchLengthCode);
+            literalsLengthState = LITERALS_LENGTH_TABLE.encode(writer, literalsLengthState, literalsLengthCode);
+            fits = offsetState >= 0 && matchLengthState >= 0 && literalsLengthState >= 0 &&
+                   writeSequenceBits(writer, literalsLength, literalsLengthCode, matchLength, matchLengthCode,
+                                     offsetValue, offsetCode);
+        }
+        if (!fits ||
+            !MATCH_LENGTH_TABLE.flush(writer, matchLengthState) ||
+            !OFFSET_TABLE.flush(writer, offsetState) ||
+            !LITERALS_LENGTH_TABLE.flush(writer, literalsLengthState)) {
+            return -1;
+        }
+        return writer.finish();
+    }
+
+    private static boolean writeSequenceBits(ZstdBitWriter writer, int literalsLength, int literalsLengthCode,
+                                             int matchLength, int matchLengthCode, int offsetValue, int offsetCode) {
+        return writer.addBits(literalsLength - LITERALS_LENGTH_BASE[literalsLengthCode],
+                              LITERALS_LENGTH_BITS[literalsLengthCode]) &&
+               writer.addBits(matchLength - MATCH_LENGTH_BASE[matchLengthCode], MATCH_LENGTH_BITS[matchLengthCode]) &&
+               writer.addBits(offsetValue - (1 << offsetCode), offsetCode);
+    }
+
+    private static int literalsLengthCode(int literalsLength) {
+        return literalsLength < LITERALS_LENGTH_CODES.length ? LITERALS_LENGTH_CODES[literalsLength]
+                                                             : highestBit(literalsLength) + 19;
+    }
+
+    private static int matchLengthCode(int matchLength) {
+        int value = matchLength - MIN_MATCH;
+        return value < MATCH_LENGTH_CODES.length ? MATCH_LENGTH_CODES[value] : highestBit(value) + 36;
+    }
+
+    /**
+     * Builds a lookup table from the first {@code size} values (minus {@code bias}) to their code.
+     */
+    private static byte[] codeTable(int[] baselines, int bias, int size) {
+        byte[] table = new byte[size];
+        int code = 0;
+        for (int value = 0; value < size; value++) {
+            while (code + 1 < baselines.length && baselines[code + 1] - bias <= value) {
+                code++;
+            }
+            table[value] = (byte) code;
+        }
+        return table;
+    }
+
+    /**
+     * An FSE encoding table for one of the predefined distributions.
+     */
+    private static final class FseEncodingTable {
+        private final int accuracyLog;
+        private final short[] nextStates;
+        private final int[] deltaNumBits;
+        private final int[] deltaFindState;
+
+        FseEncodingTable(short[] distribution, int accuracyLog) {
+            this.accuracyLog = accuracyLog;
+            int tableSize = 1 << accuracyLog;
+            int maxSymbol = distribution.length - 1;
+
+            // Spread the symbols exactly like the decoder does.
+            int[] cumulative = new int[maxSymbol + 2];
+            byte[] symbols = new byte[tableSize];
+            int highThreshold = tableSize - 1;
+            for (int symbol = 0; symbol <= maxSymbol; symbol++) {
+                if (distribution[symbol] == -1) {
+                    cumulative[symbol + 1] = cumulative[symbol] + 1;
+                    symbols[highThreshold--] = (byte) symbol;
+                } else {
+                    cumulative[symbol + 1] = cumulative[symbol] + distribution[symbol];
+                }
+            }
+            int step = (tableSize >>> 1) + (tableSize >>> 3) + 3;
+            int mask = tableSize - 1;
+            int position = 0;
+            for (int symbol = 0; symbol <= maxSymbol; symbol++) {
+                for (int i = 0; i < distribution[symbol]; i++) {
+                    symbols[position] = (byte) symbol;
+                    do {
+                        position = position + step & mask;
+                    } while (position > highThreshold);
+                }
+            }
+
+            nextStates = new short[tableSize];
+            for (int i = 0; i < tableSize; i++) {
+                int symbol = symbols[i];
+                nextStates[cumulative[symbol]++] = (short) (tableSize + i);
+            }
+
+            deltaNumBits = new int[maxSymbol + 1];
+            deltaFindState = new int[maxSymbol + 1];
+            int total = 0;
+            for (int symbol = 0; symbol <= maxSymbol; symbol++) {
+                int count = distribution[symbol];
+                if (count == -1 || count == 1) {
+                    deltaNumBits[symbol] = (accuracyLog << 16) - tableSize;
+                    deltaFindState[symbol] = total - 1;
+                    total++;
+                } else if (count > 1) {
+                    int maxBitsOut = accuracyLog - highestBit(count - 1);
+                    int minStatePlus = count << maxBitsOut;
+                    deltaNumBits[symbol] = (maxBitsOut << 16) - minStatePlus;
+                    deltaFindState[symbol] = total - count;
+                    total += count;
+                }
+            }
+        }
+
+        int initialState(int symbol) {
+            int numBits = deltaNumBits[symbol] + (1 << 15) >>> 16;
+            int value = (numBits << 16) - deltaNumBits[symbol];
+            return nextStates[(value >>> numBits) + deltaFindState[symbol]];
+        }
+
+        /**
+         * @return the next state or {@code -1} if the bits did not fit into the stream anymore
+         */
+        int encode(ZstdBitWriter writer, int state, int symbol) {
+            int numBits = state + deltaNumBits[symbol] >>> 16;
+            if (!writer.addBits(state, numBits)) {
+                return -1;
+            }
+            return nextStates[(state >>> numBits) + deltaFindState[symbol]];
+        }
+
+        boolean flush(ZstdBitWriter writer, int state) {
+            return writer.addBits(state, accuracyLog);
+        }
+    }
+}
@@ -0,0 +1,381 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import java.util.Arrays;
+
+import static io.netty.handler.codec.compression.ZstdConstants.*;
+
+/**
+ * Decompresses the content of Zstandard blocks of type {@link ZstdConstants#BLOCK_TYPE_COMPRESSED}, as described in
+ * section 3.1.1.3 of RFC 8878. An instance keeps the entropy tables and repeat offsets that later blocks of the same
+ * frame may refer to.
+ */
+final class ZstdBlockDecompressor {
+
+    private static final ZstdFseTable DEFAULT_LITERALS_LENGTH_TABLE = defaultTable(
+            LITERALS_LENGTH_DEFAULT_DISTRIBUTION, LITERALS_LENGTH_DEFAULT_ACCURACY_LOG);
+    private static final ZstdFseTable DEFAULT_MATCH_LENGTH_TABLE = defaultTable(
+            MATCH_LENGTH_DEFAULT_DISTRIBUTION, MATCH_LENGTH_DEFAULT_ACCURACY_LOG);
+    private static final ZstdFseTable DEFAULT_OFFSET_TABLE = defaultTable(
+            OFFSET_DEFAULT_DISTRIBUTION, OFFSET_DEFAULT_ACCURACY_LOG);
+
+    private final ZstdHuffmanTable huffmanTable = new ZstdHuffmanTable();
+    private final ZstdFseTable literalsLengthTableBuffer = new ZstdFseTable(LITERALS_LENGTH_MAX_ACCURACY_LOG);
+    private final ZstdFseTable matchLengthTableBuffer = new ZstdFseTable(MATCH_LENGTH_MAX_ACCURACY_LOG);
+    private final ZstdFseTable offsetTableBuffer = new ZstdFseTable(OFFSET_MAX_ACCURACY_LOG);
+    private final ZstdBitReader reader = new ZstdBitReader();
+    private final byte[] literalsBuffer = new byte[MAX_BLOCK_SIZE];
+    private final int[] repeatOffsets = new int[3];
+
+    private ZstdFseTable literalsLengthTable;
+    private ZstdFseTable matchLengthTable;
+    private ZstdFseTable offsetTable;
+
+    private byte[] literals;
+    private int literalsOffset;
+    private int literalsLength;
+
+    // Number of bytes consumed by the last call of selectTable(...).
+    private int tableLength;
+
+    ZstdBlockDecompressor() {
+        reset();
+    }
+
+    private static ZstdFseTable defaultTable(short[] distribution, int accuracyLog) {
+        ZstdFseTable table = new ZstdFseTable(accuracyLog);
+        table.init(distribution, distribution.length - 1, accuracyLog);
+        return table;
+    }
+
+    /**
+     * Forgets all state of the previous frame.
+     */
+    void reset() {
+        literalsLengthTable = null;
+        matchLengthTable = null;
+        offsetTable = null;
+        huffmanTable.reset();
+        repeatOffsets[0] = 1;
+        repeatOffsets[1] = 4;
+        repeatOffsets[2] = 8;
+    }
+
+    /**
+     * Decompresses the block stored in {@code in} at {@code [offset, offset + length)} into {@code out}, starting at
+     * {@code outOffset}. All bytes of {@code out} before {@code outOffset} may be referenced by matches.
+     *
+     * @return the number of decompressed bytes
+     */
+    int decompress(byte[] in, int offset, int length, byte[] out, int outOffset, int outLimit) {
+        int end = offset + length;
+        int position = decodeLiterals(in, offset, end);
+        return decodeSequences(in, position, end, out, outOffset, outLimit);
+    }
+
+    private int decodeLiterals(byte[] in, int offset, int end) {
+        int header = in[offset] & 0xFF;
+        int type = header & 3;
+        int sizeFormat = header >>> 2 & 3;
+        switch (type) {
+            case LITERALS_TYPE_RAW:
+            case LITERALS_TYPE_RLE: {
+                int headerSize;
+                int size;
+                switch (sizeFormat) {
+                    case 1:
+                        headerSize = 2;
+                        checkAvailable(offset, headerSize, end);
+                        size = header >>> 4 | (in[offset + 1] & 0xFF) << 4;
+                        break;
+                    case 3:
+                        headerSize = 3;
+                        checkAvailable(offset, headerSize, end);
+                        size = header >>> 4 | (in[offset + 1] & 0xFF) << 4 | (in[offset + 2] & 0xFF) << 12;
+                        break;
+                    default:
+                        headerSize = 1;
+                        size = header >>> 3;
+                        break;
+                }
+                if (size > MAX_BLOCK_SIZE) {
+                    throw new DecompressionException("literals section too large: " + size);
+                }
+                offset += headerSize;
+                literalsLength = size;
+                if (type == LITERALS_TYPE_RAW) {
+                    checkAvailable(offset, size, end);
+                    literals = in;
+                    literalsOffset = offset;
+                    return offset + size;
+                }
+                checkAvailable(offset, 1, end);
+                Arrays.fill(literalsBuffer, 0, size, in[offset]);
+                literals = literalsBuffer;
+                literalsOffset = 0;
+                return offset + 1;
+            }
+            case LITERALS_TYPE_COMPRESSED:
+            case LITERALS_TYPE_TREELESS: {
+                int headerSize;
+                int regeneratedSize;
+                int compressedSize;
+                switch (sizeFormat) {
+                    case 2: {
+                        headerSize = 4;
+                        checkAvailable(offset, headerSize, end);
+                        int value = readIntLE(in, offset);
+                        regeneratedSize = value >>> 4 & 0x3FFF;
+                        compressedSize = value >>> 18 & 0x3FFF;
+                        break;
+                    }
+                    case 3: {
+                        headerSize = 5;
+                        checkAvailable(offset, headerSize, end);
+                        long value = readIntLE(in, offset) & 0xFFFFFFFFL | (in[offset + 4] & 0xFFL) << 32;
+                        regeneratedSize = (int) (value >>> 4 & 0x3FFFF);
+                        compressedSize = (int) (value >>> 22 & 0x3FFFF);
+                        break;
+                    }
+                    default: {
+                        headerSize = 3;
+                        checkAvailable(offset, headerSize, end);
+                        int value = header | (in[offset + 1] & 0xFF) << 8 | (in[offset + 2] & 0xFF) << 16;
+                        regeneratedSize = value >>> 4 & 0x3FF;
+                        compressedSize = value >>> 14 & 0x3FF;
+                        break;
+                    }
+                }
+                if (regeneratedSize > MAX_BLOCK_SIZE) {
+                    throw new DecompressionException("literals section too large: " + regeneratedSize);
+                }
+                offset += headerSize;
+                checkAvailable(offset, compressedSize, end);
+                int streamsEnd = offset + compressedSize;
+                if (type == LITERALS_TYPE_COMPRESSED) {
+                    offset += huffmanTable.read(in, offset, streamsEnd);
+                } else if (!huffmanTable.isInitialized()) {
+                    throw new DecompressionException("treeless literals section without a previous Huffman table");
+                }
+
+                byte[] literals = literalsBuffer;
+                if (sizeFormat == 0) {
+                    huffmanTable.decodeStream(in, offset, streamsEnd, literals, 0, regeneratedSize);
+                } else {
+                    checkAvailable(offset, 6, streamsEnd);
+                    int stream1 = offset + 6;
+                    int stream2 = stream1 + readShortLE(in, offset);
+                    int stream3 = stream2 + readShortLE(in, offset + 2);
+                    int stream4 = stream3 + readShortLE(in, offset + 4);
+                    int segmentSize = regeneratedSize + 3 >>> 2;
+                    int lastSegmentSize = regeneratedSize - 3 * segmentSize;
+                    if (stream4 > streamsEnd || lastSegmentSize < 0) {
+                        throw new DecompressionException("invalid Huffman jump table");
+                    }
+                    huffmanTable.decodeStream(in, stream1, stream2, literals, 0, segmentSize);
+                    huffmanTable.decodeStream(in, stream2, stream3, literals, segmentSize, segmentSize);
+                    huffmanTable.decodeStream(in, stream3, stream4, literals, 2 * segmentSize, segmentSize);
+                    huffmanTable.decodeStream(in, stream4, streamsEnd, literals, 3 * segmentSize, lastSegmentSize);
+                }
+                this.literals = literals;
+                literalsOffset = 0;
+                literalsLength = regeneratedSize;
+                return streamsEnd;
+            }
+            default:
+                throw new Error();
+        }
+    }
+
+    private int decodeSequences(byte[] in, int offset, int end, byte[] out, int outOffset, int outLimit) {
+        checkAvailable(offset, 1, end);
+        int numSequences = in[offset++] & 0xFF;
+        if (numSequences == 0) {
+            if (offset != end) {
+                throw new DecompressionException("unexpected data after an empty sequences section");
+            }
+            return copyLiterals(literalsOffset, literalsOffset + literalsLength, out, outOffset, outLimit) - outOffset;
+        }
+        if (numSequences == 255) {
+            checkAvailable(offset, 2, end);
+            numSequences = readShortLE(in, offset) + 0x7F00;
+            offset += 2;
+        } else if (numSequences >= 128) {
+            checkAvailable(offset, 1, end);
+            numSequences = (numSequences - 128 << 8) + (in[offset++] & 0xFF);
+        }
+
+        checkAvailable(offset, 1, end);
+        int modes = in[offset++] & 0xFF;
+        if ((modes & 3) != 0) {
+            throw new DecompressionException("reserved bits of the compression modes are set");
+        }
+        int position = offset;
+        literalsLengthTable = selectTable(literalsLengthTable, literalsLengthTableBuffer,
+                DEFAULT_LITERALS_LENGTH_TABLE, modes >>> 6, LITERALS_LENGTH_MAX_SYMBOL,
+                LITERALS_LENGTH_MAX_ACCURACY_LOG, in, position, end);
+        position += tableLength;
+        offsetTable = selectTable(offsetTable, offsetTableBuffer, DEFAULT_OFFSET_TABLE, modes >>> 4 & 3,
+                OFFSET_MAX_SYMBOL, OFFSET_MAX_ACCURACY_LOG, in, position, end);
+        position += tableLength;
+        matchLengthTable = selectTable(matchLengthTable, matchLengthTableBuffer, DEFAULT_MATCH_LENGTH_TABLE,
+                modes >>> 2 & 3, MATCH_LENGTH_MAX_SYMBOL, MATCH_LENGTH_MAX_ACCURACY_LOG, in, position, end);
+        position += tableLength;
+
+        return executeSequences(in, position, end, numSequences, out, outOffset, outLimit) - outOffset;
+    }
+
+    private ZstdFseTable selectTable(ZstdFseTable previous, ZstdFseTable buffer, ZstdFseTable defaultTable,
+                                     int mode, int maxSymbol, int maxAccuracyLog, byte[] in, int offset, int end) {
+        switch (mode) {
+            case SEQUENCE_MODE_PREDEFINED:
+                tableLength = 0;
+                return defaultTable;
+            case SEQUENCE_MODE_RLE: {
+                checkAvailable(offset, 1, end);
+                int symbol = in[offset] & 0xFF;
+                if (symbol > maxSymbol) {
+                    throw new DecompressionException("invalid RLE symbol: " + symbol);
+                }
+                buffer.initRle(symbol);
+                tableLength = 1;
+                return buffer;
+            }
+            case SEQUENCE_MODE_COMPRESSED:
+                tableLength = buffer.read(in, offset, end, maxSymbol, maxAccuracyLog);
+                return buffer;
+            default:
+                if (previous == null) {
+                    throw new DecompressionException("repeat mode without a previous table");
+                }
+                tableLength = 0;
+                return previous;
+        }
+    }
+
+    private int executeSequences(byte[] in, int offset, int end, int numSequences,
+                                 byte[] out, int outOffset, int outLimit) {
+        ZstdFseTable literalsLengthTable = this.literalsLengthTable;
+        ZstdFseTable offsetTable = this.offsetTable;
+        ZstdFseTable matchLengthTable = this.matchLengthTable;
+        int[] repeatOffsets = this.repeatOffsets;
+        byte[] literals = this.literals;
+        int literalsPosition = literalsOffset;
+        int literalsEnd = literalsOffset + literalsLength;
+
+        ZstdBitReader reader = this.reader;
+        reader.init(in, offset, end);
+        int literalsLengthState = reader.readBits(literalsLengthTable.accuracyLog);
+        int offsetState = reader.readBits(offsetTable.accuracyLog);
+        int matchLengthState = reader.readBits(matchLengthTable.accuracyLog);
+        reader.reload();
+
+        int op = outOffset;
+        for (int i = 0; i < numSequences; i++) {
+            int literalsLengthCode = literalsLengthTable.symbols[literalsLengthState];
+            int offsetCode = offsetTable.symbols[offsetState];
+            int matchLengthCode = matchLengthTable.symbols[matchLengthState];
+
+            if (offsetCode > 30) {
+                throw new DecompressionException("unsupported offset code: " + offsetCode);
+            }
+            int offsetValue = (1 << offsetCode) + reader.readBits(offsetCode);
+            reader.reload();
+            int matchLength = MATCH_LENGTH_BASE[matchLengthCode] + reader.readBits(MATCH_LENGTH_BITS[matchLengthCode]);
+            int literalsLength = LITERALS_LENGTH_BASE[literalsLengthCode] +
+                    reader.readBits(LITERALS_LENGTH_BITS[literalsLengthCode]);
+            reader.reload();
+
+            int matchOffset;
+            if (offsetValue > 3) {
+                matchOffset = offsetValue - 3;
+                repeatOffsets[2] = repeatOffsets[1];
+                repeatOffsets[1] = repeatOffsets[0];
+                repeatOffsets[0] = matchOffset;
+            } else {
+                int index = offsetValue - 1 + (literalsLength == 0 ? 1 : 0);
+                if (index == 0) {
+                    matchOffset = repeatOffsets[0];
+                } else {
+                    matchOffset = index == 3 ? repeatOffsets[0] - 1 : repeatOffsets[index];
+                    if (index != 1) {
+                        repeatOffsets[2] = repeatOffsets[1];
+                    }
+                    repeatOffsets[1] = repeatOffsets[0];
+                    repeatOffsets[0] = matchOffset;
+                }
+            }
+
+            if (i != numSequences - 1) {
+                literalsLengthState = literalsLengthTable.baseStates[literalsLengthState] +
+                        reader.readBits(literalsLengthTable.numBits[literalsLengthState]);
+                matchLengthState = matchLengthTable.baseStates[matchLengthState] +
+                        reader.readBits(matchLengthTable.numBits[matchLengthState]);
+                offsetState = offsetTable.baseStates[offsetState] + reader.readBits(offsetTable.numBits[offsetState]);
+                reader.reload();
+            }
+
+            if (literalsLength > literalsEnd - literalsPosition || literalsLength + matchLength > outLimit - op) {
+                throw new DecompressionException("sequence exceeds the block size");
+            }
+            System.arraycopy(literals, literalsPosition, out, op, literalsLength);
+            literalsPosition += literalsLength;
+            op += literalsLength;
+
+            if (matchOffset <= 0 || matchOffset > op) {
+                throw new DecompressionException("invalid match offset: " + matchOffset);
+            }
+            int matchStart = op - matchOffset;
+            if (matchOffset >= matchLength) {
+                System.arraycopy(out, matchStart, out, op, matchLength);
+            } else {
+                for (int j = 0; j < matchLength; j++) {
+                    out[op + j] = out[matchStart + j];
+                }
+            }
+            op += matchLength;
+        }
+        if (!reader.isFullyConsumed()) {
+            throw new DecompressionException("sequences bit stream has unexpected length");
+        }
+        return copyLiterals(literalsPosition, literalsEnd, out, op, outLimit);
+    }
+
+    private int copyLiterals(int literalsPosition, int literalsEnd, byte[] out, int op, int outLimit) {
+        int length = literalsEnd - literalsPosition;
+        if (length > outLimit - op) {
+            throw new DecompressionException("literals exceed the block size");
+        }
+        System.arraycopy(literals, literalsPosition, out, op, length);
+        return op + length;
+    }
+
+    private static void checkAvailable(int offset, int length, int end) {
+        if (length > end - offset) {
+            throw new DecompressionException("truncated compressed block");
+        }
+    }
+
+    private static int readShortLE(byte[] in, int offset) {
+        return in[offset] & 0xFF | (in[offset + 1] & 0xFF) << 8;
+    }
+
+    private static int readIntLE(byte[] in, int offset) {
+        return in[offset] & 0xFF | (in[offset + 1] & 0xFF) << 8 |
+               (in[offset + 2] & 0xFF) << 16 | (in[offset + 3] & 0xFF) << 24;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+/**
+ * Constants for both the {@link ZstdEncoder} and the {@link ZstdDecoder}, as defined by
+ * <a href="https://tools.ietf.org/html/rfc8878">RFC 8878</a>.
+ */
+final class ZstdConstants {
+
+    /**
+     * Magic number of a Zstandard frame.
+     */
+    static final int MAGIC_NUMBER = 0xFD2FB528;
+
+    /**
+     * Magic numbers of skippable frames, only the lowest 4 bits may vary.
+     */
+    static final int SKIPPABLE_MAGIC_NUMBER = 0x184D2A50;
+    static final int SKIPPABLE_MAGIC_MASK = 0xFFFFFFF0;
+
+    /**
+     * Block types.
+     */
+    static final int BLOCK_TYPE_RAW = 0;
+    static final int BLOCK_TYPE_RLE = 1;
+    static final int BLOCK_TYPE_COMPRESSED = 2;
+
+    /**
+     * Literals block types.
+     */
+    static final int LITERALS_TYPE_RAW = 0;
+    static final int LITERALS_TYPE_RLE = 1;
+    static final int LITERALS_TYPE_COMPRESSED = 2;
+    static final int LITERALS_TYPE_TREELESS = 3;
+
+    /**
+     * Compression modes of the sequences section.
+     */
+    static final int SEQUENCE_MODE_PREDEFINED = 0;
+    static final int SEQUENCE_MODE_RLE = 1;
+    static final int SEQUENCE_MODE_COMPRESSED = 2;
+    static final int SEQUENCE_MODE_REPEAT = 3;
+
+    static final int BLOCK_HEADER_SIZE = 3;
+    static final int CHECKSUM_SIZE = 4;
+
+    /**
+     * Largest size of a block, no matter the window size.
+     */
+    static final int MAX_BLOCK_SIZE = 1 << 17;
+
+    static final int MIN_WINDOW_LOG = 10;
+    static final int MAX_WINDOW_LOG = 31;
+
+    /**
+     * Window size used by the {@link ZstdDecoder} if not specified otherwise.
+     */
+    static final int DEFAULT_MAX_WINDOW_SIZE = 1 << 23;
+
+    static final int HUFFMAN_MAX_BITS = 11;
+    static final int HUFFMAN_MAX_SYMBOL = 255;
+    static final int HUFFMAN_WEIGHTS_MAX_ACCURACY_LOG = 6;
+
+    static final int LITERALS_LENGTH_MAX_ACCURACY_LOG = 9;
+    static final int MATCH_LENGTH_MAX_ACCURACY_LOG = 9;
+    static final int OFFSET_MAX_ACCURACY_LOG = 8;
+
+    static final int LITERALS_LENGTH_MAX_SYMBOL = 35;
+    static final int MATCH_LENGTH_MAX_SYMBOL = 52;
+    static final int OFFSET_MAX_SYMBOL = 31;
+
+    static final int MIN_MATCH = 3;
+
+    /**
+     * Baselines and number of additional bits of the literals length codes.
+     */
+    static final int[] LITERALS_LENGTH_BASE = {
+            0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15,
+            16, 18, 20, 22, 24, 28, 32, 40, 48, 64, 128, 256, 512, 1024, 2048, 4096,
+            8192, 16384, 32768, 65536 };
+    static final int[] LITERALS_LENGTH_BITS = {
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            1, 1, 1, 1, 2, 2, 3, 3, 4, 6, 7, 8, 9, 10, 11, 12,
+            13, 14, 15, 16 };
+
+    /**
+     * Baselines and number of additional bits of the match length codes.
+     */
+    static final int[] MATCH_LENGTH_BASE = {
+            3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18,
+            19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32, 33, 34,
+            35, 37, 39, 41, 43, 47, 51, 59, 67, 83, 99, 131, 259, 515, 1027, 2051,
+            4099, 8195, 16387, 32771, 65539 };
+    static final int[] MATCH_LENGTH_BITS = {
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            1, 1, 1, 1, 2, 2, 3, 3, 4, 4, 5, 7, 8, 9, 10, 11,
+            12, 13, 14, 15, 16 };
+
+    /**
+     * Predefined distributions used when a sequences section uses {@link #SEQUENCE_MODE_PREDEFINED}.
+     */
+    static final short[] LITERALS_LENGTH_DEFAULT_DISTRIBUTION = {
+            4, 3, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 1, 1, 1,
+            2, 2, 2, 2, 2, 2, 2, 2, 2, 3, 2, 1, 1, 1, 1, 1,
+            -1, -1, -1, -1 };
+    static final int LITERALS_LENGTH_DEFAULT_ACCURACY_LOG = 6;
+
+    static final short[] MATCH_LENGTH_DEFAULT_DISTRIBUTION = {
+            1, 4, 3, 2, 2, 2, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1,
+            1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+            1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, -1, -1,
+            -1, -1, -1, -1, -1 };
+    static final int MATCH_LENGTH_DEFAULT_ACCURACY_LOG = 6;
+
+    static final short[] OFFSET_DEFAULT_DISTRIBUTION = {
+            1, 1, 1, 1, 1, 1, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1,
+            1, 1, 1, 1, 1, 1, 1, 1, -1, -1, -1, -1, -1 };
+    static final int OFFSET_DEFAULT_ACCURACY_LOG = 5;
+
+    /**
+     * Returns the position of the highest set bit of {@code value}, which must be positive.
+     */
+    static int highestBit(int value) {
+        return 31 - Integer.numberOfLeadingZeros(value);
+    }
+
+    private ZstdConstants() { }
+}
@@ -0,0 +1,384 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.util.internal.ObjectUtil;
+
+import java.util.List;
+
+import static io.netty.handler.codec.compression.ZstdConstants.*;
+
+/**
+ * Uncompresses a {@link ByteBuf} encoded with the Zstandard format.
+ *
+ * See <a href="https://tools.ietf.org/html/rfc8878">RFC 8878</a> for a full description of the format. Every block
+ * is emitted as soon as it was decompressed, so only the window of the current frame needs to be retained. Frames
+ * that require a preset dictionary are not supported.
+ */
+public class ZstdDecoder extends ByteToMessageDecoder {
+    /**
+     * Current state of stream.
+     */
+    private enum State {
+        INIT_FRAME,
+        DECODE_FRAME_HEADER,
+        DECODE_BLOCK_HEADER,
+        DECODE_BLOCK,
+        DECODE_CHECKSUM,
+        SKIP_FRAME,
+        CORRUPTED
+    }
+
+    private State currentState = State.INIT_FRAME;
+
+    /**
+     * Largest window size that is accepted.
+     */
+    private final int maxWindowSize;
+
+    private final ZstdBlockDecompressor decompressor = new ZstdBlockDecompressor();
+    private final XxHash64 checksum = new XxHash64();
+
+    /**
+     * Already decompressed content of the current frame which may be referenced by the following blocks.
+     */
+    private byte[] window;
+    private int windowPosition;
+    private int windowLimit;
+    private int windowSize;
+
+    /**
+     * Copy of the current block if the inbound buffer is not backed by an array.
+     */
+    private byte[] blockBuffer;
+
+    private boolean hasChecksum;
+    private long contentSize;
+    private long decompressedSize;
+    private int maxBlockSize;
+    private boolean lastBlock;
+    private int blockType;
+    private int blockSize;
+    private long bytesToSkip;
+
+    /**
+     * Creates a new decoder which accepts frames with a window size of up to 8 MiB.
+     */
+    public ZstdDecoder() {
+        this(DEFAULT_MAX_WINDOW_SIZE);
+    }
+
+    /**
+     * Creates a new decoder.
+     *
+     * @param maxWindowSize  the largest window size, and so the largest amount of memory, a frame may require.
+     *                       Frames that declare a larger window are rejected with a {@link DecompressionException}
+     */
+    public ZstdDecoder(int maxWindowSize) {
+        this.maxWindowSize = ObjectUtil.checkPositive(maxWindowSize, "maxWindowSize");
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        try {
+            for (;;) {
+                switch (currentState) {
+                    case INIT_FRAME:
+                        if (in.readableBytes() < 4) {
+                            return;
+                        }
+                        int magic = in.getIntLE(in.readerIndex());
+                        if ((magic & SKIPPABLE_MAGIC_MASK) == SKIPPABLE_MAGIC_NUMBER) {
+                            if (in.readableBytes() < 8) {
+                                return;
+                            }
+                            bytesToSkip = in.getUnsignedIntLE(in.readerIndex() + 4);
+                            in.skipBytes(8);
+                            currentState = State.SKIP_FRAME;
+                            break;
+                        }
+                        if (magic != MAGIC_NUMBER) {
+                            throw new DecompressionException("unexpected frame identifier");
+                        }
+                        in.skipBytes(4);
+                        currentState = State.DECODE_FRAME_HEADER;
+                        // fall through
+                    case DECODE_FRAME_HEADER:
+                        if (!decodeFrameHeader(in)) {
+                            return;
+                        }
+                        currentState = State.DECODE_BLOCK_HEADER;
+                        // fall through
+                    case DECODE_BLOCK_HEADER:
+                        if (in.readableBytes() < BLOCK_HEADER_SIZE) {
+                            return;
+                        }
+                        int header = in.readUnsignedMediumLE();
+                        lastBlock = (header & 1) != 0;
+                        blockType = header >>> 1 & 3;
+                        blockSize = header >>> 3;
+                        if (blockType > BLOCK_TYPE_COMPRESSED) {
+                            throw new DecompressionException("unexpected block type: " + blockType);
+                        }
+                        if (blockSize > maxBlockSize) {
+                            throw new DecompressionException(String.format(
+                                    "invalid block size: %d (expected: 0-%d)", blockSize, maxBlockSize));
+                        }
+                        currentState = State.DECODE_BLOCK;
+                        // fall through
+                    case DECODE_BLOCK:
+                        if (!decodeBlock(ctx, in, out)) {
+                            return;
+                        }
+                        if (!lastBlock) {
+                            currentState = State.DECODE_BLOCK_HEADER;
+                            break;
+                        }
+                        if (contentSize >= 0 && contentSize != decompressedSize) {
+                            throw new DecompressionException(String.format(
+                                    "frame content size mismatch: %d (expected: %d)", decompressedSize, contentSize));
+                        }
+                        if (!hasChecksum) {
+                            currentState = State.INIT_FRAME;
+                            break;
+                        }
+                        currentState = State.DECODE_CHECKSUM;
+                        // fall through
+                    case DECODE_CHECKSUM:
+                        if (in.readableBytes() < CHECKSUM_SIZE) {
+                            return;
+                        }
+                        int expected = in.readIntLE();
+                        int actual = (int) checksum.getValue();
+                        if (expected != actual) {
+                            throw new DecompressionException(String.format(
+                                    "stream corrupted: mismatching checksum: %d (expected: %d)", actual, expected));
+                        }
+                        currentState = State.INIT_FRAME;
+                        break;
+                    case SKIP_FRAME:
+                        int skip = (int) Math.min(bytesToSkip, in.readableBytes());
+                        in.skipBytes(skip);
+                        bytesToSkip -= skip;
+                        if (bytesToSkip > 0) {
+                            return;
+                        }
+                        currentState = State.INIT_FRAME;
+                        break;
+                    case CORRUPTED:
+                        in.skipBytes(in.readableBytes());
+                        return;
+                    default:
+                        throw new IllegalStateException();
+                }
+            }
+        } catch (Exception e) {
+            currentState = State.CORRUPTED;
+            throw e;
+        }
+    }
+
+    private boolean decodeFrameHeader(ByteBuf in) {
+        if (!in.isReadable()) {
+            return false;
+        }
+        int descriptor = in.getUnsignedByte(in.readerIndex());
+        int contentSizeFlag = descriptor >>> 6;
+        boolean singleSegment = (descriptor & 0x20) != 0;
+        int dictionaryIdFlag = descriptor & 3;
+        int contentSizeLength = contentSizeFlag == 0 ? singleSegment ? 1 : 0 : 1 << contentSizeFlag;
+        int dictionaryIdLength = dictionaryIdFlag == 3 ? 4 : dictionaryIdFlag;
+        int headerLength = 1 + (singleSegment ? 0 : 1) + dictionaryIdLength + contentSizeLength;
+        if (in.readableBytes() < headerLength) {
+            return false;
+        }
+        if ((descriptor & 0x08) != 0) {
+            throw new DecompressionException("reserved bit of the frame header descriptor is set");
+        }
+        in.skipBytes(1);
+
+        long windowSize = -1;
+        if (!singleSegment) {
+            int windowDescriptor = in.readUnsignedByte();
+            int windowLog = MIN_WINDOW_LOG + (windowDescriptor >>> 3);
+            long windowBase = 1L << windowLog;
+            windowSize = windowBase + (windowBase >>> 3) * (windowDescriptor & 7);
+        }
+
+        long dictionaryId;
+        switch (dictionaryIdLength) {
+            case 1:
+                dictionaryId = in.readUnsignedByte();
+                break;
+            case 2:
+                dictionaryId = in.readUnsignedShortLE();
+                break;
+            case 4:
+                dictionaryId = in.readUnsignedIntLE();
+                break;
+            default:
+                dictionaryId = 0;
+                break;
+        }
+        if (dictionaryId != 0) {
+            throw new DecompressionException("frames with a dictionary are not supported");
+        }
+
+        switch (contentSizeLength) {
+            case 1:
+                contentSize = in.readUnsignedByte();
+                break;
+            case 2:
+                contentSize = in.readUnsignedShortLE() + 256;
+                break;
+            case 4:
+                contentSize = in.readUnsignedIntLE();
+                break;
+            case 8:
+                contentSize = in.readLongLE();
+                break;
+            default:
+                contentSize = -1;
+                break;
+        }
+        if (singleSegment) {
+            windowSize = contentSize;
+        }
+        if (windowSize < 0 || windowSize > maxWindowSize) {
+            throw new DecompressionException(String.format(
+                    "unsupported window size: %d (expected: 0-%d)", windowSize, maxWindowSize));
+        }
+
+        this.windowSize = (int) windowSize;
+        maxBlockSize = Math.min(this.windowSize, MAX_BLOCK_SIZE);
+        // A single segment is never larger than the window, otherwise keep room for the blocks to come so the
+        // window does not need to be moved after every block.
+        windowLimit = singleSegment ? this.windowSize : 2 * this.windowSize + maxBlockSize;
+        windowPosition = 0;
+        decompressedSize = 0;
+        hasChecksum = (descriptor & 0x04) != 0;
+        checksum.reset();
+        decompressor.reset();
+        return true;
+    }
+
+    private boolean decodeBlock(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+        int blockSize = this.blockSize;
+        int decompressedLength;
+        switch (blockType) {
+            case BLOCK_TYPE_RAW:
+                if (in.readableBytes() < blockSize) {
+                    return false;
+                }
+                ensureWindow(blockSize);
+                in.getBytes(in.readerIndex(), window, windowPosition, blockSize);
+                if (blockSize > 0) {
+                    out.add(in.readRetainedSlice(blockSize));
+                }
+                decompressedLength = blockSize;
+                break;
+            case BLOCK_TYPE_RLE:
+                if (!in.isReadable()) {
+                    return false;
+                }
+                ensureWindow(blockSize);
+                byte value = in.readByte();
+                for (int i = windowPosition; i < windowPosition + blockSize; i++) {
+                    window[i] = value;
+                }
+                decompressedLength = blockSize;
+                emit(ctx, out, decompressedLength);
+                break;
+            case BLOCK_TYPE_COMPRESSED:
+                if (in.readableBytes() < blockSize) {
+                    return false;
+                }
+                if (blockSize == 0) {
+                    throw new DecompressionException("empty compressed block");
+                }
+                byte[] src;
+                int srcOffset;
+                if (in.hasArray()) {
+                    src = in.array();
+                    srcOffset = in.arrayOffset() + in.readerIndex();
+                } else {
+                    if (blockBuffer == null) {
+                        blockBuffer = new byte[MAX_BLOCK_SIZE];
+                    }
+                    src = blockBuffer;
+                    srcOffset = 0;
+                    in.getBytes(in.readerIndex(), src, 0, blockSize);
+                }
+                ensureWindow(maxBlockSize);
+                decompressedLength = decompressor.decompress(
+                        src, srcOffset, blockSize, window, windowPosition, windowPosition + maxBlockSize);
+                in.skipBytes(blockSize);
+                emit(ctx, out, decompressedLength);
+                break;
+            default:
+                throw new IllegalStateException();
+        }
+
+        if (hasChecksum) {
+            checksum.update(window, windowPosition, decompressedLength);
+        }
+        windowPosition += decompressedLength;
+        decompressedSize += decompressedLength;
+        if (contentSize >= 0 && decompressedSize > contentSize) {
+            throw new DecompressionException("frame content exceeds the declared size: " + contentSize);
+        }
+        return true;
+    }
+
+    private void emit(ChannelHandlerContext ctx, List<Object> out, int length) {
+        if (length > 0) {
+            ByteBuf uncompressed = ctx.alloc().buffer(length, length);
+            uncompressed.writeBytes(window, windowPosition, length);
+            out.add(uncompressed);
+        }
+    }
+
+    /**
+     * Makes sure {@code length} more bytes fit into the window, while keeping the last {@link #windowSize} bytes
+     * that matches may still refer to.
+     */
+    private void ensureWindow(int length) {
+        byte[] window = this.window;
+        int required = windowPosition + length;
+        if (window != null && required <= window.length) {
+            return;
+        }
+        if (required > windowLimit) {
+            int keep = Math.min(windowSize, windowPosition);
+            System.arraycopy(window, windowPosition - keep, window, 0, keep);
+            windowPosition = keep;
+            required = keep + length;
+            if (required <= window.length) {
+                return;
+            }
+        }
+        int newLength = window == null ? 0 : window.length;
+        newLength = Math.max(required, Math.min(windowLimit, Math.max(newLength << 1, 1 << 16)));
+        byte[] newWindow = new byte[newLength];
+        if (window != null) {
+            System.arraycopy(window, 0, newWindow, 0, windowPosition);
+        }
+        this.window = newWindow;
+    }
+}
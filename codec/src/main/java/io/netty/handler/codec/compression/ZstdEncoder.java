@@ -0,0 +1,369 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.ChannelPromiseNotifier;
+import io.netty.handler.codec.EncoderException;
+import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.internal.ObjectUtil;
+
+import java.util.concurrent.TimeUnit;
+
+import static io.netty.handler.codec.compression.ZstdConstants.*;
+import static io.netty.util.internal.ThrowableUtil.unknownStackTrace;
+
+/**
+ * Compresses a {@link ByteBuf} using the Zstandard format.
+ *
+ * See <a href="https://tools.ietf.org/html/rfc8878">RFC 8878</a> for a full description of the format. The whole
+ * output is a single frame whose content checksum is written once the encoder is closed. Data is compressed in
+ * blocks of up to {@code blockSize} bytes, a block is also written whenever the {@link ChannelPipeline} is flushed.
+ */
+public class ZstdEncoder extends MessageToByteEncoder<ByteBuf> {
+    private static final EncoderException ENCODE_FINSHED_EXCEPTION = unknownStackTrace(new EncoderException(
+                    new IllegalStateException("encode finished and not enough space to write remaining data")),
+                    ZstdEncoder.class, "encode");
+
+    static final int DEFAULT_COMPRESSION_LEVEL = 3;
+    static final int MAX_COMPRESSION_LEVEL = 9;
+    static final int MIN_BLOCK_SIZE = 64;
+    static final int DEFAULT_MAX_ENCODE_SIZE = Integer.MAX_VALUE;
+
+    private static final int FRAME_HEADER_SIZE = 4 + 1 + 1;
+
+    private final int compressionLevel;
+    private final int blockSize;
+
+    /**
+     * Maximum size for any buffer to write encoded (compressed) data into.
+     */
+    private final int maxEncodeSize;
+
+    private final XxHash64 checksum = new XxHash64();
+
+    /**
+     * Underlying compressor in use, created once the first block is written.
+     */
+    private ZstdBlockCompressor compressor;
+
+    /**
+     * Inner byte buffer for outgoing data. It's capacity will be {@link #blockSize}.
+     */
+    private ByteBuf buffer;
+
+    /**
+     * Holds the compressed block before it is known to be smaller than the uncompressed one.
+     */
+    private byte[] compressed;
+
+    private boolean frameHeaderWritten;
+
+    /**
+     * Indicates if the compressed stream has been finished.
+     */
+    private volatile boolean finished;
+
+    /**
+     * Used to interact with its {@link ChannelPipeline} and other handlers.
+     */
+    private volatile ChannelHandlerContext ctx;
+
+    /**
+     * Creates a new encoder with the default compression level ({@code 3}) and block size (128 KB).
+     */
+    public ZstdEncoder() {
+        this(DEFAULT_COMPRESSION_LEVEL);
+    }
+
+    /**
+     * Creates a new encoder with the specified {@code compressionLevel} and the default block size (128 KB).
+     *
+     * @param compressionLevel  {@code 1} yields the fastest compression and {@code 9} yields the best compression
+     */
+    public ZstdEncoder(int compressionLevel) {
+        this(compressionLevel, MAX_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates a new encoder.
+     *
+     * @param compressionLevel  {@code 1} yields the fastest compression and {@code 9} yields the best compression
+     * @param blockSize         the maximum number of bytes to try to compress at once, must be >= 64 and <= 128 KB
+     */
+    public ZstdEncoder(int compressionLevel, int blockSize) {
+        this(compressionLevel, blockSize, DEFAULT_MAX_ENCODE_SIZE);
+    }
+
+    /**
+     * Creates a new encoder.
+     *
+     * @param compressionLevel  {@code 1} yields the fastest compression and {@code 9} yields the best compression
+     * @param blockSize         the maximum number of bytes to try to compress at once, must be >= 64 and <= 128 KB
+     * @param maxEncodeSize     the maximum size for an encode (compressed) buffer
+     */
+    public ZstdEncoder(int compressionLevel, int blockSize, int maxEncodeSize) {
+        if (compressionLevel < 1 || compressionLevel > MAX_COMPRESSION_LEVEL) {
+            throw new IllegalArgumentException(String.format(
+                    "compressionLevel: %d (expected: 1-%d)", compressionLevel, MAX_COMPRESSION_LEVEL));
+        }
+        if (blockSize < MIN_BLOCK_SIZE || blockSize > MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException(String.format(
+                    "blockSize: %d (expected: %d-%d)", blockSize, MIN_BLOCK_SIZE, MAX_BLOCK_SIZE));
+        }
+        this.compressionLevel = compressionLevel;
+        this.blockSize = blockSize;
+        this.maxEncodeSize = ObjectUtil.checkPositive(maxEncodeSize, "maxEncodeSize");
+    }
+
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, ByteBuf msg, boolean preferDirect) {
+        return allocateBuffer(ctx, msg, preferDirect, true);
+    }
+
+    private ByteBuf allocateBuffer(ChannelHandlerContext ctx, ByteBuf msg, boolean preferDirect,
+                                   boolean allowEmptyReturn) {
+        int remaining = msg.readableBytes() + buffer.readableBytes();
+
+        // quick overflow check
+        if (remaining < 0) {
+            throw new EncoderException("too much data to allocate a buffer for compression");
+        }
+        if (allowEmptyReturn && remaining < blockSize) {
+            return Unpooled.EMPTY_BUFFER;
+        }
+
+        // Blocks are never larger than their uncompressed content.
+        long targetBufSize = FRAME_HEADER_SIZE + remaining + (long) BLOCK_HEADER_SIZE * (remaining / blockSize + 1);
+        if (targetBufSize > maxEncodeSize) {
+            throw new EncoderException(String.format("requested encode buffer size (%d bytes) exceeds the maximum " +
+                                                     "allowable size (%d bytes)", targetBufSize, maxEncodeSize));
+        }
+
+        if (preferDirect) {
+            return ctx.alloc().ioBuffer((int) targetBufSize);
+        } else {
+            return ctx.alloc().heapBuffer((int) targetBufSize);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Encodes the input buffer into {@link #blockSize} chunks in the output buffer. Data is only compressed and
+     * written once we hit the {@link #blockSize}; else, it is copied into the backing {@link #buffer} to await
+     * more data.
+     */
+    @Override
+    protected void encode(ChannelHandlerContext ctx, ByteBuf in, ByteBuf out) throws Exception {
+        if (finished) {
+            if (!out.isWritable(in.readableBytes())) {
+                // out should be EMPTY_BUFFER because we should have allocated enough space above in allocateBuffer.
+                throw ENCODE_FINSHED_EXCEPTION;
+            }
+            out.writeBytes(in);
+            return;
+        }
+
+        final ByteBuf buffer = this.buffer;
+        int length;
+        while ((length = in.readableBytes()) > 0) {
+            final int nextChunkSize = Math.min(length, buffer.writableBytes());
+            in.readBytes(buffer, nextChunkSize);
+
+            if (!buffer.isWritable()) {
+                flushBufferedData(out);
+            }
+        }
+    }
+
+    private void writeFrameHeader(ByteBuf out) {
+        if (frameHeaderWritten) {
+            return;
+        }
+        frameHeaderWritten = true;
+        int windowLog = Math.max(MIN_WINDOW_LOG, 32 - Integer.numberOfLeadingZeros(blockSize - 1));
+        out.writeIntLE(MAGIC_NUMBER);
+        // Content checksum flag set, no content size, no dictionary.
+        out.writeByte(0x04);
+        out.writeByte(windowLog - MIN_WINDOW_LOG << 3);
+    }
+
+    private void flushBufferedData(ByteBuf out) {
+        final int flushableBytes = buffer.readableBytes();
+        if (flushableBytes == 0) {
+            return;
+        }
+        out.ensureWritable(FRAME_HEADER_SIZE + BLOCK_HEADER_SIZE + flushableBytes);
+        writeFrameHeader(out);
+
+        final byte[] src = buffer.array();
+        final int srcOffset = buffer.arrayOffset() + buffer.readerIndex();
+        checksum.update(src, srcOffset, flushableBytes);
+
+        if (isRun(src, srcOffset, flushableBytes)) {
+            out.writeMediumLE(BLOCK_TYPE_RLE << 1 | flushableBytes << 3);
+            out.writeByte(src[srcOffset]);
+        } else {
+            if (compressor == null) {
+                compressor = new ZstdBlockCompressor(blockSize, 1 << compressionLevel - 1);
+                compressed = new byte[blockSize];
+            }
+            int compressedLength = compressor.compress(src, srcOffset, flushableBytes, compressed, 0,
+                                                       flushableBytes - 1);
+            if (compressedLength > 0) {
+                out.writeMediumLE(BLOCK_TYPE_COMPRESSED << 1 | compressedLength << 3);
+                out.writeBytes(compressed, 0, compressedLength);
+            } else {
+                out.writeMediumLE(BLOCK_TYPE_RAW << 1 | flushableBytes << 3);
+                out.writeBytes(src, srcOffset, flushableBytes);
+            }
+        }
+        buffer.clear();
+    }
+
+    private static boolean isRun(byte[] src, int offset, int length) {
+        byte value = src[offset];
+        for (int i = offset + 1; i < offset + length; i++) {
+            if (src[i] != value) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void flush(final ChannelHandlerContext ctx) throws Exception {
+        if (buffer != null && buffer.isReadable()) {
+            final ByteBuf buf = allocateBuffer(ctx, Unpooled.EMPTY_BUFFER, isPreferDirect(), false);
+            flushBufferedData(buf);
+            ctx.write(buf);
+        }
+        ctx.flush();
+    }
+
+    private ChannelFuture finishEncode(final ChannelHandlerContext ctx, ChannelPromise promise) {
+        if (finished) {
+            promise.setSuccess();
+            return promise;
+        }
+        finished = true;
+
+        final ByteBuf footer = ctx.alloc().heapBuffer(
+                FRAME_HEADER_SIZE + 2 * BLOCK_HEADER_SIZE + buffer.readableBytes() + CHECKSUM_SIZE);
+        flushBufferedData(footer);
+        writeFrameHeader(footer);
+
+        // An empty last block ends the frame.
+        footer.writeMediumLE(1 | BLOCK_TYPE_RAW << 1);
+        footer.writeIntLE((int) checksum.getValue());
+
+        return ctx.writeAndFlush(footer, promise);
+    }
+
+    /**
+     * Returns {@code true} if and only if the compressed stream has been finished.
+     */
+    public boolean isClosed() {
+        return finished;
+    }
+
+    /**
+     * Close this {@link ZstdEncoder} and so finish the encoding.
+     *
+     * The returned {@link ChannelFuture} will be notified once the operation completes.
+     */
+    public ChannelFuture close() {
+        return close(ctx().newPromise());
+    }
+
+    /**
+     * Close this {@link ZstdEncoder} and so finish the encoding.
+     * The given {@link ChannelFuture} will be notified once the operation
+     * completes and will also be returned.
+     */
+    public ChannelFuture close(final ChannelPromise promise) {
+        ChannelHandlerContext ctx = ctx();
+        EventExecutor executor = ctx.executor();
+        if (executor.inEventLoop()) {
+            return finishEncode(ctx, promise);
+        } else {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ChannelFuture f = finishEncode(ctx(), promise);
+                    f.addListener(new ChannelPromiseNotifier(promise));
+                }
+            });
+            return promise;
+        }
+    }
+
+    @Override
+    public void close(final ChannelHandlerContext ctx, final ChannelPromise promise) throws Exception {
+        ChannelFuture f = finishEncode(ctx, ctx.newPromise());
+        f.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture f) throws Exception {
+                ctx.close(promise);
+            }
+        });
+
+        if (!f.isDone()) {
+            // Ensure the channel is closed even if the write operation completes in time.
+            ctx.executor().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    ctx.close(promise);
+                }
+            }, 10, TimeUnit.SECONDS); // FIXME: Magic number
+        }
+    }
+
+    private ChannelHandlerContext ctx() {
+        ChannelHandlerContext ctx = this.ctx;
+        if (ctx == null) {
+            throw new IllegalStateException("not added to a pipeline");
+        }
+        return ctx;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+        // Ensure we use a heap based ByteBuf.
+        buffer = Unpooled.wrappedBuffer(new byte[blockSize]);
+        buffer.clear();
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        super.handlerRemoved(ctx);
+        if (buffer != null) {
+            buffer.release();
+            buffer = null;
+        }
+        compressor = null;
+        compressed = null;
+    }
+}
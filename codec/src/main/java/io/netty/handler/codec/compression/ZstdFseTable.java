@@ -0,0 +1,166 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import static io.netty.handler.codec.compression.ZstdConstants.*;
+
+/**
+ * A decoding table of the Finite State Entropy coder used by Zstandard.
+ */
+final class ZstdFseTable {
+
+    int accuracyLog;
+    final byte[] symbols;
+    final byte[] numBits;
+    final short[] baseStates;
+
+    ZstdFseTable(int maxAccuracyLog) {
+        int size = 1 << maxAccuracyLog;
+        symbols = new byte[size];
+        numBits = new byte[size];
+        baseStates = new short[size];
+    }
+
+    /**
+     * Initializes a table which always decodes {@code symbol} without consuming any bits.
+     */
+    void initRle(int symbol) {
+        accuracyLog = 0;
+        symbols[0] = (byte) symbol;
+        numBits[0] = 0;
+        baseStates[0] = 0;
+    }
+
+    /**
+     * Initializes the table from a normalized distribution, as described in section 4.1.1 of RFC 8878.
+     */
+    void init(short[] distribution, int maxSymbol, int accuracyLog) {
+        int tableSize = 1 << accuracyLog;
+        if (tableSize > symbols.length) {
+            throw new DecompressionException("FSE accuracy log too large: " + accuracyLog);
+        }
+        this.accuracyLog = accuracyLog;
+
+        int[] nextStates = new int[maxSymbol + 1];
+        int highThreshold = tableSize - 1;
+        for (int symbol = 0; symbol <= maxSymbol; symbol++) {
+            if (distribution[symbol] == -1) {
+                symbols[highThreshold--] = (byte) symbol;
+                nextStates[symbol] = 1;
+            } else {
+                nextStates[symbol] = distribution[symbol];
+            }
+        }
+
+        int mask = tableSize - 1;
+        int step = (tableSize >>> 1) + (tableSize >>> 3) + 3;
+        int position = 0;
+        for (int symbol = 0; symbol <= maxSymbol; symbol++) {
+            for (int i = 0; i < distribution[symbol]; i++) {
+                symbols[position] = (byte) symbol;
+                do {
+                    position = position + step & mask;
+                } while (position > highThreshold);
+            }
+        }
+        if (position != 0) {
+            throw new DecompressionException("invalid FSE distribution");
+        }
+
+        for (int state = 0; state < tableSize; state++) {
+            int symbol = symbols[state] & 0xFF;
+            int nextState = nextStates[symbol]++;
+            int bits = accuracyLog - highestBit(nextState);
+            numBits[state] = (byte) bits;
+            baseStates[state] = (short) ((nextState << bits) - tableSize);
+        }
+    }
+
+    /**
+     * Reads a normalized distribution as described in section 4.1.1 of RFC 8878 and initializes the table with
+     * it.
+     *
+     * @return the number of bytes that were read
+     */
+    int read(byte[] in, int offset, int end, int maxSymbol, int maxAccuracyLog) {
+        short[] distribution = new short[maxSymbol + 1];
+        long bitPosition = (long) offset << 3;
+        int accuracyLog = (int) readBitsLE(in, bitPosition, end, 4) + 5;
+        bitPosition += 4;
+        if (accuracyLog > maxAccuracyLog) {
+            throw new DecompressionException("FSE accuracy log too large: " + accuracyLog);
+        }
+
+        int remaining = (1 << accuracyLog) + 1;
+        int threshold = 1 << accuracyLog;
+        int bits = accuracyLog + 1;
+        int symbol = 0;
+        boolean previousZero = false;
+        while (remaining > 1 && symbol <= maxSymbol) {
+            if (previousZero) {
+                int repeat;
+                do {
+                    repeat = (int) readBitsLE(in, bitPosition, end, 2);
+                    bitPosition += 2;
+                    symbol += repeat;
+                } while (repeat == 3);
+                if (symbol > maxSymbol) {
+                    throw new DecompressionException("invalid FSE distribution");
+                }
+            }
+
+            int max = (threshold << 1) - 1 - remaining;
+            int value = (int) readBitsLE(in, bitPosition, end, bits);
+            int count;
+            if ((value & threshold - 1) < max) {
+                count = value & threshold - 1;
+                bitPosition += bits - 1;
+            } else {
+                count = value & (threshold << 1) - 1;
+                if (count >= threshold) {
+                    count -= max;
+                }
+                bitPosition += bits;
+            }
+            count--;
+            remaining -= Math.abs(count);
+            distribution[symbol++] = (short) count;
+            previousZero = count == 0;
+            while (remaining < threshold) {
+                bits--;
+                threshold >>>= 1;
+            }
+        }
+        int length = (int) ((bitPosition + 7 >>> 3) - offset);
+        if (remaining != 1 || offset + length > end) {
+            throw new DecompressionException("invalid FSE distribution");
+        }
+        init(distribution, symbol - 1, accuracyLog);
+        return length;
+    }
+
+    /**
+     * Reads up to 25 bits from a little-endian bit stream, where bits past {@code end} are read as {@code 0}.
+     */
+    private static long readBitsLE(byte[] in, long bitPosition, int end, int numBits) {
+        int index = (int) (bitPosition >>> 3);
+        long value = 0;
+        for (int i = 0; i < 4 && index + i < end; i++) {
+            value |= (in[index + i] & 0xFFL) << (i << 3);
+        }
+        return value >>> (bitPosition & 7) & (1L << numBits) - 1;
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import java.util.Arrays;
+
+import static io.netty.handler.codec.compression.ZstdConstants.*;
+
+/**
+ * A Huffman decoding table for the literals of Zstandard blocks.
+ */
+final class ZstdHuffmanTable {
+
+    private final byte[] weights = new byte[HUFFMAN_MAX_SYMBOL + 1];
+    private final int[] rankStarts = new int[HUFFMAN_MAX_BITS + 2];
+    private final byte[] symbols = new byte[1 << HUFFMAN_MAX_BITS];
+    private final byte[] numBits = new byte[1 << HUFFMAN_MAX_BITS];
+    private final ZstdFseTable weightsTable = new ZstdFseTable(HUFFMAN_WEIGHTS_MAX_ACCURACY_LOG);
+    private final ZstdBitReader reader = new ZstdBitReader();
+    private int maxBits;
+    private boolean initialized;
+
+    void reset() {
+        initialized = false;
+    }
+
+    boolean isInitialized() {
+        return initialized;
+    }
+
+    /**
+     * Reads a Huffman tree description as described in section 4.2.1 of RFC 8878.
+     *
+     * @return the number of bytes that were read
+     */
+    int read(byte[] in, int offset, int end) {
+        if (offset >= end) {
+            throw new DecompressionException("missing Huffman tree description");
+        }
+        int header = in[offset] & 0xFF;
+        int numWeights;
+        int length;
+        if (header < 128) {
+            length = 1 + header;
+            if (offset + length > end) {
+                throw new DecompressionException("truncated Huffman tree description");
+            }
+            numWeights = readCompressedWeights(in, offset + 1, offset + length);
+        } else {
+            numWeights = header - 127;
+            length = 1 + (numWeights + 1 >>> 1);
+            if (offset + length > end) {
+                throw new DecompressionException("truncated Huffman tree description");
+            }
+            for (int i = 0; i < numWeights; i++) {
+                int packed = in[offset + 1 + (i >>> 1)];
+                weights[i] = (byte) ((i & 1) == 0 ? packed >>> 4 & 0xF : packed & 0xF);
+            }
+        }
+        build(numWeights);
+        return length;
+    }
+
+    private int readCompressedWeights(byte[] in, int offset, int end) {
+        int tableLength = weightsTable.read(in, offset, end, HUFFMAN_MAX_BITS, HUFFMAN_WEIGHTS_MAX_ACCURACY_LOG);
+        ZstdFseTable table = weightsTable;
+        ZstdBitReader reader = this.reader;
+        reader.init(in, offset + tableLength, end);
+
+        int accuracyLog = table.accuracyLog;
+        int state1 = reader.readBits(accuracyLog);
+        int state2 = reader.readBits(accuracyLog);
+        int numWeights = 0;
+        for (;;) {
+            if (numWeights >= HUFFMAN_MAX_SYMBOL - 1) {
+                throw new DecompressionException("too many Huffman weights");
+            }
+            weights[numWeights++] = table.symbols[state1];
+            state1 = table.baseStates[state1] + reader.readBits(table.numBits[state1]);
+            reader.reload();
+            if (reader.isOverflowed()) {
+                weights[numWeights++] = table.symbols[state2];
+                break;
+            }
+
+            if (numWeights >= HUFFMAN_MAX_SYMBOL - 1) {
+                throw new DecompressionException("too many Huffman weights");
+            }
+            weights[numWeights++] = table.symbols[state2];
+            state2 = table.baseStates[state2] + reader.readBits(table.numBits[state2]);
+            reader.reload();
+            if (reader.isOverflowed()) {
+                weights[numWeights++] = table.symbols[state1];
+                break;
+            }
+        }
+        return numWeights;
+    }
+
+    private void build(int numWeights) {
+        int weightSum = 0;
+        for (int i = 0; i < numWeights; i++) {
+            int weight = weights[i];
+            if (weight > HUFFMAN_MAX_BITS) {
+                throw new DecompressionException("invalid Huffman weight: " + weight);
+            }
+            if (weight > 0) {
+                weightSum += 1 << weight - 1;
+            }
+        }
+        if (weightSum == 0) {
+            throw new DecompressionException("invalid Huffman weights");
+        }
+
+        // The weight of the last symbol is implied by the others, as all of them must add up to a power of two.
+        int maxBits = highestBit(weightSum) + 1;
+        if (maxBits > HUFFMAN_MAX_BITS) {
+            throw new DecompressionException("Huffman tree too deep: " + maxBits);
+        }
+        int leftOver = (1 << maxBits) - weightSum;
+        if ((leftOver & leftOver - 1) != 0) {
+            throw new DecompressionException("invalid Huffman weights");
+        }
+        weights[numWeights] = (byte) (highestBit(leftOver) + 1);
+        int numSymbols = numWeights + 1;
+
+        int[] rankStarts = this.rankStarts;
+        Arrays.fill(rankStarts, 0);
+        for (int i = 0; i < numSymbols; i++) {
+            rankStarts[weights[i]]++;
+        }
+        // Symbols of smaller weights get the longer codes, which come first in the table.
+        int next = 0;
+        for (int weight = 1; weight <= maxBits; weight++) {
+            int count = rankStarts[weight];
+            rankStarts[weight] = next;
+            next += count << weight - 1;
+        }
+        for (int symbol = 0; symbol < numSymbols; symbol++) {
+            int weight = weights[symbol];
+            if (weight == 0) {
+                continue;
+            }
+            int length = 1 << weight - 1;
+            int start = rankStarts[weight];
+            byte bits = (byte) (maxBits + 1 - weight);
+            for (int i = start; i < start + length; i++) {
+                symbols[i] = (byte) symbol;
+                numBits[i] = bits;
+            }
+            rankStarts[weight] = start + length;
+        }
+        this.maxBits = maxBits;
+        initialized = true;
+    }
+
+    /**
+     * Decodes {@code length} literals from a single Huffman coded stream stored at {@code [start, end)}.
+     */
+    void decodeStream(byte[] in, int start, int end, byte[] out, int outOffset, int length) {
+        ZstdBitReader reader = this.reader;
+        reader.init(in, start, end);
+        int maxBits = this.maxBits;
+        byte[] symbols = this.symbols;
+        byte[] numBits = this.numBits;
+        int outEnd = outOffset + length;
+        for (int i = outOffset; i < outEnd; i++) {
+            reader.reload();
+            int index = reader.peekBits(maxBits);
+            out[i] = symbols[index];
+            reader.skipBits(numBits[index]);
+        }
+        if (!reader.isFullyConsumed()) {
+            throw new DecompressionException("Huffman stream has unexpected length");
+        }
+    }
+}
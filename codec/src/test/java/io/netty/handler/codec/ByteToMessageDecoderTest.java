@@ -16,13 +16,21 @@
 package io.netty.handler.codec;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundBatchHandler;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.InboundMemoryBudget;
+import io.netty.channel.MessageBatch;
 import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.util.internal.PlatformDependent;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingDeque;
@@ -305,4 +313,140 @@ public class ByteToMessageDecoderTest {
         assertFalse(channel.writeInbound(Unpooled.wrappedBuffer(new byte[] { (byte) 2 })));
         assertFalse(channel.finish());
     }
+
+    @Test
+    public void testInboundMemoryBudget() {
+        InboundMemoryBudget budget = new InboundMemoryBudget(3, 0);
+        EmbeddedChannel channel = new EmbeddedChannel(new FixedLengthFrameDecoder(8));
+        channel.config().setOption(ChannelOption.INBOUND_MEMORY_BUDGET, budget);
+
+        assertFalse(channel.writeInbound(Unpooled.wrappedBuffer(new byte[4])));
+        assertEquals(4, budget.usedBytes(channel));
+        assertFalse(channel.config().isAutoRead());
+        assertTrue(budget.isSuspended(channel));
+
+        assertTrue(channel.writeInbound(Unpooled.wrappedBuffer(new byte[4])));
+        assertEquals(0, budget.usedBytes());
+        assertTrue(channel.config().isAutoRead());
+        ByteBuf frame = channel.readInbound();
+        assertEquals(8, frame.readableBytes());
+        frame.release();
+
+        assertFalse(channel.writeInbound(Unpooled.wrappedBuffer(new byte[2])));
+        assertEquals(2, budget.usedBytes());
+        assertFalse(channel.finish());
+        assertEquals(0, budget.usedBytes());
+    }
+
+    @Test
+    public void testAdaptiveCumulator() {
+        ByteToMessageDecoder.Cumulator cumulator = ByteToMessageDecoder.ADAPTIVE_CUMULATOR;
+        UnpooledByteBufAllocator alloc = UnpooledByteBufAllocator.DEFAULT;
+
+        // Small cumulations are copied.
+        ByteBuf cumulation = cumulator.cumulate(alloc, Unpooled.buffer(4, 4).writeInt(1),
+                                                Unpooled.buffer().writeInt(2));
+        assertFalse(cumulation instanceof CompositeByteBuf);
+        assertEquals(8, cumulation.readableBytes());
+
+        // Large cumulations are composed.
+        cumulation = cumulator.cumulate(alloc, cumulation, Unpooled.wrappedBuffer(new byte[8192]));
+        assertTrue(cumulation instanceof CompositeByteBuf);
+        assertEquals(8200, cumulation.readableBytes());
+
+        // Read components are discarded before adding more.
+        cumulation.skipBytes(8);
+        cumulation = cumulator.cumulate(alloc, cumulation, Unpooled.wrappedBuffer(new byte[8192]));
+        assertEquals(2, ((CompositeByteBuf) cumulation).numComponents());
+        assertEquals(16384, cumulation.readableBytes());
+
+        // Fragmented cumulations are consolidated.
+        for (int i = 0; i < 20; i++) {
+            cumulation = cumulator.cumulate(alloc, cumulation, Unpooled.buffer().writeByte(i));
+        }
+        assertFalse(cumulation instanceof CompositeByteBuf);
+        assertEquals(16404, cumulation.readableBytes());
+        cumulation.skipBytes(16384);
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i, cumulation.readByte());
+        }
+        cumulation.release();
+    }
+
+    @Test
+    public void testAdaptiveCumulatorFragmentedFrames() {
+        LengthFieldBasedFrameDecoder decoder = new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, 4, 0, 4);
+        decoder.setCumulator(ByteToMessageDecoder.ADAPTIVE_CUMULATOR);
+        EmbeddedChannel channel = new EmbeddedChannel(decoder);
+
+        ByteBuf input = Unpooled.buffer();
+        for (int i = 0; i < 10; i++) {
+            input.writeInt(10000 * i);
+            for (int j = 0; j < 10000 * i; j++) {
+                input.writeByte(i);
+            }
+        }
+        while (input.isReadable()) {
+            channel.writeInbound(input.readRetainedSlice(Math.min(input.readableBytes(), 1500)));
+        }
+        input.release();
+
+        for (int i = 0; i < 10; i++) {
+            ByteBuf frame = channel.readInbound();
+            assertEquals(10000 * i, frame.readableBytes());
+            while (frame.isReadable()) {
+                assertEquals(i, frame.readByte());
+            }
+            frame.release();
+        }
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testBatchDecode() {
+        final List<Integer> batchSizes = new ArrayList<Integer>();
+        FixedLengthFrameDecoder decoder = new FixedLengthFrameDecoder(2);
+        decoder.setBatchDecode(true);
+        EmbeddedChannel channel = new EmbeddedChannel(decoder, new BatchHandler(batchSizes));
+
+        assertTrue(channel.writeInbound(Unpooled.wrappedBuffer(new byte[] { 1, 2, 3, 4, 5, 6, 7 })));
+        assertEquals(Arrays.asList(3), batchSizes);
+        for (int i = 1; i < 7; i += 2) {
+            ByteBuf frame = channel.readInbound();
+            assertEquals(i, frame.readByte());
+            assertEquals(i + 1, frame.readByte());
+            frame.release();
+        }
+        assertNull(channel.readInbound());
+
+        // A single message is not wrapped in a batch.
+        assertTrue(channel.writeInbound(Unpooled.wrappedBuffer(new byte[] { 8 })));
+        assertEquals(Arrays.asList(3, 1), batchSizes);
+        ByteBuf frame = channel.readInbound();
+        assertEquals(7, frame.readByte());
+        assertEquals(8, frame.readByte());
+        frame.release();
+        assertFalse(channel.finish());
+    }
+
+    private static final class BatchHandler extends ChannelInboundHandlerAdapter
+            implements ChannelInboundBatchHandler {
+        private final List<Integer> batchSizes;
+
+        BatchHandler(List<Integer> batchSizes) {
+            this.batchSizes = batchSizes;
+        }
+
+        @Override
+        public void channelReadBatch(ChannelHandlerContext ctx, MessageBatch batch) {
+            batchSizes.add(batch.size());
+            ctx.fireChannelRead(batch);
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            batchSizes.add(1);
+            ctx.fireChannelRead(msg);
+        }
+    }
 }
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+public class BrotliDecoderTest {
+
+    private EmbeddedChannel channel;
+
+    @Before
+    public void initChannel() {
+        channel = new EmbeddedChannel(new BrotliDecoder());
+    }
+
+    @After
+    public void destroyChannel() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testDecodeReferenceStream() throws Exception {
+        // Compressed by the reference implementation with quality 11, so it makes use of context modeling, block
+        // switches and the static dictionary.
+        byte[] compressed = readResource("sample-04.xml.br");
+        byte[] expected = readResource("../xml/sample-04.xml");
+
+        assertTrue(channel.writeInbound(Unpooled.wrappedBuffer(compressed)));
+        ByteBuf decompressed = readDecompressed();
+        assertEquals(Unpooled.wrappedBuffer(expected), decompressed);
+        decompressed.release();
+    }
+
+    @Test
+    public void testDecodeReferenceStreamByteByByte() throws Exception {
+        byte[] compressed = readResource("sample-04.xml.br");
+        byte[] expected = readResource("../xml/sample-04.xml");
+
+        for (byte b : compressed) {
+            ByteBuf in = Unpooled.directBuffer(1);
+            in.writeByte(b);
+            channel.writeInbound(in);
+        }
+        ByteBuf decompressed = readDecompressed();
+        assertEquals(Unpooled.wrappedBuffer(expected), decompressed);
+        decompressed.release();
+    }
+
+    @Test
+    public void testMetadataAndUncompressedMetaBlocks() throws Exception {
+        BrotliBitWriter writer = new BrotliBitWriter();
+        // 16 bit window
+        writer.writeBits(0, 1);
+        // metadata block with a length of 3 bytes
+        writer.writeBits(3 << 1, 1 + 2 + 1);
+        writer.writeBits(1, 2);
+        writer.writeBits(2, 8);
+        writer.alignToByte();
+        writer.writeBytes(new byte[] { 1, 2, 3 }, 0, 3);
+        writeUncompressedMetaBlock(writer, "net");
+        writeUncompressedMetaBlock(writer, "ty");
+        // ISLAST and ISLASTEMPTY
+        writer.writeBits(3, 2);
+        writer.alignToByte();
+        ByteBuf in = Unpooled.buffer();
+        writer.drainTo(in);
+
+        assertTrue(channel.writeInbound(in));
+        ByteBuf decompressed = readDecompressed();
+        assertEquals("netty", decompressed.toString(CharsetUtil.US_ASCII));
+        decompressed.release();
+        assertFalse(channel.finish());
+    }
+
+    @Test(expected = DecompressionException.class)
+    public void testLargeWindowStream() throws Exception {
+        // The large window extension is not part of RFC 7932.
+        channel.writeInbound(Unpooled.wrappedBuffer(new byte[] { 0x11, 0 }));
+    }
+
+    @Test(expected = DecompressionException.class)
+    public void testWindowTooLarge() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new BrotliDecoder(64 * 1024));
+        try {
+            // 16 MB window
+            channel.writeInbound(Unpooled.wrappedBuffer(new byte[] { 0x0F, 0 }));
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    @Test(expected = DecompressionException.class)
+    public void testNonZeroPadding() throws Exception {
+        BrotliBitWriter writer = new BrotliBitWriter();
+        // 16 bit window
+        writer.writeBits(0, 1);
+        // not the last meta-block, length in 4 nibbles, uncompressed
+        writer.writeBits(0, 1 + 2);
+        writer.writeBits(4, 16);
+        writer.writeBits(1, 1);
+        // padding up to the next byte boundary
+        writer.writeBits(7, 3);
+        writer.alignToByte();
+        writer.writeBytes("netty".getBytes(CharsetUtil.US_ASCII), 0, 5);
+        ByteBuf in = Unpooled.buffer();
+        writer.drainTo(in);
+        channel.writeInbound(in);
+    }
+
+    private static void writeUncompressedMetaBlock(BrotliBitWriter writer, String content) {
+        // not the last meta-block, length in 4 nibbles, uncompressed
+        writer.writeBits(0, 1 + 2);
+        writer.writeBits(content.length() - 1, 16);
+        writer.writeBits(1, 1);
+        writer.alignToByte();
+        byte[] bytes = content.getBytes(CharsetUtil.US_ASCII);
+        writer.writeBytes(bytes, 0, bytes.length);
+    }
+
+    private ByteBuf readDecompressed() {
+        CompositeByteBuf decompressed = Unpooled.compositeBuffer();
+        ByteBuf msg;
+        while ((msg = channel.readInbound()) != null) {
+            decompressed.addComponent(true, msg);
+        }
+        return decompressed;
+    }
+
+    private static byte[] readResource(String name) throws Exception {
+        InputStream in = BrotliDecoderTest.class.getResourceAsStream(name);
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            int length = 0;
+            int read;
+            while ((read = in.read(buffer, length, buffer.length - length)) > 0) {
+                length += read;
+            }
+            byte[] data = new byte[length];
+            System.arraycopy(buffer, 0, data, 0, length);
+            return data;
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import org.brotli.dec.BrotliInputStream;
+import org.junit.Test;
+
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies the output of {@link BrotliEncoder} with the reference decoder.
+ */
+public class BrotliEncoderTest extends AbstractEncoderTest {
+
+    @Override
+    public void initChannel() {
+        channel = new EmbeddedChannel(new BrotliEncoder());
+    }
+
+    @Override
+    protected ByteBuf decompress(ByteBuf compressed, int originalLength) throws Exception {
+        InputStream is = new ByteBufInputStream(compressed, true);
+        BrotliInputStream brotliIs = null;
+        byte[] decompressed = new byte[originalLength];
+        try {
+            brotliIs = new BrotliInputStream(is);
+            int remaining = originalLength;
+            while (remaining > 0) {
+                int read = brotliIs.read(decompressed, originalLength - remaining, remaining);
+                if (read > 0) {
+                    remaining -= read;
+                } else {
+                    break;
+                }
+            }
+            assertEquals(-1, brotliIs.read());
+        } finally {
+            if (brotliIs != null) {
+                brotliIs.close();
+            } else {
+                is.close();
+            }
+        }
+
+        return Unpooled.wrappedBuffer(decompressed);
+    }
+
+    @Test
+    public void testAllQualitiesAndWindowSizes() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append("<item id=\"").append(i).append("\">netty brotli ").append(i * 31 % 97).append("</item>\n");
+        }
+        byte[] textBytes = text.toString().getBytes(CharsetUtil.US_ASCII);
+        byte[] random = new byte[70000];
+        rand.nextBytes(random);
+
+        for (byte[] data : new byte[][] { textBytes, random, BYTES_LARGE }) {
+            for (int quality = 0; quality <= 4; quality++) {
+                for (int windowBits : new int[] { 10, 16, 22, 24 }) {
+                    destroyChannel();
+                    channel = new EmbeddedChannel(new BrotliEncoder(quality, windowBits));
+                    ByteBuf in = Unpooled.wrappedBuffer(data);
+                    // Write in a few parts, so flushes in the middle of the stream are verified as well.
+                    int half = data.length / 2;
+                    assertTrue(channel.writeOutbound(in.retainedSlice(0, half)));
+                    assertTrue(channel.writeOutbound(in.retainedSlice(half, data.length - half)));
+                    assertTrue(channel.finish());
+
+                    ByteBuf decompressed = readDecompressed(data.length);
+                    assertEquals("quality " + quality + ", windowBits " + windowBits, in, decompressed);
+                    decompressed.release();
+                    in.release();
+                }
+            }
+        }
+    }
+}
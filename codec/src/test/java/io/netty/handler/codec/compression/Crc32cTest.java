@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class Crc32cTest {
+
+    @Test
+    public void testKnownValues() {
+        assertEquals(0x00000000L, crc32c(new Crc32c(), ""));
+        assertEquals(0xE3069283L, crc32c(new Crc32c(), "123456789"));
+        assertEquals(0xE3069283L, crc32c(ByteBufChecksum.newCrc32c(), "123456789"));
+    }
+
+    @Test
+    public void testSlicingMatchesBytewise() {
+        byte[] data = new byte[1031];
+        new Random(42).nextBytes(data);
+        Crc32c bytewise = new Crc32c();
+        for (byte b : data) {
+            bytewise.update(b);
+        }
+
+        for (int offset = 0; offset < 9; offset++) {
+            Crc32c sliced = new Crc32c();
+            sliced.update(data, 0, offset);
+            sliced.update(data, offset, data.length - offset);
+            assertEquals(bytewise.getValue(), sliced.getValue());
+        }
+    }
+
+    @Test
+    public void testDirectBuffer() {
+        byte[] data = new byte[1031];
+        new Random(42).nextBytes(data);
+        ByteBuf direct = Unpooled.directBuffer(data.length + 3).writeZero(3).writeBytes(data);
+        try {
+            Crc32c expected = new Crc32c();
+            expected.update(data, 0, data.length);
+
+            Crc32c actual = new Crc32c();
+            actual.update(direct, 3, 5);
+            actual.update(direct, 8, data.length - 5);
+            assertEquals(expected.getValue(), actual.getValue());
+
+            ByteBufChecksum checksum = ByteBufChecksum.newCrc32c();
+            checksum.update(direct, 3, data.length);
+            assertEquals(expected.getValue(), checksum.getValue());
+        } finally {
+            direct.release();
+        }
+    }
+
+    private static long crc32c(ByteBufChecksum checksum, String value) {
+        byte[] bytes = value.getBytes(CharsetUtil.US_ASCII);
+        checksum.update(bytes, 0, bytes.length);
+        return checksum.getValue();
+    }
+}
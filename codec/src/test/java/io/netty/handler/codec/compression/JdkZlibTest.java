@@ -15,8 +15,14 @@
  */
 package io.netty.handler.codec.compression;
 
+import io.netty.util.concurrent.FastThreadLocalThread;
 import org.junit.Test;
 
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.junit.Assert.*;
 
 public class JdkZlibTest extends ZlibTest {
 
@@ -35,4 +41,40 @@ public class JdkZlibTest extends ZlibTest {
     public void testZLIB_OR_NONE3() throws Exception {
         super.testZLIB_OR_NONE3();
     }
+
+    @Test
+    public void testPoolOnlyUsedByFastThreadLocalThread() throws Exception {
+        Deflater deflater = JdkZlibPool.acquireDeflater(6, false);
+        JdkZlibPool.releaseDeflater(deflater, 6, false);
+        assertNotSame(deflater, JdkZlibPool.acquireDeflater(6, false));
+    }
+
+    @Test
+    public void testPoolReusesDeflaterAndInflater() throws Throwable {
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        Thread thread = new FastThreadLocalThread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Deflater deflater = JdkZlibPool.acquireDeflater(6, true);
+                    JdkZlibPool.releaseDeflater(deflater, 6, true);
+                    assertSame(deflater, JdkZlibPool.acquireDeflater(6, true));
+                    assertNotSame(deflater, JdkZlibPool.acquireDeflater(6, true));
+                    assertNotSame(deflater, JdkZlibPool.acquireDeflater(9, true));
+
+                    Inflater inflater = JdkZlibPool.acquireInflater(false);
+                    JdkZlibPool.releaseInflater(inflater, false);
+                    assertNotSame(inflater, JdkZlibPool.acquireInflater(true));
+                    assertSame(inflater, JdkZlibPool.acquireInflater(false));
+                } catch (Throwable cause) {
+                    error.set(cause);
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+        if (error.get() != null) {
+            throw error.get();
+        }
+    }
 }
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.EncoderException;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.xxhash.XXHashFactory;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelBlockWriterTest {
+
+    private static final byte[] DATA = new byte[1024 * 1024];
+
+    static {
+        Random random = new Random(42);
+        for (int i = 0; i < DATA.length; i++) {
+            DATA[i] = (byte) ('a' + random.nextInt(1 + (i >>> 16)));
+        }
+    }
+
+    /**
+     * Runs the tasks in reverse order to make sure the blocks are still written in order.
+     */
+    private static class ReversingExecutor implements Executor {
+        private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        void runTasks() {
+            for (int i = tasks.size() - 1; i >= 0; i--) {
+                tasks.remove(i).run();
+            }
+        }
+    }
+
+    /**
+     * Rejects every other task, as a saturated or shut down {@link Executor} would.
+     */
+    private static final class RejectingExecutor extends ReversingExecutor {
+        private boolean reject;
+
+        @Override
+        public void execute(Runnable task) {
+            reject = !reject;
+            if (reject) {
+                throw new RejectedExecutionException();
+            }
+            super.execute(task);
+        }
+    }
+
+    @Test
+    public void testBzip2() {
+        ReversingExecutor executor = new ReversingExecutor();
+        assertSameOutput(new Bzip2Encoder(1), new Bzip2Encoder(1, executor), executor);
+    }
+
+    @Test
+    public void testLz4() {
+        ReversingExecutor executor = new ReversingExecutor();
+        assertSameOutput(newLz4FrameEncoder(null), newLz4FrameEncoder(executor), executor);
+    }
+
+    @Test
+    public void testSnappy() {
+        ReversingExecutor executor = new ReversingExecutor();
+        assertSameOutput(new SnappyFrameEncoder(), new SnappyFrameEncoder(executor), executor);
+    }
+
+    @Test
+    public void testRejectedExecution() {
+        RejectingExecutor executor = new RejectingExecutor();
+        assertSameOutput(new Bzip2Encoder(1), new Bzip2Encoder(1, executor), executor);
+        executor = new RejectingExecutor();
+        assertSameOutput(newLz4FrameEncoder(null), newLz4FrameEncoder(executor), executor);
+        executor = new RejectingExecutor();
+        assertSameOutput(new SnappyFrameEncoder(), new SnappyFrameEncoder(executor), executor);
+    }
+
+    @Test
+    public void testWritability() {
+        ReversingExecutor executor = new ReversingExecutor();
+        EmbeddedChannel channel = new EmbeddedChannel(newLz4FrameEncoder(executor));
+        for (int i = 0; i < ParallelBlockWriter.DEFAULT_MAX_PENDING_BLOCKS; i++) {
+            channel.writeOutbound(Unpooled.wrappedBuffer(DATA, 0, 1 << 16));
+            assertTrue(channel.isWritable());
+        }
+        channel.writeOutbound(Unpooled.wrappedBuffer(DATA, 0, 1 << 16));
+        assertFalse(channel.isWritable());
+
+        executor.runTasks();
+        channel.runPendingTasks();
+        assertTrue(channel.isWritable());
+        channel.close();
+        executor.runTasks();
+        channel.runPendingTasks();
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testPromiseNotifiedOnceWritten() {
+        ReversingExecutor executor = new ReversingExecutor();
+        EmbeddedChannel channel = new EmbeddedChannel(newLz4FrameEncoder(executor));
+        ChannelFuture first = channel.write(Unpooled.wrappedBuffer(DATA, 0, 1 << 16));
+        // Buffered by the encoder, but not a block on its own, so notified with the block written after it.
+        ChannelFuture second = channel.write(Unpooled.wrappedBuffer(DATA, 0, 100));
+        ChannelFuture third = channel.write(Unpooled.wrappedBuffer(DATA, 0, 1 << 16));
+        channel.flush();
+        assertFalse(first.isDone());
+        assertFalse(second.isDone());
+        assertFalse(third.isDone());
+        assertNull(channel.readOutbound());
+
+        executor.runTasks();
+        channel.runPendingTasks();
+        assertTrue(first.isSuccess());
+        assertTrue(second.isSuccess());
+        assertTrue(third.isSuccess());
+        assertTrue(channel.finishAndReleaseAll());
+    }
+
+    @Test
+    public void testRemovedWithPendingBlocks() {
+        ReversingExecutor executor = new ReversingExecutor();
+        EmbeddedChannel channel = new EmbeddedChannel(new SnappyFrameEncoder(executor));
+        ByteBuf data = Unpooled.copiedBuffer(DATA);
+        ChannelFuture future = channel.writeAndFlush(data);
+        assertFalse(future.isDone());
+        channel.pipeline().removeFirst();
+        executor.runTasks();
+        channel.runPendingTasks();
+        assertEquals(0, data.refCnt());
+        assertThat(future.cause(), instanceOf(EncoderException.class));
+        assertTrue(channel.finishAndReleaseAll());
+    }
+
+    private static Lz4FrameEncoder newLz4FrameEncoder(Executor executor) {
+        return new Lz4FrameEncoder(LZ4Factory.fastestInstance(), false, 1 << 16,
+                XXHashFactory.fastestInstance().newStreamingHash32(Lz4Constants.DEFAULT_SEED).asChecksum(),
+                Integer.MAX_VALUE, executor);
+    }
+
+    private static void assertSameOutput(ChannelHandler serial, ChannelHandler parallel, ReversingExecutor executor) {
+        ByteBuf expected = encode(new EmbeddedChannel(serial), null);
+        ByteBuf actual = encode(new EmbeddedChannel(parallel), executor);
+        assertEquals(expected, actual);
+        expected.release();
+        actual.release();
+    }
+
+    private static ByteBuf encode(EmbeddedChannel channel, ReversingExecutor executor) {
+        for (int i = 0; i < DATA.length;) {
+            int length = Math.min(DATA.length - i, 100000 + i % 7);
+            channel.writeOutbound(Unpooled.wrappedBuffer(DATA, i, length));
+            i += length;
+            if (executor != null && i % 3 == 0) {
+                executor.runTasks();
+                channel.runPendingTasks();
+            }
+        }
+        channel.close();
+        if (executor != null) {
+            executor.runTasks();
+            channel.runPendingTasks();
+        }
+        assertFalse(channel.isOpen());
+
+        ByteBuf out = Unpooled.buffer();
+        for (;;) {
+            ByteBuf buf = channel.readOutbound();
+            if (buf == null) {
+                break;
+            }
+            out.writeBytes(buf);
+            buf.release();
+        }
+        assertFalse(channel.finish());
+        return out;
+    }
+}
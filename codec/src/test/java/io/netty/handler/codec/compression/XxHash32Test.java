@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+import net.jpountz.xxhash.XXHashFactory;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.zip.Checksum;
+
+import static org.junit.Assert.*;
+
+public class XxHash32Test {
+
+    @Test
+    public void testKnownValues() {
+        assertEquals(0x02CC5D05L, hash(""));
+        assertEquals(0x550D7456L, hash("a"));
+        assertEquals(0x32D153FFL, hash("abc"));
+    }
+
+    @Test
+    public void testStreaming() {
+        byte[] data = new byte[1000];
+        new Random(42).nextBytes(data);
+        XxHash32 expected = new XxHash32();
+        expected.update(data, 0, data.length);
+
+        XxHash32 streaming = new XxHash32();
+        int offset = 0;
+        for (int length = 1; offset < data.length; length = length * 3 % 37 + 1) {
+            length = Math.min(length, data.length - offset);
+            streaming.update(data, offset, length);
+            offset += length;
+        }
+        assertEquals(expected.getValue(), streaming.getValue());
+
+        streaming.reset();
+        for (byte b : data) {
+            streaming.update(b);
+        }
+        assertEquals(expected.getValue(), streaming.getValue());
+    }
+
+    @Test
+    public void testDirectBuffer() {
+        byte[] data = new byte[1000];
+        new Random(42).nextBytes(data);
+        ByteBuf direct = Unpooled.directBuffer(data.length).writeBytes(data);
+        try {
+            XxHash32 expected = new XxHash32();
+            expected.update(data, 0, data.length);
+
+            XxHash32 actual = new XxHash32();
+            actual.update(direct, 0, 7);
+            actual.update(direct, 7, 100);
+            actual.update(direct, 107, data.length - 107);
+            assertEquals(expected.getValue(), actual.getValue());
+        } finally {
+            direct.release();
+        }
+    }
+
+    @Test
+    public void testLz4Compatibility() {
+        byte[] data = new byte[1000];
+        Random random = new Random(42);
+        random.nextBytes(data);
+        for (int length = 0; length < data.length; length += random.nextInt(50) + 1) {
+            Checksum expected = XXHashFactory.fastestInstance()
+                    .newStreamingHash32(Lz4Constants.DEFAULT_SEED).asChecksum();
+            expected.update(data, 0, length);
+            Lz4XxHash32 actual = new Lz4XxHash32();
+            actual.update(data, 0, length);
+            assertEquals(expected.getValue(), actual.getValue());
+        }
+    }
+
+    private static long hash(String value) {
+        byte[] bytes = value.getBytes(CharsetUtil.US_ASCII);
+        XxHash32 hash = new XxHash32();
+        hash.update(bytes, 0, bytes.length);
+        return hash.getValue();
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class XxHash64Test {
+
+    @Test
+    public void testKnownValues() {
+        assertEquals(0xEF46DB3751D8E999L, hash(""));
+        assertEquals(0xD24EC4F1A98C6E5BL, hash("a"));
+        assertEquals(0x44BC2CF5AD770999L, hash("abc"));
+    }
+
+    @Test
+    public void testStreaming() {
+        byte[] data = new byte[1000];
+        new Random(42).nextBytes(data);
+        XxHash64 expected = new XxHash64();
+        expected.update(data, 0, data.length);
+
+        XxHash64 streaming = new XxHash64();
+        int offset = 0;
+        for (int length = 1; offset < data.length; length = length * 3 % 67 + 1) {
+            length = Math.min(length, data.length - offset);
+            streaming.update(data, offset, length);
+            offset += length;
+        }
+        assertEquals(expected.getValue(), streaming.getValue());
+
+        streaming.reset();
+        for (byte b : data) {
+            streaming.update(b);
+        }
+        assertEquals(expected.getValue(), streaming.getValue());
+    }
+
+    private static long hash(String value) {
+        byte[] bytes = value.getBytes(CharsetUtil.US_ASCII);
+        XxHash64 hash = new XxHash64();
+        hash.update(bytes, 0, bytes.length);
+        return hash.getValue();
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+public class ZstdDecoderTest {
+
+    private EmbeddedChannel channel;
+
+    @Before
+    public void initChannel() {
+        channel = new EmbeddedChannel(new ZstdDecoder());
+    }
+
+    @After
+    public void destroyChannel() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testDecodeReferenceFrame() throws Exception {
+        // Compressed by the reference implementation with level 19 and a content checksum, so it makes use of
+        // Huffman coded literals and FSE compressed sequences.
+        byte[] compressed = readResource("sample-04.xml.zst");
+        byte[] expected = readResource("../xml/sample-04.xml");
+
+        assertTrue(channel.writeInbound(Unpooled.wrappedBuffer(compressed)));
+        ByteBuf decompressed = readDecompressed();
+        assertEquals(Unpooled.wrappedBuffer(expected), decompressed);
+        decompressed.release();
+    }
+
+    @Test
+    public void testDecodeReferenceFrameByteByByte() throws Exception {
+        byte[] compressed = readResource("sample-04.xml.zst");
+        byte[] expected = readResource("../xml/sample-04.xml");
+
+        for (byte b : compressed) {
+            ByteBuf in = Unpooled.directBuffer(1);
+            in.writeByte(b);
+            channel.writeInbound(in);
+        }
+        ByteBuf decompressed = readDecompressed();
+        assertEquals(Unpooled.wrappedBuffer(expected), decompressed);
+        decompressed.release();
+    }
+
+    @Test
+    public void testSkippableFrame() throws Exception {
+        ByteBuf in = Unpooled.buffer();
+        in.writeIntLE(0x184D2A5E);
+        in.writeIntLE(3);
+        in.writeBytes(new byte[] { 1, 2, 3 });
+        writeRawFrame(in, "netty");
+
+        assertTrue(channel.writeInbound(in));
+        ByteBuf decompressed = readDecompressed();
+        assertEquals("netty", decompressed.toString(CharsetUtil.US_ASCII));
+        decompressed.release();
+    }
+
+    @Test
+    public void testConcatenatedFrames() throws Exception {
+        ByteBuf in = Unpooled.buffer();
+        writeRawFrame(in, "net");
+        writeRawFrame(in, "ty");
+
+        assertTrue(channel.writeInbound(in));
+        ByteBuf decompressed = readDecompressed();
+        assertEquals("netty", decompressed.toString(CharsetUtil.US_ASCII));
+        decompressed.release();
+    }
+
+    @Test(expected = DecompressionException.class)
+    public void testInvalidMagic() throws Exception {
+        channel.writeInbound(Unpooled.wrappedBuffer(new byte[] { 1, 2, 3, 4 }));
+    }
+
+    @Test(expected = DecompressionException.class)
+    public void testWindowTooLarge() throws Exception {
+        ByteBuf in = Unpooled.buffer();
+        in.writeIntLE(ZstdConstants.MAGIC_NUMBER);
+        in.writeByte(0);
+        // 16 MB window
+        in.writeByte(14 << 3);
+        channel.writeInbound(in);
+    }
+
+    @Test(expected = DecompressionException.class)
+    public void testChecksumMismatch() throws Exception {
+        byte[] compressed = readResource("sample-04.xml.zst");
+        compressed[compressed.length - 1]++;
+        channel.writeInbound(Unpooled.wrappedBuffer(compressed));
+    }
+
+    private static void writeRawFrame(ByteBuf out, String content) {
+        out.writeIntLE(ZstdConstants.MAGIC_NUMBER);
+        // single segment, one byte content size
+        out.writeByte(0x20);
+        out.writeByte(content.length());
+        out.writeMediumLE(1 | ZstdConstants.BLOCK_TYPE_RAW << 1 | content.length() << 3);
+        out.writeBytes(content.getBytes(CharsetUtil.US_ASCII));
+    }
+
+    private ByteBuf readDecompressed() {
+        CompositeByteBuf decompressed = Unpooled.compositeBuffer();
+        ByteBuf msg;
+        while ((msg = channel.readInbound()) != null) {
+            decompressed.addComponent(true, msg);
+        }
+        return decompressed;
+    }
+
+    static byte[] readResource(String name) throws Exception {
+        InputStream in = ZstdDecoderTest.class.getResourceAsStream(name);
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            int length = 0;
+            int read;
+            while ((read = in.read(buffer, length, buffer.length - length)) > 0) {
+                length += read;
+            }
+            byte[] data = new byte[length];
+            System.arraycopy(buffer, 0, data, 0, length);
+            return data;
+        } finally {
+            in.close();
+        }
+    }
+}
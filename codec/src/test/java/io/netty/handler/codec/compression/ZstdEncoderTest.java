@@ -0,0 +1,112 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import com.github.luben.zstd.ZstdInputStream;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies the output of {@link ZstdEncoder} with the reference decoder.
+ */
+public class ZstdEncoderTest extends AbstractEncoderTest {
+
+    @Override
+    public void initChannel() {
+        channel = new EmbeddedChannel(new ZstdEncoder());
+    }
+
+    @Override
+    protected ByteBuf decompress(ByteBuf compressed, int originalLength) throws Exception {
+        return Unpooled.wrappedBuffer(decompress(new ByteBufInputStream(compressed, true), originalLength));
+    }
+
+    private static byte[] decompress(InputStream is, int originalLength) throws Exception {
+        ZstdInputStream zstdIs = null;
+        byte[] decompressed = new byte[originalLength];
+        try {
+            zstdIs = new ZstdInputStream(is);
+            int remaining = originalLength;
+            while (remaining > 0) {
+                int read = zstdIs.read(decompressed, originalLength - remaining, remaining);
+                if (read > 0) {
+                    remaining -= read;
+                } else {
+                    break;
+                }
+            }
+            assertEquals(-1, zstdIs.read());
+        } finally {
+            if (zstdIs != null) {
+                zstdIs.close();
+            } else {
+                is.close();
+            }
+        }
+        return decompressed;
+    }
+
+    @Test
+    public void testAllLevelsAndBlockSizes() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append("<item id=\"").append(i).append("\">netty zstd ").append(i * 31 % 97).append("</item>\n");
+        }
+        byte[] textBytes = text.toString().getBytes(CharsetUtil.US_ASCII);
+        byte[] random = new byte[70000];
+        rand.nextBytes(random);
+        byte[] xml = ZstdDecoderTest.readResource("../xml/sample-04.xml");
+
+        for (byte[] data : new byte[][] { textBytes, random, BYTES_LARGE, xml }) {
+            for (int level = 1; level <= ZstdEncoder.MAX_COMPRESSION_LEVEL; level++) {
+                for (int blockSize : new int[] { ZstdEncoder.MIN_BLOCK_SIZE, 1000, 32 * 1024,
+                                                 ZstdConstants.MAX_BLOCK_SIZE }) {
+                    destroyChannel();
+                    channel = new EmbeddedChannel(new ZstdEncoder(level, blockSize));
+                    ByteBuf in = Unpooled.wrappedBuffer(data);
+                    // Write in a few parts, so flushes in the middle of the stream are verified as well.
+                    int half = data.length / 2;
+                    assertTrue(channel.writeOutbound(in.retainedSlice(0, half)));
+                    assertTrue(channel.writeOutbound(in.retainedSlice(half, data.length - half)));
+                    assertTrue(channel.finish());
+
+                    ByteBuf decompressed = readDecompressed(data.length);
+                    assertEquals("level " + level + ", blockSize " + blockSize, in, decompressed);
+                    decompressed.release();
+                    in.release();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDecodeReferenceFrame() throws Exception {
+        // Makes sure the fixture used by ZstdDecoderTest is decoded the same way by the reference decoder.
+        byte[] expected = ZstdDecoderTest.readResource("../xml/sample-04.xml");
+        byte[] compressed = ZstdDecoderTest.readResource("sample-04.xml.zst");
+
+        assertArrayEquals(expected, decompress(new ByteArrayInputStream(compressed), expected.length));
+    }
+}
@@ -19,6 +19,7 @@ import io.netty.util.ByteProcessor.IndexOfProcessor;
 import io.netty.util.internal.EmptyArrays;
 import io.netty.util.internal.InternalThreadLocalMap;
 import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SWARUtil;
 
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
@@ -529,12 +530,7 @@ public final class AsciiString implements CharSequence, Comparable<CharSequence>
 
         if (string.getClass() == AsciiString.class) {
             AsciiString rhs = (AsciiString) string;
-            for (int i = arrayOffset(), j = rhs.arrayOffset(); i < length(); ++i, ++j) {
-                if (!equalsIgnoreCase(value[i], rhs.value[j])) {
-                    return false;
-                }
-            }
-            return true;
+            return SWARUtil.equalsIgnoreCase(value, arrayOffset(), rhs.value, rhs.arrayOffset(), length());
         }
 
         for (int i = arrayOffset(), j = 0; i < length(); ++i, ++j) {
@@ -691,25 +687,25 @@ public final class AsciiString implements CharSequence, Comparable<CharSequence>
         if (firstChar > MAX_CHAR_VALUE) {
             return -1;
         }
-        ByteProcessor IndexOfVisitor = new IndexOfProcessor((byte) firstChar);
-        try {
-            for (;;) {
-                int i = forEachByte(start, thisLen - start, IndexOfVisitor);
-                if (i == -1 || subCount + i > thisLen) {
-                    return -1; // handles subCount > count || start >= count
-                }
-                int o1 = i, o2 = 0;
-                while (++o2 < subCount && b2c(value[++o1 + arrayOffset()]) == subString.charAt(o2)) {
-                    // Intentionally empty
-                }
-                if (o2 == subCount) {
-                    return i;
-                }
-                start = i + 1;
+        final byte firstByte = (byte) firstChar;
+        final int offset = arrayOffset();
+        for (;;) {
+            int i = SWARUtil.firstIndexOf(value, offset + start, offset + thisLen, firstByte);
+            if (i == -1) {
+                return -1;
             }
-        } catch (Exception e) {
-            PlatformDependent.throwException(e);
-            return -1;
+            i -= offset;
+            if (subCount + i > thisLen) {
+                return -1; // handles subCount > count || start >= count
+            }
+            int o1 = i, o2 = 0;
+            while (++o2 < subCount && b2c(value[++o1 + offset]) == subString.charAt(o2)) {
+                // Intentionally empty
+            }
+            if (o2 == subCount) {
+                return i;
+            }
+            start = i + 1;
         }
     }
 
@@ -729,16 +725,13 @@ public final class AsciiString implements CharSequence, Comparable<CharSequence>
 
         final int thisLen = length();
 
-        if (ch > MAX_CHAR_VALUE) {
+        if (ch > MAX_CHAR_VALUE || start >= thisLen) {
             return -1;
         }
 
-        try {
-            return forEachByte(start, thisLen - start, new IndexOfProcessor((byte) ch));
-        } catch (Exception e) {
-            PlatformDependent.throwException(e);
-            return -1;
-        }
+        final int offset = arrayOffset();
+        int i = SWARUtil.firstIndexOf(value, offset + start, offset + thisLen, (byte) ch);
+        return i == -1 ? -1 : i - offset;
     }
 
     /**
@@ -874,6 +867,10 @@ public final class AsciiString implements CharSequence, Comparable<CharSequence>
         }
 
         thisStart += arrayOffset();
+        if (string.getClass() == AsciiString.class) {
+            AsciiString rhs = (AsciiString) string;
+            return SWARUtil.equalsIgnoreCase(value, thisStart, rhs.value, rhs.arrayOffset() + start, length);
+        }
         final int thisEnd = thisStart + length;
         while (thisStart < thisEnd) {
             if (!equalsIgnoreCase(b2c(value[thisStart++]), string.charAt(start++))) {
@@ -1814,10 +1811,6 @@ public final class AsciiString implements CharSequence, Comparable<CharSequence>
         return INDEX_NOT_FOUND;
     }
 
-    private static boolean equalsIgnoreCase(byte a, byte b) {
-        return a == b || toLowerCase(a) == toLowerCase(b);
-    }
-
     private static boolean equalsIgnoreCase(char a, char b) {
         return a == b || toLowerCase(a) == toLowerCase(b);
     }
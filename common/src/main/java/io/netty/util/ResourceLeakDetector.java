@@ -7,9 +7,18 @@ import io.netty.util.internal.logging.InternalLoggerFactory;
 
 import java.lang.ref.PhantomReference;
 import java.lang.ref.ReferenceQueue;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.ArrayDeque;
 import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import static io.netty.util.internal.StringUtil.EMPTY_STRING;
 import static io.netty.util.internal.StringUtil.NEWLINE;
@@ -44,6 +53,16 @@ public class ResourceLeakDetector<T> {
 
     private static final int MAX_RECORDS;
 
+    private static final String PROP_SAMPLED_TRACKED_PER_SECOND = "io.netty.leakDetection.sampled.trackedPerSecond";
+
+    private static final String PROP_SAMPLED_RECORDS_PER_SECOND = "io.netty.leakDetection.sampled.recordsPerSecond";
+
+    private static final int DEFAULT_SAMPLED_BUDGET = 1024;
+
+    private static final int SAMPLED_TRACKED_PER_SECOND;
+
+    private static final int SAMPLED_RECORDS_PER_SECOND;
+
     /**
      * Represents the level of resource leak detection.
      *
@@ -78,12 +97,18 @@ public class ResourceLeakDetector<T> {
          *
          * PARANOID：泛醇类
          */
-        PARANOID;
+        PARANOID,
+        /**
+         * Enables adaptive sampling resource leak detection which records compact access records (only the calling
+         * class and method) and reports leaks aggregated by the site they were allocated at. The number of tracked
+         * objects and recorded accesses per second is bounded, which makes it suitable for production.
+         */
+        SAMPLED;
 
         /**
          * Returns level based on string value. Accepts also string that represents ordinal number of enum.
          *
-         * @param levelStr - level string : DISABLED, SIMPLE, ADVANCED, PARANOID. Ignores case.
+         * @param levelStr - level string : DISABLED, SIMPLE, ADVANCED, PARANOID, SAMPLED. Ignores case.
          * @return corresponding level or SIMPLE level in case of no match.
          */
         static Level parseLevel(String levelStr) {
@@ -130,11 +155,17 @@ public class ResourceLeakDetector<T> {
         Level level = Level.parseLevel(levelStr);
 
         MAX_RECORDS = SystemPropertyUtil.getInt(PROP_MAX_RECORDS, DEFAULT_MAX_RECORDS);
+        SAMPLED_TRACKED_PER_SECOND = Math.max(1,
+                SystemPropertyUtil.getInt(PROP_SAMPLED_TRACKED_PER_SECOND, DEFAULT_SAMPLED_BUDGET));
+        SAMPLED_RECORDS_PER_SECOND = Math.max(1,
+                SystemPropertyUtil.getInt(PROP_SAMPLED_RECORDS_PER_SECOND, DEFAULT_SAMPLED_BUDGET));
 
         ResourceLeakDetector.level = level;
         if (logger.isDebugEnabled()) {
             logger.debug("-D{}: {}", PROP_LEVEL, level.name().toLowerCase());
             logger.debug("-D{}: {}", PROP_MAX_RECORDS, MAX_RECORDS);
+            logger.debug("-D{}: {}", PROP_SAMPLED_TRACKED_PER_SECOND, SAMPLED_TRACKED_PER_SECOND);
+            logger.debug("-D{}: {}", PROP_SAMPLED_RECORDS_PER_SECOND, SAMPLED_RECORDS_PER_SECOND);
         }
     }
 
@@ -182,6 +213,15 @@ public class ResourceLeakDetector<T> {
 
     private final ConcurrentMap<String, Boolean> reportedLeaks = PlatformDependent.newConcurrentHashMap();
 
+    /**
+     * The number of leaks detected per allocation site when running with {@link Level#SAMPLED}.
+     */
+    private final ConcurrentMap<String, AtomicLong> leakSites = PlatformDependent.newConcurrentHashMap();
+
+    private final ResourceLeakSampler trackSampler = new ResourceLeakSampler(SAMPLED_TRACKED_PER_SECOND);
+
+    private final ResourceLeakSampler recordSampler = new ResourceLeakSampler(SAMPLED_RECORDS_PER_SECOND);
+
     private final String resourceType;
 
     private final int samplingInterval;
@@ -268,16 +308,24 @@ public class ResourceLeakDetector<T> {
             return null;
         }
 
+        if (level == Level.SAMPLED) {
+            if (trackSampler.sample()) {
+                reportLeak(level);
+                return new DefaultResourceLeak(obj, level);
+            }
+            return null;
+        }
+
         if (level.ordinal() < Level.PARANOID.ordinal()) {
             if ((PlatformDependent.threadLocalRandom().nextInt(samplingInterval)) == 0) {
                 reportLeak(level);
-                return new DefaultResourceLeak(obj);
+                return new DefaultResourceLeak(obj, level);
             } else {
                 return null;
             }
         } else {
             reportLeak(level);
-            return new DefaultResourceLeak(obj);
+            return new DefaultResourceLeak(obj, level);
         }
     }
 
@@ -308,6 +356,11 @@ public class ResourceLeakDetector<T> {
                 continue;
             }
 
+            if (ref.isCompact()) {
+                reportSampledLeak0(ref);
+                continue;
+            }
+
             String records = ref.toString();
             if (reportedLeaks.putIfAbsent(records, Boolean.TRUE) == null) {
                 if (records.isEmpty()) {
@@ -342,6 +395,46 @@ public class ResourceLeakDetector<T> {
                 resourceType, PROP_LEVEL, Level.ADVANCED.name().toLowerCase(), simpleClassName(this));
     }
 
+    private void reportSampledLeak0(DefaultResourceLeak ref) {
+        String site = ref.creationSite();
+        AtomicLong leaks = leakSites.get(site);
+        if (leaks == null) {
+            AtomicLong newLeaks = new AtomicLong();
+            leaks = leakSites.putIfAbsent(site, newLeaks);
+            if (leaks == null) {
+                leaks = newLeaks;
+            }
+        }
+        long count = leaks.incrementAndGet();
+        // Only report when the number of leaks of a site reaches the next power of two to not flood the log.
+        if ((count & count - 1) == 0) {
+            reportSampledLeak(resourceType, count, ref.toString());
+        }
+    }
+
+    /**
+     * This method is called when a leak is detected while running with {@link Level#SAMPLED}. Leaks are aggregated
+     * by the site the leaked object was allocated at, {@code leaks} is the number of leaks detected for that site so
+     * far. It can be overridden for tracking how many times leaks have been detected.
+     */
+    protected void reportSampledLeak(String resourceType, long leaks, String records) {
+        logger.error(
+                "LEAK: {}.release() was not called before it's garbage-collected ({} leaks sampled from the same " +
+                "allocation site so far). See http://netty.io/wiki/reference-counted-objects.html for more " +
+                "information.{}", resourceType, leaks, records);
+    }
+
+    /**
+     * Returns the number of leaks detected so far per allocation site while running with {@link Level#SAMPLED}.
+     */
+    public Map<String, Long> sampledLeakSites() {
+        Map<String, Long> sites = new HashMap<String, Long>(leakSites.size());
+        for (Map.Entry<String, AtomicLong> e : leakSites.entrySet()) {
+            sites.put(e.getKey(), e.getValue().get());
+        }
+        return sites;
+    }
+
     /**
      * @deprecated This method will no longer be invoked by {@link ResourceLeakDetector}.
      */
@@ -361,7 +454,23 @@ public class ResourceLeakDetector<T> {
 
         private int removedRecords;
 
-        DefaultResourceLeak(Object referent) {
+        /**
+         * The id of the allocation site as returned by {@link LeakSites#callerSite()} if running with
+         * {@link Level#SAMPLED}, {@code -1} otherwise.
+         */
+        private final int creationSite;
+
+        /**
+         * The ids of the most recent access sites if running with {@link Level#SAMPLED}, used as a ring buffer.
+         * Threading - synchronized(this).
+         */
+        private int[] accessSites;
+
+        private int accessNext;
+
+        private int accessSize;
+
+        DefaultResourceLeak(Object referent, Level level) {
             super(referent, refQueue);
 
             assert referent != null;
@@ -371,15 +480,27 @@ public class ResourceLeakDetector<T> {
             // be collected via the PhantomReference.
             trackedHash = System.identityHashCode(referent);
 
-            Level level = getLevel();
-            if (level.ordinal() >= Level.ADVANCED.ordinal()) {
+            if (level == Level.ADVANCED || level == Level.PARANOID) {
                 creationRecord = newRecord(null, 3);
+                creationSite = -1;
+            } else if (level == Level.SAMPLED) {
+                creationRecord = null;
+                creationSite = LeakSites.callerSite();
             } else {
                 creationRecord = null;
+                creationSite = -1;
             }
             allLeaks.put(this, LeakEntry.INSTANCE);
         }
 
+        boolean isCompact() {
+            return creationSite != -1;
+        }
+
+        String creationSite() {
+            return LeakSites.site(creationSite);
+        }
+
         @Override
         public void record() {
             record0(null, 3);
@@ -405,6 +526,26 @@ public class ResourceLeakDetector<T> {
                         lastRecords.add(value);
                     }
                 }
+            } else if (creationSite != -1 && MAX_RECORDS > 0 && recordSampler.sample()) {
+                recordCompact(LeakSites.callerSite());
+            }
+        }
+
+        private synchronized void recordCompact(int site) {
+            int[] accessSites = this.accessSites;
+            if (accessSites == null) {
+                accessSites = this.accessSites = new int[MAX_RECORDS];
+            } else if (accessSize > 0 &&
+                    accessSites[(accessNext + accessSites.length - 1) % accessSites.length] == site) {
+                // Same as the last record.
+                return;
+            }
+            accessSites[accessNext] = site;
+            accessNext = (accessNext + 1) % accessSites.length;
+            if (accessSize < accessSites.length) {
+                ++accessSize;
+            } else {
+                ++removedRecords;
             }
         }
 
@@ -428,6 +569,9 @@ public class ResourceLeakDetector<T> {
 
         @Override
         public String toString() {
+            if (creationSite != -1) {
+                return toCompactString();
+            }
             if (creationRecord == null) {
                 return EMPTY_STRING;
             }
@@ -471,6 +615,39 @@ public class ResourceLeakDetector<T> {
             buf.setLength(buf.length() - NEWLINE.length());
             return buf.toString();
         }
+
+        private String toCompactString() {
+            final int[] sites;
+            final int removedRecords;
+            synchronized (this) {
+                sites = new int[accessSize];
+                for (int i = 0; i < sites.length; i++) {
+                    // Oldest record first.
+                    sites[i] = accessSites[(accessNext - accessSize + i + accessSites.length) % accessSites.length];
+                }
+                removedRecords = this.removedRecords;
+            }
+
+            StringBuilder buf = new StringBuilder(256).append(NEWLINE);
+            buf.append("Recent access records: ")
+                    .append(sites.length);
+            if (removedRecords > 0) {
+                buf.append(" (")
+                        .append(removedRecords)
+                        .append(" discarded)");
+            }
+            buf.append(NEWLINE);
+            for (int i = sites.length - 1; i >= 0; i--) {
+                buf.append('#')
+                        .append(i + 1)
+                        .append(":\t")
+                        .append(LeakSites.site(sites[i]))
+                        .append(NEWLINE);
+            }
+            buf.append("Created at:\t")
+                    .append(creationSite());
+            return buf.toString();
+        }
     }
 
     private static final String[] STACK_TRACE_ELEMENT_EXCLUSIONS = {
@@ -523,6 +700,163 @@ public class ResourceLeakDetector<T> {
         return buf.toString();
     }
 
+    /**
+     * Maps the call sites recorded by {@link Level#SAMPLED} to compact {@code int} ids, so each access record only
+     * costs four bytes.
+     */
+    static final class LeakSites {
+
+        private static final int MAX_SITES = 65536;
+
+        // The number of frames inspected at most when walking the stack via StackWalker.
+        private static final int MAX_WALKED_FRAMES = 32;
+
+        // Used when no site could be detected or the maximal number of sites was reached.
+        private static final int UNKNOWN = 0;
+
+        private static final ConcurrentMap<String, Integer> ids = PlatformDependent.newConcurrentHashMap();
+
+        private static final AtomicReferenceArray<String> sites = new AtomicReferenceArray<String>(MAX_SITES);
+
+        private static final AtomicInteger nextId = new AtomicInteger(UNKNOWN + 1);
+
+        // java.lang.StackWalker and the methods used to walk it, null if running on Java 8 or earlier.
+        private static final Object STACK_WALKER;
+        private static final Method WALK;
+        private static final Method ITERATOR;
+        private static final Method GET_CLASS_NAME;
+        private static final Method GET_METHOD_NAME;
+
+        // The java.util.function.Function passed to StackWalker.walk(...), which returns the id of the caller site.
+        private static final Object WALK_FUNCTION;
+
+        static {
+            sites.set(UNKNOWN, "unknown");
+
+            Object stackWalker = null;
+            Method walk = null;
+            Method iterator = null;
+            Method getClassName = null;
+            Method getMethodName = null;
+            Object walkFunction = null;
+            if (PlatformDependent.javaVersion() >= 9) {
+                try {
+                    Class<?> stackWalkerClass = Class.forName("java.lang.StackWalker");
+                    Class<?> stackFrameClass = Class.forName("java.lang.StackWalker$StackFrame");
+                    Class<?> functionClass = Class.forName("java.util.function.Function");
+                    iterator = Class.forName("java.util.stream.BaseStream").getMethod("iterator");
+                    getClassName = stackFrameClass.getMethod("getClassName");
+                    getMethodName = stackFrameClass.getMethod("getMethodName");
+                    walk = stackWalkerClass.getMethod("walk", functionClass);
+                    stackWalker = stackWalkerClass.getMethod("getInstance").invoke(null);
+                    walkFunction = Proxy.newProxyInstance(
+                            LeakSites.class.getClassLoader(), new Class<?>[] { functionClass }, new WalkFunction());
+                } catch (Throwable cause) {
+                    logger.debug("java.lang.StackWalker: unavailable", cause);
+                    stackWalker = null;
+                }
+            }
+            if (stackWalker != null) {
+                STACK_WALKER = stackWalker;
+                WALK = walk;
+                ITERATOR = iterator;
+                GET_CLASS_NAME = getClassName;
+                GET_METHOD_NAME = getMethodName;
+                WALK_FUNCTION = walkFunction;
+            } else {
+                STACK_WALKER = null;
+                WALK = null;
+                ITERATOR = null;
+                GET_CLASS_NAME = null;
+                GET_METHOD_NAME = null;
+                WALK_FUNCTION = null;
+            }
+        }
+
+        private LeakSites() {
+        }
+
+        static boolean hasStackWalker() {
+            return STACK_WALKER != null;
+        }
+
+        /**
+         * Returns the id of the first caller which is not part of the leak detection or buffer implementation.
+         */
+        static int callerSite() {
+            if (STACK_WALKER != null) {
+                // Only walks the top most frames instead of capturing the whole stack trace.
+                try {
+                    return (Integer) WALK.invoke(STACK_WALKER, WALK_FUNCTION);
+                } catch (Throwable cause) {
+                    // Fall back to the stack trace below.
+                }
+            }
+            StackTraceElement[] array = new Throwable().getStackTrace();
+            for (StackTraceElement e : array) {
+                String className = e.getClassName();
+                if (!isExcluded(className)) {
+                    return id(className + '.' + e.getMethodName());
+                }
+            }
+            return UNKNOWN;
+        }
+
+        static String site(int id) {
+            return sites.get(id);
+        }
+
+        /**
+         * Implements {@code Function<Stream<StackFrame>, Integer>} for {@code StackWalker.walk(...)}.
+         */
+        private static final class WalkFunction implements InvocationHandler {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getDeclaringClass() == Object.class) {
+                    if ("equals".equals(method.getName())) {
+                        return proxy == args[0];
+                    }
+                    if ("hashCode".equals(method.getName())) {
+                        return System.identityHashCode(proxy);
+                    }
+                    return "LeakSites.WalkFunction";
+                }
+                Iterator<?> frames = (Iterator<?>) ITERATOR.invoke(args[0]);
+                for (int i = 0; i < MAX_WALKED_FRAMES && frames.hasNext(); i++) {
+                    Object frame = frames.next();
+                    String className = (String) GET_CLASS_NAME.invoke(frame);
+                    if (!isExcluded(className)) {
+                        return id(className + '.' + GET_METHOD_NAME.invoke(frame));
+                    }
+                }
+                return UNKNOWN;
+            }
+        }
+
+        private static boolean isExcluded(String className) {
+            return className.startsWith("io.netty.buffer.") ||
+                    className.equals(ResourceLeakDetector.class.getName()) ||
+                    className.startsWith(ResourceLeakDetector.class.getName() + '$') ||
+                    className.equals(ResourceLeakSampler.class.getName()) ||
+                    className.equals(ReferenceCountUtil.class.getName());
+        }
+
+        private static int id(String site) {
+            Integer id = ids.get(site);
+            if (id != null) {
+                return id;
+            }
+            int newId = nextId.getAndIncrement();
+            if (newId >= MAX_SITES) {
+                nextId.set(MAX_SITES);
+                return UNKNOWN;
+            }
+            sites.set(newId, site);
+            id = ids.putIfAbsent(site, newId);
+            return id == null ? newId : id;
+        }
+    }
+
     private static final class LeakEntry {
 
         static final LeakEntry INSTANCE = new LeakEntry();
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util;
+
+import io.netty.util.internal.PlatformDependent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adaptive sampler used by {@link ResourceLeakDetector.Level#SAMPLED} which bounds the number of samples taken per
+ * second. Every sample is accepted as long as the budget is not exceeded; once it is, the sampling interval is
+ * doubled for the next window, and halved again when the load drops.
+ */
+final class ResourceLeakSampler {
+
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    // Should be power of two.
+    private static final int MAX_INTERVAL = 1 << 16;
+
+    private final int budget;
+
+    private final AtomicInteger samples = new AtomicInteger();
+
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+
+    // Always a power of two.
+    private volatile int interval = 1;
+
+    /**
+     * @param budget the maximal number of samples per second.
+     */
+    ResourceLeakSampler(int budget) {
+        if (budget <= 0) {
+            throw new IllegalArgumentException("budget: " + budget + " (expected: > 0)");
+        }
+        this.budget = budget;
+    }
+
+    /**
+     * Returns {@code true} if the current event should be sampled.
+     */
+    boolean sample() {
+        int interval = this.interval;
+        if (interval > 1 && (PlatformDependent.threadLocalRandom().nextInt() & interval - 1) != 0) {
+            return false;
+        }
+
+        long start = windowStart.get();
+        long now = System.nanoTime();
+        if (now - start >= WINDOW_NANOS && windowStart.compareAndSet(start, now)) {
+            adjustInterval(samples.getAndSet(0));
+        }
+        return samples.incrementAndGet() <= budget;
+    }
+
+    /**
+     * Returns the current sampling interval.
+     */
+    int interval() {
+        return interval;
+    }
+
+    private void adjustInterval(int lastSamples) {
+        int interval = this.interval;
+        if (lastSamples > budget) {
+            if (interval < MAX_INTERVAL) {
+                this.interval = interval << 1;
+            }
+        } else if (lastSamples < budget >>> 2 && interval > 1) {
+            this.interval = interval >>> 1;
+        }
+    }
+}
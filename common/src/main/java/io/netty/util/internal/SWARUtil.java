@@ -0,0 +1,153 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.internal;
+
+/**
+ * Utility methods for SWAR (SIMD within a register) operations, which process 8 bytes at a time packed into a
+ * {@code long}.
+ */
+public final class SWARUtil {
+
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+    private static final boolean USE_UNSAFE = PlatformDependent.hasUnsafe() && PlatformDependent.isUnaligned();
+
+    private SWARUtil() {
+    }
+
+    /**
+     * Compiles the given byte into a pattern which can be used with {@link #applyPattern(long, long)}.
+     */
+    public static long compilePattern(byte byteToFind) {
+        return (byteToFind & 0xFFL) * 0x101010101010101L;
+    }
+
+    /**
+     * Applies a pattern compiled by {@link #compilePattern(byte)} to the given word. The result has the highest bit
+     * of every byte set that matched the pattern, and all other bits cleared. So a result of {@code 0} means that
+     * no byte matched.
+     */
+    public static long applyPattern(long word, long pattern) {
+        long input = word ^ pattern;
+        long tmp = (input & LOW_BITS) + LOW_BITS;
+        return ~(tmp | input | LOW_BITS);
+    }
+
+    /**
+     * Returns the index of the first matching byte in a non-zero result of {@link #applyPattern(long, long)}.
+     *
+     * @param isBigEndian {@code true} if the word was read in big endian byte order, which means the first byte is
+     *                    the most significant one.
+     */
+    public static int getIndex(long result, boolean isBigEndian) {
+        return isBigEndian ? Long.numberOfLeadingZeros(result) >>> 3 : Long.numberOfTrailingZeros(result) >>> 3;
+    }
+
+    /**
+     * Returns {@code true} if all 8 bytes of the given word are ASCII, which means none of them has its highest bit
+     * set. The result does not depend on the byte order the word was read in.
+     */
+    public static boolean isAscii(long word) {
+        return (word & HIGH_BITS) == 0;
+    }
+
+    /**
+     * Converts all ASCII upper case letters in the given word to lower case, all other bytes are left untouched.
+     */
+    public static long toLowerCase(long word) {
+        long heptets = word & LOW_BITS;
+        // The highest bit of a byte is set if the byte is greater than 'Z' respectively greater or equal to 'A'.
+        long gtZ = heptets + 0x2525252525252525L;
+        long geA = heptets + 0x3F3F3F3F3F3F3F3FL;
+        long upperCase = ~word & (geA ^ gtZ) & HIGH_BITS;
+        return word | upperCase >>> 2;
+    }
+
+    /**
+     * Returns the index of the first occurrence of {@code value} in {@code array} between {@code fromIndex}
+     * (inclusive) and {@code toIndex} (exclusive), or {@code -1} if it was not found. No bounds checks are done.
+     */
+    public static int firstIndexOf(byte[] array, int fromIndex, int toIndex, byte value) {
+        int i = fromIndex;
+        if (USE_UNSAFE) {
+            final long pattern = compilePattern(value);
+            for (final int longEnd = toIndex - 7; i < longEnd; i += 8) {
+                long result = applyPattern(PlatformDependent.getLong(array, i), pattern);
+                if (result != 0) {
+                    return i + getIndex(result, PlatformDependent.BIG_ENDIAN_NATIVE_ORDER);
+                }
+            }
+        }
+        for (; i < toIndex; i++) {
+            if (array[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the first byte in {@code array} between {@code fromIndex} (inclusive) and {@code toIndex}
+     * (exclusive) which is not ASCII, or {@code -1} if all of them are ASCII. No bounds checks are done.
+     */
+    public static int firstNonAsciiIndex(byte[] array, int fromIndex, int toIndex) {
+        int i = fromIndex;
+        if (USE_UNSAFE) {
+            for (final int longEnd = toIndex - 7; i < longEnd; i += 8) {
+                if (!isAscii(PlatformDependent.getLong(array, i))) {
+                    break;
+                }
+            }
+        }
+        for (; i < toIndex; i++) {
+            if (array[i] < 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns {@code true} if the given ranges of {@code a} and {@code b} are equal when ignoring the case of ASCII
+     * letters. No bounds checks are done.
+     */
+    public static boolean equalsIgnoreCase(byte[] a, int aStartIndex, byte[] b, int bStartIndex, int length) {
+        int i = 0;
+        if (USE_UNSAFE) {
+            for (final int longEnd = length - 7; i < longEnd; i += 8) {
+                long wordA = PlatformDependent.getLong(a, aStartIndex + i);
+                long wordB = PlatformDependent.getLong(b, bStartIndex + i);
+                if (wordA != wordB && toLowerCase(wordA) != toLowerCase(wordB)) {
+                    return false;
+                }
+            }
+        }
+        for (; i < length; i++) {
+            byte byteA = a[aStartIndex + i];
+            byte byteB = b[bStartIndex + i];
+            if (byteA != byteB && toLowerCase(byteA) != toLowerCase(byteB)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte toLowerCase(byte value) {
+        return value >= 'A' && value <= 'Z' ? (byte) (value + 32) : value;
+    }
+}
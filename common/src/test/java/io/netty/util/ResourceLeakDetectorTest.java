@@ -15,6 +15,7 @@
  */
 package io.netty.util;
 
+import io.netty.util.internal.PlatformDependent;
 import org.junit.Test;
 
 import java.util.ArrayDeque;
@@ -23,6 +24,8 @@ import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static org.junit.Assert.*;
+
 public class ResourceLeakDetectorTest {
 
     @Test(timeout = 60000)
@@ -95,6 +98,49 @@ public class ResourceLeakDetectorTest {
         assertNoErrors(error);
     }
 
+    @Test
+    public void testSampledLevelRecordsCompactAccessSites() {
+        ResourceLeakDetector.Level level = ResourceLeakDetector.getLevel();
+        ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.SAMPLED);
+        try {
+            ResourceLeakDetector<Resource> detector = new ResourceLeakDetector<Resource>(Resource.class, 1);
+            DefaultResource resource = new DefaultResource();
+            ResourceLeakTracker<Resource> leak = detector.track(resource);
+            assertNotNull(leak);
+            leak.record();
+            leak.record();
+
+            String site = ResourceLeakDetectorTest.class.getName() + ".testSampledLevelRecordsCompactAccessSites";
+            String records = leak.toString();
+            assertTrue(records, records.contains("Recent access records: 1"));
+            assertTrue(records, records.contains("#1:\t" + site));
+            assertTrue(records, records.contains("Created at:\t" + site));
+            assertTrue(leak.close(resource));
+            assertTrue(detector.sampledLeakSites().isEmpty());
+        } finally {
+            ResourceLeakDetector.setLevel(level);
+        }
+    }
+
+    @Test
+    public void testCallerSite() {
+        if (PlatformDependent.javaVersion() >= 9) {
+            assertTrue(ResourceLeakDetector.LeakSites.hasStackWalker());
+        }
+        assertEquals(ResourceLeakDetectorTest.class.getName() + ".testCallerSite",
+                ResourceLeakDetector.LeakSites.site(ResourceLeakDetector.LeakSites.callerSite()));
+    }
+
+    @Test
+    public void testSamplerBudget() {
+        ResourceLeakSampler sampler = new ResourceLeakSampler(16);
+        for (int i = 0; i < 16; i++) {
+            assertTrue(sampler.sample());
+        }
+        assertFalse(sampler.sample());
+        assertEquals(1, sampler.interval());
+    }
+
     // Mimic the way how we implement our classes that should help with leak detection
     private static final  class LeakAwareResource implements Resource {
         private final Resource resource;
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.internal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LogLinearHistogramTest {
+
+    @Test
+    public void testBuckets() {
+        long previousUpperBound = -1;
+        for (int i = 0; i < LogLinearHistogram.bucket(Long.MAX_VALUE) + 1; i++) {
+            long upperBound = LogLinearHistogram.bucketUpperBound(i);
+            assertTrue(upperBound > previousUpperBound);
+            assertEquals(i, LogLinearHistogram.bucket(previousUpperBound + 1));
+            assertEquals(i, LogLinearHistogram.bucket(upperBound));
+            previousUpperBound = upperBound;
+        }
+        assertEquals(Long.MAX_VALUE, previousUpperBound);
+    }
+
+    @Test
+    public void testPercentiles() {
+        LogLinearHistogram histogram = new LogLinearHistogram();
+        assertEquals(0, histogram.percentile(50));
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        histogram.record(-1);
+        assertEquals(101, histogram.count());
+        assertEquals(0, histogram.percentile(0));
+        long p50 = histogram.percentile(50);
+        assertTrue(p50 >= 50 && p50 <= 50 * 5 / 4);
+        long p100 = histogram.percentile(100);
+        assertTrue(p100 >= 100 && p100 <= 100 * 5 / 4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPercentile() {
+        new LogLinearHistogram().percentile(101);
+    }
+}
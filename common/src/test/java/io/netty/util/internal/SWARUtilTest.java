@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.internal;
+
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SWARUtilTest {
+
+    @Test
+    public void testApplyPattern() {
+        long pattern = SWARUtil.compilePattern((byte) 'x');
+        assertEquals(0, SWARUtil.applyPattern(0x6161616161616161L, pattern));
+        for (int i = 0; i < 8; i++) {
+            long word = 0x6161616161616161L & ~(0xFFL << (i << 3)) | ((long) 'x' << (i << 3));
+            long result = SWARUtil.applyPattern(word, pattern);
+            assertEquals(0x80L << (i << 3), result);
+            assertEquals(i, SWARUtil.getIndex(result, false));
+            assertEquals(7 - i, SWARUtil.getIndex(result, true));
+        }
+    }
+
+    @Test
+    public void testApplyPatternNoFalsePositives() {
+        for (int b = 0; b < 256; b++) {
+            long pattern = SWARUtil.compilePattern((byte) b);
+            for (int v = 0; v < 256; v++) {
+                long word = SWARUtil.compilePattern((byte) v);
+                assertEquals(b == v, SWARUtil.applyPattern(word, pattern) != 0);
+            }
+        }
+    }
+
+    @Test
+    public void testToLowerCase() {
+        for (int b = 0; b < 256; b++) {
+            long word = SWARUtil.compilePattern((byte) b);
+            byte expected = b >= 'A' && b <= 'Z' ? (byte) (b + 32) : (byte) b;
+            assertEquals(SWARUtil.compilePattern(expected), SWARUtil.toLowerCase(word));
+        }
+    }
+
+    @Test
+    public void testFirstIndexOf() {
+        byte[] array = new byte[37];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = (byte) i;
+        }
+        for (int i = 0; i < array.length; i++) {
+            assertEquals(i, SWARUtil.firstIndexOf(array, 0, array.length, (byte) i));
+            assertEquals(i, SWARUtil.firstIndexOf(array, i, array.length, (byte) i));
+            assertEquals(-1, SWARUtil.firstIndexOf(array, i + 1, array.length, (byte) i));
+        }
+    }
+
+    @Test
+    public void testFirstNonAsciiIndex() {
+        byte[] array = new byte[37];
+        assertEquals(-1, SWARUtil.firstNonAsciiIndex(array, 0, array.length));
+        for (int i = 0; i < array.length; i++) {
+            array[i] = (byte) 0x80;
+            assertEquals(i, SWARUtil.firstNonAsciiIndex(array, 0, array.length));
+            assertEquals(-1, SWARUtil.firstNonAsciiIndex(array, i + 1, array.length));
+            assertEquals(-1, SWARUtil.firstNonAsciiIndex(array, 0, i));
+            array[i] = 0x7F;
+        }
+        assertTrue(SWARUtil.isAscii(0x7F7F7F7F7F7F7F7FL));
+        assertFalse(SWARUtil.isAscii(0x7F7F7F7F7F7F7FFFL));
+    }
+
+    @Test
+    public void testEqualsIgnoreCase() {
+        byte[] a = "Content-Type: Application/JSON; charset=UTF-8".getBytes(CharsetUtil.US_ASCII);
+        byte[] b = "xxcontent-type: application/json; CHARSET=utf-8".getBytes(CharsetUtil.US_ASCII);
+        assertTrue(SWARUtil.equalsIgnoreCase(a, 0, b, 2, a.length));
+        b[b.length - 1] = '9';
+        assertFalse(SWARUtil.equalsIgnoreCase(a, 0, b, 2, a.length));
+        assertTrue(SWARUtil.equalsIgnoreCase(a, 0, b, 2, a.length - 1));
+        // '@' and '`' only differ in the case bit but are no letters.
+        byte[] at = "@@@@@@@@@".getBytes(CharsetUtil.US_ASCII);
+        byte[] backtick = "`````````".getBytes(CharsetUtil.US_ASCII);
+        assertFalse(SWARUtil.equalsIgnoreCase(at, 0, backtick, 0, 8));
+        assertFalse(SWARUtil.equalsIgnoreCase(at, 8, backtick, 8, 1));
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.flush;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.internal.ObjectUtil;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ChannelDuplexHandler} which consolidates flush operations like {@link FlushConsolidationHandler}, but decides
+ * on every flush whether delaying it is worthwhile instead of counting up to a fixed number of flushes.
+ * <p>
+ * A flush is delayed by at most {@link #flushDelayNanos(ChannelHandlerContext)} (the latency budget given to the
+ * constructor by default) if, judging from the recent rate of flushes, another flush is expected to arrive within that
+ * time. It is forwarded right away if:
+ * <ul>
+ *     <li>flushes are rare, so delaying them would only add latency;</li>
+ *     <li>at least {@code maxPendingBytes} were written since the last forwarded flush;</li>
+ *     <li>the {@link ChannelOutboundBuffer} still holds flushed data, as the transport is then waiting for the socket
+ *     to become writable and the flush does not cause a syscall;</li>
+ *     <li>the {@link Channel} is not writable.</li>
+ * </ul>
+ * While a read loop is in progress flushes are delayed until {@link #channelReadComplete(ChannelHandlerContext)}, just
+ * like {@link FlushConsolidationHandler} does.
+ * <p>
+ * Sub-classes may override {@link #flushDelayNanos(ChannelHandlerContext)} to adapt the latency budget to the
+ * connection, for example to a fraction of the round-trip time reported by {@code EpollSocketChannel.tcpInfo()}.
+ * <p>
+ * {@link #requestedFlushes()}, {@link #forwardedFlushes()} and {@link #savedFlushes()} report how many flushes were
+ * saved. They should only be called from the {@link io.netty.channel.EventLoop} of the {@link Channel}.
+ * <p>
+ * The handler should be put as first handler in the {@link io.netty.channel.ChannelPipeline} to have the best effect.
+ */
+public class AdaptiveFlushConsolidationHandler extends ChannelDuplexHandler {
+
+    private static final int DEFAULT_MAX_PENDING_BYTES = 64 * 1024;
+
+    // Weight of a new flush interval in the moving average, the same as TCP uses for its smoothed RTT.
+    private static final int INTERVAL_SMOOTHING_SHIFT = 3;
+
+    private final long maxDelayNanos;
+    private final long maxIntervalNanos;
+    private final int maxPendingBytes;
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            nextScheduledFlush = null;
+            if (!readInProgress) {
+                flushIfNeeded(ctx);
+            } // else we'll flush when the read completes
+        }
+    };
+
+    private ChannelHandlerContext ctx;
+    private ScheduledFuture<?> nextScheduledFlush;
+    private boolean readInProgress;
+    private int pendingFlushes;
+    private long pendingBytes;
+    private long lastFlushTime;
+    private long flushIntervalNanos = Long.MAX_VALUE;
+    private long requestedFlushes;
+    private long forwardedFlushes;
+
+    /**
+     * Create a new instance which forwards a flush once {@code 64 KiB} were written.
+     *
+     * @param maxDelay the maximum time a flush may be delayed.
+     * @param unit the {@link TimeUnit} of {@code maxDelay}.
+     */
+    public AdaptiveFlushConsolidationHandler(long maxDelay, TimeUnit unit) {
+        this(maxDelay, unit, DEFAULT_MAX_PENDING_BYTES);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param maxDelay the maximum time a flush may be delayed.
+     * @param unit the {@link TimeUnit} of {@code maxDelay}.
+     * @param maxPendingBytes the number of bytes written since the last forwarded flush after which a flush is
+     *                        forwarded immediately.
+     */
+    public AdaptiveFlushConsolidationHandler(long maxDelay, TimeUnit unit, int maxPendingBytes) {
+        ObjectUtil.checkNotNull(unit, "unit");
+        maxDelayNanos = unit.toNanos(ObjectUtil.checkPositive(maxDelay, "maxDelay"));
+        maxIntervalNanos = maxDelayNanos > Long.MAX_VALUE >> 1 ? Long.MAX_VALUE : maxDelayNanos << 1;
+        this.maxPendingBytes = ObjectUtil.checkPositive(maxPendingBytes, "maxPendingBytes");
+    }
+
+    /**
+     * Returns the number of flushes that were requested by the handlers after this one.
+     */
+    public long requestedFlushes() {
+        return requestedFlushes;
+    }
+
+    /**
+     * Returns the number of flushes that were forwarded to the transport.
+     */
+    public long forwardedFlushes() {
+        return forwardedFlushes;
+    }
+
+    /**
+     * Returns the number of requested flushes that were merged into another flush.
+     */
+    public long savedFlushes() {
+        return requestedFlushes - forwardedFlushes;
+    }
+
+    /**
+     * Returns the maximum time in nanoseconds the next flush may be delayed, or {@code 0} to forward it immediately.
+     * By default this is the {@code maxDelay} given to the constructor.
+     */
+    protected long flushDelayNanos(ChannelHandlerContext ctx) {
+        return maxDelayNanos;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        pendingBytes += size(msg);
+        ctx.write(msg, promise);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        long now = ticksInNanos();
+        if (requestedFlushes++ != 0) {
+            // Intervals longer than the latency budget all mean the same, so cap them to not need many flushes to
+            // recover from an idle period.
+            long interval = Math.min(now - lastFlushTime, maxIntervalNanos);
+            if (requestedFlushes == 2) {
+                flushIntervalNanos = interval;
+            } else {
+                flushIntervalNanos += (interval - flushIntervalNanos) >> INTERVAL_SMOOTHING_SHIFT;
+            }
+        }
+        lastFlushTime = now;
+        pendingFlushes++;
+
+        if (pendingBytes >= maxPendingBytes || !ctx.channel().isWritable() || hasFlushedBacklog(ctx)) {
+            flushNow(ctx);
+        } else if (readInProgress) {
+            // We are sure to see a channelReadComplete(...) call, which will flush.
+            return;
+        } else {
+            long delay = flushDelayNanos(ctx);
+            if (delay <= 0 || flushIntervalNanos >= delay) {
+                // No other flush is expected within the latency budget, so waiting would not save anything.
+                flushNow(ctx);
+            } else if (nextScheduledFlush == null) {
+                nextScheduledFlush = schedule(ctx, flushTask, Math.min(delay, maxDelayNanos), TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        readInProgress = true;
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        // This may be the last event in the read loop, so flush now!
+        resetReadAndFlushIfNeeded(ctx);
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        // To ensure we not miss to flush anything, do it now.
+        resetReadAndFlushIfNeeded(ctx);
+        ctx.fireExceptionCaught(cause);
+    }
+
+    @Override
+    public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        // Try to flush one last time if flushes are pending before disconnect the channel.
+        resetReadAndFlushIfNeeded(ctx);
+        ctx.disconnect(promise);
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        // Try to flush one last time if flushes are pending before close the channel.
+        resetReadAndFlushIfNeeded(ctx);
+        ctx.close(promise);
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (!ctx.channel().isWritable()) {
+            // The writability of the channel changed to false, so flush all consolidated flushes now to free up memory.
+            flushIfNeeded(ctx);
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        flushIfNeeded(ctx);
+    }
+
+    /**
+     * This method is visible for testing!
+     */
+    long ticksInNanos() {
+        return System.nanoTime();
+    }
+
+    /**
+     * This method is visible for testing!
+     */
+    ScheduledFuture<?> schedule(ChannelHandlerContext ctx, Runnable task, long delay, TimeUnit unit) {
+        return ctx.executor().schedule(task, delay, unit);
+    }
+
+    private void resetReadAndFlushIfNeeded(ChannelHandlerContext ctx) {
+        readInProgress = false;
+        flushIfNeeded(ctx);
+    }
+
+    private void flushIfNeeded(ChannelHandlerContext ctx) {
+        if (pendingFlushes > 0) {
+            flushNow(ctx);
+        }
+    }
+
+    private void flushNow(ChannelHandlerContext ctx) {
+        if (nextScheduledFlush != null) {
+            nextScheduledFlush.cancel(false);
+            nextScheduledFlush = null;
+        }
+        pendingFlushes = 0;
+        pendingBytes = 0;
+        forwardedFlushes++;
+        ctx.flush();
+    }
+
+    private static boolean hasFlushedBacklog(ChannelHandlerContext ctx) {
+        ChannelOutboundBuffer buffer = ctx.channel().unsafe().outboundBuffer();
+        return buffer != null && !buffer.isEmpty();
+    }
+
+    private static long size(Object msg) {
+        if (msg instanceof ByteBuf) {
+            return ((ByteBuf) msg).readableBytes();
+        }
+        if (msg instanceof ByteBufHolder) {
+            return ((ByteBufHolder) msg).content().readableBytes();
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.stream;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.FileRegion;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * A {@link ChunkedInput} that fetches data from a file chunk by chunk using memory mapping. The chunks are read-only
+ * views of the mapped file, so unlike {@link ChunkedFile} and {@link ChunkedNioFile} no data is copied into a buffer
+ * before it is passed on to handlers like {@link io.netty.handler.ssl.SslHandler} or a compressor. The mapping is
+ * released as soon as all chunks of it were written.
+ * <p>
+ * If the file is written as-is, prefer a {@link FileRegion} which uses {@code sendfile} where available.
+ * <p>
+ * The file must not be modified or truncated until all chunks were released. Reading a chunk whose part of the file
+ * was truncated raises {@code SIGBUS}, which the JVM reports as an {@link InternalError} at best. See
+ * {@link Unpooled#wrappedMappedBuffer(java.nio.MappedByteBuffer)}.
+ */
+public class ChunkedMappedFile implements ChunkedInput<ByteBuf> {
+
+    /**
+     * The maximum number of bytes which are mapped at once when reading from a {@link FileChannel}.
+     */
+    static final int MAX_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private final FileChannel in;
+    private final long startOffset;
+    private final long endOffset;
+    private final int chunkSize;
+    private long offset;
+    private ByteBuf window;
+
+    /**
+     * Creates a new instance that fetches data from the specified file.
+     */
+    public ChunkedMappedFile(File in) throws IOException {
+        this(in, ChunkedStream.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a new instance that fetches data from the specified file.
+     *
+     * @param chunkSize the number of bytes to fetch on each
+     *                  {@link #readChunk(ChannelHandlerContext)} call
+     */
+    public ChunkedMappedFile(File in, int chunkSize) throws IOException {
+        this(new RandomAccessFile(in, "r").getChannel(), chunkSize);
+    }
+
+    /**
+     * Creates a new instance that fetches data from the specified file.
+     *
+     * @param chunkSize the number of bytes to fetch on each
+     *                  {@link #readChunk(ChannelHandlerContext)} call
+     */
+    public ChunkedMappedFile(FileChannel in, int chunkSize) throws IOException {
+        this(in, 0, in.size(), chunkSize);
+    }
+
+    /**
+     * Creates a new instance that fetches data from the specified file.
+     *
+     * @param offset the offset of the file where the transfer begins
+     * @param length the number of bytes to transfer
+     * @param chunkSize the number of bytes to fetch on each
+     *                  {@link #readChunk(ChannelHandlerContext)} call
+     */
+    public ChunkedMappedFile(FileChannel in, long offset, long length, int chunkSize) {
+        if (in == null) {
+            throw new NullPointerException("in");
+        }
+        if (offset < 0) {
+            throw new IllegalArgumentException(
+                    "offset: " + offset + " (expected: 0 or greater)");
+        }
+        if (length < 0) {
+            throw new IllegalArgumentException(
+                    "length: " + length + " (expected: 0 or greater)");
+        }
+        checkChunkSize(chunkSize);
+
+        this.in = in;
+        this.chunkSize = chunkSize;
+        this.offset = startOffset = offset;
+        endOffset = offset + length;
+    }
+
+    /**
+     * Creates a new instance that fetches data from an already mapped file, as returned by
+     * {@link MappedFileCache#acquire(File)}. The ownership of {@code mapped} is transferred to this instance.
+     *
+     * @param chunkSize the number of bytes to fetch on each
+     *                  {@link #readChunk(ChannelHandlerContext)} call
+     */
+    public ChunkedMappedFile(ByteBuf mapped, int chunkSize) {
+        if (mapped == null) {
+            throw new NullPointerException("mapped");
+        }
+        checkChunkSize(chunkSize);
+
+        in = null;
+        this.chunkSize = chunkSize;
+        window = mapped;
+        startOffset = offset = 0;
+        endOffset = mapped.readableBytes();
+    }
+
+    private static void checkChunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException(
+                    "chunkSize: " + chunkSize +
+                    " (expected: a positive integer)");
+        }
+    }
+
+    /**
+     * Returns the offset in the file where the transfer began.
+     */
+    public long startOffset() {
+        return startOffset;
+    }
+
+    /**
+     * Returns the offset in the file where the transfer will end.
+     */
+    public long endOffset() {
+        return endOffset;
+    }
+
+    /**
+     * Returns the offset in the file where the transfer is happening currently.
+     */
+    public long currentOffset() {
+        return offset;
+    }
+
+    @Override
+    public boolean isEndOfInput() throws Exception {
+        return !(offset < endOffset && (in == null || in.isOpen()));
+    }
+
+    @Override
+    public void close() throws Exception {
+        ByteBuf window = this.window;
+        if (window != null) {
+            this.window = null;
+            window.release();
+        }
+        if (in != null) {
+            in.close();
+        }
+    }
+
+    @Deprecated
+    @Override
+    public ByteBuf readChunk(ChannelHandlerContext ctx) throws Exception {
+        return readChunk(ctx.alloc());
+    }
+
+    @Override
+    public ByteBuf readChunk(ByteBufAllocator allocator) throws Exception {
+        long offset = this.offset;
+        if (offset >= endOffset) {
+            return null;
+        }
+
+        ByteBuf window = this.window;
+        if (window == null || !window.isReadable()) {
+            if (window != null) {
+                // All chunks of the previous window were handed out, they keep the mapping alive until released.
+                this.window = null;
+                window.release();
+            }
+            if (in == null) {
+                return null;
+            }
+            int windowSize = (int) Math.min(MAX_WINDOW_SIZE, endOffset - offset);
+            this.window = window = Unpooled.wrappedMappedBuffer(in.map(MapMode.READ_ONLY, offset, windowSize));
+        }
+
+        int chunkSize = Math.min(this.chunkSize, window.readableBytes());
+        ByteBuf chunk = window.readRetainedSlice(chunkSize);
+        this.offset = offset + chunkSize;
+        return chunk;
+    }
+
+    @Override
+    public long length() {
+        return endOffset - startOffset;
+    }
+
+    @Override
+    public long progress() {
+        return offset - startOffset;
+    }
+}
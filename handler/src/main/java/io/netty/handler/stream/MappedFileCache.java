@@ -0,0 +1,156 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.stream;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the most recently used files memory mapped, so frequently served files, e.g. by a static file server, are
+ * not mapped again for each request. Use the returned buffers with {@link ChunkedMappedFile#ChunkedMappedFile(ByteBuf,
+ * int)}.
+ * <p>
+ * A cached mapping is replaced once the length or the last modification time of its file changes. Evicted mappings
+ * are unmapped as soon as all buffers acquired from them are released.
+ * <p>
+ * The cached files must be immutable while they are mapped. Changing a file in place is only noticed by the next
+ * {@link #acquire(File)}, so buffers acquired before may read the new content. Reading from a mapping whose file was
+ * truncated raises {@code SIGBUS}, which the JVM reports as an {@link InternalError} at best. Replace files atomically
+ * instead, e.g. by renaming a new file over the old one.
+ */
+public final class MappedFileCache {
+
+    private final long maxMappedBytes;
+    // Guarded by this, in least recently used order.
+    private final Map<File, Entry> entries = new LinkedHashMap<File, Entry>(16, 0.75f, true);
+    private long mappedBytes;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxMappedBytes the maximum number of bytes that are kept mapped. Files which are larger are mapped but
+     *                       not cached.
+     */
+    public MappedFileCache(long maxMappedBytes) {
+        if (maxMappedBytes <= 0) {
+            throw new IllegalArgumentException("maxMappedBytes: " + maxMappedBytes + " (expected: > 0)");
+        }
+        this.maxMappedBytes = maxMappedBytes;
+    }
+
+    /**
+     * Returns a read-only buffer holding the whole content of the specified file, which must not be larger than
+     * {@link Integer#MAX_VALUE} bytes. The caller is responsible to release it.
+     */
+    public ByteBuf acquire(File file) throws IOException {
+        long length = file.length();
+        long lastModified = file.lastModified();
+        synchronized (this) {
+            Entry entry = entries.get(file);
+            if (entry != null) {
+                if (entry.length == length && entry.lastModified == lastModified) {
+                    return entry.buffer.retainedDuplicate();
+                }
+                remove(file, entry);
+            }
+        }
+
+        ByteBuf buffer = map(file, length);
+        if (length > maxMappedBytes) {
+            return buffer;
+        }
+        synchronized (this) {
+            Entry entry = entries.get(file);
+            if (entry != null) {
+                // Mapped concurrently, replace the other mapping.
+                remove(file, entry);
+            }
+            entries.put(file, new Entry(buffer, length, lastModified));
+            mappedBytes += buffer.capacity();
+            evict();
+            return buffer.retainedDuplicate();
+        }
+    }
+
+    /**
+     * Returns the number of bytes currently kept mapped by this cache.
+     */
+    public synchronized long mappedBytes() {
+        return mappedBytes;
+    }
+
+    /**
+     * Removes all cached mappings.
+     */
+    public synchronized void clear() {
+        for (Entry entry : entries.values()) {
+            entry.buffer.release();
+        }
+        entries.clear();
+        mappedBytes = 0;
+    }
+
+    private void evict() {
+        Iterator<Entry> i = entries.values().iterator();
+        while (mappedBytes > maxMappedBytes && i.hasNext()) {
+            Entry entry = i.next();
+            i.remove();
+            mappedBytes -= entry.buffer.capacity();
+            entry.buffer.release();
+        }
+    }
+
+    private void remove(File file, Entry entry) {
+        entries.remove(file);
+        mappedBytes -= entry.buffer.capacity();
+        entry.buffer.release();
+    }
+
+    private static ByteBuf map(File file, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("file too large to be mapped at once: " + file);
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel ch = raf.getChannel();
+            // The mapping stays valid after the file was closed.
+            return Unpooled.wrappedMappedBuffer(ch.map(MapMode.READ_ONLY, 0, Math.min(length, ch.size())));
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static final class Entry {
+        final ByteBuf buffer;
+        final long length;
+        final long lastModified;
+
+        Entry(ByteBuf buffer, long length, long lastModified) {
+            this.buffer = buffer;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.flush;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveFlushConsolidationHandlerTest {
+
+    private static final long MAX_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testRareFlushesAreNotDelayed() {
+        AtomicInteger flushCount = new AtomicInteger();
+        TestHandler handler = new TestHandler(1024);
+        EmbeddedChannel channel = newChannel(flushCount, handler);
+        for (int i = 1; i <= 5; i++) {
+            handler.ticks += MAX_DELAY_NANOS * 10;
+            channel.flush();
+            assertEquals(i, flushCount.get());
+            assertNull(handler.task);
+        }
+        assertEquals(0, handler.savedFlushes());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testFrequentFlushesAreConsolidated() {
+        AtomicInteger flushCount = new AtomicInteger();
+        TestHandler handler = new TestHandler(1024);
+        EmbeddedChannel channel = newChannel(flushCount, handler);
+
+        // Nothing is known about the flush rate yet.
+        channel.flush();
+        assertEquals(1, flushCount.get());
+
+        for (int i = 0; i < 3; i++) {
+            handler.ticks += MAX_DELAY_NANOS / 100;
+            channel.flush();
+        }
+        assertEquals(1, flushCount.get());
+        assertEquals(MAX_DELAY_NANOS, handler.delay);
+        handler.runTask();
+        assertEquals(2, flushCount.get());
+
+        assertEquals(4, handler.requestedFlushes());
+        assertEquals(2, handler.forwardedFlushes());
+        assertEquals(2, handler.savedFlushes());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testFlushAfterMaxPendingBytes() {
+        AtomicInteger flushCount = new AtomicInteger();
+        TestHandler handler = new TestHandler(150);
+        EmbeddedChannel channel = newChannel(flushCount, handler);
+        channel.flush();
+        assertEquals(1, flushCount.get());
+
+        handler.ticks += MAX_DELAY_NANOS / 100;
+        channel.writeAndFlush(Unpooled.buffer().writeZero(100));
+        assertEquals(1, flushCount.get());
+        handler.ticks += MAX_DELAY_NANOS / 100;
+        channel.writeAndFlush(Unpooled.buffer().writeZero(100));
+        assertEquals(2, flushCount.get());
+        assertTrue(handler.task.isCancelled());
+        assertTrue(channel.finishAndReleaseAll());
+    }
+
+    @Test
+    public void testFlushDelayedUntilReadComplete() {
+        AtomicInteger flushCount = new AtomicInteger();
+        TestHandler handler = new TestHandler(1024);
+        EmbeddedChannel channel = newChannel(flushCount, handler);
+        channel.flush();
+        assertEquals(1, flushCount.get());
+
+        channel.pipeline().fireChannelRead(1L);
+        handler.ticks += MAX_DELAY_NANOS / 100;
+        channel.flush();
+        channel.flush();
+        assertEquals(1, flushCount.get());
+        assertNull(handler.task);
+        channel.pipeline().fireChannelReadComplete();
+        assertEquals(2, flushCount.get());
+        assertEquals(1, handler.savedFlushes());
+        assertEquals(1L, channel.readInbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testPendingFlushOnClose() {
+        AtomicInteger flushCount = new AtomicInteger();
+        TestHandler handler = new TestHandler(1024);
+        EmbeddedChannel channel = newChannel(flushCount, handler);
+        channel.flush();
+        handler.ticks += MAX_DELAY_NANOS / 100;
+        channel.flush();
+        assertEquals(1, flushCount.get());
+        channel.close();
+        assertEquals(2, flushCount.get());
+        assertFalse(channel.finish());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxDelay() {
+        new AdaptiveFlushConsolidationHandler(0, TimeUnit.MICROSECONDS);
+    }
+
+    private static EmbeddedChannel newChannel(final AtomicInteger flushCount, TestHandler handler) {
+        return new EmbeddedChannel(
+                new ChannelOutboundHandlerAdapter() {
+                    @Override
+                    public void flush(ChannelHandlerContext ctx) throws Exception {
+                        flushCount.incrementAndGet();
+                        ctx.flush();
+                    }
+                }, handler);
+    }
+
+    private static final class TestHandler extends AdaptiveFlushConsolidationHandler {
+        long ticks;
+        long delay;
+        Runnable runnable;
+        ScheduledFuture<?> task;
+
+        TestHandler(int maxPendingBytes) {
+            super(MAX_DELAY_NANOS, TimeUnit.NANOSECONDS, maxPendingBytes);
+        }
+
+        @Override
+        long ticksInNanos() {
+            return ticks;
+        }
+
+        @Override
+        ScheduledFuture<?> schedule(ChannelHandlerContext ctx, Runnable task, long delay, TimeUnit unit) {
+            this.delay = unit.toNanos(delay);
+            runnable = task;
+            // Never runs on its own, the test runs it explicitly.
+            this.task = ctx.executor().schedule(task, 1, TimeUnit.DAYS);
+            return this.task;
+        }
+
+        void runTask() {
+            assertFalse(task.isDone());
+            task.cancel(false);
+            runnable.run();
+        }
+    }
+}
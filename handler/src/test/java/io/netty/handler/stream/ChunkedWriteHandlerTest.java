@@ -98,6 +98,29 @@ public class ChunkedWriteHandlerTest {
         check(new ChunkedNioFile(TMP), new ChunkedNioFile(TMP), new ChunkedNioFile(TMP));
     }
 
+    @Test
+    public void testChunkedMappedFile() throws IOException {
+        check(new ChunkedMappedFile(TMP));
+
+        check(new ChunkedMappedFile(TMP), new ChunkedMappedFile(TMP), new ChunkedMappedFile(TMP));
+    }
+
+    @Test
+    public void testChunkedMappedFileFromCache() throws IOException {
+        MappedFileCache cache = new MappedFileCache(BYTES.length);
+        ByteBuf mapped = cache.acquire(TMP);
+        assertEquals(BYTES.length, cache.mappedBytes());
+        check(new ChunkedMappedFile(mapped, 8192),
+                new ChunkedMappedFile(cache.acquire(TMP), 8192),
+                new ChunkedMappedFile(cache.acquire(TMP), 8192));
+        assertEquals(1, mapped.refCnt());
+        assertEquals(BYTES.length, cache.mappedBytes());
+
+        cache.clear();
+        assertEquals(0, mapped.refCnt());
+        assertEquals(0, cache.mappedBytes());
+    }
+
     @Test
     public void testUnchunkedData() throws IOException {
         check(Unpooled.wrappedBuffer(BYTES));
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.ByteToMessageDecoder.Cumulator;
+import io.netty.handler.codec.http.HttpRequestDecoder;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Decodes a stream of messages of mixed sizes, split into reads of a fixed size, with each {@link Cumulator}.
+ */
+@Threads(1)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class ByteToMessageDecoderCumulatorBenchmark extends AbstractMicrobenchmark {
+
+    public enum CumulatorType {
+        MERGE(ByteToMessageDecoder.MERGE_CUMULATOR),
+        COMPOSITE(ByteToMessageDecoder.COMPOSITE_CUMULATOR),
+        ADAPTIVE(ByteToMessageDecoder.ADAPTIVE_CUMULATOR);
+
+        final Cumulator cumulator;
+
+        CumulatorType(Cumulator cumulator) {
+            this.cumulator = cumulator;
+        }
+    }
+
+    public enum DecoderType {
+        LENGTH_FIELD {
+            @Override
+            ByteToMessageDecoder newDecoder() {
+                return new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, 4, 0, 4);
+            }
+
+            @Override
+            void writeMessage(ByteArrayOutputStream out, byte[] payload) {
+                out.write(payload.length >>> 24);
+                out.write(payload.length >>> 16);
+                out.write(payload.length >>> 8);
+                out.write(payload.length);
+                out.write(payload, 0, payload.length);
+            }
+        },
+        LINE {
+            @Override
+            ByteToMessageDecoder newDecoder() {
+                return new LineBasedFrameDecoder(Integer.MAX_VALUE);
+            }
+
+            @Override
+            void writeMessage(ByteArrayOutputStream out, byte[] payload) {
+                out.write(payload, 0, payload.length);
+                out.write('\n');
+            }
+        },
+        HTTP {
+            @Override
+            ByteToMessageDecoder newDecoder() {
+                return new HttpRequestDecoder();
+            }
+
+            @Override
+            void writeMessage(ByteArrayOutputStream out, byte[] payload) {
+                byte[] head = ("POST /upload HTTP/1.1\r\n" +
+                               "Host: localhost\r\n" +
+                               "Content-Type: application/octet-stream\r\n" +
+                               "Content-Length: " + payload.length + "\r\n\r\n").getBytes(CharsetUtil.US_ASCII);
+                out.write(head, 0, head.length);
+                out.write(payload, 0, payload.length);
+            }
+        };
+
+        abstract ByteToMessageDecoder newDecoder();
+
+        abstract void writeMessage(ByteArrayOutputStream out, byte[] payload);
+    }
+
+    @Param
+    public CumulatorType cumulator;
+
+    @Param
+    public DecoderType decoder;
+
+    @Param({ "256", "1460", "16384" })
+    public int readSize;
+
+    private byte[] content;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < 64; i++) {
+            // Mostly small messages with the occasional large one.
+            byte[] payload = new byte[i % 8 == 0 ? 16384 + random.nextInt(65536) : 16 + random.nextInt(1024)];
+            // Printable payloads so the line decoder only splits on the delimiter.
+            Arrays.fill(payload, (byte) 'a');
+            decoder.writeMessage(out, payload);
+        }
+        content = out.toByteArray();
+    }
+
+    @Benchmark
+    public int decode() {
+        ByteToMessageDecoder handler = decoder.newDecoder();
+        handler.setCumulator(cumulator.cumulator);
+        MessageCounter counter = new MessageCounter();
+        EmbeddedChannel channel = new EmbeddedChannel(handler, counter);
+        for (int i = 0; i < content.length; i += readSize) {
+            channel.writeInbound(Unpooled.wrappedBuffer(content, i, Math.min(readSize, content.length - i)));
+        }
+        channel.finishAndReleaseAll();
+        return counter.messages;
+    }
+
+    private static final class MessageCounter extends ChannelInboundHandlerAdapter {
+        int messages;
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            messages++;
+            ReferenceCountUtil.release(msg);
+        }
+    }
+}
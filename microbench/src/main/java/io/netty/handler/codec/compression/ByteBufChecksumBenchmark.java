@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.zip.CRC32;
+
+/**
+ * Compares the checksums used by the compression codecs on heap and direct buffers.
+ */
+@Threads(1)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class ByteBufChecksumBenchmark extends AbstractMicrobenchmark {
+
+    @Param({ "64", "1024", "65536" })
+    public int size;
+
+    @Param({ "true", "false" })
+    public boolean direct;
+
+    private ByteBuf buffer;
+    private ByteBufChecksum crc32;
+    private ByteBufChecksum crc32c;
+    private ByteBufChecksum jdkCrc32c;
+    private ByteBufChecksum xxHash32;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        byte[] bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        buffer = direct ? Unpooled.directBuffer(size) : Unpooled.buffer(size);
+        buffer.writeBytes(bytes);
+
+        crc32 = ByteBufChecksum.wrapChecksum(new CRC32());
+        crc32c = new Crc32c();
+        jdkCrc32c = ByteBufChecksum.newCrc32c();
+        xxHash32 = new XxHash32();
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        buffer.release();
+    }
+
+    @Benchmark
+    public long crc32() {
+        return checksum(crc32);
+    }
+
+    @Benchmark
+    public long crc32c() {
+        return checksum(crc32c);
+    }
+
+    /**
+     * Uses {@code java.util.zip.CRC32C} when running on JDK9 or later, and is the same as {@link #crc32c()}
+     * otherwise.
+     */
+    @Benchmark
+    public long jdkCrc32c() {
+        return checksum(jdkCrc32c);
+    }
+
+    @Benchmark
+    public long xxHash32() {
+        return checksum(xxHash32);
+    }
+
+    private long checksum(ByteBufChecksum checksum) {
+        checksum.reset();
+        checksum.update(buffer, buffer.readerIndex(), buffer.readableBytes());
+        return checksum.getValue();
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compares compressing and decompressing direct buffers via the {@link java.nio.ByteBuffer} based methods of
+ * {@link Deflater} and {@link Inflater} with copying them to and from the heap first.
+ * The {@code nio} benchmarks are the same as the {@code heapCopy} ones when running on a JDK older than 11.
+ */
+@Threads(1)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class JdkZlibNioBenchmark extends AbstractMicrobenchmark {
+
+    @Param({ "64", "1024", "65536" })
+    public int size;
+
+    private JdkZlibNio nio;
+    private Deflater deflater;
+    private Inflater inflater;
+    private ByteBuf uncompressed;
+    private ByteBuf compressed;
+    private ByteBuf output;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        byte[] bytes = new byte[size];
+        Random random = new Random(42);
+        for (int i = 0; i < bytes.length; i++) {
+            // Compressible, but not trivially.
+            bytes[i] = (byte) ('a' + random.nextInt(8));
+        }
+        nio = JdkZlibNio.isSupported() ? new JdkZlibNio() : null;
+        deflater = new Deflater(6, true);
+        inflater = new Inflater(true);
+
+        uncompressed = Unpooled.directBuffer(size).writeBytes(bytes);
+        output = Unpooled.directBuffer(size * 2 + 64);
+        byte[] compressedBytes = new byte[size * 2 + 64];
+        deflater.setInput(bytes);
+        deflater.finish();
+        int length = deflater.deflate(compressedBytes);
+        compressed = Unpooled.directBuffer(length).writeBytes(compressedBytes, 0, length);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        deflater.end();
+        inflater.end();
+        uncompressed.release();
+        compressed.release();
+        output.release();
+    }
+
+    @Benchmark
+    public int deflateNio() {
+        if (nio == null) {
+            return deflateHeapCopy();
+        }
+        deflater.reset();
+        nio.setInput(deflater, uncompressed.internalNioBuffer(uncompressed.readerIndex(), size));
+        return nio.deflate(deflater, output.internalNioBuffer(0, output.capacity()), Deflater.SYNC_FLUSH);
+    }
+
+    @Benchmark
+    public int deflateHeapCopy() {
+        deflater.reset();
+        // Mimics JdkZlibEncoder, which copies the input and writes into a heap buffer if it can not use zlib
+        // on direct memory.
+        byte[] in = new byte[size];
+        uncompressed.getBytes(uncompressed.readerIndex(), in);
+        deflater.setInput(in);
+        byte[] out = new byte[output.capacity()];
+        int length = deflater.deflate(out, 0, out.length, Deflater.SYNC_FLUSH);
+        output.setBytes(0, out, 0, length);
+        return length;
+    }
+
+    @Benchmark
+    public int inflateNio() throws DataFormatException {
+        if (nio == null) {
+            return inflateHeapCopy();
+        }
+        inflater.reset();
+        nio.setInput(inflater, compressed.internalNioBuffer(compressed.readerIndex(), compressed.readableBytes()));
+        return nio.inflate(inflater, output.internalNioBuffer(0, output.capacity()));
+    }
+
+    @Benchmark
+    public int inflateHeapCopy() throws DataFormatException {
+        inflater.reset();
+        byte[] in = new byte[compressed.readableBytes()];
+        compressed.getBytes(compressed.readerIndex(), in);
+        inflater.setInput(in);
+        byte[] out = new byte[output.capacity()];
+        int length = inflater.inflate(out);
+        output.setBytes(0, out, 0, length);
+        return length;
+    }
+}
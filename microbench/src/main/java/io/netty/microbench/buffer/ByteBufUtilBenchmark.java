@@ -19,6 +19,8 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.AsciiString;
+import io.netty.util.ByteProcessor;
 import io.netty.util.CharsetUtil;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Measurement;
@@ -38,6 +40,8 @@ public class
     private ByteBuf wrapped;
     private ByteBuf asciiBuffer;
     private ByteBuf utf8Buffer;
+    private ByteBuf asciiDirectBuffer;
+    private ByteBuf utf8DirectBuffer;
 
     private StringBuilder asciiSequence;
     private String ascii;
@@ -45,6 +49,20 @@ public class
     private StringBuilder utf8Sequence;
     private String utf8;
 
+    private ByteBuf searchHeapBuffer;
+    private ByteBuf searchDirectBuffer;
+    private AsciiString searchAscii;
+    private AsciiString headerName;
+    private AsciiString headerNameOtherCase;
+
+    // Not one of the well known processors, so it is processed one byte at a time.
+    private static final ByteProcessor FIND_CRLF_BYTE_BY_BYTE = new ByteProcessor() {
+        @Override
+        public boolean process(byte value) {
+            return value != '\r' && value != '\n';
+        }
+    };
+
     @Setup
     public void setup() {
         // Use buffer sizes that will also allow to write UTF-8 without grow the buffer
@@ -67,6 +85,23 @@ public class
 
         asciiBuffer = Unpooled.copiedBuffer(ascii, CharsetUtil.US_ASCII);
         utf8Buffer = Unpooled.copiedBuffer(utf8, CharsetUtil.UTF_8);
+        asciiDirectBuffer = Unpooled.directBuffer(asciiBuffer.readableBytes()).writeBytes(asciiBuffer, 0,
+                asciiBuffer.readableBytes());
+        utf8DirectBuffer = Unpooled.directBuffer(utf8Buffer.readableBytes()).writeBytes(utf8Buffer, 0,
+                utf8Buffer.readableBytes());
+
+        // A typical header line which is terminated by CRLF.
+        StringBuilder line = new StringBuilder(128);
+        line.append("X-Custom-Header: ");
+        while (line.length() < 126) {
+            line.append('v');
+        }
+        line.append("\r\n");
+        searchHeapBuffer = Unpooled.copiedBuffer(line, CharsetUtil.US_ASCII);
+        searchDirectBuffer = Unpooled.directBuffer(line.length()).writeBytes(searchHeapBuffer, 0, line.length());
+        searchAscii = new AsciiString(line);
+        headerName = new AsciiString("Sec-WebSocket-Extensions");
+        headerNameOtherCase = new AsciiString("sec-websocket-extensions");
     }
 
     @TearDown
@@ -75,6 +110,10 @@ public class
         wrapped.release();
         asciiBuffer.release();
         utf8Buffer.release();
+        asciiDirectBuffer.release();
+        utf8DirectBuffer.release();
+        searchHeapBuffer.release();
+        searchDirectBuffer.release();
     }
 
     @Benchmark
@@ -182,4 +221,84 @@ public class
     public String decodeStringUtf8() {
         return utf8Buffer.toString(CharsetUtil.UTF_8);
     }
+
+    @Benchmark
+    public String decodeStringAsciiAsUtf8() {
+        return asciiBuffer.toString(CharsetUtil.UTF_8);
+    }
+
+    @Benchmark
+    public String decodeStringAsciiDirect() {
+        return asciiDirectBuffer.toString(CharsetUtil.US_ASCII);
+    }
+
+    @Benchmark
+    public String decodeStringUtf8Direct() {
+        return utf8DirectBuffer.toString(CharsetUtil.UTF_8);
+    }
+
+    @Benchmark
+    public int utf8BytesAscii() {
+        return ByteBufUtil.utf8Bytes(ascii);
+    }
+
+    @Benchmark
+    public int utf8Bytes() {
+        return ByteBufUtil.utf8Bytes(utf8);
+    }
+
+    @Benchmark
+    public boolean isTextUtf8Ascii() {
+        return ByteBufUtil.isText(asciiBuffer, CharsetUtil.UTF_8);
+    }
+
+    @Benchmark
+    public boolean isTextUtf8() {
+        return ByteBufUtil.isText(utf8Buffer, CharsetUtil.UTF_8);
+    }
+
+    @Benchmark
+    public boolean isTextUtf8AsciiDirect() {
+        return ByteBufUtil.isText(asciiDirectBuffer, CharsetUtil.UTF_8);
+    }
+
+    @Benchmark
+    public int indexOfByteHeap() {
+        return searchHeapBuffer.indexOf(0, searchHeapBuffer.writerIndex(), (byte) '\n');
+    }
+
+    @Benchmark
+    public int indexOfByteDirect() {
+        return searchDirectBuffer.indexOf(0, searchDirectBuffer.writerIndex(), (byte) '\n');
+    }
+
+    @Benchmark
+    public int findCrlfHeap() {
+        return searchHeapBuffer.forEachByte(ByteProcessor.FIND_CRLF);
+    }
+
+    @Benchmark
+    public int findCrlfDirect() {
+        return searchDirectBuffer.forEachByte(ByteProcessor.FIND_CRLF);
+    }
+
+    @Benchmark
+    public int findCrlfByteByByteHeap() {
+        return searchHeapBuffer.forEachByte(FIND_CRLF_BYTE_BY_BYTE);
+    }
+
+    @Benchmark
+    public int findCrlfByteByByteDirect() {
+        return searchDirectBuffer.forEachByte(FIND_CRLF_BYTE_BY_BYTE);
+    }
+
+    @Benchmark
+    public int asciiStringIndexOf() {
+        return searchAscii.indexOf('\r', 0);
+    }
+
+    @Benchmark
+    public boolean asciiStringContentEqualsIgnoreCase() {
+        return headerName.contentEqualsIgnoreCase(headerNameOtherCase);
+    }
 }
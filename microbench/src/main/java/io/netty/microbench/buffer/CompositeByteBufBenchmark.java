@@ -0,0 +1,127 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.buffer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.ByteProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Measures reads and component lookups of a {@link CompositeByteBuf} which consists of many small components.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 10)
+@Measurement(iterations = 25)
+public class CompositeByteBufBenchmark extends AbstractMicrobenchmark {
+
+    private static final int SIZE = 64 * 1024;
+
+    @Param({ "7", "64", "1024" })
+    public int componentSize;
+
+    @Param({ "true", "false" })
+    public boolean direct;
+
+    private CompositeByteBuf buffer;
+
+    @Setup
+    public void setup() {
+        buffer = Unpooled.compositeBuffer(Integer.MAX_VALUE);
+        for (int written = 0; written < SIZE; written += componentSize) {
+            int length = Math.min(componentSize, SIZE - written);
+            ByteBuf component = direct ? Unpooled.directBuffer(length) : Unpooled.buffer(length);
+            for (int i = 0; i < length; i++) {
+                // Never write a NUL byte, so forEachByte(FIND_NUL) needs to visit every component.
+                component.writeByte(1 + (written + i) % 127);
+            }
+            buffer.addComponent(true, component);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        buffer.release();
+    }
+
+    @Benchmark
+    public long sequentialGetByte() {
+        long sum = 0;
+        for (int i = 0; i < SIZE; i++) {
+            sum += buffer.getByte(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long sequentialGetInt() {
+        long sum = 0;
+        for (int i = 0; i + 4 <= SIZE; i += 4) {
+            sum += buffer.getInt(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long sequentialGetLong() {
+        long sum = 0;
+        for (int i = 0; i + 8 <= SIZE; i += 8) {
+            sum += buffer.getLong(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long randomGetInt() {
+        long sum = 0;
+        // Visit the buffer in a non sequential order so the last accessed component does not help.
+        for (int i = 0, index = 0; i < SIZE / 4; i++, index = (index + 4099) % (SIZE - 4)) {
+            sum += buffer.getInt(index);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int forEachByte() {
+        return buffer.forEachByte(ByteProcessor.FIND_NUL);
+    }
+
+    @Benchmark
+    public int forEachByteDesc() {
+        return buffer.forEachByteDesc(ByteProcessor.FIND_NUL);
+    }
+
+    @Benchmark
+    public ByteBuffer nioBufferWithinComponent() {
+        return buffer.nioBuffer(0, componentSize);
+    }
+
+    @Benchmark
+    public ByteBuffer[] nioBuffers() {
+        return buffer.nioBuffers();
+    }
+}
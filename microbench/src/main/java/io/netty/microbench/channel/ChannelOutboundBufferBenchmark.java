@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.channel;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Queues many small messages in a {@link ChannelOutboundBuffer} and drains them the way a gathering write does.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class ChannelOutboundBufferBenchmark extends AbstractMicrobenchmark {
+
+    @Param({ "16", "256" })
+    public int messages;
+
+    @Param({ "8", "64" })
+    public int messageSize;
+
+    private EmbeddedChannel channel;
+    private ChannelOutboundBuffer buffer;
+    private ChannelPromise promise;
+    private ByteBuf content;
+
+    @Setup
+    public void setup() {
+        channel = new EmbeddedChannel();
+        buffer = channel.unsafe().outboundBuffer();
+        promise = channel.voidPromise();
+        content = Unpooled.directBuffer(messageSize).writeZero(messageSize);
+    }
+
+    @TearDown
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+        content.release();
+    }
+
+    @Benchmark
+    public long addAndRemove() {
+        for (int i = 0; i < messages; i++) {
+            buffer.addMessage(content.retainedDuplicate(), messageSize, promise);
+        }
+        buffer.addFlush();
+        long written = 0;
+        while (!buffer.isEmpty()) {
+            buffer.nioBuffers();
+            // Pretend only half of the bytes could be written to exercise the partial write path.
+            long bytes = Math.max(1, buffer.nioBufferSize() / 2);
+            buffer.removeBytes(bytes);
+            written += bytes;
+        }
+        return written;
+    }
+
+    @Benchmark
+    public int forEachFlushedMessage() throws Exception {
+        for (int i = 0; i < messages; i++) {
+            buffer.addMessage(content.retainedDuplicate(), messageSize, promise);
+        }
+        buffer.addFlush();
+        final int[] count = new int[1];
+        buffer.forEachFlushedMessage(new ChannelOutboundBuffer.MessageProcessor() {
+            @Override
+            public boolean processMessage(Object msg) {
+                count[0]++;
+                return true;
+            }
+        });
+        while (buffer.remove()) {
+            // drain
+        }
+        return count[0];
+    }
+}
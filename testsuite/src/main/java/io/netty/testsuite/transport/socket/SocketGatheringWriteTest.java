@@ -97,6 +97,16 @@ public class SocketGatheringWriteTest extends AbstractSocketTest {
         testGatheringWrite0(sb, cb, data, true, true);
     }
 
+    @Test
+    public void testGatheringWriteCoalesced() throws Throwable {
+        run();
+    }
+
+    public void testGatheringWriteCoalesced(ServerBootstrap sb, Bootstrap cb) throws Throwable {
+        cb.option(ChannelOption.WRITE_COALESCING_THRESHOLD, 1024);
+        testGatheringWrite0(sb, cb, data, true, true);
+    }
+
     // Test for https://github.com/netty/netty/issues/2647
     @Test
     public void testGatheringWriteBig() throws Throwable {
@@ -149,6 +149,20 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
      */
     public final ChannelFuture spliceTo(final AbstractEpollStreamChannel ch, final int len,
                                         final ChannelPromise promise) {
+        return spliceTo(ch, len, false, promise);
+    }
+
+    /**
+     * Splice from this {@link AbstractEpollStreamChannel} to another {@link AbstractEpollStreamChannel} until the
+     * remote peer shut down its output. The {@link ChannelFuture} is completed once everything before the end of the
+     * input was spliced, the end of the input itself is then detected by the normal read path.
+     */
+    final ChannelFuture spliceToEndOfInput(final AbstractEpollStreamChannel ch) {
+        return spliceTo(ch, Integer.MAX_VALUE, true, newPromise());
+    }
+
+    private ChannelFuture spliceTo(final AbstractEpollStreamChannel ch, final int len, boolean untilEndOfInput,
+                                   final ChannelPromise promise) {
         if (ch.eventLoop() != eventLoop()) {
             throw new IllegalArgumentException("EventLoops are not the same.");
         }
@@ -163,7 +177,7 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         if (!isOpen()) {
             promise.tryFailure(SPLICE_TO_CLOSED_CHANNEL_EXCEPTION);
         } else {
-            addToSpliceQueue(new SpliceInChannelTask(ch, len, promise));
+            addToSpliceQueue(new SpliceInChannelTask(ch, len, untilEndOfInput, promise));
             failSpliceIfClosed(promise);
         }
         return promise;
@@ -880,10 +894,12 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
     // Let it directly implement channelFutureListener as well to reduce object creation.
     private final class SpliceInChannelTask extends SpliceInTask implements ChannelFutureListener {
         private final AbstractEpollStreamChannel ch;
+        private final boolean untilEndOfInput;
 
-        SpliceInChannelTask(AbstractEpollStreamChannel ch, int len, ChannelPromise promise) {
+        SpliceInChannelTask(AbstractEpollStreamChannel ch, int len, boolean untilEndOfInput, ChannelPromise promise) {
             super(len, promise);
             this.ch = ch;
+            this.untilEndOfInput = untilEndOfInput;
         }
 
         @Override
@@ -913,6 +929,14 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
                 }
 
                 int splicedIn = spliceIn(pipeOut, handle);
+                if (splicedIn == 0 && untilEndOfInput && handle instanceof EpollRecvByteAllocatorHandle &&
+                        ((EpollRecvByteAllocatorHandle) handle).isReceivedRdHup()) {
+                    // splice(...) can not tell the end of the input apart from EAGAIN, so stop splicing once the
+                    // remote peer shut down its output and let the next read detect the end of the input. Everything
+                    // spliced so far is written to the target channel before anything read afterwards.
+                    promise.setSuccess();
+                    return true;
+                }
                 if (splicedIn > 0) {
                     // Integer.MAX_VALUE is a special value which will result in splice forever.
                     if (len != Integer.MAX_VALUE) {
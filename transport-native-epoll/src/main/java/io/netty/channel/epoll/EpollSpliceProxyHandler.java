@@ -0,0 +1,240 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.channel.socket.DuplexChannel;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * Relays all data between two connected {@link Channel}s in both directions, as done by a TCP proxy.
+ * <p>
+ * If both are {@link AbstractEpollStreamChannel}s registered to the same {@link io.netty.channel.EventLoop}, using
+ * {@link EpollMode#LEVEL_TRIGGERED} and without any other handler in their {@link ChannelPipeline}s, the data is moved
+ * with splice(2) and never copied into user space.
+ * Otherwise, e.g. if an {@code SslHandler} is present, the {@link io.netty.buffer.ByteBuf}s read
+ * from one {@link Channel} are written to the other one.
+ * <p>
+ * In both cases reading from a {@link Channel} is suspended while the other one is not writable. When splicing it is
+ * only resumed once the data spliced so far was written as well. When copying the {@link Channel}s may be registered
+ * to different {@link io.netty.channel.EventLoop}s, in which case reading is always suspended and resumed from the
+ * {@link io.netty.channel.EventLoop} of the {@link Channel} it is read from. Once a {@link Channel} is closed the
+ * other one is closed as soon as everything was written to it.
+ */
+@UnstableApi
+public final class EpollSpliceProxyHandler extends ChannelInboundHandlerAdapter {
+
+    private final Channel channel;
+    private final Channel peer;
+    private final boolean splice;
+    // The handler of the peer, which resumes reading from our channel once the peer is writable again.
+    private EpollSpliceProxyHandler peerHandler;
+    // Only accessed from the EventLoop of channel, the peer handler hands over to it via suspendRead/resumeRead.
+    private boolean suspended;
+
+    private EpollSpliceProxyHandler(Channel channel, Channel peer, boolean splice) {
+        this.channel = channel;
+        this.peer = peer;
+        this.splice = splice;
+    }
+
+    /**
+     * Start relaying data between the given active {@link Channel}s. Auto read is enabled on both of them.
+     */
+    public static void proxy(final Channel ch1, final Channel ch2) {
+        if (ch1.eventLoop().inEventLoop()) {
+            proxy0(ch1, ch2);
+        } else {
+            ch1.eventLoop().execute(new Runnable() {
+                @Override
+                public void run() {
+                    proxy0(ch1, ch2);
+                }
+            });
+        }
+    }
+
+    private static void proxy0(Channel ch1, Channel ch2) {
+        boolean splice = canSplice(ch1, ch2);
+        EpollSpliceProxyHandler handler1 = new EpollSpliceProxyHandler(ch1, ch2, splice);
+        EpollSpliceProxyHandler handler2 = new EpollSpliceProxyHandler(ch2, ch1, splice);
+        handler1.peerHandler = handler2;
+        handler2.peerHandler = handler1;
+        ch1.pipeline().addLast(handler1);
+        ch2.pipeline().addLast(handler2);
+    }
+
+    private static boolean canSplice(Channel ch1, Channel ch2) {
+        return canSplice(ch1) && canSplice(ch2) && ch1.eventLoop() == ch2.eventLoop();
+    }
+
+    private static boolean canSplice(Channel ch) {
+        return ch instanceof AbstractEpollStreamChannel &&
+                ((AbstractEpollStreamChannel) ch).config().getEpollMode() == EpollMode.LEVEL_TRIGGERED &&
+                ch.pipeline().first() == null;
+    }
+
+    /**
+     * Returns {@code true} if the data is spliced between the {@link Channel}s.
+     */
+    boolean isSplicing() {
+        return splice;
+    }
+
+    @Override
+    public void handlerAdded(final ChannelHandlerContext ctx) throws Exception {
+        if (!ctx.channel().isActive()) {
+            closeOnFlush(peer);
+            ctx.close();
+            return;
+        }
+        if (splice) {
+            ((AbstractEpollStreamChannel) ctx.channel()).spliceToEndOfInput((AbstractEpollStreamChannel) peer)
+                    .addListener(new ChannelFutureListener() {
+                        @Override
+                        public void operationComplete(ChannelFuture future) throws Exception {
+                            if (!future.isSuccess()) {
+                                ctx.close();
+                            }
+                        }
+                    });
+        }
+        ctx.channel().config().setAutoRead(true);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!peer.isActive()) {
+            ReferenceCountUtil.release(msg);
+            return;
+        }
+        // Bytes read when copying, or when splicing before it started or after it was stopped at the end of the
+        // input.
+        peer.write(msg, peer.voidPromise());
+        if (!peer.isWritable()) {
+            // Suspend reading before flushing, as the flush may already make the peer writable again.
+            suspendRead();
+            peer.flush();
+        }
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        peer.flush();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        // The peer is not allowed to read faster than we can write.
+        if (ctx.channel().isWritable()) {
+            peerHandler.resumeRead();
+        } else if (splice) {
+            // Spliced data never passes channelRead(...) of the peer handler, so suspend it here.
+            peerHandler.suspendRead();
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    private void suspendRead() {
+        if (!channel.eventLoop().inEventLoop()) {
+            channel.eventLoop().execute(new Runnable() {
+                @Override
+                public void run() {
+                    suspendRead();
+                }
+            });
+            return;
+        }
+        suspended = true;
+        channel.config().setAutoRead(false);
+    }
+
+    /**
+     * Resumes reading if it was suspended because the peer was not writable.
+     */
+    private void resumeRead() {
+        if (!channel.eventLoop().inEventLoop()) {
+            // The peer may be on another EventLoop when copying. Hand over to ours, which also orders this after a
+            // suspendRead() of a channelRead(...) that is still in progress.
+            channel.eventLoop().execute(new Runnable() {
+                @Override
+                public void run() {
+                    resumeRead();
+                }
+            });
+            return;
+        }
+        if (!suspended) {
+            return;
+        }
+        suspended = false;
+        if (!splice) {
+            channel.config().setAutoRead(true);
+            return;
+        }
+        // Splicing also suspends reading on its own while spliced data was not written to the peer yet and resumes
+        // it once it was. Wait for that as well, so reading is not resumed while spliced data is still pending.
+        peer.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                // Notified on the EventLoop of the peer, which is the one of our channel as well when splicing.
+                assert channel.eventLoop().inEventLoop();
+                if (!suspended) {
+                    channel.config().setAutoRead(true);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof ChannelInputShutdownEvent && peer instanceof DuplexChannel) {
+            // Half-closure, propagate it to the peer once everything was written.
+            peer.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) throws Exception {
+                    ((DuplexChannel) peer).shutdownOutput();
+                }
+            });
+        }
+        ctx.fireUserEventTriggered(evt);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        closeOnFlush(peer);
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        ctx.close();
+    }
+
+    private static void closeOnFlush(Channel ch) {
+        if (ch.isActive()) {
+            ch.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+}
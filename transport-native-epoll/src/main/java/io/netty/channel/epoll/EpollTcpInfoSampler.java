@@ -0,0 +1,358 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelException;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.EventLoop;
+import io.netty.util.concurrent.ScheduledFuture;
+import io.netty.util.internal.LogLinearHistogram;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+
+/**
+ * Periodically samples the {@code TCP_INFO} of all {@link EpollSocketChannel}s it was added to and keeps
+ * {@linkplain #stats(Channel) per-connection statistics} as well as histograms aggregated across all connections, e.g.
+ * to correlate tail latencies with network conditions.
+ * <p>
+ * The {@link EpollSocketChannel}s are sampled on their {@link EventLoop}. To bound the cost per tick, at most
+ * {@code maxChannelsPerTick} {@link EpollSocketChannel}s of an {@link EventLoop} are sampled per interval, so with more
+ * connections each one is sampled less often.
+ */
+@Sharable
+@UnstableApi
+public final class EpollTcpInfoSampler extends ChannelInboundHandlerAdapter {
+
+    private static final int DEFAULT_MAX_CHANNELS_PER_TICK = 256;
+
+    private final long intervalNanos;
+    private final int maxChannelsPerTick;
+    private final ConcurrentMap<EventLoop, LoopSampler> samplers = PlatformDependent.newConcurrentHashMap();
+    private final ConcurrentMap<Channel, ConnectionStats> stats = PlatformDependent.newConcurrentHashMap();
+    private final LogLinearHistogram rttMicros = new LogLinearHistogram();
+    private final LogLinearHistogram retransmitsPerSecond = new LogLinearHistogram();
+    private final LogLinearHistogram sendQueueBytes = new LogLinearHistogram();
+
+    /**
+     * Create a new instance which samples at most 256 {@link EpollSocketChannel}s per {@link EventLoop} and interval.
+     */
+    public EpollTcpInfoSampler(long interval, TimeUnit unit) {
+        this(interval, unit, DEFAULT_MAX_CHANNELS_PER_TICK);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param interval the interval between two sampling ticks.
+     * @param unit the {@link TimeUnit} of {@code interval}.
+     * @param maxChannelsPerTick the maximum number of {@link EpollSocketChannel}s of an {@link EventLoop} that are
+     *                           sampled per tick.
+     */
+    public EpollTcpInfoSampler(long interval, TimeUnit unit, int maxChannelsPerTick) {
+        checkNotNull(unit, "unit");
+        intervalNanos = checkPositive(unit.toNanos(interval), "interval");
+        this.maxChannelsPerTick = checkPositive(maxChannelsPerTick, "maxChannelsPerTick");
+    }
+
+    /**
+     * Returns the statistics of the given {@link Channel}, or {@code null} if it is not sampled.
+     */
+    public ConnectionStats stats(Channel channel) {
+        return stats.get(channel);
+    }
+
+    /**
+     * Returns the smoothed round trip time in microseconds that {@code percentile} percent of all samples did not
+     * exceed.
+     *
+     * @param percentile a value between {@code 0} and {@code 100}, e.g. {@code 99.9}
+     */
+    public long rttMicros(double percentile) {
+        return rttMicros.percentile(percentile);
+    }
+
+    /**
+     * Returns the number of retransmitted segments per second between two samples of a connection that
+     * {@code percentile} percent of all samples did not exceed.
+     *
+     * @param percentile a value between {@code 0} and {@code 100}, e.g. {@code 99.9}
+     */
+    public long retransmitsPerSecond(double percentile) {
+        return retransmitsPerSecond.percentile(percentile);
+    }
+
+    /**
+     * Returns the number of bytes queued for sending that {@code percentile} percent of all samples did not exceed.
+     * See {@link ConnectionStats#sendQueueBytes()}.
+     *
+     * @param percentile a value between {@code 0} and {@code 100}, e.g. {@code 99.9}
+     */
+    public long sendQueueBytes(double percentile) {
+        return sendQueueBytes.percentile(percentile);
+    }
+
+    /**
+     * Returns the number of samples taken across all connections.
+     */
+    public long samples() {
+        return rttMicros.count();
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isActive()) {
+            register(ctx.channel());
+        }
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        unregister(ctx.channel());
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        register(ctx.channel());
+        ctx.fireChannelActive();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        unregister(ctx.channel());
+        ctx.fireChannelInactive();
+    }
+
+    private void register(Channel channel) {
+        if (channel instanceof EpollSocketChannel && !stats.containsKey(channel)) {
+            ConnectionStats connectionStats = new ConnectionStats((EpollSocketChannel) channel);
+            stats.put(channel, connectionStats);
+            sampler(channel.eventLoop()).add(connectionStats);
+        }
+    }
+
+    private void unregister(Channel channel) {
+        ConnectionStats connectionStats = stats.remove(channel);
+        if (connectionStats != null) {
+            sampler(channel.eventLoop()).remove(connectionStats);
+        }
+    }
+
+    private LoopSampler sampler(EventLoop loop) {
+        LoopSampler sampler = samplers.get(loop);
+        if (sampler == null) {
+            // Only ever created on the EventLoop itself.
+            sampler = new LoopSampler(loop);
+            samplers.put(loop, sampler);
+        }
+        return sampler;
+    }
+
+    /**
+     * Samples the {@link EpollSocketChannel}s of one {@link EventLoop}, only accessed from the {@link EventLoop}.
+     */
+    private final class LoopSampler implements Runnable {
+        private final EventLoop loop;
+        private final List<ConnectionStats> channels = new ArrayList<ConnectionStats>();
+        private final EpollTcpInfo info = new EpollTcpInfo();
+        private ScheduledFuture<?> future;
+        private int next;
+
+        LoopSampler(EventLoop loop) {
+            this.loop = loop;
+        }
+
+        void add(ConnectionStats connectionStats) {
+            connectionStats.index = channels.size();
+            channels.add(connectionStats);
+            if (future == null) {
+                future = loop.scheduleAtFixedRate(this, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        void remove(ConnectionStats connectionStats) {
+            // Swap with the last one to remove in constant time.
+            ConnectionStats last = channels.remove(channels.size() - 1);
+            if (last != connectionStats) {
+                last.index = connectionStats.index;
+                channels.set(last.index, last);
+            }
+            if (channels.isEmpty()) {
+                future.cancel(false);
+                future = null;
+                next = 0;
+            }
+        }
+
+        @Override
+        public void run() {
+            int size = channels.size();
+            int count = Math.min(size, maxChannelsPerTick);
+            long now = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                if (next >= size) {
+                    next = 0;
+                }
+                ConnectionStats connectionStats = channels.get(next++);
+                if (connectionStats.sample(info, now)) {
+                    rttMicros.record(connectionStats.rtt);
+                    sendQueueBytes.record(connectionStats.sendQueueBytes);
+                    if (connectionStats.samples > 1) {
+                        retransmitsPerSecond.record(connectionStats.retransmitsPerSecond);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The statistics of a single {@link EpollSocketChannel}, as of its latest sample.
+     */
+    public static final class ConnectionStats {
+        private final EpollSocketChannel channel;
+        // Only accessed from the EventLoop.
+        int index;
+        private long lastSampleNanos;
+
+        private volatile long samples;
+        private volatile long rtt;
+        private volatile long rttVar;
+        private volatile long minRtt = Long.MAX_VALUE;
+        private volatile long maxRtt;
+        private volatile long sndCwnd;
+        private volatile long totalRetrans;
+        private volatile long retransmitsPerSecond;
+        private volatile long sendQueueBytes;
+
+        ConnectionStats(EpollSocketChannel channel) {
+            this.channel = channel;
+        }
+
+        boolean sample(EpollTcpInfo info, long nowNanos) {
+            try {
+                channel.tcpInfo(info);
+            } catch (ChannelException e) {
+                // Closed in the meantime.
+                return false;
+            }
+            long samples = this.samples;
+            long rtt = info.rtt();
+            this.rtt = rtt;
+            rttVar = info.rttvar();
+            if (rtt < minRtt) {
+                minRtt = rtt;
+            }
+            if (rtt > maxRtt) {
+                maxRtt = rtt;
+            }
+            sndCwnd = info.sndCwnd();
+            long totalRetrans = info.totalRetrans();
+            if (samples > 0) {
+                long elapsedNanos = Math.max(1, nowNanos - lastSampleNanos);
+                retransmitsPerSecond = (totalRetrans - this.totalRetrans) * TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+            }
+            this.totalRetrans = totalRetrans;
+            ChannelOutboundBuffer buffer = channel.unsafe().outboundBuffer();
+            sendQueueBytes = info.unacked() * info.sndMss() + (buffer == null ? 0 : buffer.totalPendingWriteBytes());
+            lastSampleNanos = nowNanos;
+            this.samples = samples + 1;
+            return true;
+        }
+
+        /**
+         * Returns the number of samples taken.
+         */
+        public long samples() {
+            return samples;
+        }
+
+        /**
+         * Returns the smoothed round trip time in microseconds ({@code tcpi_rtt}).
+         */
+        public long rttMicros() {
+            return rtt;
+        }
+
+        /**
+         * Returns the round trip time variance in microseconds ({@code tcpi_rttvar}).
+         */
+        public long rttVarMicros() {
+            return rttVar;
+        }
+
+        /**
+         * Returns the smallest smoothed round trip time in microseconds seen so far, or {@code 0} if not sampled yet.
+         */
+        public long minRttMicros() {
+            long minRtt = this.minRtt;
+            return minRtt == Long.MAX_VALUE ? 0 : minRtt;
+        }
+
+        /**
+         * Returns the largest smoothed round trip time in microseconds seen so far.
+         */
+        public long maxRttMicros() {
+            return maxRtt;
+        }
+
+        /**
+         * Returns the congestion window in segments ({@code tcpi_snd_cwnd}).
+         */
+        public long sndCwnd() {
+            return sndCwnd;
+        }
+
+        /**
+         * Returns the total number of retransmitted segments ({@code tcpi_total_retrans}).
+         */
+        public long totalRetrans() {
+            return totalRetrans;
+        }
+
+        /**
+         * Returns the number of retransmitted segments per second between the two latest samples.
+         */
+        public long retransmitsPerSecond() {
+            return retransmitsPerSecond;
+        }
+
+        /**
+         * Returns the number of bytes queued for sending: the unacknowledged segments times the maximum segment size
+         * plus the bytes still pending in the {@link ChannelOutboundBuffer}.
+         */
+        public long sendQueueBytes() {
+            return sendQueueBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "ConnectionStats(" + channel + ", samples=" + samples + ", rtt=" + rtt + "us, rttVar=" +
+                    rttVar + "us, sndCwnd=" + sndCwnd + ", totalRetrans=" + totalRetrans + ", sendQueueBytes=" +
+                    sendQueueBytes + ')';
+        }
+    }
+}
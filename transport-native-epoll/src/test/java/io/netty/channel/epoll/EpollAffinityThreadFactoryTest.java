@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.unix.AffinityThreadFactory;
+import io.netty.channel.unix.ThreadAffinity;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EpollAffinityThreadFactoryTest {
+
+    private static int[] allowedCpus;
+
+    @BeforeClass
+    public static void loadNativeLibrary() throws Exception {
+        Epoll.ensureAvailability();
+        assertTrue(ThreadAffinity.isAvailable());
+        allowedCpus = ThreadAffinity.currentAffinity();
+    }
+
+    @Test
+    public void testSingleCpuPerThread() throws Exception {
+        int threads = allowedCpus.length + 1;
+        EventLoopGroup group = new EpollEventLoopGroup(threads, new AffinityThreadFactory(getClass()));
+        try {
+            Set<Integer> usedCpus = new HashSet<Integer>();
+            for (int i = 0; i < threads; i++) {
+                int[] cpus = currentAffinity(group.next());
+                assertEquals(1, cpus.length);
+                assertTrue(Arrays.binarySearch(allowedCpus, cpus[0]) >= 0);
+                usedCpus.add(cpus[0]);
+            }
+            // Round-robin over all allowed CPUs.
+            assertEquals(allowedCpus.length, usedCpus.size());
+        } finally {
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    @Test
+    public void testCpuSet() throws Exception {
+        int[] cpus = { allowedCpus[0] };
+        EventLoopGroup group = new EpollEventLoopGroup(2,
+                new AffinityThreadFactory(getClass(), false, cpus));
+        try {
+            for (int i = 0; i < 2; i++) {
+                assertArrayEquals(cpus, currentAffinity(group.next()));
+            }
+        } finally {
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    @Test
+    public void testInvalidCpuDoesNotPreventThreadCreation() throws Exception {
+        EventLoopGroup group = new EpollEventLoopGroup(1,
+                new AffinityThreadFactory(getClass(), true, Integer.MAX_VALUE));
+        try {
+            assertArrayEquals(allowedCpus, currentAffinity(group.next()));
+        } finally {
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    private static int[] currentAffinity(EventLoop loop) throws Exception {
+        return loop.submit(new Callable<int[]>() {
+            @Override
+            public int[] call() throws Exception {
+                return ThreadAffinity.currentAffinity();
+            }
+        }).sync().getNow();
+    }
+}
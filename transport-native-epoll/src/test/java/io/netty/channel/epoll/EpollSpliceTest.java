@@ -21,11 +21,14 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.WriteBufferWaterMark;
 import io.netty.channel.unix.FileDescriptor;
 import io.netty.testsuite.util.TestUtils;
 import io.netty.util.NetUtil;
@@ -36,9 +39,15 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 public class EpollSpliceTest {
 
@@ -246,6 +255,121 @@ public class EpollSpliceTest {
         }
     }
 
+    @Test(timeout = 30000)
+    public void spliceProxy() throws Throwable {
+        assertTrue(testProxy(false, false));
+    }
+
+    @Test(timeout = 30000)
+    public void spliceProxyFallbackToCopy() throws Throwable {
+        assertFalse(testProxy(true, false));
+    }
+
+    @Test(timeout = 30000)
+    public void spliceProxyCopyOnDifferentEventLoops() throws Throwable {
+        assertFalse(testProxy(false, true));
+    }
+
+    private static boolean testProxy(final boolean addHandler, boolean twoEventLoops) throws Throwable {
+        final EchoHandler sh = new EchoHandler();
+        final EchoHandler ch = new EchoHandler();
+        final BlockingQueue<EpollSpliceProxyHandler> proxyHandlers = new LinkedBlockingQueue<EpollSpliceProxyHandler>();
+
+        EventLoopGroup group = new EpollEventLoopGroup(1);
+        final EventLoopGroup upstreamGroup = twoEventLoops ? new EpollEventLoopGroup(1) : null;
+        ServerBootstrap bs = new ServerBootstrap();
+        bs.channel(EpollServerSocketChannel.class);
+        bs.group(group).childHandler(sh);
+        final Channel sc = bs.bind(NetUtil.LOCALHOST, 0).syncUninterruptibly().channel();
+
+        ServerBootstrap bs2 = new ServerBootstrap();
+        bs2.channel(EpollServerSocketChannel.class);
+        bs2.childOption(EpollChannelOption.EPOLL_MODE, EpollMode.LEVEL_TRIGGERED);
+        bs2.childOption(EpollChannelOption.AUTO_READ, false);
+        if (twoEventLoops) {
+            // Small water marks, so reading is suspended and resumed across the EventLoops all the time.
+            bs2.childOption(EpollChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(1024, 4096));
+        }
+        bs2.group(group).childHandler(new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelActive(final ChannelHandlerContext ctx) throws Exception {
+                Bootstrap bs = new Bootstrap();
+                bs.option(EpollChannelOption.EPOLL_MODE, EpollMode.LEVEL_TRIGGERED);
+                bs.channel(EpollSocketChannel.class);
+                if (upstreamGroup != null) {
+                    bs.option(EpollChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(1024, 4096));
+                }
+                bs.group(upstreamGroup != null ? upstreamGroup : ctx.channel().eventLoop());
+                bs.handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) throws Exception {
+                        if (addHandler) {
+                            ch.pipeline().addLast(new ChannelDuplexHandler());
+                        }
+                    }
+                });
+                bs.connect(sc.localAddress()).addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) throws Exception {
+                        if (!future.isSuccess()) {
+                            ctx.close();
+                        } else {
+                            ctx.pipeline().remove(ctx.handler());
+                            EpollSpliceProxyHandler.proxy(ctx.channel(), future.channel());
+                            // Added from the EventLoop of the proxied channel, which may not be the current one.
+                            ctx.channel().eventLoop().execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    proxyHandlers.add(ctx.channel().pipeline().get(EpollSpliceProxyHandler.class));
+                                }
+                            });
+                        }
+                    }
+                });
+            }
+        });
+        Channel pc = bs2.bind(NetUtil.LOCALHOST, 0).syncUninterruptibly().channel();
+
+        Bootstrap cb = new Bootstrap();
+        cb.group(group);
+        cb.channel(EpollSocketChannel.class);
+        cb.handler(ch);
+        Channel cc = cb.connect(pc.localAddress()).syncUninterruptibly().channel();
+
+        for (int i = 0; i < data.length;) {
+            int length = Math.min(random.nextInt(1024 * 64), data.length - i);
+            ByteBuf buf = Unpooled.wrappedBuffer(data, i, length);
+            cc.writeAndFlush(buf);
+            i += length;
+        }
+
+        while (ch.counter < data.length && sh.exception.get() == null && ch.exception.get() == null) {
+            Thread.sleep(50);
+        }
+        assertEquals(data.length, sh.counter);
+
+        // Closing the client must close the connection to the server as well.
+        cc.close().sync();
+        sh.channel.closeFuture().sync();
+
+        sc.close().sync();
+        pc.close().sync();
+        group.shutdownGracefully();
+        if (upstreamGroup != null) {
+            upstreamGroup.shutdownGracefully();
+        }
+
+        if (sh.exception.get() != null) {
+            throw sh.exception.get();
+        }
+        if (ch.exception.get() != null) {
+            throw ch.exception.get();
+        }
+        EpollSpliceProxyHandler proxyHandler = proxyHandlers.poll(1, TimeUnit.SECONDS);
+        assertNotNull(proxyHandler);
+        return proxyHandler.isSplicing();
+    }
+
     private static class EchoHandler extends SimpleChannelInboundHandler<ByteBuf> {
         volatile Channel channel;
         final AtomicReference<Throwable> exception = new AtomicReference<Throwable>();
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.NetUtil;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class EpollTcpInfoSamplerTest {
+
+    @Test(timeout = 10000)
+    public void testSample() throws Exception {
+        EventLoopGroup group = new EpollEventLoopGroup(1);
+        try {
+            EpollTcpInfoSampler sampler = new EpollTcpInfoSampler(10, TimeUnit.MILLISECONDS, 1);
+            ServerBootstrap sb = new ServerBootstrap();
+            sb.group(group).channel(EpollServerSocketChannel.class).childHandler(new ChannelInitializer<Channel>() {
+                @Override
+                protected void initChannel(Channel ch) {
+                }
+            });
+            Channel sc = sb.bind(NetUtil.LOCALHOST, 0).syncUninterruptibly().channel();
+
+            Bootstrap cb = new Bootstrap();
+            cb.group(group).channel(EpollSocketChannel.class).handler(sampler);
+            Channel cc1 = cb.connect(sc.localAddress()).syncUninterruptibly().channel();
+            Channel cc2 = cb.connect(sc.localAddress()).syncUninterruptibly().channel();
+            cc1.writeAndFlush(Unpooled.wrappedBuffer(new byte[1024])).syncUninterruptibly();
+            cc2.writeAndFlush(Unpooled.wrappedBuffer(new byte[1024])).syncUninterruptibly();
+
+            EpollTcpInfoSampler.ConnectionStats stats1 = sampler.stats(cc1);
+            EpollTcpInfoSampler.ConnectionStats stats2 = sampler.stats(cc2);
+            assertNotNull(stats1);
+            assertNotNull(stats2);
+            // Only one channel is sampled per tick, so both are sampled in turn.
+            while (stats1.samples() < 2 || stats2.samples() < 2) {
+                Thread.sleep(10);
+            }
+            assertTrue(stats1.rttMicros() > 0);
+            assertTrue(stats1.sndCwnd() > 0);
+            assertTrue(stats1.minRttMicros() <= stats1.maxRttMicros());
+            assertTrue(sampler.samples() >= 4);
+            assertTrue(sampler.rttMicros(99) >= sampler.rttMicros(50));
+            assertTrue(sampler.rttMicros(50) > 0);
+
+            cc1.close().syncUninterruptibly();
+            cc2.close().syncUninterruptibly();
+            // channelInactive is fired later on the EventLoop.
+            while (sampler.stats(cc1) != null || sampler.stats(cc2) != null) {
+                Thread.sleep(10);
+            }
+            sc.close().syncUninterruptibly();
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+}
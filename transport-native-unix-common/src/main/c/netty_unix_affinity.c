@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+#define _GNU_SOURCE
+#include <errno.h>
+#ifdef __linux__
+#include <sched.h>
+#endif /* __linux__ */
+#include "netty_unix_affinity.h"
+#include "netty_unix_errors.h"
+#include "netty_unix_jni.h"
+#include "netty_unix_util.h"
+
+// JNI Registered Methods Begin
+static jintArray netty_unix_affinity_getAffinity0(JNIEnv* env, jclass clazz) {
+#ifdef __linux__
+    cpu_set_t set;
+    jint cpus[CPU_SETSIZE];
+    jint count = 0;
+    int cpu;
+
+    CPU_ZERO(&set);
+    // A pid of 0 means the calling thread.
+    if (sched_getaffinity(0, sizeof(set), &set) == -1) {
+        netty_unix_errors_throwIOExceptionErrorNo(env, "sched_getaffinity() failed: ", errno);
+        return NULL;
+    }
+    for (cpu = 0; cpu < CPU_SETSIZE; ++cpu) {
+        if (CPU_ISSET(cpu, &set)) {
+            cpus[count++] = cpu;
+        }
+    }
+    jintArray result = (*env)->NewIntArray(env, count);
+    if (result == NULL) {
+        // An OutOfMemoryError is pending.
+        return NULL;
+    }
+    (*env)->SetIntArrayRegion(env, result, 0, count, cpus);
+    return result;
+#else
+    netty_unix_errors_throwIOExceptionErrorNo(env, "sched_getaffinity() failed: ", ENOSYS);
+    return NULL;
+#endif /* __linux__ */
+}
+
+static jint netty_unix_affinity_setAffinity0(JNIEnv* env, jclass clazz, jintArray cpus) {
+#ifdef __linux__
+    cpu_set_t set;
+    jint len = (*env)->GetArrayLength(env, cpus);
+    jint cpu;
+    jint i;
+
+    CPU_ZERO(&set);
+    for (i = 0; i < len; ++i) {
+        (*env)->GetIntArrayRegion(env, cpus, i, 1, &cpu);
+        if (cpu < 0 || cpu >= CPU_SETSIZE) {
+            return -EINVAL;
+        }
+        CPU_SET(cpu, &set);
+    }
+    // A pid of 0 means the calling thread.
+    if (sched_setaffinity(0, sizeof(set), &set) == -1) {
+        return -errno;
+    }
+    return 0;
+#else
+    return -ENOSYS;
+#endif /* __linux__ */
+}
+// JNI Registered Methods End
+
+// JNI Method Registration Table Begin
+static const JNINativeMethod method_table[] = {
+  { "getAffinity0", "()[I", (void *) netty_unix_affinity_getAffinity0 },
+  { "setAffinity0", "([I)I", (void *) netty_unix_affinity_setAffinity0 }
+};
+static const jint method_table_size = sizeof(method_table) / sizeof(method_table[0]);
+// JNI Method Registration Table End
+
+jint netty_unix_affinity_JNI_OnLoad(JNIEnv* env, const char* packagePrefix) {
+    if (netty_unix_util_register_natives(env, packagePrefix, "io/netty/channel/unix/ThreadAffinity", method_table, method_table_size) != 0) {
+        return JNI_ERR;
+    }
+    return NETTY_JNI_VERSION;
+}
+
+void netty_unix_affinity_JNI_OnUnLoad(JNIEnv* env) { }
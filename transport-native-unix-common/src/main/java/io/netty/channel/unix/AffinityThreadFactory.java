@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.unix;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link DefaultThreadFactory} which restricts every thread it creates to a set of CPUs, so that for example the
+ * threads of an {@link io.netty.channel.MultithreadEventLoopGroup} do not migrate between cores and keep their caches
+ * warm.
+ * <p>
+ * If {@code singleCpuPerThread} is {@code true} every thread is pinned to exactly one CPU, chosen round-robin from the
+ * configured CPUs. Otherwise every thread may run on all of the configured CPUs, which allows to isolate the threads
+ * from the rest of the system. If no CPUs are configured the CPUs the creating thread is allowed to run on are used.
+ * <p>
+ * This uses {@link ThreadAffinity} and so requires Linux and the native library of a native transport to be loaded.
+ * If it is not available, or the affinity can not be set, the threads are still created but not restricted.
+ */
+public class AffinityThreadFactory extends DefaultThreadFactory {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(AffinityThreadFactory.class);
+
+    private final boolean singleCpuPerThread;
+    private final AtomicInteger nextCpu = new AtomicInteger();
+    private volatile int[] cpus;
+
+    /**
+     * Creates a new instance which pins every thread to its own CPU.
+     */
+    public AffinityThreadFactory(Class<?> poolType) {
+        this(toPoolName(poolType), true);
+    }
+
+    /**
+     * Creates a new instance which pins every thread to its own CPU.
+     */
+    public AffinityThreadFactory(String poolName) {
+        this(poolName, true);
+    }
+
+    public AffinityThreadFactory(Class<?> poolType, boolean singleCpuPerThread, int... cpus) {
+        this(toPoolName(poolType), singleCpuPerThread, cpus);
+    }
+
+    public AffinityThreadFactory(String poolName, boolean singleCpuPerThread, int... cpus) {
+        this(poolName, false, Thread.NORM_PRIORITY, singleCpuPerThread, cpus);
+    }
+
+    public AffinityThreadFactory(String poolName, boolean daemon, int priority, boolean singleCpuPerThread,
+                                 int... cpus) {
+        super(poolName, daemon, priority);
+        ObjectUtil.checkNotNull(cpus, "cpus");
+        for (int cpu : cpus) {
+            if (cpu < 0) {
+                throw new IllegalArgumentException("cpus: " + Arrays.toString(cpus) + " (expected: >= 0)");
+            }
+        }
+        this.singleCpuPerThread = singleCpuPerThread;
+        this.cpus = cpus.length == 0 ? null : cpus.clone();
+    }
+
+    @Override
+    protected Thread newThread(Runnable r, String name) {
+        int[] cpus = cpus();
+        if (cpus != null) {
+            if (singleCpuPerThread) {
+                int index = (nextCpu.getAndIncrement() & Integer.MAX_VALUE) % cpus.length;
+                cpus = new int[] { cpus[index] };
+            }
+            r = new AffinityRunnable(r, cpus);
+        }
+        return super.newThread(r, name);
+    }
+
+    private int[] cpus() {
+        int[] cpus = this.cpus;
+        if (cpus == null) {
+            try {
+                cpus = ThreadAffinity.currentAffinity();
+                this.cpus = cpus;
+            } catch (UnsatisfiedLinkError e) {
+                logger.debug("Thread affinity is not available, the native library of a native transport must be " +
+                        "loaded first", e);
+            } catch (IOException e) {
+                logger.debug("Thread affinity is not available", e);
+            }
+        }
+        return cpus;
+    }
+
+    private static final class AffinityRunnable implements Runnable {
+
+        private final Runnable r;
+        private final int[] cpus;
+
+        AffinityRunnable(Runnable r, int[] cpus) {
+            this.r = r;
+            this.cpus = cpus;
+        }
+
+        @Override
+        public void run() {
+            try {
+                ThreadAffinity.setAffinity(cpus);
+            } catch (Throwable t) {
+                logger.warn("Failed to set the affinity of {} to CPUs {}",
+                        Thread.currentThread().getName(), Arrays.toString(cpus), t);
+            }
+            r.run();
+        }
+    }
+}
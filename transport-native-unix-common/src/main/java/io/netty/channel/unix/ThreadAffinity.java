@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.unix;
+
+import io.netty.util.internal.ObjectUtil;
+
+import java.io.IOException;
+
+/**
+ * Gives access to the CPU affinity of the calling thread, which is backed by {@code sched_getaffinity} and
+ * {@code sched_setaffinity} and so is only supported on Linux.
+ * <p>
+ * The native methods are registered by the native library of a native transport, so it must be loaded before this
+ * class can be used, for example by calling {@code Epoll.ensureAvailability()}.
+ */
+public final class ThreadAffinity {
+
+    private ThreadAffinity() {
+    }
+
+    /**
+     * Returns {@code true} if the CPU affinity of threads can be queried and changed, which requires Linux and the
+     * native library of a native transport to be loaded.
+     */
+    public static boolean isAvailable() {
+        try {
+            getAffinity0();
+            return true;
+        } catch (UnsatisfiedLinkError e) {
+            return false;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the CPUs the calling thread is allowed to run on, in ascending order.
+     */
+    public static int[] currentAffinity() throws IOException {
+        return getAffinity0();
+    }
+
+    /**
+     * Restricts the calling thread to run only on the given CPUs.
+     */
+    public static void setAffinity(int... cpus) throws IOException {
+        ObjectUtil.checkNotNull(cpus, "cpus");
+        if (cpus.length == 0) {
+            throw new IllegalArgumentException("cpus must not be empty");
+        }
+        int res = setAffinity0(cpus);
+        if (res < 0) {
+            throw Errors.newIOException("sched_setaffinity", res);
+        }
+    }
+
+    private static native int[] getAffinity0() throws IOException;
+    private static native int setAffinity0(int[] cpus);
+}
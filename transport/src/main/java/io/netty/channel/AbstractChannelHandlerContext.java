@@ -20,6 +20,27 @@ import io.netty.util.internal.logging.InternalLoggerFactory;
 import java.net.SocketAddress;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
+import static io.netty.channel.ChannelHandlerMask.MASK_BIND;
+import static io.netty.channel.ChannelHandlerMask.MASK_CHANNEL_ACTIVE;
+import static io.netty.channel.ChannelHandlerMask.MASK_CHANNEL_INACTIVE;
+import static io.netty.channel.ChannelHandlerMask.MASK_CHANNEL_READ;
+import static io.netty.channel.ChannelHandlerMask.MASK_CHANNEL_READ_COMPLETE;
+import static io.netty.channel.ChannelHandlerMask.MASK_CHANNEL_REGISTERED;
+import static io.netty.channel.ChannelHandlerMask.MASK_CHANNEL_UNREGISTERED;
+import static io.netty.channel.ChannelHandlerMask.MASK_CHANNEL_WRITABILITY_CHANGED;
+import static io.netty.channel.ChannelHandlerMask.MASK_CLOSE;
+import static io.netty.channel.ChannelHandlerMask.MASK_CONNECT;
+import static io.netty.channel.ChannelHandlerMask.MASK_DEREGISTER;
+import static io.netty.channel.ChannelHandlerMask.MASK_DISCONNECT;
+import static io.netty.channel.ChannelHandlerMask.MASK_EXCEPTION_CAUGHT;
+import static io.netty.channel.ChannelHandlerMask.MASK_FLUSH;
+import static io.netty.channel.ChannelHandlerMask.MASK_ONLY_INBOUND;
+import static io.netty.channel.ChannelHandlerMask.MASK_ONLY_OUTBOUND;
+import static io.netty.channel.ChannelHandlerMask.MASK_READ;
+import static io.netty.channel.ChannelHandlerMask.MASK_USER_EVENT_TRIGGERED;
+import static io.netty.channel.ChannelHandlerMask.MASK_WRITE;
+import static io.netty.channel.ChannelHandlerMask.mask;
+
 /**
  * 该类实现了事件的传播，保证事件能经过所有的 ChannelHandler 处理
  *
@@ -92,9 +113,11 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap impleme
      */
     private static final int INIT = 0;
 
-    private final boolean inbound;
-
-    private final boolean outbound;
+    /**
+     * Which event methods of the handler must be invoked, see {@link ChannelHandlerMask}. Contexts whose handler would
+     * only forward an event are skipped while searching for the next context.
+     */
+    private final int executionMask;
 
     /**
      * ChannelHandler 管道
@@ -103,6 +126,11 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap impleme
 
     private final String name;
 
+    /**
+     * Metrics of the handler, only set when {@link ChannelPipelineTracer#isEnabled()} is {@code true}.
+     */
+    private ChannelHandlerMetrics metrics;
+
     private final boolean ordered;
 
     // Will be set to null if no child executor should be used, otherwise it will be set to the child executor.
@@ -146,12 +174,13 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap impleme
      */
     private volatile int handlerState = INIT;
 
-    AbstractChannelHandlerContext(DefaultChannelPipeline pipeline, EventExecutor executor, String name, boolean inbound, boolean outbound) {
+    AbstractChannelHandlerContext(DefaultChannelPipeline pipeline, EventExecutor executor, String name,
+                                  Class<? extends ChannelHandler> handlerClass) {
         this.name = ObjectUtil.checkNotNull(name, "name");
+        metrics = ChannelPipelineTracer.register(name);
         this.pipeline = pipeline;
         this.executor = executor;
-        this.inbound = inbound;
-        this.outbound = outbound;
+        this.executionMask = mask(handlerClass);
         // Its ordered if its driven by the EventLoop or the given Executor is an instanceof OrderedEventExecutor.
         ordered = (executor == null || executor instanceof OrderedEventExecutor);
     }
@@ -201,7 +230,7 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap impleme
      */
     @Override
     public ChannelHandlerContext fireChannelRegistered() {
-        invokeChannelRegistered(findContextInbound());
+        invokeChannelRegistered(findContextInbound(MASK_CHANNEL_REGISTERED));
         return this;
     }
 
@@ -242,7 +271,7 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap impleme
 
     @Override
     public ChannelHandlerContext fireChannelUnregistered() {
-        invokeChannelUnregistered(findContextInbound());
+        invokeChannelUnregistered(findContextInbound(MASK_CHANNEL_UNREGISTERED));
         return this;
     }
 
@@ -274,7 +303,7 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap impleme
 
     @Override
     public ChannelHandlerContext fireChannelActive() {
-        invokeChannelActive(findContextInbound());
+        invokeChannelActive(findContextInbound(MASK_CHANNEL_ACTIVE));
         return this;
     }
 
@@ -306,7 +335,7 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap impleme
 
     @Override
     public ChannelHandlerContext fireChannelInactive() {
-        invokeChannelInactive(findContextInbound());
+        invokeChannelInactive(findContextInbound(MASK_CHANNEL_INACTIVE));
         return this;
     }
 
@@ -338,7 +367,7 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap impleme
 
     @Override
     public ChannelHandlerContext fireExceptionCaught(final Throwable cause) {
-        invokeExceptionCaught(next, cause);
+        invokeExceptionCaught(findContextInbound(MASK_EXCEPTION_CAUGHT), cause);
         return this;
     }
 
@@ -396,7 +425,7 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap impleme
     @Override
     public ChannelHandlerContext fireUserEventTriggered(final Object event) {
         //链式调用
-        invokeUserEventTriggered(findContextInbound(), event);
+        invokeUserEventTriggered(findContextInbound(MASK_USER_EVENT_TRIGGERED), event);
         return this;
     }
 
@@ -430,7 +459,7 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap impleme
 
     @Override
     public ChannelHandlerContext fireChannelRead(final Object msg) {
-        invokeChannelRead(findContextInbound(), msg);
+        invokeChannelRead(findContextInbound(MASK_CHANNEL_READ), msg);
         return this;
     }
 
@@ -451,8 +480,22 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap impleme
 
     private void invokeChannelRead(Object msg) {
         if (invokeHandler()) {
+            if (msg instanceof MessageBatch) {
+                invokeChannelReadBatch((MessageBatch) msg);
+                return;
+            }
             try {
-                ((ChannelInboundHandler) handler()).channelRead(this, msg);
+                final ChannelHandlerMetrics metrics = this.metrics;
+                if (ChannelPipelineTracer.ENABLED && metrics != null) {
+                    long start = metrics.beforeInvoke(ChannelHandlerMetrics.Event.CHANNEL_READ, msg);
+                    try {
+                        ((ChannelInboundHandler) handler()).channelRead(this, msg);
+                    } finally {
+                        metrics.afterInvoke(ChannelHandlerMetrics.Event.CHANNEL_READ, start);
+                    }
+                } else {
+                    ((ChannelInboundHandler) handler()).channelRead(this, msg);
+                }
             } catch (Throwable t) {
                 notifyHandlerException(t);
             }
@@ -462,9 +505,41 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap impleme
         }
     }
 
+    private void invokeChannelReadBatch(MessageBatch batch) {
+        ChannelHandler handler = handler();
+        if (handler instanceof ChannelInboundBatchHandler) {
+            try {
+                final ChannelHandlerMetrics metrics = this.metrics;
+                if (ChannelPipelineTracer.ENABLED && metrics != null) {
+                    long start = metrics.beforeInvoke(ChannelHandlerMetrics.Event.CHANNEL_READ, batch);
+                    try {
+                        ((ChannelInboundBatchHandler) handler).channelReadBatch(this, batch);
+                    } finally {
+                        metrics.afterInvoke(ChannelHandlerMetrics.Event.CHANNEL_READ, start);
+                    }
+                } else {
+                    ((ChannelInboundBatchHandler) handler).channelReadBatch(this, batch);
+                }
+            } catch (Throwable t) {
+                notifyHandlerException(t);
+            }
+            return;
+        }
+
+        // The handler does not know about batches, so pass the messages one by one. If the handler is removed
+        // while doing so the remaining messages are forwarded to the next handler.
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                invokeChannelRead(batch.get(i));
+            }
+        } finally {
+            batch.recycle();
+        }
+    }
+
     @Override
     public ChannelHandlerContext fireChannelReadComplete() {
-        invokeChannelReadComplete(findContextInbound());
+        invokeChannelReadComplete(findContextInbound(MASK_CHANNEL_READ_COMPLETE));
         return this;
     }
 
@@ -501,7 +576,7 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap impleme
 
     @Override
     public ChannelHandlerContext fireChannelWritabilityChanged() {
-        invokeChannelWritabilityChanged(findContextInbound());
+        invokeChannelWritabilityChanged(findContextInbound(MASK_CHANNEL_WRITABILITY_CHANGED));
         return this;
     }
 
@@ -575,7 +650,7 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap impleme
             return promise;
         }
         //找到下一个未处理的出站处理器上下文（可能是当前对象自身）
-        final AbstractChannelHandlerContext next = findContextOutbound();
+        final AbstractChannelHandlerContext next = findContextOutbound(MASK_BIND);
         EventExecutor executor = next.executor();
         if (executor.inEventLoop()) {
             next.invokeBind(localAddress, promise);
@@ -619,7 +694,7 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap impleme
             return promise;
         }
 
-        final AbstractChannelHandlerContext next = findContextOutbound();
+        final AbstractChannelHandlerContext next = findContextOutbound(MASK_CONNECT);
         EventExecutor executor = next.executor();
         if (executor.inEventLoop()) {
             next.invokeConnect(remoteAddress, localAddress, promise);
@@ -653,25 +728,23 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap impleme
             return promise;
         }
 
-        final AbstractChannelHandlerContext next = findContextOutbound();
+        // Translate disconnect to close if the channel has no notion of disconnect-reconnect.（如果通道没有断开-重新连接的概念，则将断开转换为关闭。）
+        // So far, UDP/IP is the only transport that has such behavior.（到目前为止，UDP / IP是唯一具有这种行为的传输）
+        // This must be done before searching for the next context, as a different set of handlers may implement
+        // close(...) than disconnect(...).
+        if (!channel().metadata().hasDisconnect()) {
+            return close(promise);
+        }
+
+        final AbstractChannelHandlerContext next = findContextOutbound(MASK_DISCONNECT);
         EventExecutor executor = next.executor();
         if (executor.inEventLoop()) {
-            // Translate disconnect to close if the channel has no notion of disconnect-reconnect.（如果通道没有断开-重新连接的概念，则将断开转换为关闭。）
-            // So far, UDP/IP is the only transport that has such behavior.（到目前为止，UDP / IP是唯一具有这种行为的传输）
-            if (!channel().metadata().hasDisconnect()) {
-                next.invokeClose(promise);
-            } else {
-                next.invokeDisconnect(promise);
-            }
+            next.invokeDisconnect(promise);
         } else {
             safeExecute(executor, new Runnable() {
                 @Override
                 public void run() {
-                    if (!channel().metadata().hasDisconnect()) {
-                        next.invokeClose(promise);
-                    } else {
-                        next.invokeDisconnect(promise);
-                    }
+                    next.invokeDisconnect(promise);
                 }
             }, promise, null);
         }
@@ -698,7 +771,7 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap impleme
             return promise;
         }
 
-        final AbstractChannelHandlerContext next = findContextOutbound();
+        final AbstractChannelHandlerContext next = findContextOutbound(MASK_CLOSE);
         EventExecutor executor = next.executor();
         if (executor.inEventLoop()) {
             next.invokeClose(promise);
@@ -733,7 +806,7 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap impleme
             return promise;
         }
 
-        final AbstractChannelHandlerContext next = findContextOutbound();
+        final AbstractChannelHandlerContext next = findContextOutbound(MASK_DEREGISTER);
         EventExecutor executor = next.executor();
         if (executor.inEventLoop()) {
             next.invokeDeregister(promise);
@@ -763,7 +836,7 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap impleme
 
     @Override
     public ChannelHandlerContext read() {
-        final AbstractChannelHandlerContext next = findContextOutbound();
+        final AbstractChannelHandlerContext next = findContextOutbound(MASK_READ);
         EventExecutor executor = next.executor();
         if (executor.inEventLoop()) {
             next.invokeRead();
@@ -831,7 +904,17 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap impleme
 
     private void invokeWrite0(Object msg, ChannelPromise promise) {
         try {
-            ((ChannelOutboundHandler) handler()).write(this, msg, promise);
+            final ChannelHandlerMetrics metrics = this.metrics;
+            if (ChannelPipelineTracer.ENABLED && metrics != null) {
+                long start = metrics.beforeInvoke(ChannelHandlerMetrics.Event.WRITE, msg);
+                try {
+                    ((ChannelOutboundHandler) handler()).write(this, msg, promise);
+                } finally {
+                    metrics.afterInvoke(ChannelHandlerMetrics.Event.WRITE, start);
+                }
+            } else {
+                ((ChannelOutboundHandler) handler()).write(this, msg, promise);
+            }
         } catch (Throwable t) {
             notifyOutboundHandlerException(t, promise);
         }
@@ -839,7 +922,7 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap impleme
 
     @Override
     public ChannelHandlerContext flush() {
-        final AbstractChannelHandlerContext next = findContextOutbound();
+        final AbstractChannelHandlerContext next = findContextOutbound(MASK_FLUSH);
         EventExecutor executor = next.executor();
         if (executor.inEventLoop()) {
             next.invokeFlush();
@@ -869,7 +952,17 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap impleme
 
     private void invokeFlush0() {
         try {
-            ((ChannelOutboundHandler) handler()).flush(this);
+            final ChannelHandlerMetrics metrics = this.metrics;
+            if (ChannelPipelineTracer.ENABLED && metrics != null) {
+                long start = metrics.beforeInvoke(ChannelHandlerMetrics.Event.FLUSH, null);
+                try {
+                    ((ChannelOutboundHandler) handler()).flush(this);
+                } finally {
+                    metrics.afterInvoke(ChannelHandlerMetrics.Event.FLUSH, start);
+                }
+            } else {
+                ((ChannelOutboundHandler) handler()).flush(this);
+            }
         } catch (Throwable t) {
             notifyHandlerException(t);
         }
@@ -902,7 +995,8 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap impleme
     }
 
     private void write(Object msg, boolean flush, ChannelPromise promise) {
-        AbstractChannelHandlerContext next = findContextOutbound();
+        AbstractChannelHandlerContext next = findContextOutbound(flush ?
+                (MASK_WRITE | MASK_FLUSH) : MASK_WRITE);
         final Object m = pipeline.touch(msg, next);
         EventExecutor executor = next.executor();
         if (executor.inEventLoop()) {
@@ -1047,31 +1141,35 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap impleme
      *
      * @return
      */
-    private AbstractChannelHandlerContext findContextInbound() {
-        //从当前上下文开始遍历，找到下一个入站处理器对应的上下文
+    private AbstractChannelHandlerContext findContextInbound(int mask) {
+        //从当前上下文开始遍历，找到下一个需要处理该事件的入站处理器对应的上下文
         AbstractChannelHandlerContext ctx = this;
+        EventExecutor currentExecutor = executor();
         do {
             ctx = ctx.next;
-            //如果下一个上下文不是入站类型的，则继续便利，否则就返回找到的入站处理器上下文
-        } while (!ctx.inbound);
+        } while (skipContext(ctx, currentExecutor, mask, MASK_ONLY_INBOUND));
         return ctx;
     }
 
-    /**
-     * 从当前对象开始便利查询出一个出站类型的 AbstractChannelHandlerContext
-     *
-     * @return
-     */
-    private AbstractChannelHandlerContext findContextOutbound() {
-        //从当前上下文开始遍历，找到下一个出站处理器对应的上下文
+    private AbstractChannelHandlerContext findContextOutbound(int mask) {
+        //从当前上下文开始遍历，找到下一个需要处理该事件的出站处理器对应的上下文
         AbstractChannelHandlerContext ctx = this;
+        EventExecutor currentExecutor = executor();
         do {
             ctx = ctx.prev;
-            //如果下一个上下文不是出站类型的，则继续便利，否则就返回找到的出站处理器上下文
-        } while (!ctx.outbound);
+        } while (skipContext(ctx, currentExecutor, mask, MASK_ONLY_OUTBOUND));
         return ctx;
     }
 
+    private static boolean skipContext(
+            AbstractChannelHandlerContext ctx, EventExecutor currentExecutor, int mask, int onlyMask) {
+        // Ensure we correctly handle MASK_EXCEPTION_CAUGHT which is not included in the onlyMask.
+        return (ctx.executionMask & (onlyMask | mask)) == 0 ||
+                // We can only skip if the EventExecutor is the same as otherwise we need to ensure we offload
+                // everything to preserve ordering.
+                (ctx.executor() == currentExecutor && (ctx.executionMask & mask) == 0);
+    }
+
     @Override
     public ChannelPromise voidPromise() {
         return channel().voidPromise();
@@ -1079,6 +1177,18 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap impleme
 
     final void setRemoved() {
         handlerState = REMOVE_COMPLETE;
+        unregisterMetrics();
+    }
+
+    /**
+     * Stops tracing this context and releases its {@link ChannelHandlerMetrics}.
+     */
+    final void unregisterMetrics() {
+        ChannelHandlerMetrics metrics = this.metrics;
+        if (metrics != null) {
+            this.metrics = null;
+            ChannelPipelineTracer.unregister(metrics);
+        }
     }
 
     /**
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.internal.UnstableApi;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link WriteBufferWaterMarkPolicy} which sizes the water marks of every {@link Channel} from the rate at which its
+ * pending outbound bytes are written, and bounds the pending outbound bytes of all {@link Channel}s using it.
+ * <p>
+ * The high water mark of a {@link Channel} is the number of bytes it writes within {@code targetDrainTime}, clamped
+ * between {@code minHighWaterMark} and {@code maxHighWaterMark}; the low water mark is half of it. Slow peers so only
+ * get little buffering, while fast peers get enough to not toggle their writability all the time. The rate is only
+ * measured while the {@link Channel} has pending outbound bytes, so idle periods do not make it look slow.
+ * <p>
+ * Once the pending outbound bytes of all {@link Channel}s exceed {@code totalBudget}, the high water mark of every
+ * {@link Channel} drops to its low water mark until enough bytes were written. Share one instance, e.g. as child
+ * option of a server, among all {@link Channel}s whose outbound memory should be bounded together.
+ */
+@UnstableApi
+public class AdaptiveWriteBufferWaterMarkPolicy implements WriteBufferWaterMarkPolicy {
+
+    private static final int DEFAULT_MIN_HIGH_WATER_MARK = 64 * 1024;
+    private static final int DEFAULT_MAX_HIGH_WATER_MARK = 4 * 1024 * 1024;
+    private static final long DEFAULT_TARGET_DRAIN_TIME_MILLIS = 50;
+
+    // The write rate is measured over windows of at least this length.
+    private static final long SAMPLE_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final int minHighWaterMark;
+    private final int maxHighWaterMark;
+    private final long targetDrainTimeNanos;
+    private final long totalBudget;
+    private final AtomicLong totalPendingBytes = new AtomicLong();
+
+    /**
+     * Create a new instance which allows high water marks between {@code 64 KiB} and {@code 4 MiB}, sized to
+     * {@code 50 ms} of writes.
+     *
+     * @param totalBudget the maximum number of pending outbound bytes of all {@link Channel}s together.
+     */
+    public AdaptiveWriteBufferWaterMarkPolicy(long totalBudget) {
+        this(DEFAULT_MIN_HIGH_WATER_MARK, DEFAULT_MAX_HIGH_WATER_MARK,
+                DEFAULT_TARGET_DRAIN_TIME_MILLIS, TimeUnit.MILLISECONDS, totalBudget);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param minHighWaterMark the smallest high water mark of a {@link Channel}.
+     * @param maxHighWaterMark the largest high water mark of a {@link Channel}.
+     * @param targetDrainTime the time it should take a {@link Channel} to write the bytes below its high water mark.
+     * @param unit the {@link TimeUnit} of {@code targetDrainTime}.
+     * @param totalBudget the maximum number of pending outbound bytes of all {@link Channel}s together.
+     */
+    public AdaptiveWriteBufferWaterMarkPolicy(int minHighWaterMark, int maxHighWaterMark,
+                                              long targetDrainTime, TimeUnit unit, long totalBudget) {
+        if (minHighWaterMark <= 0) {
+            throw new IllegalArgumentException("minHighWaterMark: " + minHighWaterMark + " (expected: > 0)");
+        }
+        if (maxHighWaterMark < minHighWaterMark) {
+            throw new IllegalArgumentException("maxHighWaterMark: " + maxHighWaterMark +
+                    " (expected: >= minHighWaterMark (" + minHighWaterMark + "))");
+        }
+        if (targetDrainTime <= 0) {
+            throw new IllegalArgumentException("targetDrainTime: " + targetDrainTime + " (expected: > 0)");
+        }
+        if (totalBudget <= 0) {
+            throw new IllegalArgumentException("totalBudget: " + totalBudget + " (expected: > 0)");
+        }
+        if (unit == null) {
+            throw new NullPointerException("unit");
+        }
+        this.minHighWaterMark = minHighWaterMark;
+        this.maxHighWaterMark = maxHighWaterMark;
+        targetDrainTimeNanos = unit.toNanos(targetDrainTime);
+        this.totalBudget = totalBudget;
+    }
+
+    /**
+     * Returns the number of pending outbound bytes of all {@link Channel}s using this policy.
+     */
+    public long totalPendingBytes() {
+        return totalPendingBytes.get();
+    }
+
+    @Override
+    public Handle newHandle(Channel channel) {
+        return new AdaptiveHandle();
+    }
+
+    private final class AdaptiveHandle implements Handle {
+        private final AtomicLong pendingBytes = new AtomicLong();
+        private volatile long highWaterMark = minHighWaterMark;
+        // The time at which the channel had pending bytes again after it had none.
+        private volatile long busySince;
+
+        // Only accessed from the EventLoop.
+        private long lastWritten;
+        private long windowNanos;
+        private long windowBytes;
+        private double bytesPerNano;
+
+        @Override
+        public void pendingBytesChanged(long delta) {
+            totalPendingBytes.addAndGet(delta);
+            if (pendingBytes.addAndGet(delta) == delta && delta > 0) {
+                busySince = ticksInNanos();
+            }
+        }
+
+        @Override
+        public void bytesWritten(long bytes) {
+            long now = ticksInNanos();
+            // Only count the time since the last write, or since there were pending bytes again if the channel was
+            // idle in between.
+            windowNanos += now - Math.max(lastWritten, busySince);
+            windowBytes += bytes;
+            lastWritten = now;
+            if (windowNanos < SAMPLE_WINDOW_NANOS) {
+                return;
+            }
+            double rate = (double) windowBytes / windowNanos;
+            bytesPerNano = bytesPerNano == 0 ? rate : bytesPerNano + (rate - bytesPerNano) / 4;
+            windowNanos = 0;
+            windowBytes = 0;
+
+            long high = (long) (bytesPerNano * targetDrainTimeNanos);
+            highWaterMark = Math.max(minHighWaterMark, Math.min(maxHighWaterMark, high));
+        }
+
+        @Override
+        public long highWaterMark() {
+            return totalPendingBytes.get() > totalBudget ? lowWaterMark() : highWaterMark;
+        }
+
+        @Override
+        public long lowWaterMark() {
+            return highWaterMark >>> 1;
+        }
+    }
+
+    /**
+     * This method is visible for testing!
+     */
+    long ticksInNanos() {
+        return System.nanoTime();
+    }
+}
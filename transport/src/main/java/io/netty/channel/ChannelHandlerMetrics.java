@@ -0,0 +1,273 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.internal.LogLinearHistogram;
+import io.netty.util.internal.LongCounter;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Invocation counts, time spent and bytes seen by all {@link ChannelHandler}s registered under the same name,
+ * aggregated across all {@link Channel}s. Instances are obtained from {@link ChannelPipelineTracer}.
+ * <p>
+ * Every invocation is counted, while the time spent is only measured for a sample of the invocations (see
+ * {@link ChannelPipelineTracer#samplingInterval()}). Percentiles are computed from a histogram with a relative
+ * error of at most 25%.
+ * <p>
+ * The recorded times are self times: the time spent in traced handlers that are invoked on the same thread while
+ * the handler method runs (for example the next handlers when it calls
+ * {@link ChannelHandlerContext#fireChannelRead(Object)}) is not included.
+ */
+@UnstableApi
+public final class ChannelHandlerMetrics {
+
+    /**
+     * The handler methods that are traced.
+     */
+    public enum Event {
+        CHANNEL_READ,
+        WRITE,
+        FLUSH
+    }
+
+    private static final Event[] EVENTS = Event.values();
+
+    private static final long NOT_TIMED = -1;
+
+    private static final AtomicIntegerFieldUpdater<ChannelHandlerMetrics> HANDLERS_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(ChannelHandlerMetrics.class, "handlers");
+
+    private static final FastThreadLocal<InvocationStack> INVOCATIONS = new FastThreadLocal<InvocationStack>() {
+        @Override
+        protected InvocationStack initialValue() {
+            return new InvocationStack();
+        }
+    };
+
+    private final String name;
+    private final LongCounter[] counts = new LongCounter[EVENTS.length];
+    private final LongCounter[] sampledCounts = new LongCounter[EVENTS.length];
+    private final LongCounter[] sampledNanos = new LongCounter[EVENTS.length];
+    private final LogLinearHistogram[] histograms = new LogLinearHistogram[EVENTS.length];
+    private final LongCounter bytesRead = PlatformDependent.newLongCounter();
+    private final LongCounter bytesWritten = PlatformDependent.newLongCounter();
+
+    // The number of handler contexts using these metrics, see ChannelPipelineTracer.
+    private volatile int handlers = 1;
+
+    ChannelHandlerMetrics(String name) {
+        this.name = name;
+        for (int i = 0; i < EVENTS.length; i++) {
+            counts[i] = PlatformDependent.newLongCounter();
+            sampledCounts[i] = PlatformDependent.newLongCounter();
+            sampledNanos[i] = PlatformDependent.newLongCounter();
+            histograms[i] = new LogLinearHistogram();
+        }
+    }
+
+    /**
+     * Returns the name of the handlers these metrics belong to.
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Returns how often the handler method was invoked.
+     */
+    public long count(Event event) {
+        return counts[event.ordinal()].value();
+    }
+
+    /**
+     * Returns how many invocations of the handler method were timed.
+     */
+    public long sampledCount(Event event) {
+        return sampledCounts[event.ordinal()].value();
+    }
+
+    /**
+     * Returns the self time spent in the timed invocations of the handler method, in nanoseconds.
+     */
+    public long sampledTimeNanos(Event event) {
+        return sampledNanos[event.ordinal()].value();
+    }
+
+    /**
+     * Returns the estimated total time spent in the handler method, in nanoseconds. This extrapolates the time of
+     * the timed invocations to all invocations.
+     */
+    public long estimatedTimeNanos(Event event) {
+        long sampled = sampledCount(event);
+        if (sampled == 0) {
+            return 0;
+        }
+        return (long) ((double) sampledTimeNanos(event) / sampled * count(event));
+    }
+
+    /**
+     * Returns the time in nanoseconds that {@code percentile} percent of the timed invocations of the handler method
+     * did not exceed, or {@code 0} if no invocation was timed yet.
+     *
+     * @param percentile a value between {@code 0} and {@code 100}, e.g. {@code 99.9}
+     */
+    public long percentileNanos(Event event, double percentile) {
+        return histograms[event.ordinal()].percentile(percentile);
+    }
+
+    /**
+     * Returns the number of bytes passed to {@link ChannelInboundHandler#channelRead(ChannelHandlerContext, Object)}.
+     */
+    public long bytesRead() {
+        return bytesRead.value();
+    }
+
+    /**
+     * Returns the number of bytes passed to
+     * {@link ChannelOutboundHandler#write(ChannelHandlerContext, Object, ChannelPromise)}.
+     */
+    public long bytesWritten() {
+        return bytesWritten.value();
+    }
+
+    /**
+     * Records an invocation of the handler method for {@code event} and returns the start time to pass to
+     * {@link #afterInvoke(Event, long)}, or {@code -1} if this invocation is not timed.
+     */
+    long beforeInvoke(Event event, Object msg) {
+        return beforeInvoke(event, msg, ChannelPipelineTracer.sample());
+    }
+
+    long beforeInvoke(Event event, Object msg, boolean sample) {
+        counts[event.ordinal()].increment();
+        if (event == Event.CHANNEL_READ) {
+            bytesRead.add(bytes(msg));
+        } else if (event == Event.WRITE) {
+            bytesWritten.add(bytes(msg));
+        }
+        // Invocations nested in a timed invocation need to be timed as well, so their time can be subtracted from
+        // the time of the outer invocation.
+        InvocationStack stack = INVOCATIONS.get();
+        if (!sample && stack.depth == 0) {
+            return NOT_TIMED;
+        }
+        stack.push(sample);
+        return System.nanoTime();
+    }
+
+    void afterInvoke(Event event, long startTime) {
+        if (startTime != NOT_TIMED) {
+            long nanos = System.nanoTime() - startTime;
+            InvocationStack stack = INVOCATIONS.get();
+            long nestedNanos = stack.nestedNanos;
+            if (stack.pop(nanos)) {
+                record(event, nanos - nestedNanos);
+            }
+        }
+    }
+
+    void record(Event event, long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        int i = event.ordinal();
+        sampledCounts[i].increment();
+        sampledNanos[i].add(nanos);
+        histograms[i].record(nanos);
+    }
+
+    boolean retain() {
+        for (;;) {
+            int handlers = this.handlers;
+            if (handlers == 0) {
+                // Already removed from the registry.
+                return false;
+            }
+            if (HANDLERS_UPDATER.compareAndSet(this, handlers, handlers + 1)) {
+                return true;
+            }
+        }
+    }
+
+    boolean release() {
+        return HANDLERS_UPDATER.decrementAndGet(this) == 0;
+    }
+
+    private static long bytes(Object msg) {
+        if (msg instanceof ByteBuf) {
+            return ((ByteBuf) msg).readableBytes();
+        }
+        if (msg instanceof ByteBufHolder) {
+            return ((ByteBufHolder) msg).content().readableBytes();
+        }
+        if (msg instanceof FileRegion) {
+            return ((FileRegion) msg).count();
+        }
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder(128).append(name).append('(');
+        for (Event event : EVENTS) {
+            buf.append(event).append(": count=").append(count(event))
+               .append(", p50=").append(percentileNanos(event, 50))
+               .append("ns, p99=").append(percentileNanos(event, 99))
+               .append("ns, ");
+        }
+        return buf.append("bytesRead=").append(bytesRead())
+                  .append(", bytesWritten=").append(bytesWritten()).append(')').toString();
+    }
+
+    /**
+     * The timed invocations that are currently running on a thread.
+     */
+    private static final class InvocationStack {
+        // The time spent in the invocations nested in the innermost running invocation so far.
+        long nestedNanos;
+        int depth;
+        private long[] outerNestedNanos = new long[8];
+        private boolean[] sampled = new boolean[8];
+
+        void push(boolean sample) {
+            if (depth == sampled.length) {
+                outerNestedNanos = Arrays.copyOf(outerNestedNanos, depth << 1);
+                sampled = Arrays.copyOf(sampled, depth << 1);
+            }
+            outerNestedNanos[depth] = nestedNanos;
+            sampled[depth] = sample;
+            depth++;
+            nestedNanos = 0;
+        }
+
+        /**
+         * Ends the innermost invocation, which took {@code nanos} in total, and returns {@code true} if it should be
+         * recorded.
+         */
+        boolean pop(long nanos) {
+            depth--;
+            nestedNanos = outerNestedNanos[depth] + nanos;
+            return sampled[depth];
+        }
+    }
+}
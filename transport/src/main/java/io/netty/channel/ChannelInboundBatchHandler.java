@@ -0,0 +1,37 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * A {@link ChannelInboundHandler} which is able to process a {@link MessageBatch} in one call, for example because
+ * it only needs to flush once per batch.
+ * <p>
+ * Decoders like {@code ByteToMessageDecoder} emit a {@link MessageBatch} once batch decoding was enabled. All
+ * other messages are still passed to {@link #channelRead(ChannelHandlerContext, Object)}.
+ */
+@UnstableApi
+public interface ChannelInboundBatchHandler extends ChannelInboundHandler {
+
+    /**
+     * Invoked instead of {@link #channelRead(ChannelHandlerContext, Object)} when the current message is a
+     * {@link MessageBatch}. The handler owns the batch and must either forward it via
+     * {@link ChannelHandlerContext#fireChannelRead(Object)}, or release its messages and recycle it, for example
+     * via {@link MessageBatch#release()}.
+     */
+    void channelReadBatch(ChannelHandlerContext ctx, MessageBatch batch) throws Exception;
+}
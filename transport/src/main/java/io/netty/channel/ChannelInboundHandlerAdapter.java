@@ -1,5 +1,7 @@
 package io.netty.channel;
 
+import io.netty.channel.ChannelHandlerMask.Skip;
+
 /**
  * 适配器模式
  *
@@ -71,6 +73,7 @@ public class ChannelInboundHandlerAdapter
      *
      * Sub-classes may override this method to change behavior.
      */
+    @Skip
     @Override
     public void channelRegistered(ChannelHandlerContext ctx) throws Exception {
         //直接调用 ChannelPipeline 中的下一个处理器，所以对于当前处理器来说这是一个空实现
@@ -83,6 +86,7 @@ public class ChannelInboundHandlerAdapter
      *
      * Sub-classes may override this method to change behavior.
      */
+    @Skip
     @Override
     public void channelUnregistered(ChannelHandlerContext ctx) throws Exception {
         ctx.fireChannelUnregistered();
@@ -94,6 +98,7 @@ public class ChannelInboundHandlerAdapter
      *
      * Sub-classes may override this method to change behavior.
      */
+    @Skip
     @Override
     public void channelActive(ChannelHandlerContext ctx) throws Exception {
         ctx.fireChannelActive();
@@ -105,6 +110,7 @@ public class ChannelInboundHandlerAdapter
      *
      * Sub-classes may override this method to change behavior.
      */
+    @Skip
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
         ctx.fireChannelInactive();
@@ -118,6 +124,7 @@ public class ChannelInboundHandlerAdapter
      *
      * 对于每个传入的消息都要调用
      */
+    @Skip
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
         ctx.fireChannelRead(msg);
@@ -129,6 +136,7 @@ public class ChannelInboundHandlerAdapter
      *
      * Sub-classes may override this method to change behavior.
      */
+    @Skip
     @Override
     public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
         ctx.fireChannelReadComplete();
@@ -140,6 +148,7 @@ public class ChannelInboundHandlerAdapter
      *
      * Sub-classes may override this method to change behavior.
      */
+    @Skip
     @Override
     public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
         ctx.fireUserEventTriggered(evt);
@@ -151,6 +160,7 @@ public class ChannelInboundHandlerAdapter
      *
      * Sub-classes may override this method to change behavior.
      */
+    @Skip
     @Override
     public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
         ctx.fireChannelWritabilityChanged();
@@ -162,6 +172,7 @@ public class ChannelInboundHandlerAdapter
      *
      * Sub-classes may override this method to change behavior.
      */
+    @Skip
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause)
             throws Exception {
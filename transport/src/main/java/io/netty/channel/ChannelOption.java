@@ -152,6 +152,21 @@ public class ChannelOption<T> extends AbstractConstant<ChannelOption<T>> {
     public static final ChannelOption<WriteBufferWaterMark> WRITE_BUFFER_WATER_MARK =
             valueOf("WRITE_BUFFER_WATER_MARK");
 
+    /**
+     * Netty参数，动态的写水位策略，默认值为null，表示使用WRITE_BUFFER_WATER_MARK设置的固定水位。
+     * 设置后高低水位由该策略在运行时决定，例如根据写出速率调整，并可以在多个Channel之间共享一个总的内存预算。
+     * 只能在Channel注册之前设置。
+     */
+    public static final ChannelOption<WriteBufferWaterMarkPolicy> WRITE_BUFFER_WATER_MARK_POLICY =
+            valueOf("WRITE_BUFFER_WATER_MARK_POLICY");
+
+    /**
+     * Netty参数，入站内存预算，默认值为null，表示不限制。
+     * 解码器和聚合器会将其持有的入站数据计入该预算，超出时在占用内存最多的Channel上关闭自动读取，内存释放后再恢复。
+     * 通常在多个Channel之间共享同一个实例，例如作为ServerBootstrap的childOption。
+     */
+    public static final ChannelOption<InboundMemoryBudget> INBOUND_MEMORY_BUDGET = valueOf("INBOUND_MEMORY_BUDGET");
+
     /**
      * Netty参数，一个连接的远端关闭时本地端是否关闭，默认值为False。
      * 值为False时，连接自动关闭；
@@ -278,6 +293,14 @@ public class ChannelOption<T> extends AbstractConstant<ChannelOption<T>> {
      */
     public static final ChannelOption<Boolean> SINGLE_EVENTEXECUTOR_PER_GROUP = valueOf("SINGLE_EVENTEXECUTOR_PER_GROUP");
 
+    /**
+     * Netty参数，写合并阈值（单位字节），默认值为0，表示不合并。
+     * flush时，可读字节数不超过该值的相邻ByteBuf会被拷贝到一个从ByteBufAllocator分配的缓冲区中，从而减少gathering write时的iovec数量；
+     * 超过该值的ByteBuf仍然以零拷贝的方式写出。
+     * 仅支持字节流类型的Channel（{@link io.netty.channel.socket.DuplexChannel}），数据报等面向消息的Channel不支持该参数。
+     */
+    public static final ChannelOption<Integer> WRITE_COALESCING_THRESHOLD = valueOf("WRITE_COALESCING_THRESHOLD");
+
     /**
      * Creates a new {@link ChannelOption} with the specified unique {@code name}.
      */
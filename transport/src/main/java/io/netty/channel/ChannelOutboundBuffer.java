@@ -4,8 +4,6 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufHolder;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.socket.nio.NioSocketChannel;
-import io.netty.util.Recycler;
-import io.netty.util.Recycler.Handle;
 import io.netty.util.ReferenceCountUtil;
 import io.netty.util.concurrent.FastThreadLocal;
 import io.netty.util.internal.InternalThreadLocalMap;
@@ -16,6 +14,7 @@ import io.netty.util.internal.logging.InternalLoggerFactory;
 
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicLongFieldUpdater;
@@ -34,18 +33,34 @@ import java.util.concurrent.atomic.AtomicLongFieldUpdater;
  */
 public final class ChannelOutboundBuffer {
 
-    // Assuming a 64-bit JVM:
-    //  - 16 bytes object header
-    //  - 8 reference fields
-    //  - 2 long fields
-    //  - 2 int fields
-    //  - 1 boolean field
+    // Assuming a 64-bit JVM, each pending message occupies one slot in every array:
+    //  - 4 reference slots (message, promise, ByteBuffer, ByteBuffer[])
+    //  - 2 long slots (progress, total)
+    //  - 2 int slots (pending size, NIO buffer count)
+    //  - 1 boolean slot (cancelled)
     //  - padding
     static final int CHANNEL_OUTBOUND_BUFFER_ENTRY_OVERHEAD =
-            SystemPropertyUtil.getInt("io.netty.transport.outboundBufferEntrySizeOverhead", 96);
+            SystemPropertyUtil.getInt("io.netty.transport.outboundBufferEntrySizeOverhead", 64);
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // The arrays are released once all messages are written, so idle channels do not hold any of them. Arrays of the
+    // initial capacity are pooled per thread for the next channel that writes, up to this many sets of them.
+    private static final int MAX_POOLED_SLOTS =
+            Math.max(0, SystemPropertyUtil.getInt("io.netty.transport.outboundBufferMaxPooledSlots", 64));
+
+    // Upper bound of the buffer small messages are copied into, see ChannelOption.WRITE_COALESCING_THRESHOLD.
+    private static final int MAX_COALESCED_BYTES = 64 * 1024;
 
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(ChannelOutboundBuffer.class);
 
+    private static final FastThreadLocal<ArrayDeque<Slots>> POOLED_SLOTS = new FastThreadLocal<ArrayDeque<Slots>>() {
+        @Override
+        protected ArrayDeque<Slots> initialValue() throws Exception {
+            return new ArrayDeque<Slots>();
+        }
+    };
+
     private static final FastThreadLocal<ByteBuffer[]> NIO_BUFFERS = new FastThreadLocal<ByteBuffer[]>() {
         @Override
         protected ByteBuffer[] initialValue() throws Exception {
@@ -58,18 +73,28 @@ public final class ChannelOutboundBuffer {
      */
     private final Channel channel;
 
-    // Entry(flushedEntry) --> ... Entry(unflushedEntry) --> ... Entry(tailEntry)
+    // Pending messages are stored in a ring of parallel arrays, indexed by a running sequence number masked with
+    // the capacity of the arrays:
     //
-    // The Entry that is the first in the linked-list structure that was flushed
-    private Entry flushedEntry;
-
-    // The Entry which is the first unflushed in the linked-list structure
-    private Entry unflushedEntry;
-
-    // The Entry which represents the tail of the buffer
-    private Entry tailEntry;
-
-    // The number of flushed entries that are not written yet
+    // head (first flushed) --> ... unflushed (first unflushed) --> ... tail (next free slot)
+    private Object[] messages;
+    private ChannelPromise[] promises;
+    private ByteBuffer[] nioBuffer;
+    private ByteBuffer[][] nioBufferArrays;
+    private long[] progress;
+    private long[] totals;
+    private int[] pendingSizes;
+    private int[] nioBufferCounts;
+    private boolean[] cancelled;
+    private int mask = -1;
+    // The arrays of the initial capacity currently in use, returned to POOLED_SLOTS once all messages are written.
+    private Slots slots;
+
+    private int head;
+    private int unflushed;
+    private int tail;
+
+    // The number of flushed messages that are not written yet
     private int flushed;
 
     private int nioBufferCount;
@@ -104,22 +129,142 @@ public final class ChannelOutboundBuffer {
      * the message was written.
      */
     public void addMessage(Object msg, int size, ChannelPromise promise) {
-        Entry entry = Entry.newInstance(msg, size, total(msg), promise);
-        if (tailEntry == null) {
-            flushedEntry = null;
-            tailEntry = entry;
-        } else {
-            Entry tail = tailEntry;
-            tail.next = entry;
-            tailEntry = entry;
-        }
-        if (unflushedEntry == null) {
-            unflushedEntry = entry;
+        if (tail - head > mask) {
+            grow();
         }
+        int i = tail++ & mask;
+        int pendingSize = size + CHANNEL_OUTBOUND_BUFFER_ENTRY_OVERHEAD;
+        messages[i] = msg;
+        promises[i] = promise;
+        totals[i] = total(msg);
+        pendingSizes[i] = pendingSize;
 
         // increment pending bytes after adding message to the unflushed arrays.
         // See https://github.com/netty/netty/issues/1619
-        incrementPendingOutboundBytes(entry.pendingSize, false);
+        incrementPendingOutboundBytes(pendingSize, false);
+    }
+
+    private void grow() {
+        if (mask == -1) {
+            Slots slots = POOLED_SLOTS.get().pollFirst();
+            if (slots == null) {
+                slots = new Slots();
+            }
+            this.slots = slots;
+            messages = slots.messages;
+            promises = slots.promises;
+            nioBuffer = slots.nioBuffer;
+            nioBufferArrays = slots.nioBufferArrays;
+            progress = slots.progress;
+            totals = slots.totals;
+            pendingSizes = slots.pendingSizes;
+            nioBufferCounts = slots.nioBufferCounts;
+            cancelled = slots.cancelled;
+            mask = INITIAL_CAPACITY - 1;
+            return;
+        }
+        int newCapacity = (mask + 1) << 1;
+        if (newCapacity < 0) {
+            throw new IllegalStateException("too many pending messages");
+        }
+        int newMask = newCapacity - 1;
+        Object[] newMessages = new Object[newCapacity];
+        ChannelPromise[] newPromises = new ChannelPromise[newCapacity];
+        ByteBuffer[] newNioBuffer = new ByteBuffer[newCapacity];
+        ByteBuffer[][] newNioBufferArrays = new ByteBuffer[newCapacity][];
+        long[] newProgress = new long[newCapacity];
+        long[] newTotals = new long[newCapacity];
+        int[] newPendingSizes = new int[newCapacity];
+        int[] newNioBufferCounts = new int[newCapacity];
+        boolean[] newCancelled = new boolean[newCapacity];
+        Arrays.fill(newNioBufferCounts, -1);
+        for (int seq = head; seq != tail; seq++) {
+            int i = seq & mask;
+            int j = seq & newMask;
+            newMessages[j] = messages[i];
+            newPromises[j] = promises[i];
+            newNioBuffer[j] = nioBuffer[i];
+            newNioBufferArrays[j] = nioBufferArrays[i];
+            newProgress[j] = progress[i];
+            newTotals[j] = totals[i];
+            newPendingSizes[j] = pendingSizes[i];
+            newNioBufferCounts[j] = nioBufferCounts[i];
+            newCancelled[j] = cancelled[i];
+        }
+        messages = newMessages;
+        promises = newPromises;
+        nioBuffer = newNioBuffer;
+        nioBufferArrays = newNioBufferArrays;
+        progress = newProgress;
+        totals = newTotals;
+        pendingSizes = newPendingSizes;
+        nioBufferCounts = newNioBufferCounts;
+        cancelled = newCancelled;
+        mask = newMask;
+        // The grown arrays are not pooled.
+        slots = null;
+    }
+
+    private void releaseArraysIfEmpty() {
+        if (head == tail && mask != -1) {
+            Slots slots = this.slots;
+            if (slots != null) {
+                // All slots were cleared when their messages were removed.
+                this.slots = null;
+                ArrayDeque<Slots> pool = POOLED_SLOTS.get();
+                if (pool.size() < MAX_POOLED_SLOTS) {
+                    pool.addFirst(slots);
+                }
+            }
+            messages = null;
+            promises = null;
+            nioBuffer = null;
+            nioBufferArrays = null;
+            progress = null;
+            totals = null;
+            pendingSizes = null;
+            nioBufferCounts = null;
+            cancelled = null;
+            mask = -1;
+        }
+    }
+
+    /**
+     * Returns the capacity of the arrays holding the pending messages, for testing only.
+     */
+    int capacity() {
+        return mask + 1;
+    }
+
+    private void clearSlot(int i) {
+        messages[i] = null;
+        promises[i] = null;
+        nioBuffer[i] = null;
+        nioBufferArrays[i] = null;
+        progress[i] = 0;
+        totals[i] = 0;
+        pendingSizes[i] = 0;
+        nioBufferCounts[i] = -1;
+        cancelled[i] = false;
+    }
+
+    private int cancel(int i) {
+        if (!cancelled[i]) {
+            cancelled[i] = true;
+            int pSize = pendingSizes[i];
+
+            // release message and replace with an empty buffer
+            ReferenceCountUtil.safeRelease(messages[i]);
+            messages[i] = Unpooled.EMPTY_BUFFER;
+
+            pendingSizes[i] = 0;
+            totals[i] = 0;
+            progress[i] = 0;
+            nioBufferArrays[i] = null;
+            nioBuffer[i] = null;
+            return pSize;
+        }
+        return 0;
     }
 
     /**
@@ -134,25 +279,80 @@ public final class ChannelOutboundBuffer {
         // where added in the meantime.
         //
         // See https://github.com/netty/netty/issues/2577
-        Entry entry = unflushedEntry;
-        if (entry != null) {
-            if (flushedEntry == null) {
-                // there is no flushedEntry yet, so start with the entry
-                flushedEntry = entry;
+        final int start = unflushed;
+        while (unflushed != tail) {
+            int i = unflushed++ & mask;
+            flushed++;
+            if (!promises[i].setUncancellable()) {
+                // Was cancelled so make sure we free up memory and notify about the freed bytes
+                int pending = cancel(i);
+                decrementPendingOutboundBytes(pending, false, true);
+            }
+        }
+        if (unflushed - start > 1) {
+            int threshold = writeCoalescingThreshold();
+            if (threshold > 0) {
+                coalesce(start, unflushed, threshold);
             }
-            do {
-                flushed++;
-                if (!entry.promise.setUncancellable()) {
-                    // Was cancelled so make sure we free up memory and notify about the freed bytes
-                    int pending = entry.cancel();
-                    decrementPendingOutboundBytes(pending, false, true);
+        }
+    }
+
+    private int writeCoalescingThreshold() {
+        ChannelConfig config = channel.config();
+        return config instanceof DefaultChannelConfig ?
+                ((DefaultChannelConfig) config).getWriteCoalescingThreshold() : 0;
+    }
+
+    /**
+     * Copies each run of adjacent small {@link ByteBuf}s between {@code start} and {@code end} into a single buffer,
+     * so the run is written as one buffer instead of one per message. The copy takes the place of the first message
+     * of the run, the other messages are replaced by an empty buffer and so are completed in order right after it.
+     */
+    private void coalesce(int start, int end, int threshold) {
+        int seq = start;
+        while (seq != end) {
+            int runEnd = seq;
+            int bytes = 0;
+            while (runEnd != end) {
+                int readableBytes = coalescableBytes(runEnd & mask, threshold);
+                if (readableBytes < 0 || bytes + readableBytes > MAX_COALESCED_BYTES) {
+                    break;
                 }
-                entry = entry.next;
-            } while (entry != null);
+                bytes += readableBytes;
+                runEnd++;
+            }
+            if (runEnd - seq > 1) {
+                copyRun(seq, runEnd, bytes);
+                seq = runEnd;
+            } else {
+                seq++;
+            }
+        }
+    }
 
-            // All flushed so reset unflushedEntry
-            unflushedEntry = null;
+    private int coalescableBytes(int i, int threshold) {
+        Object msg = messages[i];
+        if (cancelled[i] || !(msg instanceof ByteBuf) || promises[i] instanceof ChannelProgressivePromise) {
+            // Progressive promises expect to be notified about the progress of their own message.
+            return -1;
         }
+        int readableBytes = ((ByteBuf) msg).readableBytes();
+        return readableBytes <= threshold ? readableBytes : -1;
+    }
+
+    private void copyRun(int start, int end, int bytes) {
+        ByteBuf copy = channel.alloc().ioBuffer(bytes);
+        for (int seq = start; seq != end; seq++) {
+            int i = seq & mask;
+            ByteBuf buf = (ByteBuf) messages[i];
+            copy.writeBytes(buf, buf.readerIndex(), buf.readableBytes());
+            ReferenceCountUtil.safeRelease(buf);
+            messages[i] = Unpooled.EMPTY_BUFFER;
+            totals[i] = 0;
+        }
+        int i = start & mask;
+        messages[i] = copy;
+        totals[i] = bytes;
     }
 
     /**
@@ -169,7 +369,11 @@ public final class ChannelOutboundBuffer {
         }
 
         long newWriteBufferSize = TOTAL_PENDING_SIZE_UPDATER.addAndGet(this, size);
-        if (newWriteBufferSize > channel.config().getWriteBufferHighWaterMark()) {
+        WriteBufferWaterMarkPolicy.Handle handle = waterMarkHandle();
+        if (handle != null) {
+            handle.pendingBytesChanged(size);
+        }
+        if (newWriteBufferSize > highWaterMark(handle)) {
             setUnwritable(invokeLater);
         }
     }
@@ -188,11 +392,29 @@ public final class ChannelOutboundBuffer {
         }
 
         long newWriteBufferSize = TOTAL_PENDING_SIZE_UPDATER.addAndGet(this, -size);
-        if (notifyWritability && newWriteBufferSize < channel.config().getWriteBufferLowWaterMark()) {
+        WriteBufferWaterMarkPolicy.Handle handle = waterMarkHandle();
+        if (handle != null) {
+            handle.pendingBytesChanged(-size);
+        }
+        if (notifyWritability && newWriteBufferSize < lowWaterMark(handle)) {
             setWritable(invokeLater);
         }
     }
 
+    private WriteBufferWaterMarkPolicy.Handle waterMarkHandle() {
+        ChannelConfig config = channel.config();
+        return config instanceof DefaultChannelConfig ?
+                ((DefaultChannelConfig) config).getWriteBufferWaterMarkHandle() : null;
+    }
+
+    private long highWaterMark(WriteBufferWaterMarkPolicy.Handle handle) {
+        return handle == null ? channel.config().getWriteBufferHighWaterMark() : handle.highWaterMark();
+    }
+
+    private long lowWaterMark(WriteBufferWaterMarkPolicy.Handle handle) {
+        return handle == null ? channel.config().getWriteBufferLowWaterMark() : handle.lowWaterMark();
+    }
+
     private static long total(Object msg) {
         if (msg instanceof ByteBuf) {
             return ((ByteBuf) msg).readableBytes();
@@ -210,12 +432,11 @@ public final class ChannelOutboundBuffer {
      * Return the current message to write or {@code null} if nothing was flushed before and so is ready to be written.
      */
     public Object current() {
-        Entry entry = flushedEntry;
-        if (entry == null) {
+        if (flushed == 0) {
             return null;
         }
 
-        return entry.msg;
+        return messages[head & mask];
     }
 
     /**
@@ -224,13 +445,13 @@ public final class ChannelOutboundBuffer {
      * 消息发送完成之后，更新发送进度信息
      */
     public void progress(long amount) {
-        Entry e = flushedEntry;
-        assert e != null;
-        ChannelPromise p = e.promise;
+        assert flushed != 0;
+        int i = head & mask;
+        ChannelPromise p = promises[i];
         if (p instanceof ChannelProgressivePromise) {
-            long progress = e.progress + amount;
-            e.progress = progress;
-            ((ChannelProgressivePromise) p).tryProgress(progress, e.total);
+            long progress = this.progress[i] + amount;
+            this.progress[i] = progress;
+            ((ChannelProgressivePromise) p).tryProgress(progress, totals[i]);
         }
     }
 
@@ -240,28 +461,30 @@ public final class ChannelOutboundBuffer {
      * messages are ready to be handled.
      */
     public boolean remove() {
-        Entry e = flushedEntry;
-        if (e == null) {
+        if (flushed == 0) {
             clearNioBuffers();
             return false;
         }
-        Object msg = e.msg;
+        int i = head & mask;
+        Object msg = messages[i];
 
-        ChannelPromise promise = e.promise;
-        int size = e.pendingSize;
+        ChannelPromise promise = promises[i];
+        int size = pendingSizes[i];
+        boolean cancelled = this.cancelled[i];
 
-        removeEntry(e);
+        removeHead(i);
 
-        if (!e.cancelled) {
+        if (!cancelled) {
             // only release message, notify and decrement if it was not canceled before.
             ReferenceCountUtil.safeRelease(msg);
             safeSuccess(promise);
+            WriteBufferWaterMarkPolicy.Handle handle = waterMarkHandle();
+            if (handle != null) {
+                handle.bytesWritten(size);
+            }
             decrementPendingOutboundBytes(size, false, true);
         }
 
-        // recycle the entry
-        e.recycle();
-
         return true;
     }
 
@@ -275,19 +498,20 @@ public final class ChannelOutboundBuffer {
     }
 
     private boolean remove0(Throwable cause, boolean notifyWritability) {
-        Entry e = flushedEntry;
-        if (e == null) {
+        if (flushed == 0) {
             clearNioBuffers();
             return false;
         }
-        Object msg = e.msg;
+        int i = head & mask;
+        Object msg = messages[i];
 
-        ChannelPromise promise = e.promise;
-        int size = e.pendingSize;
+        ChannelPromise promise = promises[i];
+        int size = pendingSizes[i];
+        boolean cancelled = this.cancelled[i];
 
-        removeEntry(e);
+        removeHead(i);
 
-        if (!e.cancelled) {
+        if (!cancelled) {
             // only release message, fail and decrement if it was not canceled before.
             ReferenceCountUtil.safeRelease(msg);
 
@@ -295,22 +519,16 @@ public final class ChannelOutboundBuffer {
             decrementPendingOutboundBytes(size, false, notifyWritability);
         }
 
-        // recycle the entry
-        e.recycle();
-
         return true;
     }
 
-    private void removeEntry(Entry e) {
+    // The slot is cleared before the promise is notified, so listeners may safely add new messages.
+    private void removeHead(int i) {
+        clearSlot(i);
+        head++;
         if (--flushed == 0) {
             // processed everything
-            flushedEntry = null;
-            if (e == tailEntry) {
-                tailEntry = null;
-                unflushedEntry = null;
-            }
-        } else {
-            flushedEntry = e.next;
+            releaseArraysIfEmpty();
         }
     }
 
@@ -372,10 +590,14 @@ public final class ChannelOutboundBuffer {
         int nioBufferCount = 0;
         final InternalThreadLocalMap threadLocalMap = InternalThreadLocalMap.get();
         ByteBuffer[] nioBuffers = NIO_BUFFERS.get(threadLocalMap);
-        Entry entry = flushedEntry;
-        while (isFlushedEntry(entry) && entry.msg instanceof ByteBuf) {
-            if (!entry.cancelled) {
-                ByteBuf buf = (ByteBuf) entry.msg;
+        for (int seq = head; seq != unflushed; seq++) {
+            int i = seq & mask;
+            Object msg = messages[i];
+            if (!(msg instanceof ByteBuf)) {
+                break;
+            }
+            if (!cancelled[i]) {
+                ByteBuf buf = (ByteBuf) msg;
                 final int readerIndex = buf.readerIndex();
                 final int readableBytes = buf.writerIndex() - readerIndex;
 
@@ -394,10 +616,10 @@ public final class ChannelOutboundBuffer {
                         break;
                     }
                     nioBufferSize += readableBytes;
-                    int count = entry.count;
+                    int count = nioBufferCounts[i];
                     if (count == -1) {
                         //noinspection ConstantValueVariableUse
-                        entry.count = count = buf.nioBufferCount();
+                        nioBufferCounts[i] = count = buf.nioBufferCount();
                     }
                     int neededSpace = nioBufferCount + count;
                     if (neededSpace > nioBuffers.length) {
@@ -405,25 +627,24 @@ public final class ChannelOutboundBuffer {
                         NIO_BUFFERS.set(threadLocalMap, nioBuffers);
                     }
                     if (count == 1) {
-                        ByteBuffer nioBuf = entry.buf;
+                        ByteBuffer nioBuf = nioBuffer[i];
                         if (nioBuf == null) {
                             // cache ByteBuffer as it may need to create a new ByteBuffer instance if its a
                             // derived buffer
-                            entry.buf = nioBuf = buf.internalNioBuffer(readerIndex, readableBytes);
+                            nioBuffer[i] = nioBuf = buf.internalNioBuffer(readerIndex, readableBytes);
                         }
                         nioBuffers[nioBufferCount++] = nioBuf;
                     } else {
-                        ByteBuffer[] nioBufs = entry.bufs;
+                        ByteBuffer[] nioBufs = nioBufferArrays[i];
                         if (nioBufs == null) {
                             // cached ByteBuffers as they may be expensive to create in terms
                             // of Object allocation
-                            entry.bufs = nioBufs = buf.nioBuffers();
+                            nioBufferArrays[i] = nioBufs = buf.nioBuffers();
                         }
                         nioBufferCount = fillBufferArray(nioBufs, nioBuffers, nioBufferCount);
                     }
                 }
             }
-            entry = entry.next;
         }
         this.nioBufferCount = nioBufferCount;
         this.nioBufferSize = nioBufferSize;
@@ -646,18 +867,25 @@ public final class ChannelOutboundBuffer {
 
         // Release all unflushed messages.
         try {
-            Entry e = unflushedEntry;
-            while (e != null) {
+            while (head != tail) {
+                int i = head & mask;
+                Object msg = messages[i];
+                ChannelPromise promise = promises[i];
+                boolean cancelled = this.cancelled[i];
+
                 // Just decrease; do not trigger any events via decrementPendingOutboundBytes()
-                int size = e.pendingSize;
-                TOTAL_PENDING_SIZE_UPDATER.addAndGet(this, -size);
+                int size = pendingSizes[i];
+                decrementPendingOutboundBytes(size, false, false);
+
+                clearSlot(i);
+                unflushed = ++head;
 
-                if (!e.cancelled) {
-                    ReferenceCountUtil.safeRelease(e.msg);
-                    safeFail(e.promise, cause);
+                if (!cancelled) {
+                    ReferenceCountUtil.safeRelease(msg);
+                    safeFail(promise, cause);
                 }
-                e = e.recycleAndGetNext();
             }
+            releaseArraysIfEmpty();
         } finally {
             inFail = false;
         }
@@ -694,7 +922,7 @@ public final class ChannelOutboundBuffer {
      * This quantity will always be non-negative. If {@link #isWritable()} is {@code false} then 0.
      */
     public long bytesBeforeUnwritable() {
-        long bytes = channel.config().getWriteBufferHighWaterMark() - totalPendingSize;
+        long bytes = highWaterMark(waterMarkHandle()) - totalPendingSize;
         // If bytes is negative we know we are not writable, but if bytes is non-negative we have to check writability.
         // Note that totalPendingSize and isWritable() use different volatile variables that are not synchronized
         // together. totalPendingSize will be updated before isWritable().
@@ -709,7 +937,7 @@ public final class ChannelOutboundBuffer {
      * This quantity will always be non-negative. If {@link #isWritable()} is {@code true} then 0.
      */
     public long bytesBeforeWritable() {
-        long bytes = totalPendingSize - channel.config().getWriteBufferLowWaterMark();
+        long bytes = totalPendingSize - lowWaterMark(waterMarkHandle());
         // If bytes is negative we know we are writable, but if bytes is non-negative we have to check writability.
         // Note that totalPendingSize and isWritable() use different volatile variables that are not synchronized
         // together. totalPendingSize will be updated before isWritable().
@@ -729,23 +957,14 @@ public final class ChannelOutboundBuffer {
             throw new NullPointerException("processor");
         }
 
-        Entry entry = flushedEntry;
-        if (entry == null) {
-            return;
-        }
-
-        do {
-            if (!entry.cancelled) {
-                if (!processor.processMessage(entry.msg)) {
+        for (int seq = head; seq != unflushed; seq++) {
+            int i = seq & mask;
+            if (!cancelled[i]) {
+                if (!processor.processMessage(messages[i])) {
                     return;
                 }
             }
-            entry = entry.next;
-        } while (isFlushedEntry(entry));
-    }
-
-    private boolean isFlushedEntry(Entry e) {
-        return e != null && e != unflushedEntry;
+        }
     }
 
     public interface MessageProcessor {
@@ -757,90 +976,22 @@ public final class ChannelOutboundBuffer {
         boolean processMessage(Object msg) throws Exception;
     }
 
-    static final class Entry {
-
-        /**
-         * 回收器
-         */
-        private static final Recycler<Entry> RECYCLER = new Recycler<Entry>() {
-            @Override
-            protected Entry newObject(Handle<Entry> handle) {
-                return new Entry(handle);
-            }
-        };
-
-        private final Handle<Entry> handle;
-
-        Entry next;
-
-        Object msg;
-
-        ByteBuffer[] bufs;
-
-        ByteBuffer buf;
-
-        ChannelPromise promise;
-
-        long progress;
-
-        long total;
-
-        int pendingSize;
-
-        int count = -1;
-
-        boolean cancelled;
-
-        private Entry(Handle<Entry> handle) {
-            this.handle = handle;
-        }
-
-        static Entry newInstance(Object msg, int size, long total, ChannelPromise promise) {
-            Entry entry = RECYCLER.get();
-            entry.msg = msg;
-            entry.pendingSize = size + CHANNEL_OUTBOUND_BUFFER_ENTRY_OVERHEAD;
-            entry.total = total;
-            entry.promise = promise;
-            return entry;
-        }
-
-        int cancel() {
-            if (!cancelled) {
-                cancelled = true;
-                int pSize = pendingSize;
-
-                // release message and replace with an empty buffer
-                ReferenceCountUtil.safeRelease(msg);
-                msg = Unpooled.EMPTY_BUFFER;
-
-                pendingSize = 0;
-                total = 0;
-                progress = 0;
-                bufs = null;
-                buf = null;
-                return pSize;
-            }
-            return 0;
-        }
-
-        void recycle() {
-            next = null;
-            bufs = null;
-            buf = null;
-            msg = null;
-            promise = null;
-            progress = 0;
-            total = 0;
-            pendingSize = 0;
-            count = -1;
-            cancelled = false;
-            handle.recycle(this);
-        }
-
-        Entry recycleAndGetNext() {
-            Entry next = this.next;
-            recycle();
-            return next;
+    /**
+     * A set of the arrays holding the pending messages with the initial capacity, which is pooled per thread.
+     */
+    private static final class Slots {
+        final Object[] messages = new Object[INITIAL_CAPACITY];
+        final ChannelPromise[] promises = new ChannelPromise[INITIAL_CAPACITY];
+        final ByteBuffer[] nioBuffer = new ByteBuffer[INITIAL_CAPACITY];
+        final ByteBuffer[][] nioBufferArrays = new ByteBuffer[INITIAL_CAPACITY][];
+        final long[] progress = new long[INITIAL_CAPACITY];
+        final long[] totals = new long[INITIAL_CAPACITY];
+        final int[] pendingSizes = new int[INITIAL_CAPACITY];
+        final int[] nioBufferCounts = new int[INITIAL_CAPACITY];
+        final boolean[] cancelled = new boolean[INITIAL_CAPACITY];
+
+        Slots() {
+            Arrays.fill(nioBufferCounts, -1);
         }
     }
 }
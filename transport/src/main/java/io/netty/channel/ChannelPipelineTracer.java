@@ -0,0 +1,138 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of the {@link ChannelHandlerMetrics} recorded for every {@link ChannelHandler} name when pipeline
+ * tracing is enabled.
+ * <p>
+ * Tracing is disabled by default and can be enabled with {@code -Dio.netty.pipeline.tracing=true}. The fraction of
+ * invocations that are timed is controlled by {@code -Dio.netty.pipeline.tracing.samplingInterval}: on average one
+ * out of every {@code samplingInterval} invocations is timed. When tracing is disabled the pipeline does not record
+ * anything and the checks are removed by the JIT.
+ * <p>
+ * The metrics of a name are only kept while at least one handler with that name is in a pipeline, so the names of
+ * removed per-connection handlers do not accumulate.
+ */
+@UnstableApi
+public final class ChannelPipelineTracer {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(ChannelPipelineTracer.class);
+
+    private static final int DEFAULT_SAMPLING_INTERVAL = 16;
+
+    static final boolean ENABLED;
+    private static final int SAMPLING_INTERVAL;
+
+    private static final ConcurrentMap<String, ChannelHandlerMetrics> METRICS =
+            PlatformDependent.newConcurrentHashMap();
+
+    static {
+        ENABLED = SystemPropertyUtil.getBoolean("io.netty.pipeline.tracing", false);
+        SAMPLING_INTERVAL = Math.max(1, SystemPropertyUtil.getInt(
+                "io.netty.pipeline.tracing.samplingInterval", DEFAULT_SAMPLING_INTERVAL));
+        if (logger.isDebugEnabled()) {
+            logger.debug("-Dio.netty.pipeline.tracing: {}", ENABLED);
+            logger.debug("-Dio.netty.pipeline.tracing.samplingInterval: {}", SAMPLING_INTERVAL);
+        }
+    }
+
+    private ChannelPipelineTracer() {
+    }
+
+    /**
+     * Returns {@code true} if pipeline tracing is enabled.
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Returns how many invocations are made on average per timed invocation.
+     */
+    public static int samplingInterval() {
+        return SAMPLING_INTERVAL;
+    }
+
+    /**
+     * Returns the metrics recorded for the handlers with the given name, or {@code null} if none were recorded.
+     */
+    public static ChannelHandlerMetrics metrics(String name) {
+        return METRICS.get(name);
+    }
+
+    /**
+     * Returns the metrics recorded so far keyed and sorted by handler name. The returned {@link Map} is a snapshot
+     * of the registered names while the {@link ChannelHandlerMetrics} keep being updated.
+     */
+    public static Map<String, ChannelHandlerMetrics> metrics() {
+        return Collections.unmodifiableMap(new TreeMap<String, ChannelHandlerMetrics>(METRICS));
+    }
+
+    /**
+     * Returns the metrics for the handlers with the given name, creating them if needed. Returns {@code null} if
+     * tracing is disabled. Each call must be matched by a call to {@link #unregister(ChannelHandlerMetrics)} once
+     * the handler was removed.
+     */
+    static ChannelHandlerMetrics register(String name) {
+        if (!ENABLED) {
+            return null;
+        }
+        for (;;) {
+            ChannelHandlerMetrics metrics = METRICS.get(name);
+            if (metrics == null) {
+                ChannelHandlerMetrics newMetrics = new ChannelHandlerMetrics(name);
+                metrics = METRICS.putIfAbsent(name, newMetrics);
+                if (metrics == null) {
+                    return newMetrics;
+                }
+            }
+            if (metrics.retain()) {
+                return metrics;
+            }
+            // The last handler using these metrics was just removed, make sure they are gone before trying again.
+            METRICS.remove(name, metrics);
+        }
+    }
+
+    /**
+     * Releases metrics returned by {@link #register(String)} and removes them from the registry when no handler
+     * uses them anymore.
+     */
+    static void unregister(ChannelHandlerMetrics metrics) {
+        if (metrics.release()) {
+            METRICS.remove(metrics.name(), metrics);
+        }
+    }
+
+    /**
+     * Returns {@code true} if the current invocation should be timed.
+     */
+    static boolean sample() {
+        return SAMPLING_INTERVAL == 1 || PlatformDependent.threadLocalRandom().nextInt(SAMPLING_INTERVAL) == 0;
+    }
+}
@@ -17,6 +17,7 @@
 package io.netty.channel;
 
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.socket.DuplexChannel;
 
 import java.util.IdentityHashMap;
 import java.util.Map;
@@ -28,6 +29,7 @@ import static io.netty.channel.ChannelOption.ALLOCATOR;
 import static io.netty.channel.ChannelOption.AUTO_CLOSE;
 import static io.netty.channel.ChannelOption.AUTO_READ;
 import static io.netty.channel.ChannelOption.CONNECT_TIMEOUT_MILLIS;
+import static io.netty.channel.ChannelOption.INBOUND_MEMORY_BUDGET;
 import static io.netty.channel.ChannelOption.MAX_MESSAGES_PER_READ;
 import static io.netty.channel.ChannelOption.MESSAGE_SIZE_ESTIMATOR;
 import static io.netty.channel.ChannelOption.RCVBUF_ALLOCATOR;
@@ -35,6 +37,8 @@ import static io.netty.channel.ChannelOption.SINGLE_EVENTEXECUTOR_PER_GROUP;
 import static io.netty.channel.ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK;
 import static io.netty.channel.ChannelOption.WRITE_BUFFER_LOW_WATER_MARK;
 import static io.netty.channel.ChannelOption.WRITE_BUFFER_WATER_MARK;
+import static io.netty.channel.ChannelOption.WRITE_BUFFER_WATER_MARK_POLICY;
+import static io.netty.channel.ChannelOption.WRITE_COALESCING_THRESHOLD;
 import static io.netty.channel.ChannelOption.WRITE_SPIN_COUNT;
 import static io.netty.util.internal.ObjectUtil.checkNotNull;
 
@@ -81,6 +85,14 @@ public class DefaultChannelConfig implements ChannelConfig {
 
     private volatile boolean pinEventExecutor = true;
 
+    private volatile int writeCoalescingThreshold;
+
+    private volatile WriteBufferWaterMarkPolicy writeBufferWaterMarkPolicy;
+
+    private volatile WriteBufferWaterMarkPolicy.Handle writeBufferWaterMarkHandle;
+
+    private volatile InboundMemoryBudget inboundMemoryBudget;
+
     public DefaultChannelConfig(Channel channel) {
         //传入一个自适应接收字节缓冲区分配器
         this(channel, new AdaptiveRecvByteBufAllocator());
@@ -100,7 +112,8 @@ public class DefaultChannelConfig implements ChannelConfig {
                 CONNECT_TIMEOUT_MILLIS, MAX_MESSAGES_PER_READ, WRITE_SPIN_COUNT,
                 ALLOCATOR, AUTO_READ, AUTO_CLOSE, RCVBUF_ALLOCATOR, WRITE_BUFFER_HIGH_WATER_MARK,
                 WRITE_BUFFER_LOW_WATER_MARK, WRITE_BUFFER_WATER_MARK, MESSAGE_SIZE_ESTIMATOR,
-                SINGLE_EVENTEXECUTOR_PER_GROUP);
+                SINGLE_EVENTEXECUTOR_PER_GROUP, WRITE_COALESCING_THRESHOLD, WRITE_BUFFER_WATER_MARK_POLICY,
+                INBOUND_MEMORY_BUDGET);
     }
 
     protected Map<ChannelOption<?>, Object> getOptions(
@@ -174,6 +187,15 @@ public class DefaultChannelConfig implements ChannelConfig {
         if (option == SINGLE_EVENTEXECUTOR_PER_GROUP) {
             return (T) Boolean.valueOf(getPinEventExecutorPerGroup());
         }
+        if (option == WRITE_COALESCING_THRESHOLD && isByteStream()) {
+            return (T) Integer.valueOf(getWriteCoalescingThreshold());
+        }
+        if (option == WRITE_BUFFER_WATER_MARK_POLICY) {
+            return (T) writeBufferWaterMarkPolicy;
+        }
+        if (option == INBOUND_MEMORY_BUDGET) {
+            return (T) inboundMemoryBudget;
+        }
         return null;
     }
 
@@ -206,6 +228,12 @@ public class DefaultChannelConfig implements ChannelConfig {
             setMessageSizeEstimator((MessageSizeEstimator) value);
         } else if (option == SINGLE_EVENTEXECUTOR_PER_GROUP) {
             setPinEventExecutorPerGroup((Boolean) value);
+        } else if (option == WRITE_COALESCING_THRESHOLD && isByteStream()) {
+            setWriteCoalescingThreshold((Integer) value);
+        } else if (option == WRITE_BUFFER_WATER_MARK_POLICY) {
+            setWriteBufferWaterMarkPolicy((WriteBufferWaterMarkPolicy) value);
+        } else if (option == INBOUND_MEMORY_BUDGET) {
+            inboundMemoryBudget = (InboundMemoryBudget) value;
         } else {
             return false;
         }
@@ -452,4 +480,47 @@ public class DefaultChannelConfig implements ChannelConfig {
         return pinEventExecutor;
     }
 
+    private ChannelConfig setWriteCoalescingThreshold(int writeCoalescingThreshold) {
+        if (writeCoalescingThreshold < 0) {
+            throw new IllegalArgumentException(
+                    "writeCoalescingThreshold: " + writeCoalescingThreshold + " (expected: >= 0)");
+        }
+        this.writeCoalescingThreshold = writeCoalescingThreshold;
+        return this;
+    }
+
+    /**
+     * @see ChannelOption#WRITE_COALESCING_THRESHOLD
+     */
+    int getWriteCoalescingThreshold() {
+        return writeCoalescingThreshold;
+    }
+
+    /**
+     * Merging messages is only safe if the channel writes a stream of bytes. For message oriented channels, like
+     * datagram channels, every message needs to stay on its own.
+     */
+    private boolean isByteStream() {
+        return channel instanceof DuplexChannel;
+    }
+
+    private ChannelConfig setWriteBufferWaterMarkPolicy(WriteBufferWaterMarkPolicy policy) {
+        if (channel.isRegistered()) {
+            // A new handle would not know about the bytes which are already pending and so could not account for
+            // them once they are written.
+            throw new IllegalStateException("writeBufferWaterMarkPolicy can only be set before registration");
+        }
+        writeBufferWaterMarkPolicy = policy;
+        writeBufferWaterMarkHandle = policy == null ? null : policy.newHandle(channel);
+        return this;
+    }
+
+    /**
+     * Returns the handle of the {@link ChannelOption#WRITE_BUFFER_WATER_MARK_POLICY}, or {@code null} if the fixed
+     * {@link #getWriteBufferWaterMark()} is used.
+     */
+    WriteBufferWaterMarkPolicy.Handle getWriteBufferWaterMarkHandle() {
+        return writeBufferWaterMarkHandle;
+    }
+
 }
@@ -1017,6 +1017,9 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         final AbstractChannelHandlerContext head = this.head;
         for (; ; ) {
             if (ctx == head) {
+                // The head and tail are never removed, release their metrics once the pipeline is destroyed.
+                head.unregisterMetrics();
+                tail.unregisterMetrics();
                 break;
             }
 
@@ -1377,7 +1380,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
     final class TailContext extends AbstractChannelHandlerContext implements ChannelInboundHandler {
 
         TailContext(DefaultChannelPipeline pipeline) {
-            super(pipeline, null, TAIL_NAME, true, false);
+            super(pipeline, null, TAIL_NAME, TailContext.class);
             setAddComplete();
         }
 
@@ -1436,12 +1439,13 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         }
     }
 
-    final class HeadContext extends AbstractChannelHandlerContext implements ChannelOutboundHandler, ChannelInboundHandler {
+    final class HeadContext extends AbstractChannelHandlerContext
+            implements ChannelOutboundHandler, ChannelInboundBatchHandler {
 
         private final Unsafe unsafe;
 
         HeadContext(DefaultChannelPipeline pipeline) {
-            super(pipeline, null, HEAD_NAME, false, true);
+            super(pipeline, null, HEAD_NAME, HeadContext.class);
             unsafe = pipeline.channel().unsafe();
             setAddComplete();
         }
@@ -1546,6 +1550,11 @@ public class DefaultChannelPipeline implements ChannelPipeline {
             ctx.fireChannelRead(msg);
         }
 
+        @Override
+        public void channelReadBatch(ChannelHandlerContext ctx, MessageBatch batch) {
+            ctx.fireChannelRead(batch);
+        }
+
         @Override
         public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
             ctx.fireChannelReadComplete();
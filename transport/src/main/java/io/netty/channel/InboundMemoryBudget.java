@@ -0,0 +1,266 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounds the inbound memory that handlers such as decoders and aggregators hold across many {@link Channel}s.
+ * <p>
+ * Handlers {@linkplain #charge(Channel, long) charge} the bytes they hold on to and
+ * {@linkplain #release(Channel, long) release} them once they are passed on or freed. Once more than
+ * {@code maxBytes} are charged, reading is suspended (via {@link ChannelConfig#setAutoRead(boolean)}) on the
+ * {@link Channel}s holding the most memory, until they hold enough to get back to {@code resumeBytes} once freed.
+ * Reading is resumed on all of them as soon as no more than {@code resumeBytes} are charged. {@link Channel}s on which
+ * auto read was already disabled are left alone.
+ * <p>
+ * The budget is set with {@link ChannelOption#INBOUND_MEMORY_BUDGET}; share one instance, e.g. as child option of a
+ * server, among all {@link Channel}s which should be bounded together. As a suspended {@link Channel} may hold a
+ * partial message, combine this with a read timeout so stalled peers are eventually closed.
+ */
+@UnstableApi
+public final class InboundMemoryBudget {
+
+    private final long maxBytes;
+    private final long resumeBytes;
+    private final AtomicLong usedBytes = new AtomicLong();
+    // The bytes held by the suspended channels. Kept up to date by charge() and release() and recomputed whenever
+    // more channels are suspended, so it is only approximate while channels are suspended or resumed concurrently.
+    private final AtomicLong suspendedBytes = new AtomicLong();
+    private final ConcurrentMap<Channel, Usage> usages = PlatformDependent.newConcurrentHashMap();
+
+    // Held while channels are selected for suspension or resumed. The selection only happens if no other thread is
+    // doing it already, so charging never waits for it.
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile boolean hasSuspended;
+
+    /**
+     * Create a new instance which resumes reading once at most three quarters of {@code maxBytes} are charged.
+     */
+    public InboundMemoryBudget(long maxBytes) {
+        this(maxBytes, maxBytes - (maxBytes >>> 2));
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param maxBytes the number of charged bytes above which reading is suspended.
+     * @param resumeBytes the number of charged bytes at or below which reading is resumed.
+     */
+    public InboundMemoryBudget(long maxBytes, long resumeBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes: " + maxBytes + " (expected: > 0)");
+        }
+        if (resumeBytes < 0 || resumeBytes > maxBytes) {
+            throw new IllegalArgumentException(
+                    "resumeBytes: " + resumeBytes + " (expected: 0-maxBytes (" + maxBytes + "))");
+        }
+        this.maxBytes = maxBytes;
+        this.resumeBytes = resumeBytes;
+    }
+
+    /**
+     * Returns the number of bytes currently charged by all {@link Channel}s.
+     */
+    public long usedBytes() {
+        return usedBytes.get();
+    }
+
+    /**
+     * Returns the number of bytes currently charged by the given {@link Channel}.
+     */
+    public long usedBytes(Channel channel) {
+        Usage usage = usages.get(channel);
+        return usage == null ? 0 : usage.bytes.get();
+    }
+
+    /**
+     * Returns {@code true} if reading was suspended on the given {@link Channel} by this budget. Handlers which would
+     * otherwise request a read when auto read is disabled should not do so in this case.
+     */
+    public boolean isSuspended(Channel channel) {
+        if (!hasSuspended) {
+            return false;
+        }
+        Usage usage = usages.get(channel);
+        return usage != null && usage.suspended;
+    }
+
+    /**
+     * Charges {@code bytes} held by the given {@link Channel}.
+     */
+    public void charge(Channel channel, long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("bytes: " + bytes + " (expected: >= 0)");
+        }
+        if (bytes == 0) {
+            return;
+        }
+        Usage usage = usages.get(channel);
+        if (usage == null) {
+            Usage newUsage = new Usage(channel);
+            usage = usages.putIfAbsent(channel, newUsage);
+            if (usage == null) {
+                usage = newUsage;
+            }
+        }
+        usage.bytes.addAndGet(bytes);
+        if (usage.suspended) {
+            suspendedBytes.addAndGet(bytes);
+        }
+        long used = usedBytes.addAndGet(bytes);
+        // Only look for channels to suspend if the ones suspended so far do not hold enough to get back to
+        // resumeBytes.
+        if (used > maxBytes && used - resumeBytes > suspendedBytes.get()) {
+            suspendLargest();
+        }
+    }
+
+    /**
+     * Releases {@code bytes} which were {@linkplain #charge(Channel, long) charged} by the given {@link Channel}.
+     */
+    public void release(Channel channel, long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("bytes: " + bytes + " (expected: >= 0)");
+        }
+        if (bytes == 0) {
+            return;
+        }
+        Usage usage = usages.get(channel);
+        if (usage != null) {
+            if (usage.suspended) {
+                suspendedBytes.addAndGet(-bytes);
+            }
+            if (usage.bytes.addAndGet(-bytes) <= 0 && !usage.suspended) {
+                usages.remove(channel, usage);
+            }
+        }
+        long used = usedBytes.addAndGet(-bytes);
+        if (used <= resumeBytes && hasSuspended) {
+            resumeAll();
+        }
+    }
+
+    private void suspendLargest() {
+        if (!lock.tryLock()) {
+            // Another thread is selecting channels to suspend already.
+            return;
+        }
+        List<Usage> toSuspend;
+        try {
+            long used = usedBytes.get();
+            if (used <= maxBytes) {
+                return;
+            }
+            // Bytes that must be freed to get back to resumeBytes.
+            long needed = used - resumeBytes;
+            long suspendedBytes = 0;
+            List<Usage> usages = new ArrayList<Usage>(this.usages.size());
+            for (Usage usage : this.usages.values()) {
+                long bytes = usage.bytes.get();
+                if (usage.suspended) {
+                    suspendedBytes += bytes;
+                } else if (bytes > 0) {
+                    usage.snapshot = bytes;
+                    usages.add(usage);
+                }
+            }
+            // Building the heap is linear, so only the channels which are actually suspended cost a log(n) poll.
+            PriorityQueue<Usage> candidates = new PriorityQueue<Usage>(usages);
+
+            toSuspend = new ArrayList<Usage>();
+            while (suspendedBytes < needed) {
+                Usage usage = candidates.poll();
+                if (usage == null) {
+                    break;
+                }
+                if (usage.channel.config().isAutoRead()) {
+                    usage.suspended = true;
+                    toSuspend.add(usage);
+                    hasSuspended = true;
+                }
+                suspendedBytes += usage.snapshot;
+            }
+            this.suspendedBytes.set(suspendedBytes);
+        } finally {
+            lock.unlock();
+        }
+
+        for (int i = 0; i < toSuspend.size(); i++) {
+            Usage usage = toSuspend.get(i);
+            ChannelConfig config = usage.channel.config();
+            config.setAutoRead(false);
+            if (!usage.suspended) {
+                // Resumed concurrently.
+                config.setAutoRead(true);
+            }
+        }
+    }
+
+    private void resumeAll() {
+        List<Usage> toResume = new ArrayList<Usage>();
+        lock.lock();
+        try {
+            if (usedBytes.get() > resumeBytes || !hasSuspended) {
+                // Charged again or resumed in the meantime.
+                return;
+            }
+            for (Usage usage : usages.values()) {
+                if (usage.suspended) {
+                    usage.suspended = false;
+                    if (usage.bytes.get() <= 0) {
+                        usages.remove(usage.channel, usage);
+                    }
+                    toResume.add(usage);
+                }
+            }
+            suspendedBytes.set(0);
+            hasSuspended = false;
+        } finally {
+            lock.unlock();
+        }
+
+        for (int i = 0; i < toResume.size(); i++) {
+            toResume.get(i).channel.config().setAutoRead(true);
+        }
+    }
+
+    private static final class Usage implements Comparable<Usage> {
+        final Channel channel;
+        final AtomicLong bytes = new AtomicLong();
+        volatile boolean suspended;
+        // The bytes held when selecting channels to suspend, so the order does not change while selecting.
+        long snapshot;
+
+        Usage(Channel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int compareTo(Usage o) {
+            // Largest first.
+            return snapshot < o.snapshot ? 1 : snapshot == o.snapshot ? 0 : -1;
+        }
+    }
+}
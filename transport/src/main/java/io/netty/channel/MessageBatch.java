@@ -0,0 +1,153 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.Recycler;
+import io.netty.util.Recycler.Handle;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+/**
+ * A pooled list of inbound messages which is passed through the {@link ChannelPipeline} as a single message, so
+ * that a {@link ChannelInboundBatchHandler} can process all of them in one call.
+ * <p>
+ * Handlers which do not implement {@link ChannelInboundBatchHandler} never see a {@link MessageBatch}: the
+ * {@link ChannelHandlerContext} passes its messages to {@link ChannelInboundHandler#channelRead(ChannelHandlerContext,
+ * Object)} one by one and recycles the batch afterwards.
+ * <p>
+ * A {@link ChannelInboundBatchHandler} owns the batch it receives. It must either forward it via
+ * {@link ChannelHandlerContext#fireChannelRead(Object)}, or take care of the messages and call {@link #recycle()}.
+ */
+@UnstableApi
+public final class MessageBatch extends AbstractList<Object> implements RandomAccess {
+
+    private static final Recycler<MessageBatch> RECYCLER = new Recycler<MessageBatch>() {
+        @Override
+        protected MessageBatch newObject(Handle<MessageBatch> handle) {
+            return new MessageBatch(handle);
+        }
+    };
+
+    /**
+     * Returns a new empty {@link MessageBatch}.
+     */
+    public static MessageBatch newInstance() {
+        return RECYCLER.get();
+    }
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * The largest array a recycled batch keeps, so a single burst of messages does not pin a large array in the
+     * pool forever.
+     */
+    static final int MAX_RETAINED_CAPACITY = 1024;
+
+    private final Handle<MessageBatch> handle;
+
+    private int size;
+
+    private Object[] array = new Object[DEFAULT_CAPACITY];
+
+    private MessageBatch(Handle<MessageBatch> handle) {
+        this.handle = handle;
+    }
+
+    @Override
+    public Object get(int index) {
+        checkIndex(index);
+        return array[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean add(Object msg) {
+        checkNotNull(msg, "msg");
+        if (size == array.length) {
+            Object[] newArray = new Object[size << 1];
+            System.arraycopy(array, 0, newArray, 0, size);
+            array = newArray;
+        }
+        array[size++] = msg;
+        return true;
+    }
+
+    @Override
+    public Object set(int index, Object msg) {
+        checkNotNull(msg, "msg");
+        checkIndex(index);
+        Object old = array[index];
+        array[index] = msg;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            array[i] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * Release all messages via {@link ReferenceCountUtil#release(Object)} and {@link #recycle()} this batch.
+     */
+    public void release() {
+        try {
+            for (int i = 0; i < size; i++) {
+                ReferenceCountUtil.release(array[i]);
+            }
+        } finally {
+            recycle();
+        }
+    }
+
+    /**
+     * Clear this batch without releasing its messages and return it to the pool. The batch must not be used
+     * anymore after this method was called.
+     */
+    public void recycle() {
+        if (array.length > MAX_RETAINED_CAPACITY) {
+            array = new Object[DEFAULT_CAPACITY];
+            size = 0;
+        } else {
+            clear();
+        }
+        handle.recycle(this);
+    }
+
+    /**
+     * Returns the length of the backing array, for testing only.
+     */
+    int capacity() {
+        return array.length;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + " (expected: range(0, " + size + "))");
+        }
+    }
+}
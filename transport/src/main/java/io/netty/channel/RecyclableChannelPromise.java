@@ -0,0 +1,452 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.Recycler;
+import io.netty.util.Recycler.Handle;
+import io.netty.util.Signal;
+import io.netty.util.concurrent.AbstractFuture;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GenericFutureListener;
+import io.netty.util.internal.InternalThreadLocalMap;
+import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.ThrowableUtil;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+/**
+ * A pooled {@link ChannelPromise} for fire-and-forget writes which only needs to notify a few listeners.
+ * <p>
+ * Listeners are kept in a small inline array which is reused together with the promise, and they are notified
+ * directly on the {@link EventLoop} of the {@link Channel} without wrapping them in a new task. Once the promise
+ * was completed and all of its listeners were notified it is recycled. This means:
+ * <ul>
+ *     <li>All listeners must be added <strong>before</strong> the promise is passed to a write operation.</li>
+ *     <li>The promise must not be used or referenced anymore once it was passed to a write operation, so blocking
+ *     operations like {@link #await()} or {@link #sync()} are not supported.</li>
+ * </ul>
+ * A recycled promise which was not reused yet reports itself as done and rejects any attempt to complete it or to
+ * add listeners with an {@link IllegalStateException}, so that stale references fail fast rather than affecting
+ * whoever uses the promise next.
+ * <pre>
+ * channel.write(msg, RecyclableChannelPromise.newInstance(channel).addListener(listener));
+ * </pre>
+ * Use {@link Channel#newPromise()} whenever the promise is handed out to code which may retain it.
+ */
+@UnstableApi
+public final class RecyclableChannelPromise extends AbstractFuture<Void> implements ChannelPromise {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(RecyclableChannelPromise.class);
+
+    private static final int MAX_LISTENER_STACK_DEPTH = Math.min(8,
+            SystemPropertyUtil.getInt("io.netty.defaultPromise.maxListenerStackDepth", 8));
+
+    /**
+     * The number of listeners that can be added before the inline listener array needs to grow.
+     */
+    static final int INLINE_LISTENERS = 4;
+
+    private static final Recycler<RecyclableChannelPromise> RECYCLER = new Recycler<RecyclableChannelPromise>() {
+        @Override
+        protected RecyclableChannelPromise newObject(Handle<RecyclableChannelPromise> handle) {
+            return new RecyclableChannelPromise(handle);
+        }
+    };
+
+    private static final AtomicReferenceFieldUpdater<RecyclableChannelPromise, Object> RESULT_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(RecyclableChannelPromise.class, Object.class, "result");
+
+    private static final Signal SUCCESS = Signal.valueOf(RecyclableChannelPromise.class, "SUCCESS");
+    private static final Signal UNCANCELLABLE = Signal.valueOf(RecyclableChannelPromise.class, "UNCANCELLABLE");
+    private static final Signal RECYCLED = Signal.valueOf(RecyclableChannelPromise.class, "RECYCLED");
+    private static final CauseHolder CANCELLATION_CAUSE_HOLDER = new CauseHolder(ThrowableUtil.unknownStackTrace(
+            new CancellationException(), RecyclableChannelPromise.class, "cancel(...)"));
+
+    private final Handle<RecyclableChannelPromise> handle;
+
+    /**
+     * Allocated once per pooled instance and used when the listeners can not be notified in the current stack.
+     */
+    private final Runnable notifyTask = new Runnable() {
+        @Override
+        public void run() {
+            notifyListenersNow();
+        }
+    };
+
+    private GenericFutureListener<?>[] listeners = new GenericFutureListener<?>[INLINE_LISTENERS];
+
+    private int size;
+
+    private Channel channel;
+
+    private volatile Object result;
+
+    private RecyclableChannelPromise(Handle<RecyclableChannelPromise> handle) {
+        this.handle = handle;
+    }
+
+    /**
+     * Returns a pooled {@link RecyclableChannelPromise} for the given {@link Channel}.
+     */
+    public static RecyclableChannelPromise newInstance(Channel channel) {
+        checkNotNull(channel, "channel");
+        RecyclableChannelPromise promise = RECYCLER.get();
+        promise.channel = channel;
+        promise.result = null;
+        return promise;
+    }
+
+    @Override
+    public Channel channel() {
+        return channel;
+    }
+
+    @Override
+    public RecyclableChannelPromise addListener(GenericFutureListener<? extends Future<? super Void>> listener) {
+        checkNotNull(listener, "listener");
+        checkNotRecycled();
+        addListener0(listener);
+        if (isDone()) {
+            notifyListeners();
+        }
+        return this;
+    }
+
+    @Override
+    public RecyclableChannelPromise addListeners(GenericFutureListener<? extends Future<? super Void>>... listeners) {
+        checkNotNull(listeners, "listeners");
+        checkNotRecycled();
+        for (GenericFutureListener<? extends Future<? super Void>> listener : listeners) {
+            if (listener == null) {
+                break;
+            }
+            addListener0(listener);
+        }
+        if (isDone()) {
+            notifyListeners();
+        }
+        return this;
+    }
+
+    @Override
+    public RecyclableChannelPromise removeListener(GenericFutureListener<? extends Future<? super Void>> listener) {
+        checkNotNull(listener, "listener");
+        removeListener0(listener);
+        return this;
+    }
+
+    @Override
+    public RecyclableChannelPromise removeListeners(
+            GenericFutureListener<? extends Future<? super Void>>... listeners) {
+        checkNotNull(listeners, "listeners");
+        for (GenericFutureListener<? extends Future<? super Void>> listener : listeners) {
+            if (listener == null) {
+                break;
+            }
+            removeListener0(listener);
+        }
+        return this;
+    }
+
+    @Override
+    public RecyclableChannelPromise setSuccess() {
+        return setSuccess(null);
+    }
+
+    @Override
+    public RecyclableChannelPromise setSuccess(Void result) {
+        if (setValue0(SUCCESS)) {
+            notifyListeners();
+            return this;
+        }
+        throw new IllegalStateException("complete already: " + this);
+    }
+
+    @Override
+    public boolean trySuccess() {
+        return trySuccess(null);
+    }
+
+    @Override
+    public boolean trySuccess(Void result) {
+        if (setValue0(SUCCESS)) {
+            notifyListeners();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public RecyclableChannelPromise setFailure(Throwable cause) {
+        if (setValue0(new CauseHolder(checkNotNull(cause, "cause")))) {
+            notifyListeners();
+            return this;
+        }
+        throw new IllegalStateException("complete already: " + this, cause);
+    }
+
+    @Override
+    public boolean tryFailure(Throwable cause) {
+        if (setValue0(new CauseHolder(checkNotNull(cause, "cause")))) {
+            notifyListeners();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (RESULT_UPDATER.compareAndSet(this, null, CANCELLATION_CAUSE_HOLDER)) {
+            notifyListeners();
+            return true;
+        }
+        checkNotRecycled();
+        return false;
+    }
+
+    @Override
+    public boolean setUncancellable() {
+        if (RESULT_UPDATER.compareAndSet(this, null, UNCANCELLABLE)) {
+            return true;
+        }
+        checkNotRecycled();
+        Object result = this.result;
+        return !isDone0(result) || !isCancelled0(result);
+    }
+
+    @Override
+    public boolean isSuccess() {
+        Object result = this.result;
+        return result == SUCCESS;
+    }
+
+    @Override
+    public boolean isCancellable() {
+        return result == null;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return isCancelled0(result);
+    }
+
+    @Override
+    public boolean isDone() {
+        return isDone0(result);
+    }
+
+    @Override
+    public Throwable cause() {
+        Object result = this.result;
+        return result instanceof CauseHolder ? ((CauseHolder) result).cause : null;
+    }
+
+    @Override
+    public Void getNow() {
+        return null;
+    }
+
+    @Override
+    public RecyclableChannelPromise await() {
+        throw blockingNotSupported();
+    }
+
+    @Override
+    public RecyclableChannelPromise awaitUninterruptibly() {
+        throw blockingNotSupported();
+    }
+
+    @Override
+    public boolean await(long timeout, TimeUnit unit) {
+        throw blockingNotSupported();
+    }
+
+    @Override
+    public boolean await(long timeoutMillis) {
+        throw blockingNotSupported();
+    }
+
+    @Override
+    public boolean awaitUninterruptibly(long timeout, TimeUnit unit) {
+        throw blockingNotSupported();
+    }
+
+    @Override
+    public boolean awaitUninterruptibly(long timeoutMillis) {
+        throw blockingNotSupported();
+    }
+
+    @Override
+    public RecyclableChannelPromise sync() {
+        throw blockingNotSupported();
+    }
+
+    @Override
+    public RecyclableChannelPromise syncUninterruptibly() {
+        throw blockingNotSupported();
+    }
+
+    @Override
+    public boolean isVoid() {
+        return false;
+    }
+
+    @Override
+    public ChannelPromise unvoid() {
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder(64)
+                .append(StringUtil.simpleClassName(this))
+                .append('@')
+                .append(Integer.toHexString(hashCode()));
+
+        Object result = this.result;
+        if (result == SUCCESS) {
+            buf.append("(success)");
+        } else if (result == UNCANCELLABLE) {
+            buf.append("(uncancellable)");
+        } else if (result == RECYCLED) {
+            buf.append("(recycled)");
+        } else if (result instanceof CauseHolder) {
+            buf.append("(failure: ")
+                    .append(((CauseHolder) result).cause)
+                    .append(')');
+        } else {
+            buf.append("(incomplete)");
+        }
+        return buf.toString();
+    }
+
+    private static IllegalStateException blockingNotSupported() {
+        return new IllegalStateException("blocking operations are not supported by " +
+                StringUtil.simpleClassName(RecyclableChannelPromise.class));
+    }
+
+    private boolean setValue0(Object objResult) {
+        if (RESULT_UPDATER.compareAndSet(this, null, objResult) ||
+                RESULT_UPDATER.compareAndSet(this, UNCANCELLABLE, objResult)) {
+            return true;
+        }
+        checkNotRecycled();
+        return false;
+    }
+
+    private void checkNotRecycled() {
+        if (result == RECYCLED) {
+            throw new IllegalStateException(StringUtil.simpleClassName(this) +
+                    " used after it was completed and recycled");
+        }
+    }
+
+    private void addListener0(GenericFutureListener<?> listener) {
+        if (size == listeners.length) {
+            // Only happens if more then INLINE_LISTENERS are used, the grown array is kept for reuse.
+            listeners = Arrays.copyOf(listeners, size << 1);
+        }
+        listeners[size++] = listener;
+    }
+
+    private void removeListener0(GenericFutureListener<?> listener) {
+        for (int i = 0; i < size; i++) {
+            if (listeners[i] == listener) {
+                int listenersToMove = size - i - 1;
+                if (listenersToMove > 0) {
+                    System.arraycopy(listeners, i + 1, listeners, i, listenersToMove);
+                }
+                listeners[--size] = null;
+                return;
+            }
+        }
+    }
+
+    private void notifyListeners() {
+        EventExecutor executor = channel.eventLoop();
+        if (executor.inEventLoop()) {
+            final InternalThreadLocalMap threadLocals = InternalThreadLocalMap.get();
+            final int stackDepth = threadLocals.futureListenerStackDepth();
+            if (stackDepth < MAX_LISTENER_STACK_DEPTH) {
+                threadLocals.setFutureListenerStackDepth(stackDepth + 1);
+                try {
+                    notifyListenersNow();
+                } finally {
+                    threadLocals.setFutureListenerStackDepth(stackDepth);
+                }
+                return;
+            }
+        }
+        try {
+            executor.execute(notifyTask);
+        } catch (Throwable t) {
+            logger.error("Failed to submit a listener notification task. Event loop shut down?", t);
+        }
+    }
+
+    private void notifyListenersNow() {
+        // Listeners added by a listener are picked up as size is re-read on every iteration.
+        for (int i = 0; i < size; i++) {
+            notifyListener0(this, listeners[i]);
+        }
+        recycle();
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static void notifyListener0(Future future, GenericFutureListener l) {
+        try {
+            l.operationComplete(future);
+        } catch (Throwable t) {
+            logger.warn("An exception was thrown by " + l.getClass().getName() + ".operationComplete()", t);
+        }
+    }
+
+    private void recycle() {
+        Arrays.fill(listeners, 0, size, null);
+        size = 0;
+        channel = null;
+        // Keep it done until reused, so that stale references can not complete it or add listeners anymore.
+        result = RECYCLED;
+        handle.recycle(this);
+    }
+
+    private static boolean isCancelled0(Object result) {
+        return result instanceof CauseHolder && ((CauseHolder) result).cause instanceof CancellationException;
+    }
+
+    private static boolean isDone0(Object result) {
+        return result != null && result != UNCANCELLABLE;
+    }
+
+    private static final class CauseHolder {
+        final Throwable cause;
+
+        CauseHolder(Throwable cause) {
+            this.cause = cause;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * Decides the write buffer water marks of a {@link Channel} at runtime, instead of using the fixed
+ * {@link WriteBufferWaterMark} of its {@link ChannelConfig}.
+ * <p>
+ * A policy is set with {@link ChannelOption#WRITE_BUFFER_WATER_MARK_POLICY} before the {@link Channel} is registered,
+ * it can not be changed afterwards.
+ * The same instance may be shared by many {@link Channel}s, for example all child channels of a server, to enforce
+ * limits across all of them.
+ */
+@UnstableApi
+public interface WriteBufferWaterMarkPolicy {
+
+    /**
+     * Creates a new handle which tracks the water marks of the given {@link Channel}.
+     */
+    Handle newHandle(Channel channel);
+
+    /**
+     * Tracks the water marks of one {@link Channel}. All methods may be called from any thread, except
+     * {@link #bytesWritten(long)} which is only called from the {@link EventLoop} of the {@link Channel}.
+     */
+    interface Handle {
+
+        /**
+         * Called whenever the number of pending outbound bytes of the {@link Channel} changed by {@code delta}.
+         */
+        void pendingBytesChanged(long delta);
+
+        /**
+         * Called when {@code bytes} pending outbound bytes were written to the transport.
+         */
+        void bytesWritten(long bytes);
+
+        /**
+         * Returns the number of pending outbound bytes above which the {@link Channel} becomes unwritable.
+         */
+        long highWaterMark();
+
+        /**
+         * Returns the number of pending outbound bytes below which the {@link Channel} becomes writable again. Must not
+         * be greater than {@link #highWaterMark()}.
+         */
+        long lowWaterMark();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.channel.WriteBufferWaterMarkPolicy.Handle;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveWriteBufferWaterMarkPolicyTest {
+
+    @Test
+    public void testWaterMarksFollowWriteRate() {
+        TestPolicy policy = new TestPolicy(1000);
+        Handle handle = policy.newHandle(new EmbeddedChannel());
+        assertEquals(1024, handle.highWaterMark());
+        assertEquals(512, handle.lowWaterMark());
+
+        // Writing 1 byte per microsecond drains 10000 bytes within the target drain time of 10 milliseconds.
+        writeAtRate(policy, handle, 1, 1000);
+        assertEquals(10000, handle.highWaterMark(), 10);
+        assertEquals(5000, handle.lowWaterMark(), 5);
+
+        // Fast writers are capped at the maximum.
+        for (int i = 0; i < 10; i++) {
+            writeAtRate(policy, handle, 100, 1000);
+        }
+        assertEquals(64 * 1024, handle.highWaterMark());
+
+        // Slow writers get the minimum.
+        for (int i = 0; i < 40; i++) {
+            writeAtRate(policy, handle, 1, 100000);
+        }
+        assertEquals(1024, handle.highWaterMark());
+    }
+
+    @Test
+    public void testIdleTimeIsNotMeasured() {
+        TestPolicy policy = new TestPolicy(1 << 20);
+        Handle handle = policy.newHandle(new EmbeddedChannel());
+
+        // Bursts at 4 bytes per microsecond, separated by a long idle period without pending bytes. Each burst ends
+        // in the middle of a sample window.
+        for (int i = 0; i < 3; i++) {
+            handle.pendingBytesChanged(60000);
+            writeAtRate(policy, handle, 4, 1000);
+            for (int j = 0; j < 5000; j++) {
+                policy.ticks += 1000;
+                handle.bytesWritten(4);
+            }
+            handle.pendingBytesChanged(-60000);
+            assertEquals(40000, handle.highWaterMark(), 40);
+            policy.ticks += TimeUnit.SECONDS.toNanos(1);
+        }
+    }
+
+    @Test
+    public void testTotalBudget() {
+        TestPolicy policy = new TestPolicy(4096);
+        Handle handle1 = policy.newHandle(new EmbeddedChannel());
+        Handle handle2 = policy.newHandle(new EmbeddedChannel());
+
+        handle1.pendingBytesChanged(3000);
+        assertEquals(1024, handle2.highWaterMark());
+        handle2.pendingBytesChanged(2000);
+        assertEquals(5000, policy.totalPendingBytes());
+        assertEquals(512, handle1.highWaterMark());
+        assertEquals(512, handle2.highWaterMark());
+        assertEquals(512, handle2.lowWaterMark());
+
+        handle1.pendingBytesChanged(-3000);
+        assertEquals(1024, handle1.highWaterMark());
+        handle2.pendingBytesChanged(-2000);
+        assertEquals(0, policy.totalPendingBytes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidHighWaterMarks() {
+        new AdaptiveWriteBufferWaterMarkPolicy(2048, 1024, 1, TimeUnit.SECONDS, 4096);
+    }
+
+    // Writes the given number of bytes every intervalNanos until one sample window of 10 milliseconds is complete.
+    private static void writeAtRate(TestPolicy policy, Handle handle, int bytes, long intervalNanos) {
+        long start = policy.ticks;
+        do {
+            policy.ticks += intervalNanos;
+            handle.bytesWritten(bytes);
+        } while (policy.ticks - start <= TimeUnit.MILLISECONDS.toNanos(10));
+    }
+
+    private static final class TestPolicy extends AdaptiveWriteBufferWaterMarkPolicy {
+        long ticks;
+
+        TestPolicy(long totalBudget) {
+            super(1024, 64 * 1024, 10, TimeUnit.MILLISECONDS, totalBudget);
+        }
+
+        @Override
+        long ticksInNanos() {
+            return ticks;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.DefaultByteBufHolder;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerMetrics.Event;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ChannelHandlerMetricsTest {
+
+    @Test
+    public void testPercentiles() {
+        ChannelHandlerMetrics metrics = new ChannelHandlerMetrics("test");
+        assertEquals(0, metrics.percentileNanos(Event.WRITE, 99));
+        for (int i = 1; i <= 1000; i++) {
+            metrics.record(Event.WRITE, i * 1000L);
+        }
+        assertEquals(1000, metrics.sampledCount(Event.WRITE));
+        assertEquals(500500000L, metrics.sampledTimeNanos(Event.WRITE));
+        assertWithin(500000, metrics.percentileNanos(Event.WRITE, 50));
+        assertWithin(990000, metrics.percentileNanos(Event.WRITE, 99));
+        assertWithin(1000000, metrics.percentileNanos(Event.WRITE, 100));
+        assertWithin(1000, metrics.percentileNanos(Event.WRITE, 0));
+        assertEquals(0, metrics.sampledCount(Event.CHANNEL_READ));
+        assertEquals(0, metrics.sampledCount(Event.FLUSH));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPercentile() {
+        new ChannelHandlerMetrics("test").percentileNanos(Event.FLUSH, 101);
+    }
+
+    @Test
+    public void testInvocationsAndBytes() {
+        ChannelHandlerMetrics metrics = new ChannelHandlerMetrics("test");
+        ByteBuf buf = Unpooled.buffer().writeZero(10);
+        metrics.afterInvoke(Event.CHANNEL_READ, metrics.beforeInvoke(Event.CHANNEL_READ, buf));
+        metrics.afterInvoke(Event.CHANNEL_READ, metrics.beforeInvoke(Event.CHANNEL_READ, "not a buffer"));
+        metrics.afterInvoke(Event.WRITE, metrics.beforeInvoke(Event.WRITE, new DefaultByteBufHolder(buf)));
+        metrics.afterInvoke(Event.FLUSH, metrics.beforeInvoke(Event.FLUSH, null));
+        buf.release();
+
+        assertEquals(2, metrics.count(Event.CHANNEL_READ));
+        assertEquals(1, metrics.count(Event.WRITE));
+        assertEquals(1, metrics.count(Event.FLUSH));
+        assertEquals(10, metrics.bytesRead());
+        assertEquals(10, metrics.bytesWritten());
+        assertTrue(metrics.sampledCount(Event.CHANNEL_READ) <= 2);
+    }
+
+    @Test
+    public void testSelfTime() throws Exception {
+        ChannelHandlerMetrics outer = new ChannelHandlerMetrics("outer");
+        ChannelHandlerMetrics inner = new ChannelHandlerMetrics("inner");
+
+        long outerStart = outer.beforeInvoke(Event.CHANNEL_READ, null, true);
+        // Not sampled itself, but needs to be timed as it is nested in a timed invocation.
+        long innerStart = inner.beforeInvoke(Event.CHANNEL_READ, null, false);
+        assertNotEquals(-1, innerStart);
+        Thread.sleep(50);
+        inner.afterInvoke(Event.CHANNEL_READ, innerStart);
+        outer.afterInvoke(Event.CHANNEL_READ, outerStart);
+
+        assertEquals(0, inner.sampledCount(Event.CHANNEL_READ));
+        assertEquals(1, outer.sampledCount(Event.CHANNEL_READ));
+        assertTrue(outer.sampledTimeNanos(Event.CHANNEL_READ) < TimeUnit.MILLISECONDS.toNanos(50));
+
+        outerStart = outer.beforeInvoke(Event.WRITE, null, true);
+        innerStart = inner.beforeInvoke(Event.WRITE, null, true);
+        inner.afterInvoke(Event.WRITE, innerStart);
+        Thread.sleep(50);
+        outer.afterInvoke(Event.WRITE, outerStart);
+        assertEquals(1, inner.sampledCount(Event.WRITE));
+        assertTrue(inner.sampledTimeNanos(Event.WRITE) < TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(outer.sampledTimeNanos(Event.WRITE) >= TimeUnit.MILLISECONDS.toNanos(50));
+
+        // Nothing is timed without a sampled invocation.
+        assertEquals(-1, inner.beforeInvoke(Event.FLUSH, null, false));
+    }
+
+    @Test
+    public void testRetainRelease() {
+        ChannelHandlerMetrics metrics = new ChannelHandlerMetrics("test");
+        assertTrue(metrics.retain());
+        assertFalse(metrics.release());
+        assertTrue(metrics.release());
+        assertFalse(metrics.retain());
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        assertFalse(ChannelPipelineTracer.isEnabled());
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        assertTrue(channel.writeInbound(Unpooled.buffer().writeZero(1)));
+        assertTrue(ChannelPipelineTracer.metrics().isEmpty());
+        assertNull(ChannelPipelineTracer.register("test"));
+        assertTrue(channel.finishAndReleaseAll());
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        // The histogram reports the upper bound of the bucket, which may be up to 25% above the real value.
+        assertTrue("expected about " + expected + " but was " + actual,
+                actual >= expected && actual <= expected * 5 / 4);
+    }
+}
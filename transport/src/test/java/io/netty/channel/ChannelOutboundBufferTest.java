@@ -18,11 +18,14 @@ package io.netty.channel;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.CompositeByteBuf;
 import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.socket.DuplexChannel;
 import io.netty.util.CharsetUtil;
+import io.netty.util.concurrent.ImmediateEventExecutor;
 import org.junit.Test;
 
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
 
 import static io.netty.buffer.Unpooled.*;
 import static org.hamcrest.Matchers.*;
@@ -118,6 +121,225 @@ public class ChannelOutboundBufferTest {
         buf.release();
     }
 
+    @Test
+    public void testWrapAroundAndGrow() throws Exception {
+        TestChannel channel = new TestChannel();
+        ChannelOutboundBuffer buffer = new ChannelOutboundBuffer(channel);
+
+        int next = 0;
+        for (; next < 10; next++) {
+            buffer.addMessage(directBuffer().writeInt(next), 4, channel.voidPromise());
+        }
+        buffer.addFlush();
+        for (int i = 0; i < 8; i++) {
+            assertEquals(i, ((ByteBuf) buffer.current()).getInt(0));
+            assertTrue(buffer.remove());
+        }
+        // Wraps around the end of the arrays and then forces them to grow.
+        for (; next < 40; next++) {
+            buffer.addMessage(directBuffer().writeInt(next), 4, channel.voidPromise());
+        }
+        assertEquals(2, buffer.size());
+        buffer.addFlush();
+        assertEquals(32, buffer.size());
+
+        buffer.nioBuffers();
+        assertEquals(32, buffer.nioBufferCount());
+        assertEquals(32 * 4, buffer.nioBufferSize());
+
+        final int[] expected = { 8 };
+        buffer.forEachFlushedMessage(new ChannelOutboundBuffer.MessageProcessor() {
+            @Override
+            public boolean processMessage(Object msg) {
+                assertEquals(expected[0]++, ((ByteBuf) msg).getInt(0));
+                return true;
+            }
+        });
+        assertEquals(40, expected[0]);
+
+        for (int i = 8; i < 40; i++) {
+            assertEquals(i, ((ByteBuf) buffer.current()).getInt(0));
+            assertTrue(buffer.remove());
+        }
+        assertNull(buffer.current());
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, buffer.totalPendingWriteBytes());
+    }
+
+    @Test
+    public void testArraysReleasedOnceEmpty() {
+        TestChannel channel = new TestChannel();
+        ChannelOutboundBuffer buffer = new ChannelOutboundBuffer(channel);
+        assertEquals(0, buffer.capacity());
+
+        buffer.addMessage(directBuffer().writeInt(0), 4, channel.voidPromise());
+        assertEquals(16, buffer.capacity());
+        buffer.addFlush();
+        assertTrue(buffer.remove());
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, buffer.capacity());
+
+        // Grow beyond the initial capacity and drain again.
+        for (int i = 0; i < 40; i++) {
+            buffer.addMessage(directBuffer().writeInt(i), 4, channel.voidPromise());
+        }
+        assertEquals(64, buffer.capacity());
+        buffer.addFlush();
+        for (int i = 0; i < 40; i++) {
+            assertEquals(i, ((ByteBuf) buffer.current()).getInt(0));
+            assertTrue(buffer.remove());
+        }
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, buffer.capacity());
+
+        // The buffer is still usable after its arrays were released.
+        buffer.addMessage(directBuffer().writeInt(42), 4, channel.voidPromise());
+        buffer.addFlush();
+        buffer.nioBuffers();
+        assertEquals(1, buffer.nioBufferCount());
+        assertEquals(42, ((ByteBuf) buffer.current()).getInt(0));
+        assertTrue(buffer.remove());
+        assertEquals(0, buffer.capacity());
+    }
+
+    @Test
+    public void testAddMessageFromListener() {
+        final TestChannel channel = new TestChannel();
+        final ChannelOutboundBuffer buffer = new ChannelOutboundBuffer(channel);
+
+        final ByteBuf second = directBuffer().writeInt(2);
+        ChannelPromise promise = new DefaultChannelPromise(channel, ImmediateEventExecutor.INSTANCE);
+        promise.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                buffer.addMessage(second, 4, channel.voidPromise());
+                buffer.addFlush();
+            }
+        });
+        buffer.addMessage(directBuffer().writeInt(1), 4, promise);
+        buffer.addFlush();
+
+        assertTrue(buffer.remove());
+        assertTrue(promise.isSuccess());
+        assertSame(second, buffer.current());
+        assertTrue(buffer.remove());
+        assertFalse(buffer.remove());
+        assertEquals(0, second.refCnt());
+    }
+
+    @Test
+    public void testCancelledMessageIsSkipped() throws Exception {
+        TestChannel channel = new TestChannel();
+        ChannelOutboundBuffer buffer = new ChannelOutboundBuffer(channel);
+
+        ByteBuf cancelledBuf = directBuffer().writeInt(1);
+        ChannelPromise cancelled = new DefaultChannelPromise(channel, ImmediateEventExecutor.INSTANCE);
+        buffer.addMessage(cancelledBuf, 4, cancelled);
+        buffer.addMessage(directBuffer().writeInt(2), 4, channel.voidPromise());
+        assertTrue(cancelled.cancel(false));
+        buffer.addFlush();
+
+        assertEquals(0, cancelledBuf.refCnt());
+        assertEquals(2, buffer.size());
+        buffer.nioBuffers();
+        assertEquals(1, buffer.nioBufferCount());
+        assertEquals(4, buffer.nioBufferSize());
+
+        final int[] processed = { 0 };
+        buffer.forEachFlushedMessage(new ChannelOutboundBuffer.MessageProcessor() {
+            @Override
+            public boolean processMessage(Object msg) {
+                assertEquals(2, ((ByteBuf) msg).getInt(0));
+                processed[0]++;
+                return true;
+            }
+        });
+        assertEquals(1, processed[0]);
+
+        release(buffer);
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, buffer.totalPendingWriteBytes());
+    }
+
+    @Test
+    public void testWriteCoalescing() {
+        TestChannel channel = new StreamTestChannel();
+        assertTrue(channel.config().setOption(ChannelOption.WRITE_COALESCING_THRESHOLD, 8));
+        assertEquals(8, (int) channel.config().getOption(ChannelOption.WRITE_COALESCING_THRESHOLD));
+        ChannelOutboundBuffer buffer = new ChannelOutboundBuffer(channel);
+
+        ByteBuf[] small = new ByteBuf[5];
+        ChannelPromise[] promises = new ChannelPromise[small.length];
+        for (int i = 0; i < small.length; i++) {
+            small[i] = directBuffer().writeInt(i);
+            promises[i] = new DefaultChannelPromise(channel, ImmediateEventExecutor.INSTANCE);
+        }
+        ByteBuf large = directBuffer().writeZero(16);
+
+        buffer.addMessage(small[0], 4, promises[0]);
+        buffer.addMessage(small[1], 4, promises[1]);
+        buffer.addMessage(small[2], 4, promises[2]);
+        buffer.addMessage(large, 16, channel.voidPromise());
+        buffer.addMessage(small[3], 4, promises[3]);
+        buffer.addMessage(small[4], 4, promises[4]);
+        buffer.addFlush();
+
+        assertEquals(6, buffer.size());
+        for (ByteBuf buf : small) {
+            assertEquals(0, buf.refCnt());
+        }
+        ByteBuffer[] buffers = buffer.nioBuffers();
+        assertEquals(3, buffer.nioBufferCount());
+        assertEquals(12, buffers[0].remaining());
+        assertEquals(0, buffers[0].getInt(buffers[0].position()));
+        assertEquals(2, buffers[0].getInt(buffers[0].position() + 8));
+        assertEquals(16, buffers[1].remaining());
+        assertEquals(8, buffers[2].remaining());
+        assertEquals(4, buffers[2].getInt(buffers[2].position() + 4));
+
+        // Completing the copied bytes completes the promises of all messages they were copied from.
+        buffer.removeBytes(6);
+        assertFalse(promises[0].isDone());
+        buffer.removeBytes(6);
+        assertTrue(promises[0].isSuccess());
+        assertTrue(promises[1].isSuccess());
+        assertTrue(promises[2].isSuccess());
+        assertSame(large, buffer.current());
+        assertEquals(3, buffer.size());
+
+        buffer.removeBytes(16 + 8);
+        assertTrue(promises[3].isSuccess());
+        assertTrue(promises[4].isSuccess());
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, large.refCnt());
+        assertEquals(0, buffer.totalPendingWriteBytes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidWriteCoalescingThreshold() {
+        new StreamTestChannel().config().setOption(ChannelOption.WRITE_COALESCING_THRESHOLD, -1);
+    }
+
+    @Test
+    public void testWriteCoalescingNotSupportedForMessageChannels() {
+        TestChannel channel = new TestChannel();
+        assertFalse(channel.config().setOption(ChannelOption.WRITE_COALESCING_THRESHOLD, 8));
+        assertNull(channel.config().getOption(ChannelOption.WRITE_COALESCING_THRESHOLD));
+        ChannelOutboundBuffer buffer = new ChannelOutboundBuffer(channel);
+
+        ByteBuf first = directBuffer().writeInt(1);
+        ByteBuf second = directBuffer().writeInt(2);
+        buffer.addMessage(first, 4, channel.voidPromise());
+        buffer.addMessage(second, 4, channel.voidPromise());
+        buffer.addFlush();
+
+        // Every message must stay on its own, e.g. each one is a datagram.
+        assertSame(first, buffer.current());
+        buffer.nioBuffers();
+        assertEquals(2, buffer.nioBufferCount());
+        release(buffer);
+    }
+
     private static void release(ChannelOutboundBuffer buffer) {
         for (;;) {
             if (!buffer.remove()) {
@@ -126,7 +348,7 @@ public class ChannelOutboundBufferTest {
         }
     }
 
-    private static final class TestChannel extends AbstractChannel {
+    private static class TestChannel extends AbstractChannel {
         private static final ChannelMetadata TEST_METADATA = new ChannelMetadata(false);
         private final ChannelConfig config = new DefaultChannelConfig(this);
 
@@ -207,6 +429,53 @@ public class ChannelOutboundBufferTest {
         }
     }
 
+    private static final class StreamTestChannel extends TestChannel implements DuplexChannel {
+        @Override
+        public boolean isInputShutdown() {
+            return false;
+        }
+
+        @Override
+        public ChannelFuture shutdownInput() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ChannelFuture shutdownInput(ChannelPromise promise) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isOutputShutdown() {
+            return false;
+        }
+
+        @Override
+        public ChannelFuture shutdownOutput() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ChannelFuture shutdownOutput(ChannelPromise promise) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public ChannelFuture shutdown() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ChannelFuture shutdown(ChannelPromise promise) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
     @Test
     public void testWritability() {
         final StringBuilder buf = new StringBuilder();
@@ -242,6 +511,65 @@ public class ChannelOutboundBufferTest {
         safeClose(ch);
     }
 
+    @Test
+    public void testWriteBufferWaterMarkPolicyBudget() throws Exception {
+        AdaptiveWriteBufferWaterMarkPolicy policy =
+                new AdaptiveWriteBufferWaterMarkPolicy(1024, 1024, 50, TimeUnit.MILLISECONDS, 1500);
+        final StringBuilder buf1 = new StringBuilder();
+        final StringBuilder buf2 = new StringBuilder();
+        EmbeddedChannel ch1 = newWritabilityRecordingChannel(buf1);
+        EmbeddedChannel ch2 = newWritabilityRecordingChannel(buf2);
+        ch1.config().setOption(ChannelOption.WRITE_BUFFER_WATER_MARK_POLICY, policy);
+        ch2.config().setOption(ChannelOption.WRITE_BUFFER_WATER_MARK_POLICY, policy);
+        assertSame(policy, ch1.config().getOption(ChannelOption.WRITE_BUFFER_WATER_MARK_POLICY));
+        ch1.register();
+        ch2.register();
+
+        ch1.write(buffer().writeZero(800));
+        assertThat(buf1.toString(), is(""));
+        assertEquals(1024 - 800 - ChannelOutboundBuffer.CHANNEL_OUTBOUND_BUFFER_ENTRY_OVERHEAD,
+                ch1.bytesBeforeUnwritable());
+
+        // Exceeding the total budget lowers the high water mark of every channel to its low water mark.
+        ch2.write(buffer().writeZero(700));
+        assertThat(buf2.toString(), is("false "));
+        ch1.write(buffer().writeZero(1));
+        assertThat(buf1.toString(), is("false "));
+
+        ch1.unsafe().outboundBuffer().addFlush();
+        assertTrue(ch1.unsafe().outboundBuffer().remove());
+        assertTrue(ch1.unsafe().outboundBuffer().remove());
+        assertThat(buf1.toString(), is("false true "));
+        ch2.unsafe().outboundBuffer().addFlush();
+        assertTrue(ch2.unsafe().outboundBuffer().remove());
+        assertThat(buf2.toString(), is("false true "));
+        assertEquals(0, policy.totalPendingBytes());
+
+        safeClose(ch1);
+        safeClose(ch2);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testWriteBufferWaterMarkPolicyAfterRegistration() {
+        EmbeddedChannel ch = new EmbeddedChannel();
+        try {
+            ch.config().setOption(ChannelOption.WRITE_BUFFER_WATER_MARK_POLICY,
+                    new AdaptiveWriteBufferWaterMarkPolicy(1024));
+        } finally {
+            safeClose(ch);
+        }
+    }
+
+    private static EmbeddedChannel newWritabilityRecordingChannel(final StringBuilder buf) {
+        return new EmbeddedChannel(false, false, new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+                buf.append(ctx.channel().isWritable());
+                buf.append(' ');
+            }
+        });
+    }
+
     @Test
     public void testUserDefinedWritability() {
         final StringBuilder buf = new StringBuilder();
@@ -46,6 +46,7 @@ import org.junit.Test;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Queue;
@@ -1102,6 +1103,90 @@ public class DefaultChannelPipelineTest {
         }
     }
 
+    @Test
+    public void testHandlerMask() {
+        assertEquals(0, ChannelHandlerMask.mask(ChannelHandlerAdapter.class));
+        assertEquals(0, ChannelHandlerMask.mask(ChannelInboundHandlerAdapter.class));
+        assertEquals(0, ChannelHandlerMask.mask(ChannelOutboundHandlerAdapter.class));
+        assertEquals(0, ChannelHandlerMask.mask(ChannelDuplexHandler.class));
+        assertEquals(ChannelHandlerMask.MASK_WRITE, ChannelHandlerMask.mask(WriteOnlyHandler.class));
+        assertEquals(ChannelHandlerMask.MASK_CHANNEL_READ | ChannelHandlerMask.MASK_EXCEPTION_CAUGHT,
+                ChannelHandlerMask.mask(CheckExceptionHandler.class) | ChannelHandlerMask.mask(ReadOnlyHandler.class));
+        // Handlers which do not extend one of the adapters must always be invoked.
+        assertEquals(ChannelHandlerMask.MASK_EXCEPTION_CAUGHT | ChannelHandlerMask.MASK_ONLY_INBOUND |
+                ChannelHandlerMask.MASK_ONLY_OUTBOUND, ChannelHandlerMask.mask(CombinedChannelDuplexHandler.class));
+    }
+
+    @Test
+    public void testPassThroughHandlersAreSkipped() {
+        final List<String> events = new ArrayList<String>();
+        EmbeddedChannel channel = new EmbeddedChannel(
+                new WriteOnlyHandler(events, "write1"),
+                new ChannelInboundHandlerAdapter(),
+                new ReadOnlyHandler(events, "read1"),
+                new ChannelDuplexHandler(),
+                new WriteOnlyHandler(events, "write2"),
+                new ReadOnlyHandler(events, "read2"));
+
+        assertTrue(channel.writeInbound("msg"));
+        assertEquals("msg", channel.readInbound());
+        assertEquals(Arrays.asList("read1", "read2"), events);
+
+        events.clear();
+        assertTrue(channel.writeOutbound("msg"));
+        assertEquals("msg", channel.readOutbound());
+        assertEquals(Arrays.asList("write2", "write1"), events);
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testDisconnectIsTranslatedToClose() {
+        final AtomicBoolean closeCalled = new AtomicBoolean();
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+                closeCalled.set(true);
+                super.close(ctx, promise);
+            }
+        });
+        assertFalse(channel.metadata().hasDisconnect());
+        channel.disconnect().syncUninterruptibly();
+        assertTrue(closeCalled.get());
+        assertFalse(channel.isOpen());
+    }
+
+    private static final class WriteOnlyHandler extends ChannelDuplexHandler {
+        private final List<String> events;
+        private final String name;
+
+        WriteOnlyHandler(List<String> events, String name) {
+            this.events = events;
+            this.name = name;
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            events.add(name);
+            ctx.write(msg, promise);
+        }
+    }
+
+    private static final class ReadOnlyHandler extends ChannelInboundHandlerAdapter {
+        private final List<String> events;
+        private final String name;
+
+        ReadOnlyHandler(List<String> events, String name) {
+            this.events = events;
+            this.name = name;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            events.add(name);
+            ctx.fireChannelRead(msg);
+        }
+    }
+
     private static final class TestTask implements Runnable {
 
         private final ChannelPipeline pipeline;
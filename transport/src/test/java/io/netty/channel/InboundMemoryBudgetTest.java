@@ -0,0 +1,146 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class InboundMemoryBudgetTest {
+
+    @Test
+    public void testSuspendLargestAndResume() {
+        InboundMemoryBudget budget = new InboundMemoryBudget(100, 50);
+        EmbeddedChannel small = new EmbeddedChannel();
+        EmbeddedChannel large = new EmbeddedChannel();
+
+        budget.charge(small, 30);
+        budget.charge(large, 60);
+        assertEquals(90, budget.usedBytes());
+        assertTrue(large.config().isAutoRead());
+
+        budget.charge(large, 20);
+        assertEquals(110, budget.usedBytes());
+        assertEquals(80, budget.usedBytes(large));
+        // Suspending the largest consumer is enough to get back to the resume threshold.
+        assertFalse(large.config().isAutoRead());
+        assertTrue(budget.isSuspended(large));
+        assertTrue(small.config().isAutoRead());
+        assertFalse(budget.isSuspended(small));
+
+        budget.release(large, 50);
+        assertFalse(large.config().isAutoRead());
+
+        budget.release(small, 10);
+        assertEquals(50, budget.usedBytes());
+        assertTrue(large.config().isAutoRead());
+        assertFalse(budget.isSuspended(large));
+
+        budget.release(large, 30);
+        budget.release(small, 20);
+        assertEquals(0, budget.usedBytes());
+        assertEquals(0, budget.usedBytes(large));
+
+        assertFalse(small.finish());
+        assertFalse(large.finish());
+    }
+
+    @Test
+    public void testSuspendSeveral() {
+        InboundMemoryBudget budget = new InboundMemoryBudget(100, 40);
+        EmbeddedChannel ch1 = new EmbeddedChannel();
+        EmbeddedChannel ch2 = new EmbeddedChannel();
+        EmbeddedChannel ch3 = new EmbeddedChannel();
+
+        budget.charge(ch1, 40);
+        budget.charge(ch2, 35);
+        budget.charge(ch3, 30);
+        assertFalse(ch1.config().isAutoRead());
+        assertFalse(ch2.config().isAutoRead());
+        assertTrue(ch3.config().isAutoRead());
+
+        budget.release(ch3, 30);
+        assertFalse(ch1.config().isAutoRead());
+        budget.release(ch1, 35);
+        assertTrue(ch1.config().isAutoRead());
+        assertTrue(ch2.config().isAutoRead());
+
+        assertFalse(ch1.finish());
+        assertFalse(ch2.finish());
+        assertFalse(ch3.finish());
+    }
+
+    @Test
+    public void testSuspendOnlyWhenSuspendedChannelsDoNotHoldEnough() {
+        InboundMemoryBudget budget = new InboundMemoryBudget(100, 50);
+        EmbeddedChannel small = new EmbeddedChannel();
+        EmbeddedChannel large = new EmbeddedChannel();
+
+        budget.charge(small, 30);
+        budget.charge(large, 80);
+        assertTrue(budget.isSuspended(large));
+
+        // The suspended channel still holds enough to get back to the resume threshold.
+        budget.charge(small, 5);
+        assertTrue(small.config().isAutoRead());
+
+        // Once it released most of it, the next channel is suspended as well.
+        budget.release(large, 50);
+        budget.charge(small, 40);
+        assertEquals(105, budget.usedBytes());
+        assertTrue(budget.isSuspended(small));
+        assertFalse(small.config().isAutoRead());
+        assertTrue(budget.isSuspended(large));
+
+        budget.release(small, 75);
+        assertTrue(small.config().isAutoRead());
+        assertTrue(large.config().isAutoRead());
+        budget.release(large, 30);
+        assertEquals(0, budget.usedBytes());
+
+        assertFalse(small.finish());
+        assertFalse(large.finish());
+    }
+
+    @Test
+    public void testAutoReadDisabledByUserIsLeftAlone() {
+        InboundMemoryBudget budget = new InboundMemoryBudget(10, 0);
+        EmbeddedChannel ch = new EmbeddedChannel();
+        ch.config().setAutoRead(false);
+
+        budget.charge(ch, 20);
+        assertFalse(budget.isSuspended(ch));
+        budget.release(ch, 20);
+        assertFalse(ch.config().isAutoRead());
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testOption() {
+        InboundMemoryBudget budget = new InboundMemoryBudget(10);
+        EmbeddedChannel ch = new EmbeddedChannel();
+        assertNull(ch.config().getOption(ChannelOption.INBOUND_MEMORY_BUDGET));
+        assertTrue(ch.config().setOption(ChannelOption.INBOUND_MEMORY_BUDGET, budget));
+        assertSame(budget, ch.config().getOption(ChannelOption.INBOUND_MEMORY_BUDGET));
+        assertFalse(ch.finish());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidResumeBytes() {
+        new InboundMemoryBudget(10, 11);
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MessageBatchTest {
+
+    @Test
+    public void testBatchHandlerReceivesBatch() {
+        final List<Integer> batchSizes = new ArrayList<Integer>();
+        EmbeddedChannel channel = new EmbeddedChannel(new BatchForwardingHandler(batchSizes));
+
+        assertTrue(channel.writeInbound(newBatch("a", "b", "c")));
+        assertEquals(Arrays.asList(3), batchSizes);
+
+        // The last handler of the EmbeddedChannel does not support batches and so receives the messages one by one.
+        assertEquals("a", channel.readInbound());
+        assertEquals("b", channel.readInbound());
+        assertEquals("c", channel.readInbound());
+        assertNull(channel.readInbound());
+
+        // Other messages are passed to channelRead(...) as usual.
+        assertTrue(channel.writeInbound("d"));
+        assertEquals(Arrays.asList(3, 1), batchSizes);
+        assertEquals("d", channel.readInbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testNonBatchHandlerReceivesMessages() {
+        final List<Object> received = new ArrayList<Object>();
+        final List<Integer> batchSizes = new ArrayList<Integer>();
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                received.add(msg);
+                ctx.fireChannelRead(msg);
+            }
+        }, new BatchForwardingHandler(batchSizes));
+
+        assertTrue(channel.writeInbound(newBatch("a", "b")));
+        assertEquals(Arrays.<Object>asList("a", "b"), received);
+        assertEquals(Arrays.asList(1, 1), batchSizes);
+        assertEquals("a", channel.readInbound());
+        assertEquals("b", channel.readInbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testHandlerRemovedDuringBatch() {
+        final List<Object> received = new ArrayList<Object>();
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                received.add(msg);
+                ctx.pipeline().remove(this);
+            }
+        });
+
+        assertTrue(channel.writeInbound(newBatch("a", "b", "c")));
+        assertEquals(Arrays.<Object>asList("a"), received);
+        assertEquals("b", channel.readInbound());
+        assertEquals("c", channel.readInbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testGrowAndRecycle() {
+        MessageBatch batch = MessageBatch.newInstance();
+        for (int i = 0; i < 100; i++) {
+            batch.add(i);
+        }
+        assertEquals(100, batch.size());
+        assertEquals(99, batch.get(99));
+        batch.recycle();
+        assertTrue(MessageBatch.newInstance().isEmpty());
+    }
+
+    @Test
+    public void testRecycleTrimsLargeArray() {
+        MessageBatch batch = MessageBatch.newInstance();
+        for (int i = 0; i <= MessageBatch.MAX_RETAINED_CAPACITY; i++) {
+            batch.add(i);
+        }
+        assertTrue(batch.capacity() > MessageBatch.MAX_RETAINED_CAPACITY);
+        batch.recycle();
+
+        MessageBatch recycled = MessageBatch.newInstance();
+        assertSame(batch, recycled);
+        assertTrue(recycled.isEmpty());
+        assertEquals(16, recycled.capacity());
+        recycled.recycle();
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetNegativeIndex() {
+        MessageBatch batch = newBatch("a");
+        try {
+            batch.get(-1);
+        } finally {
+            batch.recycle();
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testSetNegativeIndex() {
+        MessageBatch batch = newBatch("a");
+        try {
+            batch.set(-1, "b");
+        } finally {
+            batch.recycle();
+        }
+    }
+
+    private static MessageBatch newBatch(Object... msgs) {
+        MessageBatch batch = MessageBatch.newInstance();
+        batch.addAll(Arrays.asList(msgs));
+        return batch;
+    }
+
+    private static final class BatchForwardingHandler extends ChannelInboundHandlerAdapter
+            implements ChannelInboundBatchHandler {
+        private final List<Integer> batchSizes;
+
+        BatchForwardingHandler(List<Integer> batchSizes) {
+            this.batchSizes = batchSizes;
+        }
+
+        @Override
+        public void channelReadBatch(ChannelHandlerContext ctx, MessageBatch batch) {
+            batchSizes.add(batch.size());
+            ctx.fireChannelRead(batch);
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            batchSizes.add(1);
+            ctx.fireChannelRead(msg);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class RecyclableChannelPromiseTest {
+
+    @Test
+    public void testListenersNotifiedOnWrite() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        final AtomicInteger notified = new AtomicInteger();
+        RecyclableChannelPromise promise = RecyclableChannelPromise.newInstance(channel);
+        for (int i = 0; i < RecyclableChannelPromise.INLINE_LISTENERS * 2; i++) {
+            promise.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) {
+                    assertTrue(future.isSuccess());
+                    notified.incrementAndGet();
+                }
+            });
+        }
+        ByteBuf buf = Unpooled.buffer().writeByte(1);
+        channel.writeAndFlush(buf, promise);
+        assertEquals(RecyclableChannelPromise.INLINE_LISTENERS * 2, notified.get());
+
+        ByteBuf written = channel.readOutbound();
+        assertSame(buf, written);
+        written.release();
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testListenersNotifiedOnFailure() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        final AtomicReference<Throwable> cause = new AtomicReference<Throwable>();
+        RecyclableChannelPromise promise = RecyclableChannelPromise.newInstance(channel);
+        promise.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                cause.set(future.cause());
+            }
+        });
+        Exception exception = new Exception();
+        promise.setFailure(exception);
+        assertSame(exception, cause.get());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testCompleteAfterRecycled() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        RecyclableChannelPromise promise = RecyclableChannelPromise.newInstance(channel);
+        promise.setSuccess();
+        assertTrue(promise.isDone());
+        try {
+            promise.trySuccess();
+            fail();
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+        try {
+            promise.tryFailure(new Exception());
+            fail();
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+        try {
+            promise.setSuccess();
+            fail();
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+        assertFalse(channel.finish());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAddListenerAfterRecycled() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        RecyclableChannelPromise promise = RecyclableChannelPromise.newInstance(channel);
+        ByteBuf buf = Unpooled.buffer().writeByte(1);
+        channel.writeAndFlush(buf, promise);
+        ((ByteBuf) channel.readOutbound()).release();
+        promise.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                fail();
+            }
+        });
+    }
+
+    @Test
+    public void testReusedAfterRecycled() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        RecyclableChannelPromise promise = RecyclableChannelPromise.newInstance(channel);
+        promise.setSuccess();
+        RecyclableChannelPromise reused = RecyclableChannelPromise.newInstance(channel);
+        assertFalse(reused.isDone());
+        assertTrue(reused.trySuccess());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testRemoveListener() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        final AtomicInteger notified = new AtomicInteger();
+        ChannelFutureListener removed = new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                fail();
+            }
+        };
+        RecyclableChannelPromise promise = RecyclableChannelPromise.newInstance(channel);
+        promise.addListener(removed);
+        promise.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                notified.incrementAndGet();
+            }
+        });
+        promise.removeListener(removed);
+        assertTrue(promise.trySuccess());
+        assertEquals(1, notified.get());
+        assertFalse(channel.finish());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSyncNotSupported() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        try {
+            RecyclableChannelPromise.newInstance(channel).sync();
+        } finally {
+            channel.finish();
+        }
+    }
+}